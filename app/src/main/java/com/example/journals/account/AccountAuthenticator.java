@@ -36,11 +36,11 @@ import com.android.volley.toolbox.RequestFuture;
 import com.example.journals.R;
 import com.example.journals.journal.Constants;
 import com.example.journals.network.GsonRequest;
+import com.example.journals.network.GsonUtils;
 import com.example.journals.network.NetworkUtils;
 import com.example.journals.network.NetworkUtils.LoginRequest;
 import com.example.journals.network.NetworkUtils.LoginResponse;
 import com.example.journals.network.VolleySingleton;
-import com.google.gson.Gson;
 
 import java.util.concurrent.ExecutionException;
 
@@ -146,7 +146,7 @@ public class AccountAuthenticator extends AbstractAccountAuthenticator {
                 final GsonRequest<LoginResponse> gsonRequest =
                         new GsonRequest<>(request.getUrl(mContext), LoginResponse.class,
                                 NetworkUtils.getAuthenticationHeaders(mContext),
-                                new Gson().toJson(request), future, future);
+                                GsonUtils.getGson().toJson(request), future, future);
                 VolleySingleton.getInstance(mContext).addToRequestQueue(gsonRequest);
                 // Get the login response.
                 try {
@@ -45,6 +45,7 @@ import com.example.journals.journal.JournalDialogFragment;
 import com.example.journals.R;
 import com.example.journals.journal.Constants;
 import com.example.journals.network.GsonRequest;
+import com.example.journals.network.GsonUtils;
 import com.example.journals.network.NetworkUtils;
 import com.example.journals.network.NetworkUtils.LoginRequest;
 import com.example.journals.network.NetworkUtils.LoginResponse;
@@ -57,7 +58,6 @@ import com.facebook.FacebookException;
 import com.facebook.login.LoginResult;
 import com.facebook.login.widget.LoginButton;
 import com.google.android.material.textfield.TextInputLayout;
-import com.google.gson.Gson;
 
 import java.util.Map;
 
@@ -152,7 +152,7 @@ public class AuthenticatorFragment extends Fragment {
     public void onStop() {
         super.onStop();
         // Cancel any running network tasks.
-        VolleySingleton.getInstance(getActivity()).getRequestQueue().cancelAll(this);
+        VolleySingleton.getInstance(getActivity()).cancelAll(this);
     }
 
     /**
@@ -564,7 +564,8 @@ public class AuthenticatorFragment extends Fragment {
                     // *****Launch the network request.***** //
                     final GsonRequest<LoginResponse> gson =
                             new GsonRequest<>(request.getUrl(getContext()),
-                                    LoginResponse.class, headers, new Gson().toJson(request),
+                                    LoginResponse.class, headers,
+                                    GsonUtils.getGson().toJson(request),
                                     listener, listener);
                     // Set the tag used to cancel in-flight requests if fragment is stopped.
                     gson.setTag(AuthenticatorFragment.this);
@@ -936,7 +937,8 @@ public class AuthenticatorFragment extends Fragment {
                     // Start the network request.
                     final GsonRequest<SignUpResponse> gson =
                             new GsonRequest<>(request.getUrl(getContext()),
-                                    SignUpResponse.class, headers, new Gson().toJson(request),
+                                    SignUpResponse.class, headers,
+                                    GsonUtils.getGson().toJson(request),
                                     listener, listener);
                     // Set the tag used to cancel in-flight requests if fragment is stopped.
                     gson.setTag(AuthenticatorFragment.this);
@@ -121,7 +121,7 @@ public class ContactDetailFragment extends Fragment implements DialogListener {
                 // Delete the contact from the provider.
                 if (action == JournalDialogFragment.DIALOG_ACTION_POSITIVE_CLICK) {
                     final QueryHandler handler =
-                            new QueryHandler(getActivity().getContentResolver());
+                            new QueryHandler(getActivity().getContentResolver(), this);
                     handler.startDelete(0, null, mContentUri, null, null);
                     // Close the activity.
                     getActivity().finish();
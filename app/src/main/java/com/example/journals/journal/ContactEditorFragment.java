@@ -43,18 +43,19 @@ import com.example.journals.journal.JournalDialogFragment.DialogListener;
 import com.example.journals.R;
 import com.example.journals.account.AccountUtils;
 import com.example.journals.network.GsonRequest;
+import com.example.journals.network.GsonUtils;
 import com.example.journals.network.NetworkUtils;
 import com.example.journals.network.NetworkUtils.Contact;
 import com.example.journals.network.NetworkUtils.CreateContactRequest;
 import com.example.journals.network.NetworkUtils.CreateContactResponse;
 import com.example.journals.network.NetworkUtils.DeleteJournalRequest;
 import com.example.journals.network.NetworkUtils.DeleteJournalResponse;
+import com.example.journals.network.VolleySingleton;
 import com.example.journals.provider.JournalContract.Contacts;
 import com.example.journals.provider.QueryHandler;
 import com.example.journals.provider.QueryHandler.SimpleQueryListener;
 import com.example.journals.widget.AuthHandlerFragment;
 import com.google.android.material.textfield.TextInputLayout;
-import com.google.gson.Gson;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.widget.Toolbar;
@@ -198,7 +199,8 @@ public class ContactEditorFragment extends AuthHandlerFragment implements Dialog
             // An existing journal entry is being updated.
             if (contact != null) {
                 // Load data from the provider, if any exists.
-                final QueryHandler handler = new QueryHandler(getContext().getContentResolver());
+                final QueryHandler handler =
+                        new QueryHandler(getContext().getContentResolver(), this);
                 handler.setQueryListener(new QueryListener());
                 handler.startQuery(0, null, Contacts.CONTENT_URI, QUERY_PROJECTION,
                         Contacts.COLUMN_SERVER_ID + "=?",
@@ -237,7 +239,7 @@ public class ContactEditorFragment extends AuthHandlerFragment implements Dialog
                                 accountName, new AuthTokenListener());
                         // Delete the journal entry from the provider if it exists.
                         final QueryHandler handler =
-                                new QueryHandler(getActivity().getContentResolver());
+                                new QueryHandler(getActivity().getContentResolver(), this);
                         final ContentValues values = new ContentValues(1);
                         values.put(Contacts.COLUMN_IS_DELETED, 1);
                         handler.startUpdate(0, null, Contacts.CONTENT_URI, values,
@@ -395,7 +397,8 @@ public class ContactEditorFragment extends AuthHandlerFragment implements Dialog
             }
             // Update the content provider if any values have changed.
             if (values.size() > 0) {
-                final QueryHandler handler = new QueryHandler(getActivity().getContentResolver());
+                final QueryHandler handler =
+                        new QueryHandler(getActivity().getContentResolver(), this);
                 if (mIsUpdating) {
                     handler.startUpdate(0, null, mContentUri, values, null, null);
                 } else {
@@ -439,7 +442,8 @@ public class ContactEditorFragment extends AuthHandlerFragment implements Dialog
                         request = new GsonRequest<>(createRequest.getUrl(getContext()),
                                 CreateContactResponse.class,
                                 NetworkUtils.getDataTransferHeaders(getContext(), authToken),
-                                new Gson().toJson(createRequest), createListener, createListener);
+                                GsonUtils.getGson().toJson(createRequest), createListener,
+                                createListener);
                         startRequest(request);
                         break;
                     case AUTH_REASON_DELETE_CONTACT:
@@ -452,7 +456,8 @@ public class ContactEditorFragment extends AuthHandlerFragment implements Dialog
                         request = new GsonRequest<>(deleteRequest.getUrl(getContext()),
                                 DeleteJournalResponse.class,
                                 NetworkUtils.getDataTransferHeaders(getContext(), authToken),
-                                new Gson().toJson(deleteRequest), deleteListener, deleteListener);
+                                GsonUtils.getGson().toJson(deleteRequest), deleteListener,
+                                deleteListener);
                         startRequest(request);
                         break;
                     default:
@@ -500,6 +505,8 @@ public class ContactEditorFragment extends AuthHandlerFragment implements Dialog
 
         @Override
         public void onResponse(NetworkUtils.CreateContactResponse response) {
+            // The cached lists no longer match the server.
+            VolleySingleton.getInstance(getContext()).invalidateReads();
             getActivity().finish();
         }
 
@@ -539,6 +546,8 @@ public class ContactEditorFragment extends AuthHandlerFragment implements Dialog
 
         @Override
         public void onResponse(DeleteJournalResponse response) {
+            // The cached lists no longer match the server.
+            VolleySingleton.getInstance(getContext()).invalidateReads();
             getActivity().finish();
         }
 
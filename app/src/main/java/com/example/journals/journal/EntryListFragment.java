@@ -20,6 +20,7 @@
  */
 package com.example.journals.journal;
 
+import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
@@ -53,6 +54,7 @@ import com.example.journals.provider.JournalContract.Contacts;
 import com.example.journals.widget.CheckableImageView;
 import com.example.journals.widget.CursorAdapter;
 import com.example.journals.widget.RecyclerViewFragment;
+import com.example.journals.widget.WindowedCursor;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -82,7 +84,9 @@ import static com.example.journals.R.id.text_title;
  * contained in a {@link JournalDetailFragment}.
  * <p/>
  * This fragment takes an argument URI of type {@link Activities#CONTENT_TYPE_DIR} or {@link
- * Contacts#CONTENT_TYPE_DIR}.
+ * Contacts#CONTENT_TYPE_DIR}. The entries are the rows of the journal snapshot read by the parent
+ * fragment, unless the journal has too many for the snapshot, in which case they are read from
+ * the URI.
  */
 public class EntryListFragment extends RecyclerViewFragment
         implements OnPageStatusChangedListener, DialogListener {
@@ -128,6 +132,11 @@ public class EntryListFragment extends RecyclerViewFragment
      * #onDataChanged(List)}.
      */
     private List<? extends Parcelable> mAdapterData = null;
+    /**
+     * Set whether the entries are read through the windowed loader, rather than taken from the
+     * rows provided by the parent fragment. Only used with {@link Constants#DATA_TYPE_CONTENT_URI}.
+     */
+    private boolean mIsWindowed = false;
 
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
@@ -151,12 +160,16 @@ public class EntryListFragment extends RecyclerViewFragment
         mEntryHelper.setupLayout(getRecyclerView());
         // Set up the adapter.
         switch (args.getInt(Constants.ARG_DATA_TYPE)) {
-            //            case Constants.DATA_TYPE_CONTENT_URI: TODO
-            //                // Set the adapter.
-            //                mAdapter = mEntryHelper.getAdapter(this, null);
-            //                // Initialize the cursor loader.
-            //                getLoaderManager().initLoader(0, null, new LoaderCallbacks());
-            //                break;
+            case Constants.DATA_TYPE_CONTENT_URI:
+                // Set the adapter.
+                mAdapter = mEntryHelper.getAdapter(this, null);
+                if (mIsWindowed) {
+                    // Initialize the cursor loader.
+                    getLoaderManager().initLoader(0, null, new LoaderCallbacks());
+                } else if (mAdapterData != null) {
+                    showRows(mAdapterData);
+                }
+                break;
             case Constants.DATA_TYPE_PARCELED_OBJECT:
                 if (mAdapterData != null) {
                     final Cursor cursor = mEntryHelper.getCursorFromParcelableList(mAdapterData,
@@ -183,7 +196,17 @@ public class EntryListFragment extends RecyclerViewFragment
     @Override
     public void onDataChanged(@Nullable List<? extends Parcelable> data) {
         mAdapterData = data;
-        if (mIsCreated) {
+        if (getArguments().getInt(Constants.ARG_DATA_TYPE) == Constants.DATA_TYPE_CONTENT_URI) {
+            // The rows are journal snapshot rows. Once the windowed loader has taken over, it
+            // follows changes to the entries itself.
+            if (mIsCreated && !mIsWindowed) {
+                if (data != null) {
+                    showRows(data);
+                } else {
+                    setAdapter(null);
+                }
+            }
+        } else if (mIsCreated) {
             if (data != null) {
                 final Cursor cursor = mEntryHelper.getCursorFromParcelableList(data,
                         getArguments().getLong(Constants.ARG_JOURNAL_ID));
@@ -241,6 +264,20 @@ public class EntryListFragment extends RecyclerViewFragment
         }
     }
 
+    /**
+     * Called when the journal snapshot read by this fragment's parent holds only some of the
+     * entries. All of them are read through the windowed loader from then on. Only used with
+     * {@link Constants#DATA_TYPE_CONTENT_URI}.
+     */
+    public void onDataTruncated() {
+        if (!mIsWindowed) {
+            mIsWindowed = true;
+            if (mIsCreated) {
+                getLoaderManager().initLoader(0, null, new LoaderCallbacks());
+            }
+        }
+    }
+
     /**
      * Called when the floating action button in this fragment's parent is clicked.
      */
@@ -271,6 +308,18 @@ public class EntryListFragment extends RecyclerViewFragment
         //                + " IN (" + builder.toString() + ")", null);
     }
 
+    /**
+     * Show journal snapshot rows in the list.
+     *
+     * @param rows the rows, each a {@link ContentValues} keyed by the columns of the entry type
+     */
+    private void showRows(@NonNull List<? extends Parcelable> rows) {
+        mAdapter.swapCursor(mEntryHelper.getCursorFromRows(rows));
+        if (getAdapter() == null) {
+            setAdapter(mAdapter);
+        }
+    }
+
     /**
      * Insert a new journal entry into the provider.
      * <p/>
@@ -480,6 +529,27 @@ public class EntryListFragment extends RecyclerViewFragment
         public abstract Cursor getCursorFromParcelableList(@NonNull List<? extends Parcelable> list,
                                                            long journalId);
 
+        /**
+         * Get a cursor from a list of provider rows, holding the columns of the loader
+         * projection.
+         *
+         * @param rows the rows, each a {@link ContentValues}
+         * @return a cursor representation of {@code rows}
+         */
+        public Cursor getCursorFromRows(@NonNull List<? extends Parcelable> rows) {
+            final String[] projection = getLoaderProjection();
+            final MatrixCursor cursor = new MatrixCursor(projection, rows.size());
+            for (Parcelable parcelable : rows) {
+                final ContentValues row = (ContentValues) parcelable;
+                final Object[] values = new Object[projection.length];
+                for (int i = 0; i < projection.length; i++) {
+                    values[i] = row.get(projection[i]);
+                }
+                cursor.addRow(values);
+            }
+            return cursor;
+        }
+
         /**
          * Get the query loader sort order.
          */
@@ -968,7 +1038,11 @@ public class EntryListFragment extends RecyclerViewFragment
     }
 
     /**
-     * Callback for interacting with a cursor loader manager.
+     * Callback for the windowed loader, which reads the entries once the parent's journal
+     * snapshot can't hold all of them. Only the IDs and the first block are read on the loader
+     * thread; a bind that moves the cursor into a block that isn't in memory, after a fling or
+     * jump past the block read ahead, reads that block on the main thread, either waiting for the
+     * read ahead or querying up to a block of rows by ID.
      */
     private class LoaderCallbacks implements LoaderManager.LoaderCallbacks<Cursor> {
 
@@ -977,7 +1051,20 @@ public class EntryListFragment extends RecyclerViewFragment
         public Loader<Cursor> onCreateLoader(int id, Bundle args) {
             final Uri uri = getArguments().getParcelable(Constants.ARG_DATA);
             return new CursorLoader(getContext(), uri, mEntryHelper.getLoaderProjection(), null,
-                    null, mEntryHelper.getLoaderSortOrder());
+                    null, mEntryHelper.getLoaderSortOrder()) {
+                @Override
+                public Cursor loadInBackground() {
+                    // Read the entries in blocks, as journals may have thousands of them.
+                    final Cursor cursor = new WindowedCursor(getContext().getContentResolver(),
+                            getUri(), getProjection(), getSelection(), getSelectionArgs(),
+                            getSortOrder());
+                    cursor.setNotificationUri(getContext().getContentResolver(), getUri());
+                    cursor.registerContentObserver(new ForceLoadContentObserver());
+                    // Read the first block here rather than on the first bind.
+                    cursor.moveToFirst();
+                    return cursor;
+                }
+            };
         }
 
         @Override
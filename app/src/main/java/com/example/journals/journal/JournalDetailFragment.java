@@ -20,10 +20,11 @@
  */
 package com.example.journals.journal;
 
+import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Parcelable;
@@ -44,6 +45,7 @@ import com.example.journals.account.AccountUtils;
 import com.example.journals.account.AccountUtils.AuthFailureErrorListener;
 import com.example.journals.journal.JournalListFragment.NewJournalDialogFragment;
 import com.example.journals.network.GsonRequest;
+import com.example.journals.network.GsonUtils;
 import com.example.journals.network.NetworkUtils;
 import com.example.journals.network.NetworkUtils.Activity;
 import com.example.journals.network.NetworkUtils.ConnectionRequest;
@@ -54,12 +56,15 @@ import com.example.journals.network.NetworkUtils.GetJournalDetailsRequest;
 import com.example.journals.network.NetworkUtils.GetJournalDetailsResponse;
 import com.example.journals.network.NetworkUtils.Journal;
 import com.example.journals.network.NetworkUtils.Media;
+import com.example.journals.network.VolleySingleton;
+import com.example.journals.provider.JournalContract;
+import com.example.journals.provider.JournalContract.Activities;
+import com.example.journals.provider.JournalContract.Contacts;
 import com.example.journals.provider.JournalContract.Journals;
 import com.example.journals.provider.QueryHandler;
 import com.example.journals.provider.QueryHandler.SimpleQueryListener;
 import com.example.journals.widget.AuthHandlerFragment;
 import com.google.android.material.tabs.TabLayout;
-import com.google.gson.Gson;
 
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -74,7 +79,7 @@ import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentManager;
 import androidx.fragment.app.FragmentStatePagerAdapter;
 import androidx.loader.app.LoaderManager;
-import androidx.loader.content.CursorLoader;
+import androidx.loader.content.AsyncTaskLoader;
 import androidx.loader.content.Loader;
 import androidx.viewpager.widget.ViewPager;
 import androidx.viewpager.widget.ViewPager.SimpleOnPageChangeListener;
@@ -115,12 +120,6 @@ public class JournalDetailFragment extends AuthHandlerFragment implements Dialog
      * Tag for dialogs.
      */
     private static final String DIALOG_TAG = "DIALOG_TAG";
-    /**
-     * Projection for building a cursor loader.
-     */
-    private static final String[] QUERY_PROJECTION =
-            new String[]{Journals.COLUMN_ID, Journals.COLUMN_ACCOUNT_NAME, Journals.COLUMN_TITLE,
-                    Journals.COLUMN_MAKE_PUBLIC, Journals.COLUMN_SERVER_ID};
 
     /**
      * The action mode that the fragment is currently in.
@@ -134,6 +133,12 @@ public class JournalDetailFragment extends AuthHandlerFragment implements Dialog
      * Journal used to provide data to the entry lists.
      */
     private GetJournalDetailsResponse mJournal = null;
+    /**
+     * Snapshot of the journal and its entries read from the provider, or {@code null} if it
+     * hasn't been read yet or the journal no longer exists. Only used with {@link
+     * Constants#DATA_TYPE_CONTENT_URI}.
+     */
+    private Bundle mSnapshot = null;
     /**
      * The current position of the view pager.
      */
@@ -194,10 +199,10 @@ public class JournalDetailFragment extends AuthHandlerFragment implements Dialog
 
         // *****Set up journal detail based on type of data received.***** //
         switch (getArguments().getInt(Constants.ARG_DATA_TYPE)) {
-            //            case Constants.DATA_TYPE_CONTENT_URI: TODO
-            //                // Retrieve journal title to display in toolbar.
-            //                getLoaderManager().initLoader(0, null, new LoaderCallbacks());
-            //                break;
+            case Constants.DATA_TYPE_CONTENT_URI:
+                // Read the journal and its entries with a single call to the provider.
+                getLoaderManager().initLoader(0, null, new SnapshotLoaderCallbacks());
+                break;
             case Constants.DATA_TYPE_PARCELED_OBJECT:
                 final Journal journal = getArguments().getParcelable(Constants.ARG_DATA);
                 mIsEditable = Constants.isCurrentUser(getContext(), journal.userId);
@@ -223,7 +228,8 @@ public class JournalDetailFragment extends AuthHandlerFragment implements Dialog
                     final GsonRequest request = new GsonRequest<>(getRequest.getUrl(getContext()),
                             GetJournalDetailsResponse.class,
                             NetworkUtils.getDataTransferHeaders(getContext(), null),
-                            new Gson().toJson(getRequest), listener, listener);
+                            GsonUtils.getGson().toJson(getRequest), listener, listener);
+                    request.setCacheTtl(GsonRequest.READ_CACHE_TTL, GsonRequest.READ_STALE_TTL);
                     startRequest(request);
                 }
                 break;
@@ -328,11 +334,40 @@ public class JournalDetailFragment extends AuthHandlerFragment implements Dialog
     //        }
     //    }
 
+    /**
+     * Pass the entries of the journal snapshot to an entry list. A list the snapshot couldn't
+     * hold all of is left to read its entries itself.
+     *
+     * @param fragment the entry list
+     * @param position the position of the entry list in the view pager
+     */
+    private void deliverSnapshot(@NonNull EntryListFragment fragment, int position) {
+        if (mSnapshot == null) {
+            fragment.onDataChanged(null);
+            return;
+        }
+        final ContentValues journal = mSnapshot.getParcelable(JournalContract.KEY_JOURNAL);
+        final List<ContentValues> rows;
+        final Integer count;
+        if (position == JournalPagerAdapter.POSITION_SPOTS) {
+            rows = mSnapshot.getParcelableArrayList(JournalContract.KEY_ACTIVITIES);
+            count = journal.getAsInteger(Journals.COLUMN_ACTIVITY_COUNT);
+        } else {
+            rows = mSnapshot.getParcelableArrayList(JournalContract.KEY_CONTACTS);
+            count = journal.getAsInteger(Journals.COLUMN_CONTACT_COUNT);
+        }
+        if ((count != null) && (rows.size() < count)) {
+            fragment.onDataTruncated();
+        } else {
+            fragment.onDataChanged(rows);
+        }
+    }
+
     /**
      * Delete the journal associated with this fragment.
      */
     private void deleteJournal() {
-        final QueryHandler handler = new QueryHandler(getActivity().getContentResolver());
+        final QueryHandler handler = new QueryHandler(getActivity().getContentResolver(), this);
         handler.setQueryListener(new SimpleQueryListener() {
 
             @Override
@@ -396,7 +431,7 @@ public class JournalDetailFragment extends AuthHandlerFragment implements Dialog
     private void updateJournal(String title) {
         final ContentValues values = new ContentValues(1);
         values.put(Journals.COLUMN_TITLE, title);
-        final QueryHandler handler = new QueryHandler(getActivity().getContentResolver());
+        final QueryHandler handler = new QueryHandler(getActivity().getContentResolver(), this);
         handler.startUpdate(0, null, (Uri) getArguments().getParcelable(Constants.ARG_DATA), values,
                 null, null);
     }
@@ -480,7 +515,9 @@ public class JournalDetailFragment extends AuthHandlerFragment implements Dialog
                         request = new GsonRequest<>(mRequest.getUrl(getContext()),
                                 GetJournalDetailsResponse.class,
                                 NetworkUtils.getDataTransferHeaders(getContext(), authToken),
-                                new Gson().toJson(mRequest), getListener, getListener);
+                                GsonUtils.getGson().toJson(mRequest), getListener, getListener);
+                        request.setCacheTtl(GsonRequest.READ_CACHE_TTL,
+                                GsonRequest.READ_STALE_TTL);
                         break;
                     case AUTH_REASON_EDIT_JOURNAL:
                         final CreateJournalResponseListener createListener =
@@ -489,7 +526,8 @@ public class JournalDetailFragment extends AuthHandlerFragment implements Dialog
                         request = new GsonRequest<>(mRequest.getUrl(getContext()),
                                 CreateJournalResponse.class,
                                 NetworkUtils.getDataTransferHeaders(getContext(), authToken),
-                                new Gson().toJson(mRequest), createListener, createListener);
+                                GsonUtils.getGson().toJson(mRequest), createListener,
+                                createListener);
                         break;
                     case AUTH_REASON_DELETE_JOURNAL:
                         final DeleteJournalResponseListener deleteListener =
@@ -498,7 +536,8 @@ public class JournalDetailFragment extends AuthHandlerFragment implements Dialog
                         request = new GsonRequest<>(mRequest.getUrl(getContext()),
                                 DeleteJournalResponse.class,
                                 NetworkUtils.getDataTransferHeaders(getContext(), authToken),
-                                new Gson().toJson(mRequest), deleteListener, deleteListener);
+                                GsonUtils.getGson().toJson(mRequest), deleteListener,
+                                deleteListener);
                         break;
                     default:
                         throw new IllegalArgumentException();
@@ -553,6 +592,7 @@ public class JournalDetailFragment extends AuthHandlerFragment implements Dialog
 
         @Override
         public void onResponse(DeleteJournalResponse response) {
+            VolleySingleton.getInstance(getContext()).invalidateReads();
             if (mListener != null) {
                 mListener.onJournalDeleted(JournalDetailFragment.this);
             }
@@ -594,6 +634,8 @@ public class JournalDetailFragment extends AuthHandlerFragment implements Dialog
 
         @Override
         public void onResponse(CreateJournalResponse response) {
+            // The cached lists and details show the old journal.
+            VolleySingleton.getInstance(getContext()).invalidateReads();
             // TODO only title needs to be refreshed?
         }
 
@@ -727,11 +769,16 @@ public class JournalDetailFragment extends AuthHandlerFragment implements Dialog
                 case POSITION_SPOTS:
                     args.putInt(Constants.ARG_ENTRY_TYPE, Constants.ENTRY_TYPE_SPOT);
                     switch (dataType) {
-                        //                        case Constants.DATA_TYPE_CONTENT_URI: TODO
-                        //                            final Uri uri =
-                        //                                    Uri.withAppendedPath((Uri) data, Activities.CONTENT_DIRECTORY);
-                        //                            args.putParcelable(Constants.ARG_DATA, uri);
-                        //                            break;
+                        case Constants.DATA_TYPE_CONTENT_URI:
+                            final Uri journalUri = getArguments().getParcelable(Constants.ARG_DATA);
+                            args.putLong(Constants.ARG_JOURNAL_ID, ContentUris.parseId(journalUri));
+                            args.putParcelable(Constants.ARG_DATA, Uri.withAppendedPath(journalUri,
+                                    Activities.CONTENT_DIRECTORY));
+                            // Pass the snapshot entries to the fragment, if already read.
+                            if (mSnapshot != null) {
+                                deliverSnapshot((EntryListFragment) fragment, position);
+                            }
+                            break;
                         case Constants.DATA_TYPE_PARCELED_OBJECT:
                             // Add the journal ID argument.
                             final Journal journal =
@@ -751,11 +798,16 @@ public class JournalDetailFragment extends AuthHandlerFragment implements Dialog
                 case POSITION_CONTACTS:
                     args.putInt(Constants.ARG_ENTRY_TYPE, Constants.ENTRY_TYPE_CONTACT);
                     switch (dataType) {
-                        //                        case Constants.DATA_TYPE_CONTENT_URI: TODO
-                        //                            final Uri uri = Uri.withAppendedPath((Uri) data,
-                        //                                    Contacts.CONTENT_DIRECTORY);
-                        //                            args.putParcelable(Constants.ARG_DATA, uri);
-                        //                            break;
+                        case Constants.DATA_TYPE_CONTENT_URI:
+                            final Uri journalUri = getArguments().getParcelable(Constants.ARG_DATA);
+                            args.putLong(Constants.ARG_JOURNAL_ID, ContentUris.parseId(journalUri));
+                            args.putParcelable(Constants.ARG_DATA, Uri.withAppendedPath(journalUri,
+                                    Contacts.CONTENT_DIRECTORY));
+                            // Pass the snapshot entries to the fragment, if already read.
+                            if (mSnapshot != null) {
+                                deliverSnapshot((EntryListFragment) fragment, position);
+                            }
+                            break;
                         case Constants.DATA_TYPE_PARCELED_OBJECT:
                             // Add the journal ID argument.
                             final Journal journal =
@@ -824,33 +876,132 @@ public class JournalDetailFragment extends AuthHandlerFragment implements Dialog
     }
 
     /**
-     * Callback for interacting with a cursor loader manager.
+     * Loader reading a journal snapshot from the provider, read again whenever the journal or any
+     * of its entries change.
+     */
+    private static class SnapshotLoader extends AsyncTaskLoader<Bundle> {
+
+        /**
+         * The row ID of the journal.
+         */
+        private final long mJournalId;
+        /**
+         * Observer reloading the snapshot when journal data changes.
+         */
+        private final ForceLoadContentObserver mObserver = new ForceLoadContentObserver();
+        /**
+         * Set whether the observer is registered.
+         */
+        private boolean mIsObserving = false;
+        /**
+         * Set whether a snapshot has been read.
+         */
+        private boolean mIsLoaded = false;
+        /**
+         * The last snapshot read, or {@code null} if the journal no longer exists.
+         */
+        private Bundle mSnapshot;
+
+        /**
+         * Create a new snapshot loader.
+         *
+         * @param context   the context used to access the provider
+         * @param journalId the row ID of the journal
+         */
+        SnapshotLoader(@NonNull Context context, long journalId) {
+            super(context);
+            mJournalId = journalId;
+        }
+
+        @Override
+        public Bundle loadInBackground() {
+            return getContext().getContentResolver().call(Journals.CONTENT_URI,
+                    JournalContract.METHOD_GET_JOURNAL_SNAPSHOT, String.valueOf(mJournalId), null);
+        }
+
+        @Override
+        public void deliverResult(Bundle data) {
+            mSnapshot = data;
+            mIsLoaded = true;
+            if (isStarted()) {
+                super.deliverResult(data);
+            }
+        }
+
+        @Override
+        protected void onStartLoading() {
+            if (!mIsObserving) {
+                // Entries may be changed through the journal's URIs or the entry directories.
+                final ContentResolver resolver = getContext().getContentResolver();
+                resolver.registerContentObserver(Journals.CONTENT_URI, true, mObserver);
+                resolver.registerContentObserver(Activities.CONTENT_URI, true, mObserver);
+                resolver.registerContentObserver(Contacts.CONTENT_URI, true, mObserver);
+                mIsObserving = true;
+            }
+            if (mIsLoaded) {
+                deliverResult(mSnapshot);
+            }
+            if (takeContentChanged() || !mIsLoaded) {
+                forceLoad();
+            }
+        }
+
+        @Override
+        protected void onStopLoading() {
+            cancelLoad();
+        }
+
+        @Override
+        protected void onReset() {
+            onStopLoading();
+            if (mIsObserving) {
+                getContext().getContentResolver().unregisterContentObserver(mObserver);
+                mIsObserving = false;
+            }
+            mSnapshot = null;
+            mIsLoaded = false;
+        }
+
+    }
+
+    /**
+     * Callback for interacting with the journal snapshot loader.
      */
-    private class LoaderCallbacks implements LoaderManager.LoaderCallbacks<Cursor> { // TODO
+    private class SnapshotLoaderCallbacks implements LoaderManager.LoaderCallbacks<Bundle> {
 
         @NonNull
         @Override
-        public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+        public Loader<Bundle> onCreateLoader(int id, Bundle args) {
             final Uri journalUri = getArguments().getParcelable(Constants.ARG_DATA);
-            return new CursorLoader(getActivity(), journalUri, QUERY_PROJECTION, null, null, null);
+            return new SnapshotLoader(getContext(), ContentUris.parseId(journalUri));
         }
 
         @Override
-        public void onLoaderReset(@NonNull Loader<Cursor> loader) {
+        public void onLoaderReset(@NonNull Loader<Bundle> loader) {
+            mSnapshot = null;
         }
 
         @Override
-        public void onLoadFinished(@NonNull Loader<Cursor> loader, Cursor data) {
-            // Set the activity title to the title of the journal.
-            if (data.moveToFirst()) {
-                final String title = data.getString(0);
+        public void onLoadFinished(@NonNull Loader<Bundle> loader, Bundle data) {
+            mSnapshot = data;
+            // Set the toolbar title to the title of the journal.
+            if (data != null) {
+                final ContentValues journal = data.getParcelable(JournalContract.KEY_JOURNAL);
+                final String title = journal.getAsString(Journals.COLUMN_TITLE);
                 final Toolbar toolbar = getView().findViewById(R.id.toolbar);
                 if (!TextUtils.isEmpty(title)) {
                     toolbar.setTitle(title);
                 } else {
                     toolbar.setTitle(R.string.defaultText_title);
                 }
-            }// TODO journal failed to load or was deleted
+            }
+            // Pass the entries to the entry lists, which are emptied if the journal was deleted.
+            for (int i = 0; i < JournalPagerAdapter.ITEM_COUNT; i++) {
+                final Fragment fragment = mAdapter.getFragmentAtPosition(i);
+                if (fragment instanceof EntryListFragment) {
+                    deliverSnapshot((EntryListFragment) fragment, i);
+                }
+            }
         }
 
     }
@@ -61,6 +61,7 @@ import com.example.journals.R;
 import com.example.journals.account.AccountUtils;
 import com.example.journals.account.AccountUtils.AuthFailureErrorListener;
 import com.example.journals.network.GsonRequest;
+import com.example.journals.network.GsonUtils;
 import com.example.journals.network.NetworkUtils;
 import com.example.journals.network.NetworkUtils.Activity;
 import com.example.journals.network.NetworkUtils.ConnectionRequest;
@@ -72,6 +73,8 @@ import com.example.journals.network.NetworkUtils.GetJournalsRequest;
 import com.example.journals.network.NetworkUtils.GetJournalsResponse;
 import com.example.journals.network.NetworkUtils.Media;
 import com.example.journals.network.NetworkUtils.SearchJournalsRequest;
+import com.example.journals.network.RecordStreamRequest;
+import com.example.journals.network.RecordStreamRequest.RecordListener;
 import com.example.journals.network.VolleySingleton;
 import com.example.journals.provider.JournalContract;
 import com.example.journals.provider.JournalContract.Journals;
@@ -83,7 +86,6 @@ import com.example.journals.widget.RecyclerViewFragment;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.location.LocationServices;
-import com.google.gson.Gson;
 
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -167,10 +169,19 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
      */
     private static final long NEW_JOURNAL_LOAD_NONE = -1L, NEW_JOURNAL_LOAD_PENDING = -2L,
             NEW_JOURNAL_LOAD_COMPLETE = -3L;
+    /**
+     * Token for updating the title of a journal, so that an update still waiting to run is
+     * replaced by a newer one.
+     */
+    private static final int TOKEN_UPDATE_JOURNAL = 1;
     /**
      * Tag for dialogs launched from this fragment.
      */
     private static final String DIALOG_TAG = "DIALOG_TAG";
+    /**
+     * Path to the journal records in a "get journals" response.
+     */
+    private static final String[] GET_JOURNALS_RECORDS_PATH = new String[]{"records"};
     /**
      * Saved instance state key for storing journal state downloaded from the server.
      * <p/>
@@ -222,6 +233,10 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
      * Set whether journals are currently being downloaded from the network.
      */
     private boolean mIsLoading = false;
+    /**
+     * Ranges of the list holding the journals received so far by each request.
+     */
+    private final List<ResponseRange> mResponseRanges = new ArrayList<>();
     /**
      * Parcelable containing recycler fragment saved state. Used to restore state when adapter is
      * finished loading asynchronously on fragment restart.
@@ -231,6 +246,10 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
      * Cursor obtained from the provider using a cursor loader.
      */
     private Cursor mProviderCursor = null;
+    /**
+     * Handler for updating journals in the provider, created when first needed.
+     */
+    private QueryHandler mQueryHandler = null;
     /**
      * Cursor containing data about the user this fragment is associated with.
      */
@@ -270,7 +289,7 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
      *
      * @param journals list of journals to move media information from
      */
-    private static void putJournalMediaInActivities(@NonNull ArrayList<Journal> journals) {
+    private static void putJournalMediaInActivities(@NonNull List<Journal> journals) {
         for (Journal j : journals) {
             if (j.activities != null) { // TODO shouldn't need this
                 for (Activity a : j.activities) {
@@ -519,7 +538,7 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
                             showDialog(DIALOG_TYPE_MESSAGE,
                                     getString(R.string.dialog_message_error_locationUnknown));
                             // Show an empty list.
-                            handleResponse(new ArrayList<Journal>(0), 0);
+                            handleResponse(new ResponseRange(), new ArrayList<Journal>(0), 0);
                         }
                     }
                 }
@@ -529,7 +548,7 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
                     showDialog(DIALOG_TYPE_MESSAGE,
                             getString(R.string.dialog_message_error_locationUnknown));
                     // Show an empty list.
-                    handleResponse(new ArrayList<Journal>(0), 0);
+                    handleResponse(new ResponseRange(), new ArrayList<Journal>(0), 0);
                 }
                 break;
             default:
@@ -566,7 +585,7 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
         final Account account = AccountUtils
                 .getAccountFromName(getContext(),
                         getArguments().getString(Constants.ARG_ACCOUNT_NAME));
-        final QueryHandler handler = new QueryHandler(getContext().getContentResolver());
+        final QueryHandler handler = new QueryHandler(getContext().getContentResolver(), this);
 
         // *****The journal has an existing entry in the provider.***** //
         if (journalInfo.providerId != RecyclerView.NO_ID) {
@@ -625,10 +644,13 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
                 } else {
                     final GetJournalsResponseListener listener = new GetJournalsResponseListener();
                     final GsonRequest gsonRequest =
-                            new GsonRequest<>(getRequest.getUrl(getContext()),
+                            new RecordStreamRequest<>(getRequest.getUrl(getContext()),
                                     GetJournalsResponse.class,
                                     NetworkUtils.getDataTransferHeaders(getContext(), null),
-                                    new Gson().toJson(getRequest), listener, listener);
+                                    GsonUtils.getGson().toJson(getRequest),
+                                    GET_JOURNALS_RECORDS_PATH, Journal.class, listener, listener,
+                                    listener);
+                    gsonRequest.setCacheTtl(GsonRequest.READ_CACHE_TTL, GsonRequest.READ_STALE_TTL);
                     startRequest(gsonRequest);
                 }
                 break;
@@ -658,14 +680,18 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
                         final SearchJournalsResponseListener listener =
                                 new SearchJournalsResponseListener();
                         final GsonRequest gsonRequest =
-                                new GsonRequest<>(nearbyRequest.getUrl(getContext()),
+                                new RecordStreamRequest<>(nearbyRequest.getUrl(getContext()),
                                         SearchJournalsResponse.class,
                                         getDataTransferHeaders(getContext(), null),
-                                        new Gson().toJson(nearbyRequest), listener, listener);
+                                        GsonUtils.getGson().toJson(nearbyRequest),
+                                        getSearchRecordsPath(), Journal.class, listener, listener,
+                                        listener);
+                        gsonRequest.setCacheTtl(GsonRequest.READ_CACHE_TTL,
+                                GsonRequest.READ_STALE_TTL);
                         startRequest(gsonRequest);
                     }
                 } else {
-                    handleResponse(new ArrayList<Journal>(0), 0);
+                    handleResponse(new ResponseRange(), new ArrayList<Journal>(0), 0);
                 }
                 break;
             // Start a "search journal" request.
@@ -686,10 +712,13 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
                     final SearchJournalsResponseListener listener =
                             new SearchJournalsResponseListener();
                     final GsonRequest gsonRequest =
-                            new GsonRequest<>(searchRequest.getUrl(getContext()),
+                            new RecordStreamRequest<>(searchRequest.getUrl(getContext()),
                                     SearchJournalsResponse.class,
                                     getDataTransferHeaders(getContext(), null),
-                                    new Gson().toJson(searchRequest), listener, listener);
+                                    GsonUtils.getGson().toJson(searchRequest),
+                                    getSearchRecordsPath(), Journal.class, listener, listener,
+                                    listener);
+                    gsonRequest.setCacheTtl(GsonRequest.READ_CACHE_TTL, GsonRequest.READ_STALE_TTL);
                     startRequest(gsonRequest);
                 }
                 break;
@@ -713,7 +742,7 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
         values.put(Journals.COLUMN_TITLE, title);
         final String accountName = getArguments().getString(Constants.ARG_ACCOUNT_NAME);
         values.put(Journals.COLUMN_ACCOUNT_NAME, accountName);
-        final QueryHandler handler = new QueryHandler(getContext().getContentResolver());
+        final QueryHandler handler = new QueryHandler(getContext().getContentResolver(), this);
         handler.setQueryListener(new SimpleQueryListener() {
 
             @Override
@@ -924,7 +953,10 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
         final Account account = AccountUtils
                 .getAccountFromName(getContext(),
                         getArguments().getString(Constants.ARG_ACCOUNT_NAME));
-        final QueryHandler handler = new QueryHandler(getContext().getContentResolver());
+        if (mQueryHandler == null) {
+            mQueryHandler = new QueryHandler(getContext().getContentResolver(), this);
+        }
+        final QueryHandler handler = mQueryHandler;
         handler.setQueryListener(new RequestSyncQueryListener(account));
 
         // *****The journal has an existing entry in the provider.***** //
@@ -934,7 +966,7 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
             // The journal also has a corresponding entry on the server.
             final ContentValues values = new ContentValues(1);
             values.put(Journals.COLUMN_TITLE, title);
-            handler.startUpdate(0, null, uri, values, null, null);
+            handler.startUpdate(TOKEN_UPDATE_JOURNAL, null, uri, values, null, null);
         }
 
         // *****The journal does not have an existing entry in the provider.***** //
@@ -952,72 +984,158 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
         mSelectedJournal = -1; // TODO constant value
     }
 
-    private void handleResponse(ArrayList<Journal> journals, int totalCount) {
+    private void handleResponse(@NonNull ResponseRange range, ArrayList<Journal> journals,
+                                int totalCount) {
+        // Add newly downloaded journals to the existing data.
+        if (journals != null) {
+            addJournals(range, journals);
+        }
         mIsLoading = false;
+        // Recreate the journal list data if refreshing and no journals were returned.
+        final boolean hasJournals = range.count > 0;
+        if (range.start == -1) {
+            resetJournals();
+        }
+        // Create an adapter if required.
+        JournalFooterAdapter adapter = (JournalFooterAdapter) getAdapter();
+        if (adapter == null) {
+            final JournalListAdapter wrappedAdapter = new JournalListAdapter(mJournals);
+            adapter = new JournalFooterAdapter(wrappedAdapter);
+            setAdapter(adapter);
+        }
+        // Show a indeterminant progress footer if there are more items.
+        if (hasJournals && (getArguments().getString(Constants.ARG_ACCOUNT_NAME) != null)
+                && (totalCount > mJournals.size())) {
+            adapter.setHasExtraItem(true);
+            mHasMoreJournals = true;
+        } else {
+            adapter.setHasExtraItem(false);
+            mHasMoreJournals = false;
+        }
+        // Clear the swipe refresh animation.
+        mSwipeRefreshLayout.setRefreshing(false);
+    }
+
+    /**
+     * Add journals downloaded from the server to the list.
+     * <p/>
+     * Called as each batch of journals in a response is read, so the first journals are shown
+     * before the whole response has been downloaded.
+     *
+     * @param range    the range of the list holding the journals received so far by the request
+     * @param journals the journals to add
+     */
+    private void addJournals(@NonNull ResponseRange range, @NonNull List<Journal> journals) {
         // Recreate the journal list data if refreshing.
+        if (range.start == -1) {
+            resetJournals();
+            range.start = mJournals.size();
+            mResponseRanges.add(range);
+        }
+        final int position = range.start + range.count;
+        range.count += journals.size();
+        shiftResponseRanges(range, journals.size());
+        // Move the activity media into the "activity" objects.
+        putJournalMediaInActivities(journals);
+        // Update new journals with provider data.
+        updateJournalListRange(journals, false);
+        // Add journals to the list, marking as editable if created by current user.
+        final String accountName = getArguments().getString(Constants.ARG_ACCOUNT_NAME);
+        long userId = AccountUtils.NO_USER_DATA;
+        if (accountName != null) {
+            userId = AccountUtils.getUserDataId(getContext(), accountName);
+        }
+        final List<JournalInfo> infos = new ArrayList<>(journals.size());
+        for (Journal j : journals) {
+            final JournalInfo info = new JournalInfo();
+            info.journal = j;
+            if (j.userId == userId) {
+                info.isEditable = true;
+            }
+            infos.add(info);
+        }
+        mJournals.addAll(position, infos);
+        // Update the adapter, creating it if required.
+        final JournalFooterAdapter adapter = (JournalFooterAdapter) getAdapter();
+        if (adapter == null) {
+            final JournalListAdapter wrappedAdapter = new JournalListAdapter(mJournals);
+            setAdapter(new JournalFooterAdapter(wrappedAdapter));
+        } else {
+            adapter.notifyItemRangeInserted(position, journals.size());
+        }
+    }
+
+    /**
+     * Remove the journals received so far in response to a request, which came from a stale
+     * cached response that is being replaced. The replacements are added in their place.
+     *
+     * @param range the range of the list holding the journals received so far by the request
+     */
+    private void discardResponseJournals(@NonNull ResponseRange range) {
+        if (range.start != -1) {
+            range.start = Math.min(range.start, mJournals.size());
+            final int end = Math.min(range.start + range.count, mJournals.size());
+            mJournals.subList(range.start, end).clear();
+            if (getAdapter() != null) {
+                getAdapter().notifyItemRangeRemoved(range.start, end - range.start);
+            }
+            shiftResponseRanges(range, range.start - end);
+            range.count = 0;
+        }
+    }
+
+    /**
+     * Get the path to the journal records in a "search journals" response, which depends on the
+     * navigation mode.
+     *
+     * @return the names of the nested objects leading to the records
+     */
+    private String[] getSearchRecordsPath() {
+        switch (getArguments().getInt(ARG_NAVIGATION_MODE)) {
+            case Constants.NAVIGATION_MODE_NEARBY:
+                return new String[]{"records", "nearby"};
+            case Constants.NAVIGATION_MODE_SEARCH_RESULTS:
+                return new String[]{"records", "journal"};
+            default:
+                throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Clear the journal list before the first journals of a response are added, if the list is
+     * being refreshed.
+     */
+    private void resetJournals() {
         if (mSwipeRefreshLayout.isRefreshing()) {
             mJournals.clear();
+            mResponseRanges.clear();
             // Add journals that only exist in the provider.
             if (getArguments().getInt(ARG_NAVIGATION_MODE) ==
                     Constants.NAVIGATION_MODE_YOUR_JOURNALS) {
                 replaceProviderOnlyJournals();
             }
-        }
-        // Add newly downloaded journals to the existing data.
-        JournalFooterAdapter adapter = (JournalFooterAdapter) getAdapter();
-        if (journals != null) {
-            // Move the activity media into the "activity" objects.
-            putJournalMediaInActivities(journals);
-            // Update new journals with provider data.
-            updateJournalListRange(journals, false);
-            // Add journals to the list, marking as editable if created by current user.
-            final String accountName = getArguments().getString(Constants.ARG_ACCOUNT_NAME);
-            long userId = AccountUtils.NO_USER_DATA;
-            if (accountName != null) {
-                userId = AccountUtils.getUserDataId(getContext(), accountName);
-            }
-            for (Journal j : journals) {
-                final JournalInfo info = new JournalInfo();
-                info.journal = j;
-                if (j.userId == userId) {
-                    info.isEditable = true;
-                }
-                mJournals.add(info);
-            }
-            // Update the adapter, creating it if required.
-            if (adapter == null) {
-                final JournalListAdapter wrappedAdapter = new JournalListAdapter(mJournals);
-                adapter = new JournalFooterAdapter(wrappedAdapter);
-                setAdapter(adapter);
-            } else if (mSwipeRefreshLayout.isRefreshing()) {
-                adapter.notifyDataSetChanged();
-            } else {
-                adapter.notifyItemRangeInserted(mJournals.size() - journals.size(),
-                        journals.size());
-            }
-            // Show a indeterminant progress footer if there are more items.
-            if ((getArguments().getString(Constants.ARG_ACCOUNT_NAME) != null) &&
-                    (totalCount > mJournals.size())) {
-                adapter.setHasExtraItem(true);
-                mHasMoreJournals = true;
-            } else {
-                adapter.setHasExtraItem(false);
-                mHasMoreJournals = false;
+            if (getAdapter() != null) {
+                getAdapter().notifyDataSetChanged();
             }
         }
-        // The response is "null" (no journals were returned).
-        else {
-            // Create an empty adapter.
-            if (adapter == null) {
-                final JournalListAdapter wrappedAdapter = new JournalListAdapter(mJournals);
-                adapter = new JournalFooterAdapter(wrappedAdapter);
-                setAdapter(adapter);
+    }
+
+    /**
+     * Move the ranges of the list that follow a range whose size has changed, so that they still
+     * hold the journals of their requests.
+     *
+     * @param range the range whose size has changed
+     * @param delta the change in size
+     */
+    private void shiftResponseRanges(@NonNull ResponseRange range, int delta) {
+        boolean isAfter = false;
+        for (ResponseRange other : mResponseRanges) {
+            if (other == range) {
+                isAfter = true;
+            } else if ((other.start > range.start) || (isAfter && (other.start == range.start))) {
+                other.start += delta;
             }
-            adapter.setHasExtraItem(false);
-            mHasMoreJournals = false;
         }
-        // Clear the swipe refresh animation.
-        mSwipeRefreshLayout.setRefreshing(false);
     }
 
     /**
@@ -1332,6 +1450,23 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
     //
     //    }
 
+    /**
+     * Range of the list holding the journals received so far by a request. Kept per request, as
+     * replacing a cached response must not remove the journals of other requests.
+     */
+    private static class ResponseRange {
+
+        /**
+         * Position in the list of the first journal, or -1 if no journals have been received.
+         */
+        public int start = -1;
+        /**
+         * Number of journals received so far.
+         */
+        public int count = 0;
+
+    }
+
     /**
      * Class for syncing changes to provider content.
      */
@@ -1394,28 +1529,37 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
                         final GetJournalsResponseListener getListener =
                                 new GetJournalsResponseListener(getActivity(), requestCode,
                                         accountName, this, authToken);
-                        request = new GsonRequest<>(mRequest.getUrl(getContext()),
+                        request = new RecordStreamRequest<>(mRequest.getUrl(getContext()),
                                 GetJournalsResponse.class,
                                 getDataTransferHeaders(getContext(), authToken),
-                                new Gson().toJson(mRequest), getListener, getListener);
+                                GsonUtils.getGson().toJson(mRequest), GET_JOURNALS_RECORDS_PATH,
+                                Journal.class, getListener, getListener, getListener);
+                        request.setCacheTtl(GsonRequest.READ_CACHE_TTL,
+                                GsonRequest.READ_STALE_TTL);
                         break;
                     case AUTH_REASON_YOUR_JOURNALS:
                         final GetJournalsResponseListener myListener =
                                 new GetJournalsResponseListener(getActivity(), requestCode,
                                         accountName, this, authToken);
-                        request = new GsonRequest<>(mRequest.getUrl(getContext()),
+                        request = new RecordStreamRequest<>(mRequest.getUrl(getContext()),
                                 GetJournalsResponse.class,
-                                getDataTransferHeaders(getContext(), authToken), null, myListener,
+                                getDataTransferHeaders(getContext(), authToken), null,
+                                GET_JOURNALS_RECORDS_PATH, Journal.class, myListener, myListener,
                                 myListener);
+                        request.setCacheTtl(GsonRequest.READ_CACHE_TTL,
+                                GsonRequest.READ_STALE_TTL);
                         break;
                     case AUTH_REASON_SEARCH_JOURNALS:
                         final SearchJournalsResponseListener searchListener =
                                 new SearchJournalsResponseListener(getActivity(), requestCode,
                                         accountName, this, authToken);
-                        request = new GsonRequest<>(mRequest.getUrl(getContext()),
+                        request = new RecordStreamRequest<>(mRequest.getUrl(getContext()),
                                 SearchJournalsResponse.class,
                                 getDataTransferHeaders(getContext(), authToken),
-                                new Gson().toJson(mRequest), searchListener, searchListener);
+                                GsonUtils.getGson().toJson(mRequest), getSearchRecordsPath(),
+                                Journal.class, searchListener, searchListener, searchListener);
+                        request.setCacheTtl(GsonRequest.READ_CACHE_TTL,
+                                GsonRequest.READ_STALE_TTL);
                         break;
                     case AUTH_REASON_CREATE_JOURNAL:
                         final CreateJournalResponseListener createListener =
@@ -1424,7 +1568,8 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
                         request = new GsonRequest<>(mRequest.getUrl(getContext()),
                                 CreateJournalResponse.class,
                                 getDataTransferHeaders(getContext(), authToken),
-                                new Gson().toJson(mRequest), createListener, createListener);
+                                GsonUtils.getGson().toJson(mRequest), createListener,
+                                createListener);
                         break;
                     case AUTH_REASON_DELETE_JOURNAL:
                         final DeleteJournalResponseListener deleteListener =
@@ -1433,7 +1578,8 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
                         request = new GsonRequest<>(mRequest.getUrl(getContext()),
                                 DeleteJournalResponse.class,
                                 getDataTransferHeaders(getContext(), authToken),
-                                new Gson().toJson(mRequest), deleteListener, deleteListener);
+                                GsonUtils.getGson().toJson(mRequest), deleteListener,
+                                deleteListener);
                         break;
                     default:
                         throw new IllegalArgumentException();
@@ -1545,7 +1691,12 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
      * Class for processing "get journals" responses.
      */
     private class GetJournalsResponseListener extends AuthFailureErrorListener
-            implements Response.Listener<GetJournalsResponse> {
+            implements Response.Listener<GetJournalsResponse>, RecordListener<Journal> {
+
+        /**
+         * Range of the list holding the journals received so far.
+         */
+        private final ResponseRange mResponseRange = new ResponseRange();
 
         /**
          * Create a new response listener.
@@ -1591,9 +1742,19 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
             }
         }
 
+        @Override
+        public void onRecords(@NonNull List<Journal> records) {
+            addJournals(mResponseRange, records);
+        }
+
+        @Override
+        public void onRecordsReplaced() {
+            discardResponseJournals(mResponseRange);
+        }
+
         @Override
         public void onResponse(GetJournalsResponse response) {
-            handleResponse(response.journals, response.totalCount);
+            handleResponse(mResponseRange, response.journals, response.totalCount);
         }
 
     }
@@ -1621,7 +1782,7 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
                         showDialog(DIALOG_TYPE_MESSAGE,
                                 getString(R.string.dialog_message_error_locationUnknown));
                         // Show an empty list.
-                        handleResponse(new ArrayList<Journal>(0), 0);
+                        handleResponse(new ResponseRange(), new ArrayList<Journal>(0), 0);
                     }
                 }
                 // Request permission to access location services.
@@ -1648,7 +1809,12 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
      * Class for processing "search journals" responses.
      */
     private class SearchJournalsResponseListener extends AuthFailureErrorListener
-            implements Response.Listener<SearchJournalsResponse> {
+            implements Response.Listener<SearchJournalsResponse>, RecordListener<Journal> {
+
+        /**
+         * Range of the list holding the journals received so far.
+         */
+        private final ResponseRange mResponseRange = new ResponseRange();
 
         /**
          * Create a new response listener.
@@ -1674,14 +1840,24 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
             super(activity, requestCode, accountName, listener, authToken);
         }
 
+        @Override
+        public void onRecords(@NonNull List<Journal> records) {
+            addJournals(mResponseRange, records);
+        }
+
+        @Override
+        public void onRecordsReplaced() {
+            discardResponseJournals(mResponseRange);
+        }
+
         @Override
         public void onResponse(SearchJournalsResponse response) {
             switch (getArguments().getInt(ARG_NAVIGATION_MODE)) {
                 case Constants.NAVIGATION_MODE_NEARBY:
-                    handleResponse(response.records.nearbyJournals, 0);
+                    handleResponse(mResponseRange, response.records.nearbyJournals, 0);
                     break;
                 case Constants.NAVIGATION_MODE_SEARCH_RESULTS:
-                    handleResponse(response.records.searchJournals, 0);
+                    handleResponse(mResponseRange, response.records.searchJournals, 0);
                     break;
                 default:
                     throw new IllegalArgumentException();
@@ -2173,6 +2349,9 @@ public class JournalListFragment extends RecyclerViewFragment implements DialogL
 
         @Override
         public void onRefresh() {
+            // Fetch fresh journals rather than cached ones. Also used after a journal is created
+            // or deleted, which changes the cached lists and details.
+            VolleySingleton.getInstance(getContext()).invalidateReads();
             startJournalsRequest();
         }
 
@@ -168,7 +168,7 @@ public class SpotDetailFragment extends Fragment implements DialogListener {
                 // Delete the spot from the provider.
                 if (action == JournalDialogFragment.DIALOG_ACTION_POSITIVE_CLICK) {
                     final QueryHandler handler =
-                            new QueryHandler(getActivity().getContentResolver());
+                            new QueryHandler(getActivity().getContentResolver(), this);
                     final Uri contentUri = getArguments().getParcelable(Constants.ARG_DATA);
                     handler.startDelete(0, null, contentUri, null, null);
                     // Close the activity.
@@ -52,6 +52,7 @@ import com.android.volley.Response;
 import com.android.volley.VolleyError;
 import com.android.volley.toolbox.NetworkImageView;
 import com.example.journals.journal.JournalDialogFragment.DialogListener;
+import com.example.journals.network.GsonUtils;
 import com.example.journals.widget.MediaActivity;
 import com.example.journals.R;
 import com.example.journals.account.AccountUtils;
@@ -78,7 +79,6 @@ import com.google.android.gms.location.places.ui.PlaceAutocomplete;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.textfield.TextInputLayout;
-import com.google.gson.Gson;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.BufferedReader;
@@ -358,7 +358,8 @@ public class SpotEditorFragment extends AuthHandlerFragment implements DialogLis
             // An existing activity is being updated.
             if (activity != null) {
                 // Load data from the provider, if any exists.
-                final QueryHandler handler = new QueryHandler(getContext().getContentResolver());
+                final QueryHandler handler =
+                        new QueryHandler(getContext().getContentResolver(), this);
                 handler.setQueryListener(new QueryListener());
                 handler.startQuery(0, null, Activities.CONTENT_URI, QUERY_PROJECTION,
                         Activities.COLUMN_SERVER_ID + "=?",
@@ -507,8 +508,8 @@ public class SpotEditorFragment extends AuthHandlerFragment implements DialogLis
                                 accountName,
                                 new AuthTokenListener());
                         // Delete the spot from the provider if it exists.
-                        final QueryHandler handler = new QueryHandler(getActivity().
-                                getContentResolver());
+                        final QueryHandler handler =
+                                new QueryHandler(getActivity().getContentResolver(), this);
                         final ContentValues values = new ContentValues(1);
                         values.put(Activities.COLUMN_IS_DELETED, 1);
                         handler.startUpdate(0, null, Activities.CONTENT_URI, values,
@@ -576,7 +577,7 @@ public class SpotEditorFragment extends AuthHandlerFragment implements DialogLis
      */
     private void deleteLocalMedia(Uri uri) {
         if (uri != null) {
-            new QueryHandler(getContext().getContentResolver())
+            new QueryHandler(getContext().getContentResolver(), this)
                     .startDelete(0, null, uri, null, null);
         }
     }
@@ -1012,7 +1013,7 @@ public class SpotEditorFragment extends AuthHandlerFragment implements DialogLis
             final CreateActivityResponseListener listener = new CreateActivityResponseListener();
             if (result != null) {
                 final CreateActivityResponse response =
-                        new Gson().fromJson(result, CreateActivityResponse.class);
+                        GsonUtils.getGson().fromJson(result, CreateActivityResponse.class);
                 listener.onResponse(response);
             } else {
                 listener.onErrorResponse(new VolleyError()); // TODO better error
@@ -1055,7 +1056,7 @@ public class SpotEditorFragment extends AuthHandlerFragment implements DialogLis
                         //                        request = new GsonRequest<>(createRequest.getUrl(getContext()),
                         //                                CreateActivityResponse.class,
                         //                                NetworkUtils.getDataTransferHeaders(getContext(), authToken),
-                        //                                new Gson().toJson(createRequest), createListener, createListener);
+                        //                                GsonUtils.getGson().toJson(createRequest), createListener, createListener);
                         break;
                     case AUTH_REASON_DELETE_ACTIVITY:
                         final DeleteJournalRequest deleteRequest = new DeleteJournalRequest();
@@ -1067,7 +1068,8 @@ public class SpotEditorFragment extends AuthHandlerFragment implements DialogLis
                         request = new GsonRequest<>(deleteRequest.getUrl(getContext()),
                                 DeleteJournalResponse.class,
                                 NetworkUtils.getDataTransferHeaders(getContext(), authToken),
-                                new Gson().toJson(deleteRequest), deleteListener, deleteListener);
+                                GsonUtils.getGson().toJson(deleteRequest), deleteListener,
+                                deleteListener);
                         startRequest(request);
                         break;
                     default:
@@ -1182,6 +1184,8 @@ public class SpotEditorFragment extends AuthHandlerFragment implements DialogLis
 
         @Override
         public void onResponse(CreateActivityResponse response) {
+            // The cached lists no longer match the server.
+            VolleySingleton.getInstance(getContext()).invalidateReads();
             getActivity().finish();
         }
 
@@ -1221,6 +1225,8 @@ public class SpotEditorFragment extends AuthHandlerFragment implements DialogLis
 
         @Override
         public void onResponse(DeleteJournalResponse response) {
+            // The cached lists no longer match the server.
+            VolleySingleton.getInstance(getContext()).invalidateReads();
             getActivity().finish();
         }
 
@@ -24,12 +24,57 @@ import com.android.volley.AuthFailureError;
 import com.android.volley.DefaultRetryPolicy;
 import com.android.volley.VolleyError;
 
+import java.util.Random;
+
 /**
  * Network retry policy that immediately throws an error on an auth token failure. Follows the
- * default retry policy otherwise.
+ * default retry policy otherwise, with two additions that keep retries from piling onto a
+ * struggling server:
+ * <p/>
+ * Each retry waits first, for a random time between {@link #BASE_DELAY} and three times the
+ * previous wait ("decorrelated jitter"), so requests that failed together don't retry together.
+ * The wait blocks a network dispatcher thread, so it is kept short: at most {@link #MAX_DELAY},
+ * and at most a quarter of the request's current timeout.
+ * <p/>
+ * Retries are drawn from a budget shared by all requests, which grows by a retry for every {@link
+ * #REQUESTS_PER_RETRY} requests sent to the network, whether or not they succeed. Requests answered
+ * from the cache or by a coalesced request are not counted, nor are retries. Once the budget is
+ * spent, failures are reported rather than retried until enough new requests have been sent to
+ * top it up.
  */
 public class AuthFailureRetryPolicy extends DefaultRetryPolicy {
 
+    /**
+     * Shortest wait before a retry (in milliseconds).
+     */
+    static final long BASE_DELAY = 100;
+    /**
+     * Longest wait before a retry (in milliseconds).
+     */
+    static final long MAX_DELAY = 1000;
+    /**
+     * Number of requests made for each retry added to the budget.
+     */
+    static final int REQUESTS_PER_RETRY = 10;
+    /**
+     * Largest number of retries in the budget.
+     */
+    static final int MAX_RETRY_BUDGET = 10;
+    /**
+     * Source of the random waits.
+     */
+    private static final Random sRandom = new Random();
+    /**
+     * Requests counted towards the shared budget, each retry taking {@link #REQUESTS_PER_RETRY}.
+     * Counted in whole requests, so no rounding error builds up.
+     */
+    private static int sRetryCredits = MAX_RETRY_BUDGET * REQUESTS_PER_RETRY;
+
+    /**
+     * Previous wait before a retry (in milliseconds).
+     */
+    private long mDelay = BASE_DELAY;
+
     /**
      * Constructs a new retry policy using the default timeouts.
      */
@@ -54,9 +99,65 @@ public class AuthFailureRetryPolicy extends DefaultRetryPolicy {
         // Throw an invalid auth token error immediately.
         if (error instanceof AuthFailureError) {
             throw (error);
-        } else {
-            super.retry(error);
         }
+        super.retry(error);
+        if (!withdrawRetryBudget()) {
+            throw (error);
+        }
+        // Wait before retrying, spreading out the retries of requests that failed together.
+        final double random;
+        synchronized (sRandom) {
+            random = sRandom.nextDouble();
+        }
+        mDelay = nextDelay(mDelay, random);
+        try {
+            Thread.sleep(Math.min(mDelay, getCurrentTimeout() / 4));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (error);
+        }
+    }
+
+    /**
+     * Add a request to the shared retry budget. Called by the network once for each request it
+     * sends, before any retries.
+     */
+    static synchronized void depositRetryBudget() {
+        sRetryCredits = Math.min(MAX_RETRY_BUDGET * REQUESTS_PER_RETRY, sRetryCredits + 1);
+    }
+
+    /**
+     * Get the wait before a retry.
+     *
+     * @param previous the previous wait (in milliseconds)
+     * @param random   a random number, at least 0 and less than 1
+     * @return the wait, between {@link #BASE_DELAY} and three times the previous wait, and at most
+     * {@link #MAX_DELAY} (in milliseconds)
+     */
+    static long nextDelay(long previous, double random) {
+        return Math.min(MAX_DELAY, BASE_DELAY + (long) (random * (3 * previous - BASE_DELAY)));
+    }
+
+    /**
+     * Empty the shared retry budget, or fill it back up. Used by tests.
+     *
+     * @param retries the number of retries to leave in the budget
+     */
+    static synchronized void setRetryBudget(int retries) {
+        sRetryCredits = retries * REQUESTS_PER_RETRY;
+    }
+
+    /**
+     * Take a retry from the shared retry budget.
+     *
+     * @return {@code true} if the budget had a retry left
+     */
+    static synchronized boolean withdrawRetryBudget() {
+        if (sRetryCredits < REQUESTS_PER_RETRY) {
+            return false;
+        }
+        sRetryCredits -= REQUESTS_PER_RETRY;
+        return true;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,339 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.network;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Request;
+import com.android.volley.toolbox.BaseHttpStack;
+import com.android.volley.toolbox.HttpResponse;
+import com.example.journals.BuildConfig;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An HTTP stack that stops sending requests to a host that keeps failing.
+ * <p/>
+ * Each host has a circuit breaker. After {@link #FAILURE_THRESHOLD} failures in a row (server
+ * errors or requests that reached the host but couldn't be completed), the breaker opens and
+ * requests to the host fail straight away with a {@link CircuitOpenException}. Once {@link
+ * #OPEN_TIME} has passed, a single probe request is let through. The breaker closes if the probe
+ * succeeds, and opens again if it fails. Requests that fail before reaching the host, such as
+ * while the device is offline, don't count.
+ * <p/>
+ * A response with a body only counts once the body has been read, as the connection may still
+ * fail while it is downloaded. A body that fails to be read counts as a failure, and one closed
+ * without an error as a success.
+ */
+public class CircuitBreakerHttpStack extends BaseHttpStack {
+
+    /**
+     * Set whether debug messages should be logged.
+     */
+    private static final boolean DEBUG = BuildConfig.DEBUG;
+    /**
+     * Tag for displaying debug messages.
+     */
+    private static final String DEBUG_TAG = CircuitBreakerHttpStack.class.getSimpleName();
+    /**
+     * Number of failures in a row that opens a breaker.
+     */
+    static final int FAILURE_THRESHOLD = 5;
+    /**
+     * Time a breaker stays open before a probe is let through (in milliseconds).
+     */
+    static final long OPEN_TIME = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * Stack used to send the requests.
+     */
+    private final BaseHttpStack mHttpStack;
+    /**
+     * Breakers for each host, keyed by host.
+     */
+    private final Map<String, Breaker> mBreakers = new HashMap<>();
+
+    /**
+     * Create a new stack.
+     *
+     * @param httpStack stack used to send the requests
+     */
+    public CircuitBreakerHttpStack(BaseHttpStack httpStack) {
+        mHttpStack = httpStack;
+    }
+
+    @Override
+    public HttpResponse executeRequest(Request<?> request, Map<String, String> additionalHeaders)
+            throws IOException, AuthFailureError {
+        final String host = new URL(request.getUrl()).getHost();
+        final Breaker breaker = getBreaker(host);
+        if (!breaker.allowRequest()) {
+            throw new CircuitOpenException(host);
+        }
+        final HttpResponse response;
+        try {
+            response = mHttpStack.executeRequest(request, additionalHeaders);
+        } catch (IOException e) {
+            if (hasReachedHost(e)) {
+                breaker.onFailure(host);
+            } else {
+                breaker.onAborted();
+            }
+            throw e;
+        } catch (AuthFailureError e) {
+            // The request wasn't sent, so says nothing about the host.
+            breaker.onAborted();
+            throw e;
+        }
+        if (response.getStatusCode() >= 500) {
+            breaker.onFailure(host);
+            return response;
+        } else if (response.getContent() == null) {
+            breaker.onSuccess(host);
+            return response;
+        }
+        return new HttpResponse(response.getStatusCode(), response.getHeaders(),
+                response.getContentLength(),
+                new BreakerInputStream(response.getContent(), breaker, host));
+    }
+
+    /**
+     * Get whether a request that failed reached its host. Requests that fail because the host
+     * can't be looked up or connected to, as happens while the device is offline, say nothing
+     * about the host.
+     *
+     * @param e the exception the request failed with
+     * @return {@code true} if the host was reached
+     */
+    private static boolean hasReachedHost(IOException e) {
+        return !(e instanceof UnknownHostException) && !(e instanceof ConnectException)
+                && !(e instanceof NoRouteToHostException);
+    }
+
+    /**
+     * Get the breaker for a host, creating it if required.
+     *
+     * @param host the host
+     * @return the breaker
+     */
+    private synchronized Breaker getBreaker(String host) {
+        Breaker breaker = mBreakers.get(host);
+        if (breaker == null) {
+            breaker = new Breaker();
+            mBreakers.put(host, breaker);
+        }
+        return breaker;
+    }
+
+    /**
+     * Exception thrown when a request isn't sent because its host's breaker is open.
+     */
+    public static class CircuitOpenException extends IOException {
+
+        /**
+         * Create a new exception.
+         *
+         * @param host the host the request was for
+         */
+        CircuitOpenException(String host) {
+            super("Requests to " + host + " are failing; not sending request");
+        }
+
+    }
+
+    /**
+     * A response body that reports to its host's breaker once it has been read, as a failure if
+     * reading it failed and as a success otherwise.
+     */
+    private static class BreakerInputStream extends FilterInputStream {
+
+        /**
+         * Breaker of the host the body is read from.
+         */
+        private final Breaker mBreaker;
+        /**
+         * The host the body is read from, for logging.
+         */
+        private final String mHost;
+        /**
+         * Set whether the outcome has been reported to the breaker.
+         */
+        private boolean mIsReported = false;
+
+        /**
+         * Create a new body.
+         *
+         * @param in      the stream the body is read from
+         * @param breaker breaker of the host the body is read from
+         * @param host    the host the body is read from
+         */
+        BreakerInputStream(InputStream in, Breaker breaker, String host) {
+            super(in);
+            mBreaker = breaker;
+            mHost = host;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                report(true);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (IOException e) {
+                report(false);
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            try {
+                return super.read(buffer, offset, count);
+            } catch (IOException e) {
+                report(false);
+                throw e;
+            }
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            try {
+                return super.skip(count);
+            } catch (IOException e) {
+                report(false);
+                throw e;
+            }
+        }
+
+        /**
+         * Report the outcome of the request to the breaker, unless it has already been reported.
+         *
+         * @param isSuccess whether the body was read without an error
+         */
+        private synchronized void report(boolean isSuccess) {
+            if (mIsReported) {
+                return;
+            }
+            mIsReported = true;
+            if (isSuccess) {
+                mBreaker.onSuccess(mHost);
+            } else {
+                mBreaker.onFailure(mHost);
+            }
+        }
+
+    }
+
+    /**
+     * The circuit breaker for a host.
+     */
+    private static class Breaker {
+
+        /**
+         * Number of failures in a row.
+         */
+        private int mFailureCount = 0;
+        /**
+         * Time the breaker opened (in milliseconds since boot), or -1 if it is closed.
+         */
+        private long mOpenTime = -1;
+        /**
+         * Set whether a probe request is running.
+         */
+        private boolean mIsProbing = false;
+
+        /**
+         * Get whether a request may be sent, letting a probe through if the breaker has been
+         * open long enough.
+         *
+         * @return {@code true} if the request may be sent
+         */
+        synchronized boolean allowRequest() {
+            if (mOpenTime == -1) {
+                return true;
+            } else if (mIsProbing
+                    || (SystemClock.elapsedRealtime() - mOpenTime < OPEN_TIME)) {
+                return false;
+            } else {
+                mIsProbing = true;
+                return true;
+            }
+        }
+
+        /**
+         * Record a request that wasn't sent after all, letting another probe through.
+         */
+        synchronized void onAborted() {
+            mIsProbing = false;
+        }
+
+        /**
+         * Record a failed request, opening the breaker if the host has failed too often.
+         *
+         * @param host the host, for logging
+         */
+        synchronized void onFailure(String host) {
+            mFailureCount++;
+            if (mIsProbing || (mFailureCount >= FAILURE_THRESHOLD)) {
+                if (DEBUG && (mOpenTime == -1 || mIsProbing)) {
+                    Log.w(DEBUG_TAG, "Opening circuit for " + host + " after " + mFailureCount
+                            + " failures");
+                }
+                mOpenTime = SystemClock.elapsedRealtime();
+                mIsProbing = false;
+            }
+        }
+
+        /**
+         * Record a successful request, closing the breaker.
+         *
+         * @param host the host, for logging
+         */
+        synchronized void onSuccess(String host) {
+            if (DEBUG && (mOpenTime != -1)) {
+                Log.i(DEBUG_TAG, "Closing circuit for " + host);
+            }
+            mFailureCount = 0;
+            mOpenTime = -1;
+            mIsProbing = false;
+        }
+
+    }
+
+}
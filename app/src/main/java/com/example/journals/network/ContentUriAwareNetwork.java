@@ -24,23 +24,48 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.SystemClock;
 import android.provider.OpenableColumns;
 
+import com.android.volley.AuthFailureError;
+import com.android.volley.Cache;
+import com.android.volley.ClientError;
+import com.android.volley.Header;
 import com.android.volley.Network;
+import com.android.volley.NetworkError;
 import com.android.volley.NetworkResponse;
+import com.android.volley.NoConnectionError;
+import com.android.volley.ParseError;
 import com.android.volley.Request;
+import com.android.volley.ServerError;
+import com.android.volley.TimeoutError;
 import com.android.volley.VolleyError;
 import com.android.volley.toolbox.BaseHttpStack;
 import com.android.volley.toolbox.BasicNetwork;
 import com.android.volley.toolbox.ByteArrayPool;
+import com.android.volley.toolbox.HttpHeaderParser;
+import com.android.volley.toolbox.HttpResponse;
+import com.google.gson.JsonParseException;
 
 import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * A {@link Network} implementation that handles requests with a {@code content://} style request
  * URI.
+ * <p/>
+ * The responses of {@link RecordStreamRequest}s are parsed as they are downloaded, rather than
+ * being read into memory first.
  */
 public class ContentUriAwareNetwork extends BasicNetwork {
 
@@ -48,6 +73,10 @@ public class ContentUriAwareNetwork extends BasicNetwork {
      * Buffer size for loading files from a content provider into memory.
      */
     private static final int BUFFER_SIZE = 8192;
+    /**
+     * Largest streamed response body kept for the cache (in bytes).
+     */
+    static final int MAX_CACHED_BODY_SIZE = 256 * 1024;
     /**
      * Scheme for {@code content://} style URIs.
      */
@@ -57,6 +86,10 @@ public class ContentUriAwareNetwork extends BasicNetwork {
      * Context used to access content provider.
      */
     private final Context mContext;
+    /**
+     * HTTP stack used to stream the responses of {@link RecordStreamRequest}s.
+     */
+    private final BaseHttpStack mHttpStack;
 
     /**
      * Create a new network.
@@ -67,6 +100,7 @@ public class ContentUriAwareNetwork extends BasicNetwork {
     public ContentUriAwareNetwork(BaseHttpStack httpStack, Context context) {
         super(httpStack);
         mContext = context;
+        mHttpStack = httpStack;
     }
 
     /**
@@ -79,12 +113,17 @@ public class ContentUriAwareNetwork extends BasicNetwork {
     public ContentUriAwareNetwork(BaseHttpStack httpStack, ByteArrayPool pool, Context context) {
         super(httpStack, pool);
         mContext = context;
+        mHttpStack = httpStack;
     }
 
     @Override
     public NetworkResponse performRequest(Request<?> request) throws VolleyError {
         final Uri requestUri = Uri.parse(request.getUrl());
-        if (!requestUri.getScheme().equals(URI_SCHEME_CONTENT)) {
+        if (request instanceof RecordStreamRequest) {
+            AuthFailureRetryPolicy.depositRetryBudget();
+            return performStreamRequest((RecordStreamRequest<?, ?>) request);
+        } else if (!requestUri.getScheme().equals(URI_SCHEME_CONTENT)) {
+            AuthFailureRetryPolicy.depositRetryBudget();
             return super.performRequest(request);
         } else {
             final ContentResolver resolver = mContext.getContentResolver();
@@ -111,4 +150,222 @@ public class ContentUriAwareNetwork extends BasicNetwork {
         }
     }
 
+    /**
+     * Perform a request, parsing the response body as it is downloaded.
+     * <p/>
+     * Timeouts are retried according to the request's retry policy, with the records of the
+     * retry replacing any delivered before the timeout. A cached response is revalidated with
+     * its entity tag. If the request allows it, the body is kept so it can be cached, unless it
+     * is larger than {@link #MAX_CACHED_BODY_SIZE}. The cache only takes whole bodies, so a
+     * larger one would be held in memory twice, and the request is no longer cached instead.
+     *
+     * @param request the request to perform
+     * @return a response holding the status and headers, and the body if it is to be cached
+     * @throws VolleyError if the request failed or the body couldn't be parsed
+     */
+    private NetworkResponse performStreamRequest(RecordStreamRequest<?, ?> request)
+            throws VolleyError {
+        final long startTime = SystemClock.elapsedRealtime();
+        final Cache.Entry entry = request.getCacheEntry();
+        final Map<String, String> cacheHeaders = new HashMap<>(1);
+        if ((entry != null) && (entry.etag != null)) {
+            cacheHeaders.put("If-None-Match", entry.etag);
+        }
+        while (true) {
+            HttpResponse httpResponse = null;
+            try {
+                httpResponse = mHttpStack.executeRequest(request, cacheHeaders);
+                final int statusCode = httpResponse.getStatusCode();
+                final Map<String, String> headers =
+                        new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                for (Header header : httpResponse.getHeaders()) {
+                    headers.put(header.getName(), header.getValue());
+                }
+                InputStream content = httpResponse.getContent();
+                // Use the cached body if it hasn't changed, updating its headers.
+                if ((statusCode == HttpURLConnection.HTTP_NOT_MODIFIED) && (entry != null)) {
+                    if (content != null) {
+                        content.close();
+                    }
+                    final Map<String, String> entryHeaders =
+                            new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+                    entryHeaders.putAll(entry.responseHeaders);
+                    entryHeaders.putAll(headers);
+                    final List<Header> allHeaders = new ArrayList<>(entryHeaders.size());
+                    for (Map.Entry<String, String> header : entryHeaders.entrySet()) {
+                        allHeaders.add(new Header(header.getKey(), header.getValue()));
+                    }
+                    return new NetworkResponse(statusCode, entry.data, true,
+                            SystemClock.elapsedRealtime() - startTime, allHeaders);
+                }
+                // Read error bodies whole, so the error message can be shown.
+                if ((statusCode < 200) || (statusCode > 299) || (content == null)) {
+                    final NetworkResponse response = new NetworkResponse(statusCode,
+                            (content != null) ? readFully(content) : new byte[0], false,
+                            SystemClock.elapsedRealtime() - startTime,
+                            httpResponse.getHeaders());
+                    if ((statusCode == HttpURLConnection.HTTP_UNAUTHORIZED)
+                            || (statusCode == HttpURLConnection.HTTP_FORBIDDEN)) {
+                        throw new AuthFailureError(response);
+                    } else if (statusCode < 500) {
+                        throw new ClientError(response);
+                    } else {
+                        throw new ServerError(response);
+                    }
+                }
+                // Keep a copy of the body as it is parsed, if it is to be cached.
+                BoundedOutputStream body = null;
+                if (request.shouldCache()) {
+                    body = new BoundedOutputStream(MAX_CACHED_BODY_SIZE);
+                    content = new TeeInputStream(content, body);
+                }
+                try {
+                    request.parseStream(content, HttpHeaderParser.parseCharset(headers));
+                } finally {
+                    content.close();
+                }
+                if ((body != null) && body.isOverflowed()) {
+                    request.setShouldCache(false);
+                    body = null;
+                }
+                return new NetworkResponse(statusCode,
+                        (body != null) ? body.toByteArray() : new byte[0], false,
+                        SystemClock.elapsedRealtime() - startTime, httpResponse.getHeaders());
+            } catch (SocketTimeoutException e) {
+                request.getRetryPolicy().retry(new TimeoutError());
+            } catch (JsonParseException e) {
+                throw new ParseError(e);
+            } catch (IOException e) {
+                throw (httpResponse == null) ? new NoConnectionError(e) : new NetworkError(e);
+            }
+        }
+    }
+
+    /**
+     * Read a stream into memory and close it.
+     *
+     * @param input the stream to read
+     * @return the bytes read
+     * @throws IOException if the stream couldn't be read
+     */
+    private static byte[] readFully(InputStream input) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        try {
+            int bytesRead;
+            while ((bytesRead = input.read(buffer)) != -1) {
+                output.write(buffer, 0, bytesRead);
+            }
+        } finally {
+            input.close();
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * A byte array stream that drops its bytes, and ignores any more, once too many have been
+     * written to it.
+     */
+    private static class BoundedOutputStream extends ByteArrayOutputStream {
+
+        /**
+         * Largest number of bytes kept.
+         */
+        private final int mLimit;
+        /**
+         * Set whether more bytes than the limit have been written.
+         */
+        private boolean mIsOverflowed = false;
+
+        /**
+         * Create a new stream.
+         *
+         * @param limit the largest number of bytes kept
+         */
+        BoundedOutputStream(int limit) {
+            super(BUFFER_SIZE);
+            mLimit = limit;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (hasRoom(1)) {
+                super.write(b);
+            }
+        }
+
+        @Override
+        public synchronized void write(byte[] buffer, int offset, int length) {
+            if (hasRoom(length)) {
+                super.write(buffer, offset, length);
+            }
+        }
+
+        /**
+         * Get whether bytes can be kept, dropping those already kept if they can't.
+         *
+         * @param length the number of bytes to be written
+         * @return {@code true} if the bytes are to be kept
+         */
+        private boolean hasRoom(int length) {
+            if (!mIsOverflowed && (count + length > mLimit)) {
+                mIsOverflowed = true;
+                buf = new byte[0];
+                count = 0;
+            }
+            return !mIsOverflowed;
+        }
+
+        /**
+         * Get whether more bytes than the limit have been written, and so none were kept.
+         *
+         * @return {@code true} if the bytes were dropped
+         */
+        synchronized boolean isOverflowed() {
+            return mIsOverflowed;
+        }
+
+    }
+
+    /**
+     * A stream that copies the bytes read from it to another stream.
+     */
+    private static class TeeInputStream extends FilterInputStream {
+
+        /**
+         * Stream receiving a copy of the bytes read.
+         */
+        private final OutputStream mCopy;
+
+        /**
+         * Create a new stream.
+         *
+         * @param in   the stream to read from
+         * @param copy stream to receive a copy of the bytes read
+         */
+        TeeInputStream(InputStream in, OutputStream copy) {
+            super(in);
+            mCopy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b != -1) {
+                mCopy.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            final int bytesRead = super.read(buffer, offset, count);
+            if (bytesRead > 0) {
+                mCopy.write(buffer, offset, bytesRead);
+            }
+            return bytesRead;
+        }
+
+    }
+
 }
@@ -23,16 +23,41 @@ package com.example.journals.network;
 import android.util.Log;
 
 import com.android.volley.AuthFailureError;
+import com.android.volley.Cache;
 import com.android.volley.NetworkResponse;
 import com.android.volley.ParseError;
 import com.android.volley.Response;
+import com.android.volley.VolleyError;
 import com.android.volley.toolbox.HttpHeaderParser;
 import com.android.volley.toolbox.JsonRequest;
+import com.example.journals.BuildConfig;
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -45,12 +70,50 @@ public class GsonRequest<T> extends JsonRequest<T> {
     /**
      * Set whether to show debug information.
      */
-    private static final boolean DEBUG = true; // TODO change to false
+    private static final boolean DEBUG = BuildConfig.DEBUG;
     /**
      * Set whether to show debug information.
      */
     private static final String DEBUG_TAG = GsonRequest.class.getSimpleName();
 
+    /**
+     * Time a cached response to a read request is used without being refreshed (in
+     * milliseconds).
+     */
+    public static final long READ_CACHE_TTL = TimeUnit.MINUTES.toMillis(5);
+    /**
+     * Time a cached response to a read request is still shown while it is refreshed, once it is
+     * no longer fresh (in milliseconds).
+     */
+    public static final long READ_STALE_TTL = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Names of request and response headers holding credentials, whose values are never logged.
+     */
+    private static final Set<String> SECRET_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        SECRET_HEADERS.addAll(Arrays.asList("Apikey", "Authorization", "Authtoken", "Cookie",
+                "Set-Cookie"));
+    }
+
+    /**
+     * Largest number of characters of a request or response body that is logged.
+     */
+    private static final int TRACE_BODY_LENGTH = 512;
+    /**
+     * Only one in this many response bodies is logged.
+     */
+    private static final int TRACE_SAMPLE_RATE = 10;
+    /**
+     * Number of responses parsed, used to sample the response bodies that are logged.
+     */
+    private static final AtomicInteger sResponseCount = new AtomicInteger();
+    /**
+     * Marker added by Volley's network dispatcher once it has taken a request from the queue.
+     */
+    private static final String MARKER_NETWORK_TAKE = "network-queue-take";
+
     /**
      * Class object for GSON reflection.
      */
@@ -59,6 +122,71 @@ public class GsonRequest<T> extends JsonRequest<T> {
      * Headers to use with the request.
      */
     private final Map<String, String> mHeaders;
+    /**
+     * Body of the request, or {@code null} if there is no body.
+     */
+    private final String mRequestBody;
+    /**
+     * Time a cached response is used without being refreshed (in milliseconds), or 0 if the
+     * response is cached according to the server's headers alone.
+     */
+    private long mCacheTtl = 0;
+    /**
+     * Time a cached response is still shown while it is refreshed (in milliseconds).
+     */
+    private long mStaleTtl = 0;
+    /**
+     * Generation of cached reads the request belongs to, set when it is queued.
+     */
+    private volatile int mCacheGeneration = 0;
+    /**
+     * Hash of the request body and headers, created when first required.
+     */
+    private String mRequestHash = null;
+    /**
+     * Identical requests sent while this one was running, which receive its response instead of
+     * being sent themselves.
+     */
+    private final List<GsonRequest<T>> mFollowers = new ArrayList<>();
+    /**
+     * Set whether the set of followers is final, as the response has started to be parsed.
+     */
+    private boolean mIsFollowingClosed = false;
+    /**
+     * Copies of each parsed response for the followers, keyed by the response.
+     */
+    private final Map<T, Map<GsonRequest<T>, T>> mFollowerResponses = new IdentityHashMap<>();
+    /**
+     * The request this one is following, or {@code null} if it is sent itself.
+     */
+    private GsonRequest<T> mLeader = null;
+    /**
+     * Set whether the request has been cancelled by its sender. The request keeps running while
+     * it has followers that haven't been cancelled.
+     */
+    private boolean mIsListenerCanceled = false;
+    /**
+     * Set whether the request has been demoted, so it keeps running after its sender has stopped
+     * listening, to fill the response cache.
+     */
+    private boolean mIsDemoted = false;
+    /**
+     * Set whether a network dispatcher has taken the request from the queue, after which it can
+     * no longer be replaced by a copy.
+     */
+    private boolean mIsStarted = false;
+    /**
+     * Listener receiving the response, or {@code null} once the sender has stopped listening.
+     */
+    private Response.Listener<T> mListener;
+    /**
+     * Listener receiving errors, or {@code null} once the sender has stopped listening.
+     */
+    private Response.ErrorListener mErrorListener;
+    /**
+     * Priority set for the request, or {@code null} to use the default for its kind.
+     */
+    private Priority mPriority = null;
 
     /**
      * Creates a new request.
@@ -76,17 +204,27 @@ public class GsonRequest<T> extends JsonRequest<T> {
                        @Nullable Map<String, String> headers, @Nullable String requestBody,
                        @Nullable Response.Listener<T> listener,
                        @Nullable Response.ErrorListener errorListener) {
-        super(method, url, requestBody, listener, errorListener);
+        // The listeners are held here, so they can be released when the request is demoted.
+        super(method, url, requestBody, null, null);
+        mListener = listener;
+        mErrorListener = errorListener;
         mClass = clazz;
         mHeaders = headers;
+        mRequestBody = requestBody;
+        // Other methods are usually writes, and are only cached once marked as reads.
+        if (method != Method.GET) {
+            setShouldCache(false);
+        }
         if (DEBUG) {
             Log.i(DEBUG_TAG,
                     "Sending " + ((method == Method.POST) ? "POST" : "GET") + " to " + url);
             if (headers != null) {
-                Log.i(DEBUG_TAG, headers.toString());
+                Log.i(DEBUG_TAG, redactHeaders(headers).toString());
             }
             if (requestBody != null) {
-                Log.i(DEBUG_TAG, requestBody);
+                final int length = Math.min(requestBody.length(), TRACE_BODY_LENGTH);
+                Log.i(DEBUG_TAG, truncate(requestBody.substring(0, length),
+                        requestBody.length()));
             }
         }
     }
@@ -112,27 +250,488 @@ public class GsonRequest<T> extends JsonRequest<T> {
                 listener, errorListener);
     }
 
+    /**
+     * Create a copy of a request, without its sender's listeners, tag or followers, to be sent in
+     * its place.
+     *
+     * @param request the request to copy
+     * @see #createCopy()
+     */
+    protected GsonRequest(@NonNull GsonRequest<T> request) {
+        this(request.getMethod(), request.getUrl(), request.mClass, request.mHeaders,
+                request.mRequestBody, null, null);
+        mCacheTtl = request.mCacheTtl;
+        mStaleTtl = request.mStaleTtl;
+        mCacheGeneration = request.mCacheGeneration;
+        mPriority = request.mPriority;
+        setShouldCache(request.shouldCache());
+        setRetryPolicy(request.getRetryPolicy());
+    }
+
+    /**
+     * Mark the request as a read whose response may be cached, even if it is posted.
+     * <p/>
+     * The response is cached under the URL and a hash of the request body and headers, so
+     * requests for different data, or for different users, don't share responses. A cached
+     * response is delivered straight away while it is fresh. Once it is stale, it is delivered
+     * and then refreshed, with the refreshed response delivered too if it has changed.
+     *
+     * @param ttl      time the response is used without being refreshed (in milliseconds)
+     * @param staleTtl time the response is still delivered while it is refreshed, once it is
+     *                 no longer fresh (in milliseconds)
+     * @return this request
+     */
+    public GsonRequest<T> setCacheTtl(long ttl, long staleTtl) {
+        mCacheTtl = ttl;
+        mStaleTtl = staleTtl;
+        setShouldCache(true);
+        return this;
+    }
+
+    /**
+     * Set the generation of cached reads the request belongs to. Responses cached under an
+     * earlier generation are not used.
+     *
+     * @param generation the generation
+     * @see VolleySingleton#invalidateReads()
+     */
+    void setCacheGeneration(int generation) {
+        mCacheGeneration = generation;
+    }
+
+    @Override
+    public void addMarker(String tag) {
+        if (MARKER_NETWORK_TAKE.equals(tag)) {
+            synchronized (this) {
+                mIsStarted = true;
+            }
+        }
+        super.addMarker(tag);
+    }
+
+    @Override
+    public void cancel() {
+        final GsonRequest<T> leader;
+        synchronized (this) {
+            mIsListenerCanceled = true;
+            releaseListeners();
+            if (hasLiveFollowers()) {
+                return;
+            }
+            leader = mLeader;
+        }
+        super.cancel();
+        if (leader != null) {
+            leader.cancelIfUnused();
+        }
+    }
+
+    @Override
+    public void deliverError(VolleyError error) {
+        for (GsonRequest<T> recipient : getRecipients()) {
+            if (recipient == this) {
+                final Response.ErrorListener listener;
+                synchronized (this) {
+                    listener = mErrorListener;
+                }
+                if (listener != null) {
+                    listener.onErrorResponse(error);
+                }
+            } else {
+                recipient.deliverError(error);
+            }
+        }
+    }
+
+    @Override
+    public String getCacheKey() {
+        if (mCacheTtl <= 0) {
+            return super.getCacheKey();
+        }
+        return super.getCacheKey() + "#" + mCacheGeneration + "#" + hashRequest();
+    }
+
     @Override
     public Map<String, String> getHeaders() throws AuthFailureError {
         return (mHeaders != null) ? mHeaders : super.getHeaders();
     }
 
+    /**
+     * Get the priority of the request. Unless set, writes are {@link Priority#IMMEDIATE}, as the
+     * user is usually waiting on them, and reads are {@link Priority#HIGH}, ahead of images and
+     * other background requests.
+     *
+     * @return the priority
+     */
+    @Override
+    public synchronized Priority getPriority() {
+        if (mPriority != null) {
+            return mPriority;
+        }
+        return isIdempotent() ? Priority.HIGH : Priority.IMMEDIATE;
+    }
+
+    /**
+     * Set the priority of the request. Requests are taken from the queue in order of priority,
+     * so this should be set before the request is added.
+     *
+     * @param priority the priority, or {@code null} to use the default for the kind of request
+     * @return this request
+     */
+    public synchronized GsonRequest<T> setPriority(Priority priority) {
+        mPriority = priority;
+        return this;
+    }
+
+    /**
+     * Stop delivering the response to the request's sender, but keep the read going, so its
+     * response is cached and can be picked up by the next identical request. Followers still
+     * receive the response.
+     * <p/>
+     * A request that has started keeps running at its priority. One still waiting in the queue
+     * is cancelled instead, and replaced by a copy at {@link Priority#LOW} that takes over its
+     * followers, as Volley's queues are ordered by priority and can't reorder a waiting request.
+     *
+     * @return the copy to add to the queue in the request's place, or {@code null} if the
+     * request keeps running itself
+     */
+    GsonRequest<T> demote() {
+        final GsonRequest<T> copy;
+        synchronized (this) {
+            mIsListenerCanceled = true;
+            // Release the sender, which its listeners and the tag would otherwise keep reachable.
+            releaseListeners();
+            setTag(null);
+            if (mIsStarted || isCanceled()) {
+                mIsDemoted = true;
+                return null;
+            }
+            copy = createCopy();
+            copy.mIsListenerCanceled = true;
+            copy.mIsDemoted = true;
+            copy.mPriority = Priority.LOW;
+            for (GsonRequest<T> follower : mFollowers) {
+                if (!follower.isCanceled()) {
+                    copy.mFollowers.add(follower);
+                    synchronized (follower) {
+                        follower.mLeader = copy;
+                    }
+                }
+            }
+            mFollowers.clear();
+            mIsFollowingClosed = true;
+            // Cancel while holding the lock, so a dispatcher taking the request discards it.
+            super.cancel();
+        }
+        return copy;
+    }
+
+    /**
+     * Create a copy of the request, without its sender's listeners, tag or followers, to be sent
+     * in its place once it is demoted. Subclasses return a copy of their own type.
+     *
+     * @return the copy
+     */
+    protected GsonRequest<T> createCopy() {
+        return new GsonRequest<>(this);
+    }
+
+    /**
+     * Get whether the request only reads data, so identical requests sent while it is running
+     * can share its response.
+     *
+     * @return {@code true} if the request is a {@code GET} or has been marked as a read
+     * @see #setCacheTtl(long, long)
+     */
+    boolean isIdempotent() {
+        return (getMethod() == Method.GET) || (mCacheTtl > 0);
+    }
+
+    /**
+     * Get the key identifying identical requests, which have the same type, method, URL, body
+     * and headers.
+     *
+     * @return the key
+     */
+    String getCoalescingKey() {
+        return getClass().getName() + " " + getMethod() + " " + getUrl() + "#" + mCacheGeneration
+                + "#" + hashRequest();
+    }
+
+    /**
+     * Make an identical request receive this request's response, rather than being sent itself.
+     * Fails once the request has been cancelled or its response has started to be parsed, as
+     * each follower is given its own copy of what is parsed.
+     *
+     * @param follower the identical request
+     * @return {@code true} if the follower was added
+     */
+    synchronized boolean addFollower(GsonRequest<T> follower) {
+        if (isCanceled() || mIsFollowingClosed) {
+            return false;
+        }
+        mFollowers.add(follower);
+        synchronized (follower) {
+            follower.mLeader = this;
+        }
+        return true;
+    }
+
+    /**
+     * Stop new followers being added, as the response is about to be parsed. Called on the
+     * thread parsing the response.
+     *
+     * @return the followers, each of which should be given its own copy of what is parsed
+     */
+    protected synchronized List<GsonRequest<T>> closeFollowing() {
+        mIsFollowingClosed = true;
+        return new ArrayList<>(mFollowers);
+    }
+
+    /**
+     * Get whether the request has been cancelled by its sender, which no longer receives its
+     * response even if it is kept running for followers.
+     *
+     * @return {@code true} if the sender has cancelled the request
+     */
+    protected synchronized boolean isListenerCanceled() {
+        return mIsListenerCanceled;
+    }
+
+    /**
+     * Drop the references to the sender's listeners, once it has stopped listening. Called while
+     * holding the lock on the request.
+     */
+    protected void releaseListeners() {
+        mListener = null;
+        mErrorListener = null;
+    }
+
+    /**
+     * Make a copy of a parsed response for each follower, as listeners may change what they
+     * receive. Called on the thread parsing the response.
+     *
+     * @param response the parsed response
+     */
+    protected void copyResponseForFollowers(T response) {
+        final List<GsonRequest<T>> followers = closeFollowing();
+        if (followers.isEmpty()) {
+            return;
+        }
+        final Gson gson = GsonUtils.getGson();
+        final Map<GsonRequest<T>, T> copies = new HashMap<>(followers.size());
+        for (GsonRequest<T> follower : followers) {
+            copies.put(follower, gson.fromJson(gson.toJsonTree(response), mClass));
+        }
+        synchronized (this) {
+            mFollowerResponses.put(response, copies);
+        }
+    }
+
+    /**
+     * Get the requests whose listeners receive this request's errors, which are this request
+     * and its followers, leaving out those that have been cancelled.
+     *
+     * @return the requests
+     */
+    private synchronized List<GsonRequest<T>> getRecipients() {
+        final List<GsonRequest<T>> recipients = new ArrayList<>(mFollowers.size() + 1);
+        if (!mIsListenerCanceled) {
+            recipients.add(this);
+        }
+        for (GsonRequest<T> follower : mFollowers) {
+            if (!follower.isCanceled()) {
+                recipients.add(follower);
+            }
+        }
+        return recipients;
+    }
+
+    /**
+     * Create the cache entry for a response, extending its lifetime if the request has been
+     * marked as a read.
+     *
+     * @param response the response
+     * @return the cache entry, or {@code null} if the server doesn't allow the response to be
+     * cached
+     * @see #setCacheTtl(long, long)
+     */
+    protected Cache.Entry parseCacheEntry(NetworkResponse response) {
+        final Cache.Entry entry = HttpHeaderParser.parseCacheHeaders(response);
+        if ((entry != null) && (mCacheTtl > 0)) {
+            final long now = System.currentTimeMillis();
+            entry.softTtl = Math.max(entry.softTtl, now + mCacheTtl);
+            entry.ttl = Math.max(entry.ttl, entry.softTtl + mStaleTtl);
+        }
+        return entry;
+    }
+
+    @Override
+    protected void deliverResponse(T response) {
+        final Map<GsonRequest<T>, T> copies;
+        final Response.Listener<T> listener;
+        synchronized (this) {
+            copies = mFollowerResponses.remove(response);
+            listener = mIsListenerCanceled ? null : mListener;
+        }
+        if (listener != null) {
+            listener.onResponse(response);
+        }
+        if (copies != null) {
+            for (Map.Entry<GsonRequest<T>, T> copy : copies.entrySet()) {
+                if (!copy.getKey().isCanceled()) {
+                    copy.getKey().deliverResponse(copy.getValue());
+                }
+            }
+        }
+    }
+
     @Override
     protected Response<T> parseNetworkResponse(NetworkResponse response) {
         try {
-            final String json =
-                    new String(response.data, HttpHeaderParser.parseCharset(response.headers));
-            if (DEBUG) {
-                Log.i(DEBUG_TAG, response.headers.toString());
-                Log.v(DEBUG_TAG, json);
-            }
-            return Response.success(new Gson().fromJson(json, mClass),
-                    HttpHeaderParser.parseCacheHeaders(response));
+            final String charset = HttpHeaderParser.parseCharset(response.headers);
+            if (DEBUG && (sResponseCount.getAndIncrement() % TRACE_SAMPLE_RATE == 0)) {
+                Log.i(DEBUG_TAG, String.valueOf(redactHeaders(response.headers)));
+                final int length = Math.min(response.data.length, TRACE_BODY_LENGTH);
+                Log.v(DEBUG_TAG, truncate(new String(response.data, 0, length, charset),
+                        response.data.length));
+            }
+            // Parse straight from the bytes, rather than decoding the whole body into a string.
+            final Reader reader =
+                    new InputStreamReader(new ByteArrayInputStream(response.data), charset);
+            final T result = GsonUtils.getGson().fromJson(reader, mClass);
+            copyResponseForFollowers(result);
+            return Response.success(result, parseCacheEntry(response));
         } catch (UnsupportedEncodingException e) {
             return Response.error(new ParseError(e));
+        } catch (JsonIOException e) {
+            return Response.error(new ParseError(e));
         } catch (JsonSyntaxException e) {
             return Response.error(new ParseError(e));
         }
     }
 
+    /**
+     * Cancel the request if it was cancelled by its sender and all of its followers have been
+     * cancelled too.
+     */
+    private void cancelIfUnused() {
+        synchronized (this) {
+            if (!mIsListenerCanceled || mIsDemoted || hasLiveFollowers()) {
+                return;
+            }
+        }
+        super.cancel();
+    }
+
+    /**
+     * Get whether any followers haven't been cancelled.
+     *
+     * @return {@code true} if a follower hasn't been cancelled
+     */
+    private synchronized boolean hasLiveFollowers() {
+        for (GsonRequest<T> follower : mFollowers) {
+            if (!follower.isCanceled()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rewrite a JSON value with the members of each object sorted by name, so equal values are
+     * written identically.
+     *
+     * @param element the value
+     * @return the sorted value
+     */
+    private static JsonElement canonicalize(JsonElement element) {
+        if (element.isJsonObject()) {
+            final JsonObject object = element.getAsJsonObject();
+            final JsonObject sorted = new JsonObject();
+            for (String name : new TreeSet<>(object.keySet())) {
+                sorted.add(name, canonicalize(object.get(name)));
+            }
+            return sorted;
+        } else if (element.isJsonArray()) {
+            final JsonArray array = new JsonArray();
+            for (JsonElement item : element.getAsJsonArray()) {
+                array.add(canonicalize(item));
+            }
+            return array;
+        } else {
+            return element;
+        }
+    }
+
+    /**
+     * Hash the body and headers of the request, ignoring the order of JSON members.
+     *
+     * @return the hash, as a hexadecimal string
+     */
+    private synchronized String hashRequest() {
+        if (mRequestHash != null) {
+            return mRequestHash;
+        }
+        String body = mRequestBody;
+        if (body != null) {
+            try {
+                body = canonicalize(new JsonParser().parse(body)).toString();
+            } catch (JsonParseException e) {
+                // Hash the body as it is.
+            }
+        }
+        final String text = body + "\n"
+                + ((mHeaders != null) ? new TreeMap<>(mHeaders).toString() : "");
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1")
+                    .digest(text.getBytes(Charset.forName("UTF-8")));
+            final StringBuilder hash = new StringBuilder(2 * digest.length);
+            for (byte b : digest) {
+                hash.append(Character.forDigit((b >> 4) & 0xf, 16))
+                        .append(Character.forDigit(b & 0xf, 16));
+            }
+            mRequestHash = hash.toString();
+        } catch (NoSuchAlgorithmException e) {
+            mRequestHash = Integer.toHexString(text.hashCode());
+        }
+        return mRequestHash;
+    }
+
+    /**
+     * Copy request or response headers for logging, hiding the values of those holding
+     * credentials.
+     *
+     * @param headers the headers, or {@code null}
+     * @return the headers, with the values of {@link #SECRET_HEADERS} replaced, or {@code null}
+     */
+    private static Map<String, String> redactHeaders(Map<String, String> headers) {
+        if (headers == null) {
+            return null;
+        }
+        final Map<String, String> redacted = new TreeMap<>(headers);
+        for (Map.Entry<String, String> header : redacted.entrySet()) {
+            if (SECRET_HEADERS.contains(header.getKey())) {
+                header.setValue("<redacted>");
+            }
+        }
+        return redacted;
+    }
+
+    /**
+     * Shorten a request or response body for logging.
+     *
+     * @param body   the body, or its start
+     * @param length the full length of the body (in characters or bytes)
+     * @return at most {@link #TRACE_BODY_LENGTH} characters of the body, followed by its full
+     * length if it was longer
+     */
+    private static String truncate(String body, int length) {
+        if (length <= TRACE_BODY_LENGTH) {
+            return body;
+        }
+        return body.substring(0, Math.min(body.length(), TRACE_BODY_LENGTH)) + "... (" + length
+                + " in total)";
+    }
+
 }
\ No newline at end of file
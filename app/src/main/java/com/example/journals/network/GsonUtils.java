@@ -0,0 +1,469 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.network;
+
+import com.example.journals.network.NetworkUtils.Activity;
+import com.example.journals.network.NetworkUtils.Contact;
+import com.example.journals.network.NetworkUtils.Journal;
+import com.example.journals.network.NetworkUtils.Media;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Utilities for converting network requests and responses to and from JSON.
+ * <p/>
+ * A single {@link Gson} instance is shared by the whole app, so the adapters it builds for each
+ * request and response type are only built once. The journal, activity, media and contact types,
+ * which make up nearly all of a response, are read with hand-written streaming adapters instead of
+ * by reflection. Gson is thread safe, so the instance can be used from any thread.
+ */
+public class GsonUtils {
+
+    /**
+     * Adapter for media, shared by the adapters of the types containing media.
+     */
+    private static final TypeAdapter<Media> MEDIA_ADAPTER = new MediaAdapter().nullSafe();
+    /**
+     * Adapter for activities, shared by the journal adapter.
+     */
+    private static final TypeAdapter<Activity> ACTIVITY_ADAPTER =
+            new ActivityAdapter().nullSafe();
+    /**
+     * Adapter for contacts, shared by the journal adapter.
+     */
+    private static final TypeAdapter<Contact> CONTACT_ADAPTER = new ContactAdapter().nullSafe();
+    /**
+     * Adapter for journals.
+     */
+    private static final TypeAdapter<Journal> JOURNAL_ADAPTER = new JournalAdapter().nullSafe();
+    /**
+     * The shared instance.
+     */
+    private static final Gson sGson = new GsonBuilder()
+            .registerTypeAdapter(Activity.class, ACTIVITY_ADAPTER)
+            .registerTypeAdapter(Contact.class, CONTACT_ADAPTER)
+            .registerTypeAdapter(Journal.class, JOURNAL_ADAPTER)
+            .registerTypeAdapter(Media.class, MEDIA_ADAPTER)
+            .create();
+
+    /**
+     * Private constructor.
+     */
+    private GsonUtils() {
+    }
+
+    /**
+     * Get the shared {@link Gson} instance.
+     *
+     * @return the shared instance
+     */
+    @NonNull
+    public static Gson getGson() {
+        return sGson;
+    }
+
+    /**
+     * Read a JSON array with an adapter.
+     *
+     * @param in      the reader, positioned at the array
+     * @param adapter the adapter for the elements of the array
+     * @return the elements read
+     */
+    private static <E> ArrayList<E> readList(JsonReader in, TypeAdapter<E> adapter)
+            throws IOException {
+        final ArrayList<E> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(adapter.read(in));
+        }
+        in.endArray();
+        return list;
+    }
+
+    /**
+     * Write a JSON array with an adapter, leaving the value out if the list is {@code null}.
+     *
+     * @param out     the writer
+     * @param name    the name of the value
+     * @param list    the elements to write
+     * @param adapter the adapter for the elements
+     */
+    private static <E> void writeList(JsonWriter out, String name, List<E> list,
+                                      TypeAdapter<E> adapter) throws IOException {
+        if (list == null) {
+            return;
+        }
+        out.name(name).beginArray();
+        for (E element : list) {
+            adapter.write(out, element);
+        }
+        out.endArray();
+    }
+
+    /**
+     * Parse a timestamp sent by the server, formatted as {@code yyyy-MM-dd HH:mm:ss} in UTC. The
+     * date and time may also be separated by a {@code T}, and anything after the seconds is
+     * ignored. Parsing by hand avoids creating a date format for every record of a response.
+     *
+     * @param value the timestamp
+     * @return the time (in milliseconds since the epoch), or 0 if the value isn't a timestamp
+     */
+    static long parseTimestamp(String value) {
+        if (value.length() < 19 || value.charAt(4) != '-' || value.charAt(7) != '-'
+                || (value.charAt(10) != ' ' && value.charAt(10) != 'T')
+                || value.charAt(13) != ':' || value.charAt(16) != ':') {
+            return 0;
+        }
+        final int year = parseDigits(value, 0, 4);
+        final int month = parseDigits(value, 5, 7);
+        final int day = parseDigits(value, 8, 10);
+        final int hour = parseDigits(value, 11, 13);
+        final int minute = parseDigits(value, 14, 16);
+        final int second = parseDigits(value, 17, 19);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return 0;
+        }
+        // Count days in years starting in March, so the leap day is the last day of a year.
+        final int marchYear = (month <= 2) ? year - 1 : year;
+        final int era = marchYear / 400;
+        final int yearOfEra = marchYear - era * 400;
+        final int dayOfYear = (153 * (month + ((month > 2) ? -3 : 9)) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        // 1 March of year 0 is 719468 days before the epoch.
+        final long days = era * 146097L + dayOfEra - 719468;
+        return (((days * 24 + hour) * 60 + minute) * 60 + second) * 1000;
+    }
+
+    /**
+     * Parse a run of decimal digits.
+     *
+     * @param value the string holding the digits
+     * @param start the index of the first digit
+     * @param end   the index after the last digit
+     * @return the number, or -1 if a character isn't a digit
+     */
+    private static int parseDigits(String value, int start, int end) {
+        int number = 0;
+        for (int i = start; i < end; i++) {
+            final char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
+    }
+
+    /**
+     * Base class for streaming adapters of JSON objects, leaving a field at its default when its
+     * value is {@code null} and skipping unknown fields, as reflection does.
+     */
+    private abstract static class ObjectAdapter<T> extends TypeAdapter<T> {
+
+        @Override
+        public T read(JsonReader in) throws IOException {
+            final T object = newInstance();
+            in.beginObject();
+            while (in.hasNext()) {
+                final String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                } else {
+                    try {
+                        if (!readField(in, name, object)) {
+                            in.skipValue();
+                        }
+                    } catch (NumberFormatException e) {
+                        throw new JsonSyntaxException(e);
+                    }
+                }
+            }
+            in.endObject();
+            return object;
+        }
+
+        /**
+         * Create a new object with default field values.
+         *
+         * @return the new object
+         */
+        abstract T newInstance();
+
+        /**
+         * Read the value of a field.
+         *
+         * @param in     the reader, positioned at a value that isn't {@code null}
+         * @param name   the name of the field
+         * @param object the object to set the field of
+         * @return {@code true} if the value was read, {@code false} if the field is unknown
+         */
+        abstract boolean readField(JsonReader in, String name, T object) throws IOException;
+
+    }
+
+    /**
+     * Streaming adapter for {@link Activity}.
+     */
+    private static final class ActivityAdapter extends ObjectAdapter<Activity> {
+
+        @Override
+        Activity newInstance() {
+            return new Activity();
+        }
+
+        @Override
+        boolean readField(JsonReader in, String name, Activity activity) throws IOException {
+            switch (name) {
+                case "activity_id":
+                    activity.activityId = in.nextLong();
+                    break;
+                case "title":
+                    activity.title = in.nextString();
+                    break;
+                case "description":
+                    activity.description = in.nextString();
+                    break;
+                case "location":
+                    activity.location = in.nextString();
+                    break;
+                case "created_at":
+                    activity.createdAt = in.nextString();
+                    activity.created = parseTimestamp(activity.createdAt);
+                    break;
+                case "latitude":
+                    activity.latitude = in.nextDouble();
+                    break;
+                case "longitude":
+                    activity.longitude = in.nextDouble();
+                    break;
+                case "user_id":
+                    activity.userId = in.nextInt();
+                    break;
+                case "media":
+                    activity.media = readList(in, MEDIA_ADAPTER);
+                    break;
+                default:
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void write(JsonWriter out, Activity activity) throws IOException {
+            out.beginObject();
+            out.name("activity_id").value(activity.activityId);
+            out.name("title").value(activity.title);
+            out.name("description").value(activity.description);
+            out.name("location").value(activity.location);
+            out.name("created_at").value(activity.createdAt);
+            out.name("latitude").value(activity.latitude);
+            out.name("longitude").value(activity.longitude);
+            out.name("user_id").value(activity.userId);
+            writeList(out, "media", activity.media, MEDIA_ADAPTER);
+            out.endObject();
+        }
+
+    }
+
+    /**
+     * Streaming adapter for {@link Contact}.
+     */
+    private static final class ContactAdapter extends ObjectAdapter<Contact> {
+
+        @Override
+        Contact newInstance() {
+            return new Contact();
+        }
+
+        @Override
+        boolean readField(JsonReader in, String name, Contact contact) throws IOException {
+            switch (name) {
+                case "contact_id":
+                    contact.contactId = in.nextLong();
+                    break;
+                case "contact_name":
+                    contact.name = in.nextString();
+                    break;
+                case "contact_email":
+                    contact.email = in.nextString();
+                    break;
+                case "contact_phone":
+                    contact.phone = in.nextString();
+                    break;
+                case "contact_desc":
+                    contact.description = in.nextString();
+                    break;
+                default:
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void write(JsonWriter out, Contact contact) throws IOException {
+            out.beginObject();
+            out.name("contact_id").value(contact.contactId);
+            out.name("contact_name").value(contact.name);
+            out.name("contact_email").value(contact.email);
+            out.name("contact_phone").value(contact.phone);
+            out.name("contact_desc").value(contact.description);
+            out.endObject();
+        }
+
+    }
+
+    /**
+     * Streaming adapter for {@link Journal}.
+     */
+    private static final class JournalAdapter extends ObjectAdapter<Journal> {
+
+        @Override
+        Journal newInstance() {
+            return new Journal();
+        }
+
+        @Override
+        boolean readField(JsonReader in, String name, Journal journal) throws IOException {
+            switch (name) {
+                case "user_alias":
+                    journal.userAlias = in.nextString();
+                    break;
+                case "user_id":
+                    journal.userId = in.nextLong();
+                    break;
+                case "user_gender":
+                    journal.userGender = in.nextInt();
+                    break;
+                case "scrapbook_id":
+                    journal.journalId = in.nextLong();
+                    break;
+                case "title":
+                    journal.title = in.nextString();
+                    break;
+                case "scrapbook_privacy":
+                    journal.privacy = in.nextInt();
+                    break;
+                case "prof_image":
+                    journal.imageUrl = in.nextString();
+                    break;
+                case "contentType":
+                    journal.contentType = in.nextInt();
+                    break;
+                case "createdAt":
+                    journal.createdAt = in.nextString();
+                    journal.created = parseTimestamp(journal.createdAt);
+                    break;
+                case "activities":
+                    journal.activities = readList(in, ACTIVITY_ADAPTER);
+                    break;
+                case "media":
+                    journal.media = readList(in, MEDIA_ADAPTER);
+                    break;
+                case "pocs":
+                    journal.contacts = readList(in, CONTACT_ADAPTER);
+                    break;
+                default:
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void write(JsonWriter out, Journal journal) throws IOException {
+            out.beginObject();
+            out.name("user_alias").value(journal.userAlias);
+            out.name("user_id").value(journal.userId);
+            out.name("user_gender").value(journal.userGender);
+            out.name("scrapbook_id").value(journal.journalId);
+            out.name("title").value(journal.title);
+            out.name("scrapbook_privacy").value(journal.privacy);
+            out.name("prof_image").value(journal.imageUrl);
+            out.name("contentType").value(journal.contentType);
+            out.name("createdAt").value(journal.createdAt);
+            writeList(out, "activities", journal.activities, ACTIVITY_ADAPTER);
+            writeList(out, "media", journal.media, MEDIA_ADAPTER);
+            writeList(out, "pocs", journal.contacts, CONTACT_ADAPTER);
+            out.endObject();
+        }
+
+    }
+
+    /**
+     * Streaming adapter for {@link Media}.
+     */
+    private static final class MediaAdapter extends ObjectAdapter<Media> {
+
+        @Override
+        Media newInstance() {
+            return new Media();
+        }
+
+        @Override
+        boolean readField(JsonReader in, String name, Media media) throws IOException {
+            switch (name) {
+                case "media_id":
+                    media.id = in.nextLong();
+                    break;
+                case "activity_id":
+                    media.activityId = in.nextLong();
+                    break;
+                case "media_path":
+                    media.path = in.nextString();
+                    break;
+                case "mdeia_name":
+                    media.title = in.nextString();
+                    break;
+                case "created_at":
+                    media.createdAt = in.nextString();
+                    media.created = parseTimestamp(media.createdAt);
+                    break;
+                default:
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void write(JsonWriter out, Media media) throws IOException {
+            out.beginObject();
+            out.name("media_id").value(media.id);
+            out.name("activity_id").value(media.activityId);
+            out.name("media_path").value(media.path);
+            out.name("mdeia_name").value(media.title);
+            out.name("created_at").value(media.createdAt);
+            out.endObject();
+        }
+
+    }
+
+}
@@ -30,7 +30,6 @@ import android.text.TextUtils;
 import com.android.volley.Request;
 import com.android.volley.VolleyError;
 import com.example.journals.R;
-import com.google.gson.Gson;
 import com.google.gson.annotations.SerializedName;
 
 import java.util.ArrayList;
@@ -119,7 +118,7 @@ public class NetworkUtils {
     @Nullable
     public static String getErrorMessage(VolleyError error) {
         if (error.networkResponse != null) {
-            final ErrorResponse response = new Gson()
+            final ErrorResponse response = GsonUtils.getGson()
                     .fromJson(new String(error.networkResponse.data), ErrorResponse.class);
             if (!TextUtils.isEmpty(response.error)) {
                 return response.error;
@@ -1037,6 +1036,11 @@ public class NetworkUtils {
          */
         @SerializedName("created_at")
         public String createdAt;
+        /**
+         * The creation time (in milliseconds since the epoch), parsed from {@link #createdAt} as
+         * the JSON is read, or 0 if it isn't a valid timestamp. It isn't part of the JSON.
+         */
+        public transient long created;
         /**
          *
          */
@@ -1076,6 +1080,7 @@ public class NetworkUtils {
             description = source.readString();
             location = source.readString();
             createdAt = source.readString();
+            created = source.readLong();
             latitude = source.readDouble();
             longitude = source.readDouble();
             userId = source.readInt();
@@ -1095,6 +1100,7 @@ public class NetworkUtils {
             dest.writeString(description);
             dest.writeString(location);
             dest.writeString(createdAt);
+            dest.writeLong(created);
             dest.writeDouble(latitude);
             dest.writeDouble(longitude);
             dest.writeInt(userId);
@@ -1247,6 +1253,11 @@ public class NetworkUtils {
          */
         @SerializedName("createdAt")
         public String createdAt;
+        /**
+         * The creation time (in milliseconds since the epoch), parsed from {@link #createdAt} as
+         * the JSON is read, or 0 if it isn't a valid timestamp. It isn't part of the JSON.
+         */
+        public transient long created;
         /**
          *
          */
@@ -1263,6 +1274,12 @@ public class NetworkUtils {
         @SerializedName("pocs")
         public ArrayList<Contact> contacts;
 
+        /**
+         * Create a new journal.
+         */
+        public Journal() {
+        }
+
         /**
          * Create a new journal from a parcel.
          *
@@ -1278,6 +1295,7 @@ public class NetworkUtils {
             imageUrl = source.readString();
             contentType = source.readInt();
             createdAt = source.readString();
+            created = source.readLong();
             activities = new ArrayList<>();
             source.readTypedList(activities, Activity.CREATOR);
             media = new ArrayList<>();
@@ -1311,6 +1329,7 @@ public class NetworkUtils {
             dest.writeString(imageUrl);
             dest.writeInt(contentType);
             dest.writeString(createdAt);
+            dest.writeLong(created);
             dest.writeTypedList(activities);
             dest.writeTypedList(media);
             dest.writeTypedList(contacts);
@@ -1424,6 +1443,11 @@ public class NetworkUtils {
          */
         @SerializedName("created_at")
         public String createdAt;
+        /**
+         * The creation time (in milliseconds since the epoch), parsed from {@link #createdAt} as
+         * the JSON is read, or 0 if it isn't a valid timestamp. It isn't part of the JSON.
+         */
+        public transient long created;
 
         /**
          * Create new media.
@@ -1442,6 +1466,7 @@ public class NetworkUtils {
             path = source.readString();
             title = source.readString();
             createdAt = source.readString();
+            created = source.readLong();
         }
 
         @Override
@@ -1456,6 +1481,7 @@ public class NetworkUtils {
             dest.writeString(path);
             dest.writeString(title);
             dest.writeString(createdAt);
+            dest.writeLong(created);
         }
 
     }
@@ -0,0 +1,435 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.network;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Header;
+import com.android.volley.Request;
+import com.android.volley.toolbox.BaseHttpStack;
+import com.android.volley.toolbox.HttpResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * An HTTP stack based on {@link HttpURLConnection} that reuses connections, compresses request
+ * bodies and limits the number of requests made to each host at once.
+ * <p/>
+ * Connections are kept alive in the platform's connection pool, whose size is set through the
+ * {@code http.maxConnections} system property. A connection is returned to the pool once its
+ * response body has been read to the end and closed, which a body closed with a few bytes left
+ * does itself. Gzipped or deflated response bodies are decompressed as they are read. Request
+ * bodies are only sent gzipped to the hosts given, as not every server accepts them.
+ */
+public class PooledHttpStack extends BaseHttpStack {
+
+    /**
+     * Default largest number of requests made to a host at once.
+     */
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 4;
+    /**
+     * Default size of the smallest request body that is compressed (in bytes). Smaller bodies
+     * aren't worth the time, as they would barely shrink.
+     */
+    public static final int DEFAULT_GZIP_THRESHOLD = 1024;
+    /**
+     * Largest number of bytes left in a response body that are read when it is closed early, so
+     * its connection can still be reused. Parsers stop at the end of the JSON, which usually only
+     * leaves trailing white space or the end of a compressed stream unread.
+     */
+    private static final int MAX_DRAIN_SIZE = 4096;
+    /**
+     * Value of the gzip content encoding.
+     */
+    private static final String ENCODING_GZIP = "gzip";
+    /**
+     * Value of the deflate content encoding.
+     */
+    private static final String ENCODING_DEFLATE = "deflate";
+    /**
+     * Name of the content encoding header.
+     */
+    private static final String HEADER_CONTENT_ENCODING = "Content-Encoding";
+    /**
+     * Name of the content length header.
+     */
+    private static final String HEADER_CONTENT_LENGTH = "Content-Length";
+    /**
+     * Name of the content type header.
+     */
+    private static final String HEADER_CONTENT_TYPE = "Content-Type";
+
+    /**
+     * Largest number of requests made to a host at once.
+     */
+    private final int mMaxRequestsPerHost;
+    /**
+     * Size of the smallest request body that is compressed (in bytes).
+     */
+    private final int mGzipThreshold;
+    /**
+     * Hosts known to accept gzipped request bodies.
+     */
+    private final Set<String> mGzipHosts;
+    /**
+     * Permits for making requests, keyed by host.
+     */
+    private final Map<String, Semaphore> mHostPermits = new HashMap<>();
+
+    /**
+     * Create a new stack using the default settings, which never compresses request bodies.
+     */
+    public PooledHttpStack() {
+        this(DEFAULT_MAX_REQUESTS_PER_HOST, DEFAULT_GZIP_THRESHOLD,
+                Collections.<String>emptySet());
+    }
+
+    /**
+     * Create a new stack.
+     *
+     * @param maxRequestsPerHost largest number of requests made to a host at once
+     * @param gzipThreshold      size of the smallest request body that is compressed (in bytes)
+     * @param gzipHosts          hosts known to accept gzipped request bodies; bodies sent to
+     *                           other hosts are never compressed
+     */
+    public PooledHttpStack(int maxRequestsPerHost, int gzipThreshold,
+                           Collection<String> gzipHosts) {
+        mMaxRequestsPerHost = maxRequestsPerHost;
+        mGzipThreshold = gzipThreshold;
+        mGzipHosts = new HashSet<>(gzipHosts);
+    }
+
+    @Override
+    public HttpResponse executeRequest(Request<?> request, Map<String, String> additionalHeaders)
+            throws IOException, AuthFailureError {
+        final URL url = new URL(request.getUrl());
+        final Semaphore permits = getHostPermits(url.getHost());
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+        HttpURLConnection connection = null;
+        boolean isComplete = false;
+        try {
+            connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(request.getTimeoutMs());
+            connection.setReadTimeout(request.getTimeoutMs());
+            connection.setUseCaches(false);
+            connection.setDoInput(true);
+            // Ask for compressed responses, which are then decompressed here rather than by the
+            // platform, so deflated bodies are accepted too.
+            connection.setRequestProperty("Accept-Encoding",
+                    ENCODING_GZIP + ", " + ENCODING_DEFLATE);
+            for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+            for (Map.Entry<String, String> header : additionalHeaders.entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+            setMethodAndBody(connection, request, mGzipHosts.contains(url.getHost()));
+            final int statusCode = connection.getResponseCode();
+            if (statusCode == -1) {
+                throw new IOException("Could not retrieve response code from HttpUrlConnection.");
+            }
+            final List<Header> headers = new ArrayList<>();
+            String contentEncoding = null;
+            for (Map.Entry<String, List<String>> field : connection.getHeaderFields().entrySet()) {
+                if (field.getKey() == null) {
+                    continue;
+                }
+                for (String value : field.getValue()) {
+                    if (HEADER_CONTENT_ENCODING.equalsIgnoreCase(field.getKey())) {
+                        // The body is decompressed here, so the encoding is left out.
+                        contentEncoding = value;
+                    } else {
+                        headers.add(new Header(field.getKey(), value));
+                    }
+                }
+            }
+            if (!hasResponseBody(request.getMethod(), statusCode)) {
+                permits.release();
+                isComplete = true;
+                return new HttpResponse(statusCode, headers);
+            }
+            InputStream content;
+            try {
+                content = connection.getInputStream();
+            } catch (IOException e) {
+                content = connection.getErrorStream();
+            }
+            if (content == null) {
+                permits.release();
+                isComplete = true;
+                return new HttpResponse(statusCode, headers);
+            }
+            if (ENCODING_GZIP.equalsIgnoreCase(contentEncoding)) {
+                content = new GZIPInputStream(content);
+                removeHeader(headers, HEADER_CONTENT_LENGTH);
+            } else if (ENCODING_DEFLATE.equalsIgnoreCase(contentEncoding)) {
+                content = new InflaterInputStream(content);
+                removeHeader(headers, HEADER_CONTENT_LENGTH);
+            } else if (contentEncoding != null) {
+                headers.add(new Header(HEADER_CONTENT_ENCODING, contentEncoding));
+            }
+            final HttpResponse response = new HttpResponse(statusCode, headers, -1,
+                    new ConnectionInputStream(content, connection, permits));
+            isComplete = true;
+            return response;
+        } finally {
+            // Release the connection and permit if the request failed.
+            if (!isComplete) {
+                if (connection != null) {
+                    connection.disconnect();
+                }
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Get the permits for making requests to a host, creating them if required.
+     *
+     * @param host the host
+     * @return the permits
+     */
+    private synchronized Semaphore getHostPermits(String host) {
+        Semaphore permits = mHostPermits.get(host);
+        if (permits == null) {
+            permits = new Semaphore(mMaxRequestsPerHost, true);
+            mHostPermits.put(host, permits);
+        }
+        return permits;
+    }
+
+    /**
+     * Set the request method of a connection and write the request body, if any.
+     *
+     * @param connection the connection
+     * @param request    the request
+     * @param canGzip    whether the host accepts gzipped request bodies
+     * @throws IOException       if the body couldn't be written
+     * @throws AuthFailureError if the body couldn't be created
+     */
+    private void setMethodAndBody(HttpURLConnection connection, Request<?> request,
+                                  boolean canGzip) throws IOException, AuthFailureError {
+        final byte[] body;
+        switch (request.getMethod()) {
+            case Request.Method.DEPRECATED_GET_OR_POST:
+                body = request.getPostBody();
+                connection.setRequestMethod((body != null) ? "POST" : "GET");
+                break;
+            case Request.Method.GET:
+                connection.setRequestMethod("GET");
+                return;
+            case Request.Method.DELETE:
+                connection.setRequestMethod("DELETE");
+                return;
+            case Request.Method.POST:
+                connection.setRequestMethod("POST");
+                body = request.getBody();
+                break;
+            case Request.Method.PUT:
+                connection.setRequestMethod("PUT");
+                body = request.getBody();
+                break;
+            case Request.Method.HEAD:
+                connection.setRequestMethod("HEAD");
+                return;
+            case Request.Method.OPTIONS:
+                connection.setRequestMethod("OPTIONS");
+                return;
+            case Request.Method.TRACE:
+                connection.setRequestMethod("TRACE");
+                return;
+            case Request.Method.PATCH:
+                // Not supported by HttpURLConnection, so tunnel it through a POST.
+                connection.setRequestMethod("POST");
+                connection.setRequestProperty("X-HTTP-Method-Override", "PATCH");
+                body = request.getBody();
+                break;
+            default:
+                throw new IllegalStateException("Unknown method type.");
+        }
+        if (body == null) {
+            return;
+        }
+        byte[] output = body;
+        if (canGzip && (body.length >= mGzipThreshold)) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 4);
+            final GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+            gzip.write(body);
+            gzip.close();
+            output = bytes.toByteArray();
+            connection.setRequestProperty(HEADER_CONTENT_ENCODING, ENCODING_GZIP);
+        }
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(output.length);
+        connection.setRequestProperty(HEADER_CONTENT_TYPE, request.getBodyContentType());
+        final OutputStream out = connection.getOutputStream();
+        try {
+            out.write(output);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Get whether a response has a body.
+     *
+     * @param method     the request method
+     * @param statusCode the response status code
+     * @return {@code true} if the response has a body
+     */
+    private static boolean hasResponseBody(int method, int statusCode) {
+        return (method != Request.Method.HEAD)
+                && !((statusCode >= 100) && (statusCode < 200))
+                && (statusCode != HttpURLConnection.HTTP_NO_CONTENT)
+                && (statusCode != HttpURLConnection.HTTP_NOT_MODIFIED);
+    }
+
+    /**
+     * Remove every value of a header.
+     *
+     * @param headers the headers
+     * @param name    the name of the header to remove
+     */
+    private static void removeHeader(List<Header> headers, String name) {
+        final Iterator<Header> iterator = headers.iterator();
+        while (iterator.hasNext()) {
+            if (name.equalsIgnoreCase(iterator.next().getName())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * A response body that releases its connection when closed.
+     * <p/>
+     * A body read to the end leaves its connection open, to be reused by the pool. A body closed
+     * early first reads up to {@link #MAX_DRAIN_SIZE} more bytes looking for its end, and
+     * disconnects if there was more left, as the rest of it would otherwise have to be read first.
+     */
+    private static class ConnectionInputStream extends FilterInputStream {
+
+        /**
+         * The connection the body is read from.
+         */
+        private final HttpURLConnection mConnection;
+        /**
+         * Permits for the connection's host, one of which is held until the body is closed.
+         */
+        private final Semaphore mPermits;
+        /**
+         * Set whether the end of the body has been read.
+         */
+        private boolean mIsExhausted = false;
+        /**
+         * Set whether the body has been closed.
+         */
+        private boolean mIsClosed = false;
+
+        /**
+         * Create a new body.
+         *
+         * @param in         the stream the body is read from
+         * @param connection the connection the body is read from
+         * @param permits    permits for the connection's host
+         */
+        ConnectionInputStream(InputStream in, HttpURLConnection connection, Semaphore permits) {
+            super(in);
+            mConnection = connection;
+            mPermits = permits;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mIsClosed) {
+                return;
+            }
+            mIsClosed = true;
+            if (!mIsExhausted) {
+                drain();
+            }
+            try {
+                super.close();
+            } finally {
+                if (!mIsExhausted) {
+                    mConnection.disconnect();
+                }
+                mPermits.release();
+            }
+        }
+
+        /**
+         * Read what's left of the body, up to {@link #MAX_DRAIN_SIZE} bytes.
+         */
+        private void drain() {
+            final byte[] buffer = new byte[512];
+            int drained = 0;
+            try {
+                while (!mIsExhausted && (drained <= MAX_DRAIN_SIZE)) {
+                    final int bytesRead = read(buffer, 0, buffer.length);
+                    if (bytesRead > 0) {
+                        drained += bytesRead;
+                    }
+                }
+            } catch (IOException e) {
+                // The body is left unread, so the connection is dropped.
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            mIsExhausted = (b == -1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            final int bytesRead = super.read(buffer, offset, count);
+            mIsExhausted = (bytesRead == -1);
+            return bytesRead;
+        }
+
+    }
+
+}
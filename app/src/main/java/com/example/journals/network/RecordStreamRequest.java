@@ -0,0 +1,375 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.network;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A request whose response holds a large array of records, which are passed to a listener in
+ * batches as they are read, rather than once the whole response has been parsed.
+ * <p/>
+ * When the request is run by {@link ContentUriAwareNetwork}, the response body is parsed as it is
+ * downloaded, so the first records reach the listener while the rest of the body is still on its
+ * way. The response passed to the {@link Response.Listener} once the body has been read holds
+ * every value except the records, which are left {@code null}. Records and the response are
+ * delivered on the main thread, and not at all once the request is cancelled.
+ * <p/>
+ * If a stale cached response is delivered and then refreshed, the listener is told to discard
+ * the cached records before the refreshed ones are delivered.
+ *
+ * @param <T> the type of the response
+ * @param <R> the type of each record
+ */
+public class RecordStreamRequest<T, R> extends GsonRequest<T> {
+
+    /**
+     * Default largest number of records in a batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 5;
+    /**
+     * Longest time a record waits in a batch before it is delivered (in milliseconds).
+     */
+    private static final long BATCH_INTERVAL = 100;
+    /**
+     * Handler used to deliver records on the main thread.
+     */
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Class of the response.
+     */
+    private final Class<T> mClass;
+    /**
+     * Names of the nested objects leading to the array of records.
+     */
+    private final String[] mRecordsPath;
+    /**
+     * Adapter for reading records.
+     */
+    private final TypeAdapter<R> mRecordAdapter;
+    /**
+     * Listener receiving the records, or {@code null} once the sender has stopped listening.
+     * Guarded by the lock on the request.
+     */
+    private RecordListener<R> mRecordListener;
+    /**
+     * Largest number of records in a batch.
+     */
+    private final int mBatchSize;
+    /**
+     * Records read but not yet delivered.
+     */
+    private List<R> mBatch = new ArrayList<>();
+    /**
+     * Time the last batch was delivered (in milliseconds since boot).
+     */
+    private long mBatchTime;
+    /**
+     * Set whether any records have been delivered.
+     */
+    private volatile boolean mHasDeliveredRecords = false;
+    /**
+     * Set whether the records being read replace those already delivered, and the listener
+     * hasn't yet been told.
+     */
+    private boolean mIsReplacing = false;
+    /**
+     * Response parsed while streaming, or {@code null} if the body hasn't been streamed.
+     */
+    private T mStreamedResponse = null;
+    /**
+     * Followers of the request, which are given their own copies of the records.
+     */
+    private List<GsonRequest<T>> mFollowers = new ArrayList<>();
+
+    /**
+     * Create a new request, posted if it has a body.
+     *
+     * @param url            URL to fetch the JSON from
+     * @param clazz          class of the response
+     * @param headers        request headers
+     * @param requestBody    parameters to post with the request, or {@code null} indicating no
+     *                       parameters will be posted along with request
+     * @param recordsPath    names of the nested objects leading to the array of records, such as
+     *                       {@code "records"}
+     * @param recordClass    class of each record
+     * @param recordListener listener to receive the records
+     * @param listener       listener to receive the response once all records have been read
+     * @param errorListener  listener to receive errors, or {@code null} to ignore errors
+     */
+    public RecordStreamRequest(@NonNull String url, @NonNull Class<T> clazz,
+                               @Nullable Map<String, String> headers,
+                               @Nullable String requestBody, @NonNull String[] recordsPath,
+                               @NonNull Class<R> recordClass,
+                               @NonNull RecordListener<R> recordListener,
+                               @Nullable Response.Listener<T> listener,
+                               @Nullable Response.ErrorListener errorListener) {
+        super(url, clazz, headers, requestBody, listener, errorListener);
+        mClass = clazz;
+        mRecordsPath = recordsPath;
+        mRecordAdapter = GsonUtils.getGson().getAdapter(recordClass);
+        mRecordListener = recordListener;
+        mBatchSize = DEFAULT_BATCH_SIZE;
+    }
+
+    /**
+     * Create a copy of a request, without its sender's listeners, tag or followers.
+     *
+     * @param request the request to copy
+     */
+    private RecordStreamRequest(@NonNull RecordStreamRequest<T, R> request) {
+        super(request);
+        mClass = request.mClass;
+        mRecordsPath = request.mRecordsPath;
+        mRecordAdapter = request.mRecordAdapter;
+        mRecordListener = null;
+        mBatchSize = request.mBatchSize;
+    }
+
+    /**
+     * Parse a response body as it is read, delivering records along the way. Called on a network
+     * thread.
+     *
+     * @param content the response body
+     * @param charset the charset of the body
+     * @throws IOException        if the body couldn't be read
+     * @throws JsonParseException if the body isn't a valid response
+     */
+    void parseStream(InputStream content, String charset) throws IOException {
+        mStreamedResponse = readResponse(content, charset);
+    }
+
+    @Override
+    protected Response<T> parseNetworkResponse(NetworkResponse response) {
+        T result = mStreamedResponse;
+        mStreamedResponse = null;
+        if (result == null) {
+            // The body was downloaded whole or read from the cache, so parse it from memory.
+            try {
+                result = readResponse(new ByteArrayInputStream(response.data),
+                        HttpHeaderParser.parseCharset(response.headers));
+            } catch (IOException e) {
+                return Response.error(new ParseError(e));
+            } catch (JsonParseException e) {
+                return Response.error(new ParseError(e));
+            }
+        }
+        copyResponseForFollowers(result);
+        return Response.success(result, parseCacheEntry(response));
+    }
+
+    @Override
+    protected GsonRequest<T> createCopy() {
+        return new RecordStreamRequest<>(this);
+    }
+
+    @Override
+    protected void releaseListeners() {
+        super.releaseListeners();
+        mRecordListener = null;
+    }
+
+    /**
+     * Post the records read so far to the listener.
+     */
+    private void deliverBatch() {
+        mBatchTime = SystemClock.elapsedRealtime();
+        if (mBatch.isEmpty() && !mIsReplacing) {
+            return;
+        }
+        final List<R> batch = mBatch;
+        final boolean isReplacing = mIsReplacing;
+        mBatch = new ArrayList<>(mBatchSize);
+        mIsReplacing = false;
+        mHasDeliveredRecords = true;
+        // Give each follower its own copies, as listeners may change the records they receive.
+        final List<List<R>> copies = new ArrayList<>(mFollowers.size());
+        for (int i = 0; i < mFollowers.size(); i++) {
+            final List<R> copy = new ArrayList<>(batch.size());
+            for (R record : batch) {
+                copy.add(mRecordAdapter.fromJsonTree(mRecordAdapter.toJsonTree(record)));
+            }
+            copies.add(copy);
+        }
+        final List<GsonRequest<T>> followers = mFollowers;
+        sMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                deliverRecords(getRecordListener(), batch, isReplacing);
+                for (int i = 0; i < followers.size(); i++) {
+                    @SuppressWarnings("unchecked")
+                    final RecordStreamRequest<T, R> follower =
+                            (RecordStreamRequest<T, R>) followers.get(i);
+                    if (!follower.isCanceled()) {
+                        deliverRecords(follower.getRecordListener(), copies.get(i), isReplacing);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Pass records to a listener. Called on the main thread.
+     *
+     * @param listener    the listener, or {@code null} if nothing is listening
+     * @param records     the records, which may be empty
+     * @param isReplacing whether the records replace those already delivered
+     */
+    private static <R> void deliverRecords(RecordListener<R> listener, List<R> records,
+                                           boolean isReplacing) {
+        if (listener == null) {
+            return;
+        }
+        if (isReplacing) {
+            listener.onRecordsReplaced();
+        }
+        if (!records.isEmpty()) {
+            listener.onRecords(records);
+        }
+    }
+
+    /**
+     * Get the listener receiving the records.
+     *
+     * @return the listener, or {@code null} once the sender has stopped listening
+     */
+    private synchronized RecordListener<R> getRecordListener() {
+        return mRecordListener;
+    }
+
+    /**
+     * Parse a response body, delivering records along the way.
+     *
+     * @param content the response body
+     * @param charset the charset of the body
+     * @return the response, with the records left out
+     * @throws IOException        if the body couldn't be read
+     * @throws JsonParseException if the body isn't a valid response
+     */
+    private T readResponse(InputStream content, String charset) throws IOException {
+        final Gson gson = GsonUtils.getGson();
+        final JsonReader reader = new JsonReader(new InputStreamReader(content, charset));
+        mFollowers = closeFollowing();
+        // Records delivered from a cached response, or by an attempt that timed out, are
+        // replaced by those read now. Records left unsent by an earlier attempt are dropped.
+        mIsReplacing = mHasDeliveredRecords;
+        mBatch = new ArrayList<>(mBatchSize);
+        mBatchTime = SystemClock.elapsedRealtime();
+        final T response;
+        try {
+            response = gson.fromJson(readValue(reader, 0), mClass);
+        } catch (IllegalStateException e) {
+            throw new JsonParseException(e);
+        } catch (NumberFormatException e) {
+            throw new JsonParseException(e);
+        }
+        deliverBatch();
+        return response;
+    }
+
+    /**
+     * Read a JSON value, streaming the records if it is, or contains, the array of records.
+     *
+     * @param reader the reader, positioned at the value
+     * @param depth  the number of objects of {@link #mRecordsPath} the value is nested in
+     * @return the value read, with the records left out
+     */
+    private JsonElement readValue(JsonReader reader, int depth) throws IOException {
+        final JsonToken token = reader.peek();
+        if ((depth == mRecordsPath.length) && (token == JsonToken.BEGIN_ARRAY)) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                final R record = mRecordAdapter.read(reader);
+                if (record != null) {
+                    mBatch.add(record);
+                }
+                if ((mBatch.size() >= mBatchSize)
+                        || (SystemClock.elapsedRealtime() - mBatchTime >= BATCH_INTERVAL)) {
+                    deliverBatch();
+                }
+            }
+            reader.endArray();
+            return JsonNull.INSTANCE;
+        } else if ((depth < mRecordsPath.length) && (token == JsonToken.BEGIN_OBJECT)) {
+            final JsonObject object = new JsonObject();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String name = reader.nextName();
+                object.add(name, mRecordsPath[depth].equals(name) ? readValue(reader, depth + 1)
+                        : GsonUtils.getGson().getAdapter(JsonElement.class).read(reader));
+            }
+            reader.endObject();
+            return object;
+        } else {
+            return GsonUtils.getGson().getAdapter(JsonElement.class).read(reader);
+        }
+    }
+
+    /**
+     * Interface to receive records as they are read.
+     *
+     * @param <R> the type of each record
+     */
+    public interface RecordListener<R> {
+
+        /**
+         * Called on the main thread with the next records of the response, in order.
+         *
+         * @param records the records
+         */
+        void onRecords(@NonNull List<R> records);
+
+        /**
+         * Called on the main thread when the records delivered so far came from a stale cached
+         * response, before the records of the refreshed response are delivered. The records
+         * received from the request so far should be discarded.
+         */
+        void onRecordsReplaced();
+
+    }
+
+}
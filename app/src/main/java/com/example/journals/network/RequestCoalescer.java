@@ -0,0 +1,251 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.network;
+
+import android.util.Log;
+
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.example.journals.BuildConfig;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds requests to a queue, coalescing identical reads.
+ * <p/>
+ * A read that is identical to one already running, having the same type, method, URL, body and
+ * headers, isn't sent. It follows the running request instead, receiving the same parsed response
+ * once it arrives. Cancelling a follower only stops its own delivery, and the running request is
+ * only cancelled once its sender and every follower have cancelled it.
+ */
+public class RequestCoalescer {
+
+    /**
+     * Set whether debug messages should be logged.
+     */
+    private static final boolean DEBUG = BuildConfig.DEBUG;
+    /**
+     * Tag for displaying debug messages.
+     */
+    private static final String DEBUG_TAG = RequestCoalescer.class.getSimpleName();
+
+    /**
+     * Queue the requests are sent on.
+     */
+    private final RequestQueue mQueue;
+    /**
+     * Running reads, keyed by {@link GsonRequest#getCoalescingKey()}.
+     */
+    private final Map<String, GsonRequest<?>> mRunningRequests = new HashMap<>();
+    /**
+     * Requests following a running read, which aren't on the queue, mapped to the read they
+     * follow.
+     */
+    private final Map<GsonRequest<?>, GsonRequest<?>> mFollowers = new HashMap<>();
+    /**
+     * Number of reads added.
+     */
+    private int mReadCount = 0;
+    /**
+     * Number of reads that followed a running request rather than being sent.
+     */
+    private int mCoalescedCount = 0;
+
+    /**
+     * Create a new coalescer.
+     *
+     * @param queue queue the requests are sent on
+     */
+    RequestCoalescer(RequestQueue queue) {
+        mQueue = queue;
+        mQueue.addRequestFinishedListener(new RequestQueue.RequestFinishedListener<Object>() {
+            @Override
+            public void onRequestFinished(Request<Object> request) {
+                finish(request);
+            }
+        });
+    }
+
+    /**
+     * Send a request, unless it is a read identical to one that is already running.
+     *
+     * @param request the request
+     * @param <T>     the type of the response
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> void add(Request<T> request) {
+        if (!(request instanceof GsonRequest) || !((GsonRequest<T>) request).isIdempotent()) {
+            mQueue.add(request);
+            return;
+        }
+        final GsonRequest<T> read = (GsonRequest<T>) request;
+        final String key = read.getCoalescingKey();
+        mReadCount++;
+        final GsonRequest<T> running = (GsonRequest<T>) mRunningRequests.get(key);
+        if ((running != null) && running.addFollower(read)) {
+            mFollowers.put(read, running);
+            mCoalescedCount++;
+            if (DEBUG) {
+                Log.i(DEBUG_TAG, "Coalesced " + mCoalescedCount + " of " + mReadCount + " reads");
+            }
+        } else {
+            mRunningRequests.put(key, read);
+            mQueue.add(read);
+        }
+    }
+
+    /**
+     * Cancel all sent and following requests with a tag.
+     *
+     * @param tag the tag of the requests to cancel
+     */
+    public void cancelAll(Object tag) {
+        final List<GsonRequest<?>> followers = new ArrayList<>();
+        synchronized (this) {
+            for (GsonRequest<?> follower : mFollowers.keySet()) {
+                if (follower.getTag() == tag) {
+                    followers.add(follower);
+                }
+            }
+        }
+        // Cancel outside the lock, as cancelling a follower may cancel the request it follows.
+        for (GsonRequest<?> follower : followers) {
+            follower.cancel();
+        }
+        mQueue.cancelAll(tag);
+    }
+
+    /**
+     * Stop delivering the responses of requests with a tag to their sender. Reads that are cached
+     * keep going, so their responses are cached and can be picked up by identical reads sent
+     * later. Other requests are cancelled.
+     * <p/>
+     * Reads that have started keep running. Those still waiting in the queue are replaced by
+     * copies at {@link Request.Priority#LOW}, sent after the reads of other screens, which take
+     * over their followers. See {@link GsonRequest#demote()}.
+     *
+     * @param tag the tag of the requests to demote
+     */
+    public void demoteAll(final Object tag) {
+        final List<GsonRequest<?>> followers = new ArrayList<>();
+        synchronized (this) {
+            for (GsonRequest<?> follower : mFollowers.keySet()) {
+                if (follower.getTag() == tag) {
+                    followers.add(follower);
+                }
+            }
+        }
+        // A follower's read keeps running for its other recipients, so followers are cancelled.
+        for (GsonRequest<?> follower : followers) {
+            follower.cancel();
+        }
+        final List<GsonRequest<?>> reads = new ArrayList<>();
+        mQueue.cancelAll(new RequestQueue.RequestFilter() {
+            @Override
+            public boolean apply(Request<?> request) {
+                if (request.getTag() != tag) {
+                    return false;
+                } else if ((request instanceof GsonRequest) && request.shouldCache()
+                        && ((GsonRequest<?>) request).isIdempotent()) {
+                    reads.add((GsonRequest<?>) request);
+                    return false;
+                } else {
+                    return true;
+                }
+            }
+        });
+        // Demote outside the queue's lock, as the copies replacing reads are added to the queue.
+        for (GsonRequest<?> read : reads) {
+            demote(read);
+        }
+    }
+
+    /**
+     * Get the number of reads that followed a running request rather than being sent.
+     *
+     * @return the number of coalesced reads
+     */
+    public synchronized int getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    /**
+     * Get the number of reads added, whether they were sent or coalesced.
+     *
+     * @return the number of reads
+     */
+    public synchronized int getReadCount() {
+        return mReadCount;
+    }
+
+    /**
+     * Demote a read, sending the copy that replaces it if it hadn't started. The copy takes the
+     * read's place, so identical reads added later follow it.
+     *
+     * @param read the read
+     * @param <T>  the type of the response
+     */
+    private <T> void demote(GsonRequest<T> read) {
+        final GsonRequest<T> copy;
+        synchronized (this) {
+            copy = read.demote();
+            if (copy == null) {
+                return;
+            }
+            final String key = read.getCoalescingKey();
+            if (mRunningRequests.get(key) == read) {
+                mRunningRequests.put(key, copy);
+            }
+            for (Map.Entry<GsonRequest<?>, GsonRequest<?>> follower : mFollowers.entrySet()) {
+                if (follower.getValue() == read) {
+                    follower.setValue(copy);
+                }
+            }
+        }
+        mQueue.add(copy);
+    }
+
+    /**
+     * Forget a finished request, along with its followers.
+     *
+     * @param request the finished request
+     */
+    private synchronized void finish(Request<?> request) {
+        if (!(request instanceof GsonRequest)) {
+            return;
+        }
+        final String key = ((GsonRequest<?>) request).getCoalescingKey();
+        if (mRunningRequests.get(key) == request) {
+            mRunningRequests.remove(key);
+        }
+        final Iterator<GsonRequest<?>> iterator = mFollowers.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() == request) {
+                iterator.remove();
+            }
+        }
+    }
+
+}
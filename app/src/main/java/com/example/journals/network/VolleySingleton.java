@@ -21,17 +21,21 @@
 package com.example.journals.network;
 
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.graphics.Bitmap;
+import android.net.Uri;
 
 import com.android.volley.Network;
 import com.android.volley.Request;
 import com.android.volley.RequestQueue;
+import com.android.volley.toolbox.BaseHttpStack;
 import com.android.volley.toolbox.DiskBasedCache;
-import com.android.volley.toolbox.HurlStack;
 import com.android.volley.toolbox.ImageLoader;
+import com.example.journals.R;
 import com.example.journals.image.BitmapLruCache;
 
 import java.io.File;
+import java.util.Collections;
 
 /**
  * A request queue singleton for accessing network resources.
@@ -46,11 +50,32 @@ public class VolleySingleton {
      * Directory for storing cache files.
      */
     private static final String DEFAULT_CACHE_DIR = "volley";
+    /**
+     * Largest number of idle connections kept in the platform's connection pool.
+     */
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    /**
+     * Name of the preferences file holding the response cache state.
+     */
+    private static final String PREFERENCES_NAME = "volley";
+    /**
+     * Preference key for the generation of cached reads.
+     */
+    private static final String PREF_READ_GENERATION = "readGeneration";
+    /**
+     * Largest size of the response cache, beyond which the least recently used responses are
+     * evicted (in bytes).
+     */
+    private static final int RESPONSE_CACHE_SIZE = 10 * 1024 * 1024;
 
     /**
      * The singleton instance of this class.
      */
     private static VolleySingleton mInstance;
+    /**
+     * HTTP stack used by the request queue, or {@code null} to use a {@link PooledHttpStack}.
+     */
+    private static BaseHttpStack sHttpStack;
 
     /**
      * Background loader for images.
@@ -60,6 +85,19 @@ public class VolleySingleton {
      * Queue for dispatching volley requests.
      */
     private final RequestQueue mRequestQueue;
+    /**
+     * Layer in front of the request queue that coalesces identical reads.
+     */
+    private final RequestCoalescer mRequestCoalescer;
+    /**
+     * Preferences holding the response cache state.
+     */
+    private final SharedPreferences mPreferences;
+    /**
+     * Generation of cached reads, which is part of their cache keys so that reads cached before
+     * the last invalidation are never used again.
+     */
+    private int mReadGeneration;
 
     /**
      * Create a new volley singleton
@@ -68,7 +106,10 @@ public class VolleySingleton {
      */
     private VolleySingleton(Context appContext) {
         mRequestQueue = newRequestQueue(appContext);
+        mRequestCoalescer = new RequestCoalescer(mRequestQueue);
         mImageLoader = new ImageLoader(mRequestQueue, new ImageCache());
+        mPreferences = appContext.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        mReadGeneration = mPreferences.getInt(PREF_READ_GENERATION, 0);
     }
 
     /**
@@ -85,6 +126,21 @@ public class VolleySingleton {
         return mInstance;
     }
 
+    /**
+     * Set the HTTP stack used by the request queue, such as a {@link
+     * com.android.volley.toolbox.HurlStack} for comparison with the default {@link
+     * PooledHttpStack}. Must be called before the instance is first used.
+     *
+     * @param httpStack the HTTP stack, or {@code null} to use the default
+     * @throws IllegalStateException if the request queue has already been created
+     */
+    public static synchronized void setHttpStack(BaseHttpStack httpStack) {
+        if (mInstance != null) {
+            throw new IllegalStateException("Request queue already created");
+        }
+        sHttpStack = httpStack;
+    }
+
     /**
      * Creates a default instance of the worker pool and calls {@link RequestQueue#start()} on it.
      *
@@ -93,20 +149,58 @@ public class VolleySingleton {
      */
     private static RequestQueue newRequestQueue(Context context) {
         final File cacheDir = new File(context.getCacheDir(), DEFAULT_CACHE_DIR);
-        final Network network = new ContentUriAwareNetwork(new HurlStack(), context);
-        final RequestQueue queue = new RequestQueue(new DiskBasedCache(cacheDir), network);
+        // The platform reads these properties when its connection pool is first used, and the
+        // queue is only created once.
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", String.valueOf(MAX_IDLE_CONNECTIONS));
+        BaseHttpStack httpStack = sHttpStack;
+        if (httpStack == null) {
+            // Only the app's own server is known to accept gzipped request bodies.
+            final String serverHost =
+                    Uri.parse(context.getString(R.string.network_url_server)).getHost();
+            httpStack = new PooledHttpStack(PooledHttpStack.DEFAULT_MAX_REQUESTS_PER_HOST,
+                    PooledHttpStack.DEFAULT_GZIP_THRESHOLD, Collections.singleton(serverHost));
+        }
+        final Network network =
+                new ContentUriAwareNetwork(new CircuitBreakerHttpStack(httpStack), context);
+        final RequestQueue queue =
+                new RequestQueue(new DiskBasedCache(cacheDir, RESPONSE_CACHE_SIZE), network);
         queue.start();
         return queue;
     }
 
     /**
-     * Convenience method for adding a request to the request queue.
+     * Convenience method for adding a request to the request queue. A read identical to one that
+     * is already running receives that request's response, rather than being sent again.
      *
      * @param request the request to service
      * @param <T>     the passed in request
      */
     public <T> void addToRequestQueue(Request<T> request) {
-        getRequestQueue().add(request);
+        if (request instanceof GsonRequest) {
+            ((GsonRequest<?>) request).setCacheGeneration(getReadGeneration());
+        }
+        mRequestCoalescer.add(request);
+    }
+
+    /**
+     * Cancel all requests with a tag, including reads that were coalesced with another request.
+     *
+     * @param tag the tag of the requests to cancel
+     */
+    public void cancelAll(Object tag) {
+        mRequestCoalescer.cancelAll(tag);
+    }
+
+    /**
+     * Stop delivering the responses of requests with a tag, letting cached reads finish in the
+     * background and cancelling the rest.
+     *
+     * @param tag the tag of the requests to demote
+     * @see RequestCoalescer#demoteAll(Object)
+     */
+    public void demoteAll(Object tag) {
+        mRequestCoalescer.demoteAll(tag);
     }
 
     /**
@@ -118,6 +212,25 @@ public class VolleySingleton {
         return mImageLoader;
     }
 
+    /**
+     * Get the generation of cached reads.
+     *
+     * @return the generation
+     */
+    private synchronized int getReadGeneration() {
+        return mReadGeneration;
+    }
+
+    /**
+     * Get the layer in front of the request queue that coalesces identical reads, which counts
+     * the requests it saves.
+     *
+     * @return the request coalescer
+     */
+    public RequestCoalescer getRequestCoalescer() {
+        return mRequestCoalescer;
+    }
+
     /**
      * Get the request queue for handling requests.
      *
@@ -127,6 +240,18 @@ public class VolleySingleton {
         return mRequestQueue;
     }
 
+    /**
+     * Stop using the cached responses of all reads, so that they are fetched again. Called when
+     * the user asks for fresh data and after a write that may have changed what reads return.
+     * <p/>
+     * Cached responses are not removed, but are no longer found as the generation in their cache
+     * keys is out of date, and they are evicted as the cache fills.
+     */
+    public synchronized void invalidateReads() {
+        mReadGeneration++;
+        mPreferences.edit().putInt(PREF_READ_GENERATION, mReadGeneration).apply();
+    }
+
     /**
      * Class used to store bitmaps in an LRU cache.
      */
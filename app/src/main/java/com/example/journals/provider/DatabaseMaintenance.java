@@ -0,0 +1,315 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.provider;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.provider.BaseColumns;
+import android.util.Log;
+
+import com.example.journals.BuildConfig;
+import com.example.journals.provider.JournalContract.Activities;
+import com.example.journals.provider.JournalContract.Contacts;
+import com.example.journals.provider.JournalContract.Journals;
+import com.example.journals.provider.JournalProvider.DatabaseHelper.ActivitiesTable;
+import com.example.journals.provider.JournalProvider.DatabaseHelper.ContactsTable;
+import com.example.journals.provider.JournalProvider.DatabaseHelper.JournalsTable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Background task that keeps the provider database compact.
+ * <p/>
+ * Each run purges the deleted rows whose deletion the sync adapter has acknowledged, returns
+ * free pages to the file system with an incremental vacuum and refreshes the statistics used by
+ * the query planner. Work is done in small batches with pauses between them, each batch
+ * committing on its own, so foreground queries and writes are never held up for long. The
+ * activities and contacts of a purged journal are purged in batches of their own before the
+ * journal, so deleting the journal never cascades to an unbounded number of rows.
+ * <p/>
+ * Databases created before incremental vacuuming are converted by the database helper when they
+ * are upgraded. Until then the vacuum reclaims nothing.
+ */
+class DatabaseMaintenance implements Runnable {
+
+    /**
+     * Set whether debug messages should be logged.
+     */
+    private static final boolean DEBUG = BuildConfig.DEBUG;
+    /**
+     * Tag for displaying debug messages.
+     */
+    private static final String DEBUG_TAG = DatabaseMaintenance.class.getSimpleName();
+    /**
+     * Time to wait after the provider starts before the first run, keeping maintenance out of the
+     * way of app startup (in milliseconds).
+     */
+    private static final long START_DELAY = TimeUnit.MINUTES.toMillis(1);
+    /**
+     * Time between runs (in milliseconds).
+     */
+    private static final long RUN_INTERVAL = TimeUnit.DAYS.toMillis(1);
+    /**
+     * Time to wait before trying again after a run fails (in milliseconds).
+     */
+    private static final long RETRY_DELAY = TimeUnit.HOURS.toMillis(1);
+    /**
+     * Number of rows purged in each batch.
+     */
+    private static final int PURGE_BATCH_SIZE = 100;
+    /**
+     * Number of pages vacuumed in each batch.
+     */
+    private static final int VACUUM_BATCH_SIZE = 64;
+    /**
+     * Time to pause between batches, giving other connections a chance at the database (in
+     * milliseconds).
+     */
+    private static final long BATCH_PAUSE = 50;
+    /**
+     * Value of {@code PRAGMA auto_vacuum} for incremental vacuuming.
+     */
+    private static final long AUTO_VACUUM_INCREMENTAL = 2;
+    /**
+     * Name of the preferences file recording when maintenance last ran.
+     */
+    private static final String PREFERENCES_NAME = "provider_maintenance";
+    /**
+     * Preference key for the time maintenance last ran (in milliseconds since the epoch).
+     */
+    private static final String PREFERENCE_LAST_RUN = "last_run";
+
+    /**
+     * Helper used to open the provider database.
+     */
+    private final SQLiteOpenHelper mDatabaseHelper;
+    /**
+     * Preferences recording when maintenance last ran.
+     */
+    private final SharedPreferences mPreferences;
+    /**
+     * Task run after rows have been purged.
+     */
+    private final Runnable mOnPurged;
+    /**
+     * Lock held while maintenance runs, so runs never overlap.
+     */
+    private final Lock mLock = new ReentrantLock();
+    /**
+     * Handler running maintenance on a background thread, created when the first run is
+     * scheduled.
+     */
+    private Handler mHandler;
+
+    /**
+     * Create a new maintenance task.
+     *
+     * @param context        the context used to access preferences
+     * @param databaseHelper helper used to open the provider database
+     * @param onPurged       task run after rows have been purged, on the thread doing the purge
+     */
+    DatabaseMaintenance(Context context, SQLiteOpenHelper databaseHelper, Runnable onPurged) {
+        mDatabaseHelper = databaseHelper;
+        mPreferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        mOnPurged = onPurged;
+    }
+
+    /**
+     * Schedule the next run, once a day has passed since the last one.
+     */
+    void schedule() {
+        schedule(START_DELAY);
+    }
+
+    /**
+     * Maintain the database on the calling thread, unless maintenance is already running.
+     *
+     * @return a bundle holding {@link JournalContract#KEY_TOMBSTONES_PURGED}, {@link
+     * JournalContract#KEY_PAGES_RECLAIMED} and {@link JournalContract#KEY_MAINTENANCE_TIME}, or
+     * {@code null} if maintenance was already running
+     */
+    Bundle maintainNow() {
+        if (!mLock.tryLock()) {
+            return null;
+        }
+        try {
+            return maintain();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override
+    public void run() {
+        long retryDelay = START_DELAY;
+        mLock.lock();
+        try {
+            maintain();
+            mPreferences.edit().putLong(PREFERENCE_LAST_RUN, System.currentTimeMillis()).apply();
+        } catch (SQLiteException e) {
+            Log.w(DEBUG_TAG, "Maintenance failed", e);
+            retryDelay = RETRY_DELAY;
+        } finally {
+            mLock.unlock();
+            schedule(retryDelay);
+        }
+    }
+
+    /**
+     * Schedule the next run, once a day has passed since the last one.
+     *
+     * @param minDelay the shortest time to wait before the run (in milliseconds)
+     */
+    private synchronized void schedule(long minDelay) {
+        if (mHandler == null) {
+            final HandlerThread thread =
+                    new HandlerThread(DEBUG_TAG, Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            mHandler = new Handler(thread.getLooper());
+        }
+        final long nextRun = mPreferences.getLong(PREFERENCE_LAST_RUN, 0) + RUN_INTERVAL;
+        mHandler.removeCallbacks(this);
+        mHandler.postDelayed(this, Math.max(nextRun - System.currentTimeMillis(), minDelay));
+    }
+
+    /**
+     * Maintain the database on the calling thread. The lock must be held.
+     *
+     * @return a bundle holding {@link JournalContract#KEY_TOMBSTONES_PURGED}, {@link
+     * JournalContract#KEY_PAGES_RECLAIMED} and {@link JournalContract#KEY_MAINTENANCE_TIME}
+     */
+    private Bundle maintain() {
+        final long startTime = SystemClock.elapsedRealtime();
+        final SQLiteDatabase database = mDatabaseHelper.getWritableDatabase();
+        final String purgedJournals = "SELECT " + Journals.COLUMN_ID + " FROM "
+                + JournalsTable.TABLE_NAME + " WHERE " + Journals.COLUMN_IS_DELETED + " = 2 AND "
+                + Journals.COLUMN_DELETE_ACKNOWLEDGED + " = 1";
+        // Empty the purged journals first, then purge the deleted rows of the other journals.
+        // Every child table uses the same column names.
+        final String purgedChildren = Activities.COLUMN_JOURNAL_ID + " IN (" + purgedJournals
+                + ") OR (" + Activities.COLUMN_IS_DELETED + " = 1 AND "
+                + Activities.COLUMN_DELETE_ACKNOWLEDGED + " = 1)";
+        int noPurged = purge(database, ActivitiesTable.TABLE_NAME, purgedChildren)
+                + purge(database, ContactsTable.TABLE_NAME, purgedChildren);
+        // Journals still holding rows, added since, are left to the next run.
+        noPurged += purge(database, JournalsTable.TABLE_NAME, Journals.COLUMN_ID + " IN ("
+                + purgedJournals + ") AND NOT EXISTS (SELECT 1 FROM " + ActivitiesTable.TABLE_NAME
+                + " WHERE " + Activities.COLUMN_JOURNAL_ID + " = " + JournalsTable.TABLE_NAME + "."
+                + Journals.COLUMN_ID + ") AND NOT EXISTS (SELECT 1 FROM "
+                + ContactsTable.TABLE_NAME + " WHERE " + Contacts.COLUMN_JOURNAL_ID + " = "
+                + JournalsTable.TABLE_NAME + "." + Journals.COLUMN_ID + ")");
+        if (noPurged > 0) {
+            mOnPurged.run();
+        }
+        final long noPages = vacuum(database);
+        // Refresh the planner's statistics one table at a time.
+        for (String table : new String[]{JournalsTable.TABLE_NAME, ActivitiesTable.TABLE_NAME,
+                ContactsTable.TABLE_NAME}) {
+            SystemClock.sleep(BATCH_PAUSE);
+            database.execSQL("ANALYZE " + table);
+        }
+        final long time = SystemClock.elapsedRealtime() - startTime;
+        if (DEBUG) {
+            Log.i(DEBUG_TAG, "Purged " + noPurged + " rows and reclaimed " + noPages
+                    + " pages in " + time + " ms");
+        }
+        final Bundle result = new Bundle();
+        result.putInt(JournalContract.KEY_TOMBSTONES_PURGED, noPurged);
+        result.putLong(JournalContract.KEY_PAGES_RECLAIMED, noPages);
+        result.putLong(JournalContract.KEY_MAINTENANCE_TIME, time);
+        return result;
+    }
+
+    /**
+     * Delete the rows of a table matching a condition, a batch at a time.
+     *
+     * @param database the database
+     * @param table    the table to purge
+     * @param where    the condition selecting the rows to delete
+     * @return the number of rows deleted from the table
+     */
+    private static int purge(SQLiteDatabase database, String table, String where) {
+        final SQLiteStatement statement = database.compileStatement("DELETE FROM " + table
+                + " WHERE " + BaseColumns._ID + " IN (SELECT " + BaseColumns._ID + " FROM "
+                + table + " WHERE " + where + " LIMIT " + PURGE_BATCH_SIZE + ")");
+        try {
+            int noDeleted = 0;
+            int noBatch;
+            do {
+                noBatch = statement.executeUpdateDelete();
+                noDeleted += noBatch;
+                if (noBatch == PURGE_BATCH_SIZE) {
+                    SystemClock.sleep(BATCH_PAUSE);
+                }
+            } while (noBatch == PURGE_BATCH_SIZE);
+            return noDeleted;
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Return free pages to the file system, a batch at a time. Nothing is reclaimed unless the
+     * database uses incremental vacuuming.
+     *
+     * @param database the database
+     * @return the number of pages the database file shrank by
+     */
+    private static long vacuum(SQLiteDatabase database) {
+        final long startPages = DatabaseUtils.longForQuery(database, "PRAGMA page_count", null);
+        if (DatabaseUtils.longForQuery(database, "PRAGMA auto_vacuum", null)
+                == AUTO_VACUUM_INCREMENTAL) {
+            long freePages = DatabaseUtils.longForQuery(database, "PRAGMA freelist_count", null);
+            while (freePages > 0) {
+                // Run the pragma as a query, so any rows it returns are consumed.
+                final Cursor cursor = database.rawQuery(
+                        "PRAGMA incremental_vacuum(" + VACUUM_BATCH_SIZE + ")", null);
+                try {
+                    cursor.getCount();
+                } finally {
+                    cursor.close();
+                }
+                final long remainingPages =
+                        DatabaseUtils.longForQuery(database, "PRAGMA freelist_count", null);
+                if (remainingPages >= freePages) {
+                    break;
+                }
+                freePages = remainingPages;
+                SystemClock.sleep(BATCH_PAUSE);
+            }
+        }
+        return startPages - DatabaseUtils.longForQuery(database, "PRAGMA page_count", null);
+    }
+
+}
@@ -39,6 +39,186 @@ public final class JournalContract {
      * A {@code content://} style URI to the content provider authority.
      */
     public static final Uri AUTHORITY_URI = Uri.parse("content://" + AUTHORITY);
+    /**
+     * Query parameter set to {@code true} on operations performed by the sync adapter.
+     * <p/>
+     * Changes made by the sync adapter don't request a network sync when they are committed, and
+     * the change notifications they produce carry this parameter, so observers can ignore changes
+     * that were just downloaded from the server.
+     */
+    public static final String CALLER_IS_SYNC_ADAPTER = "caller_is_sync_adapter";
+
+    // *****Provider methods.***** //
+
+    /**
+     * Method name for {@link ContentResolver#call(Uri, String, String, android.os.Bundle)} that
+     * checkpoints the provider's write-ahead log.
+     * <p/>
+     * The provider checkpoints automatically as the log grows, so this only needs to be called
+     * after large batches of writes, such as at the end of a network sync. It never waits for
+     * other connections, so frames still in use are left in the log. The returned bundle holds
+     * {@link #KEY_WAL_FRAMES} and {@link #KEY_CHECKPOINTED_FRAMES}.
+     */
+    public static final String METHOD_CHECKPOINT = "checkpoint";
+    /**
+     * Result key for the number of frames in the write-ahead log.
+     * <p/>
+     * Type: int
+     */
+    public static final String KEY_WAL_FRAMES = "wal_frames";
+    /**
+     * Result key for the number of write-ahead log frames copied into the database.
+     * <p/>
+     * Type: int
+     */
+    public static final String KEY_CHECKPOINTED_FRAMES = "checkpointed_frames";
+    /**
+     * Method name for {@link ContentResolver#call(Uri, String, String, android.os.Bundle)} that
+     * reports the effectiveness of the provider's query cache.
+     * <p/>
+     * The returned bundle holds {@link #KEY_CACHE_HITS}, {@link #KEY_CACHE_MISSES} and {@link
+     * #KEY_CACHE_SIZE}.
+     */
+    public static final String METHOD_CACHE_STATS = "cache_stats";
+    /**
+     * Result key for the number of queries answered from the cache.
+     * <p/>
+     * Type: int
+     */
+    public static final String KEY_CACHE_HITS = "cache_hits";
+    /**
+     * Result key for the number of cacheable queries that had to be run on the database.
+     * <p/>
+     * Type: int
+     */
+    public static final String KEY_CACHE_MISSES = "cache_misses";
+    /**
+     * Result key for the estimated size of the cached results (in bytes).
+     * <p/>
+     * Type: int
+     */
+    public static final String KEY_CACHE_SIZE = "cache_size";
+    /**
+     * Method name for {@link ContentResolver#call(Uri, String, String, android.os.Bundle)} that
+     * runs database maintenance immediately, on the calling thread.
+     * <p/>
+     * Maintenance also runs in the background once a day. It purges deleted rows the sync
+     * adapter has acknowledged, reclaims free space and refreshes query planner statistics. The
+     * returned bundle holds {@link #KEY_TOMBSTONES_PURGED}, {@link #KEY_PAGES_RECLAIMED} and {@link
+     * #KEY_MAINTENANCE_TIME}, or is {@code null} if maintenance is already running in the
+     * background.
+     */
+    public static final String METHOD_MAINTAIN = "maintain";
+    /**
+     * Result key for the number of rows purged from the database, including the activities and
+     * contacts purged along with their journal.
+     * <p/>
+     * Type: int
+     */
+    public static final String KEY_TOMBSTONES_PURGED = "tombstones_purged";
+    /**
+     * Result key for the number of pages the database file shrank by.
+     * <p/>
+     * Type: long
+     */
+    public static final String KEY_PAGES_RECLAIMED = "pages_reclaimed";
+    /**
+     * Result key for the time maintenance took (in milliseconds).
+     * <p/>
+     * Type: long
+     */
+    public static final String KEY_MAINTENANCE_TIME = "maintenance_time";
+    /**
+     * Method name for {@link ContentResolver#call(Uri, String, String, android.os.Bundle)} that
+     * reads a journal along with its activities and contacts in a single call.
+     * <p/>
+     * The argument is the row ID of the journal, and an {@link IllegalArgumentException} is thrown
+     * if it is missing or not a number. All rows are read within one transaction, so they are
+     * consistent with each other, but writers wait while they are read. Rows pending deletion are
+     * left out. The returned bundle holds {@link #KEY_JOURNAL}, {@link #KEY_ACTIVITIES} and {@link
+     * #KEY_CONTACTS}, or is {@code null} if the journal doesn't exist or is pending deletion.
+     */
+    public static final String METHOD_GET_JOURNAL_SNAPSHOT = "get_journal_snapshot";
+    /**
+     * Most activities, and most contacts, returned by {@link #METHOD_GET_JOURNAL_SNAPSHOT}. A
+     * list holding fewer rows than the journal's {@link Journals#COLUMN_ACTIVITY_COUNT} or {@link
+     * Journals#COLUMN_CONTACT_COUNT} was cut short, and the rest must be queried.
+     */
+    public static final int SNAPSHOT_ENTRY_LIMIT = 200;
+    /**
+     * Result key for the journal row, keyed by the columns of {@link Journals}.
+     * <p/>
+     * Type: {@link android.content.ContentValues}
+     */
+    public static final String KEY_JOURNAL = "journal";
+    /**
+     * Result key for the activity rows of the journal, newest first, keyed by the columns of
+     * {@link Activities}.
+     * <p/>
+     * Type: {@link java.util.ArrayList} of {@link android.content.ContentValues}
+     */
+    public static final String KEY_ACTIVITIES = "activities";
+    /**
+     * Result key for the contact rows of the journal, oldest first, keyed by the columns of {@link
+     * Contacts}.
+     * <p/>
+     * Type: {@link java.util.ArrayList} of {@link android.content.ContentValues}
+     */
+    public static final String KEY_CONTACTS = "contacts";
+
+    // *****Query parameters.***** //
+
+    /**
+     * Query parameter limiting the number of rows returned from a directory.
+     * <p/>
+     * Paged queries are always sorted on the creation time and then the ID of each row, in the
+     * direction given by {@link #PARAM_ORDER}. Any sort order passed to the query is ignored. Use
+     * {@link #buildPageUri(Uri, int, boolean)} and {@link #buildPageUri(Uri, int, boolean, long,
+     * long)} to build paged URIs.
+     * <p/>
+     * Type: int
+     */
+    public static final String PARAM_LIMIT = "limit";
+    /**
+     * Query parameter holding the sort direction of a paged query, either {@link #ORDER_ASCENDING}
+     * or {@link #ORDER_DESCENDING} (the default).
+     * <p/>
+     * Type: String
+     */
+    public static final String PARAM_ORDER = "order";
+    /**
+     * Query parameter holding the creation time of the last row of the previous page. Must be
+     * used together with {@link #PARAM_AFTER_ID}, or an {@link IllegalArgumentException} is
+     * thrown.
+     * <p/>
+     * Type: long
+     */
+    public static final String PARAM_AFTER_CREATED = "after_created";
+    /**
+     * Query parameter holding the ID of the last row of the previous page. Must be used together
+     * with {@link #PARAM_AFTER_CREATED}, or an {@link IllegalArgumentException} is thrown.
+     * <p/>
+     * Type: long
+     */
+    public static final String PARAM_AFTER_ID = "after_id";
+    /**
+     * Query parameter set to {@code true} to read from the database even if the provider holds a
+     * cached copy of the result, and to leave the result out of the cache.
+     * <p/>
+     * Small results are cached until a write changes the rows they could include, so this is only
+     * needed by callers that expect large results or must see data written outside the provider.
+     * <p/>
+     * Type: boolean
+     */
+    public static final String PARAM_BYPASS_CACHE = "bypass_cache";
+    /**
+     * Value of {@link #PARAM_ORDER} for pages sorted from oldest to newest.
+     */
+    public static final String ORDER_ASCENDING = "asc";
+    /**
+     * Value of {@link #PARAM_ORDER} for pages sorted from newest to oldest.
+     */
+    public static final String ORDER_DESCENDING = "desc";
 
     /**
      * Private constructor.
@@ -46,6 +226,41 @@ public final class JournalContract {
     private JournalContract() {
     }
 
+    /**
+     * Get a URI for the first page of a directory.
+     *
+     * @param directoryUri the URI of the directory
+     * @param limit        the maximum number of rows in the page
+     * @param ascending    {@code true} to sort from oldest to newest, {@code false} to sort from
+     *                     newest to oldest
+     * @return the URI for the first page
+     */
+    public static Uri buildPageUri(Uri directoryUri, int limit, boolean ascending) {
+        return directoryUri.buildUpon()
+                .appendQueryParameter(PARAM_LIMIT, String.valueOf(limit))
+                .appendQueryParameter(PARAM_ORDER, ascending ? ORDER_ASCENDING : ORDER_DESCENDING)
+                .build();
+    }
+
+    /**
+     * Get a URI for the page of a directory following the row with the specified sort key.
+     *
+     * @param directoryUri the URI of the directory
+     * @param limit        the maximum number of rows in the page
+     * @param ascending    {@code true} to sort from oldest to newest, {@code false} to sort from
+     *                     newest to oldest
+     * @param lastCreated  the creation time of the last row of the previous page
+     * @param lastId       the ID of the last row of the previous page
+     * @return the URI for the following page
+     */
+    public static Uri buildPageUri(Uri directoryUri, int limit, boolean ascending,
+                                   long lastCreated, long lastId) {
+        return buildPageUri(directoryUri, limit, ascending).buildUpon()
+                .appendQueryParameter(PARAM_AFTER_CREATED, String.valueOf(lastCreated))
+                .appendQueryParameter(PARAM_AFTER_ID, String.valueOf(lastId))
+                .build();
+    }
+
     /**
      * Contract elements specific to the accounts table.
      */
@@ -142,7 +357,7 @@ public final class JournalContract {
          * <p/>
          * This column is read-only. Attempts to manually set this column are ignored.
          * <p/>
-         * Type: String (in the format "YYYY-MM-DD HH:MM:SS")
+         * Type: long (milliseconds since the epoch)
          */
         public static final String COLUMN_CREATED = "created";
         /**
@@ -150,9 +365,25 @@ public final class JournalContract {
          * <p/>
          * This column is read-only. Attempts to manually set this column are ignored.
          * <p/>
-         * Type: String (in the format "YYYY-MM-DD HH:MM:SS")
+         * Type: long (milliseconds since the epoch)
          */
         public static final String COLUMN_MODIFIED = "modified";
+        /**
+         * Creation date and time, formatted by the provider in UTC.
+         * <p/>
+         * This column is read-only. Attempts to manually set this column are ignored.
+         * <p/>
+         * Type: String (in the format "YYYY-MM-DD HH:MM:SS")
+         */
+        public static final String COLUMN_CREATED_TEXT = "created_text";
+        /**
+         * Last modified date and time, formatted by the provider in UTC.
+         * <p/>
+         * This column is read-only. Attempts to manually set this column are ignored.
+         * <p/>
+         * Type: String (in the format "YYYY-MM-DD HH:MM:SS")
+         */
+        public static final String COLUMN_MODIFIED_TEXT = "modified_text";
 
     }
 
@@ -246,17 +477,32 @@ public final class JournalContract {
         /**
          * Set whether this journal should be deleted during the next network sync.
          * <p/>
+         * Deleted journals are kept until the sync adapter sets {@link
+         * #COLUMN_DELETE_ACKNOWLEDGED}, and are then purged by database maintenance along with
+         * their activities and contacts.
+         * <p/>
          * Cannot be {@code null}.
          * <p/>
          * Type: int; 1 = false (default), 2 = true
          */
         public static final String COLUMN_IS_DELETED = "is_deleted";
+        /**
+         * Set by the sync adapter once a deleted journal is no longer needed for a sync, either
+         * because the server has deleted it or because it was never sent to the server. Database
+         * maintenance purges deleted journals with this set.
+         * <p/>
+         * Only the sync adapter can set this column. It is cleared whenever another caller
+         * changes {@link #COLUMN_IS_DELETED}.
+         * <p/>
+         * Type: int; 0 = false (default), 1 = true
+         */
+        public static final String COLUMN_DELETE_ACKNOWLEDGED = "delete_acknowledged";
         /**
          * Creation date and time.
          * <p/>
          * This column is read-only. Attempts to manually set this column are ignored.
          * <p/>
-         * Type: String (in the format "YYYY-MM-DD HH:MM:SS")
+         * Type: long (milliseconds since the epoch)
          */
         public static final String COLUMN_CREATED = "created";
         /**
@@ -264,9 +510,53 @@ public final class JournalContract {
          * <p/>
          * This column is read-only. Attempts to manually set this column are ignored.
          * <p/>
-         * Type: String (in the format "YYYY-MM-DD HH:MM:SS")
+         * Type: long (milliseconds since the epoch)
          */
         public static final String COLUMN_MODIFIED = "modified";
+        /**
+         * Creation date and time, formatted by the provider in UTC.
+         * <p/>
+         * This column is read-only. Attempts to manually set this column are ignored.
+         * <p/>
+         * Type: String (in the format "YYYY-MM-DD HH:MM:SS")
+         */
+        public static final String COLUMN_CREATED_TEXT = "created_text";
+        /**
+         * Last modified date and time, formatted by the provider in UTC.
+         * <p/>
+         * This column is read-only. Attempts to manually set this column are ignored.
+         * <p/>
+         * Type: String (in the format "YYYY-MM-DD HH:MM:SS")
+         */
+        public static final String COLUMN_MODIFIED_TEXT = "modified_text";
+        /**
+         * Number of activities in the journal, not counting those pending deletion.
+         * <p/>
+         * This column is computed by the provider and is read-only. Attempts to manually set this
+         * column are ignored.
+         * <p/>
+         * Type: int
+         */
+        public static final String COLUMN_ACTIVITY_COUNT = "activity_count";
+        /**
+         * Number of contacts in the journal, not counting those pending deletion.
+         * <p/>
+         * This column is computed by the provider and is read-only. Attempts to manually set this
+         * column are ignored.
+         * <p/>
+         * Type: int
+         */
+        public static final String COLUMN_CONTACT_COUNT = "contact_count";
+        /**
+         * URI of the image belonging to the most recently created activity in the journal that has
+         * one, or {@code null} if no activity has an image.
+         * <p/>
+         * This column is computed by the provider and is read-only. Attempts to manually set this
+         * column are ignored.
+         * <p/>
+         * Type: String
+         */
+        public static final String COLUMN_COVER_IMAGE_URI = "cover_image_uri";
 
         /**
          * Private constructor.
@@ -292,6 +582,18 @@ public final class JournalContract {
          */
         public static final Uri CONTENT_URI =
                 Uri.withAppendedPath(AUTHORITY_URI, CONTENT_DIRECTORY);
+        /**
+         * Path, relative to {@link #CONTENT_URI}, of activities within a bounding box.
+         *
+         * @see #buildBoundsUri(double, double, double, double)
+         */
+        public static final String BOUNDS_DIRECTORY = "bounds";
+        /**
+         * Path, relative to {@link #CONTENT_URI}, of activities nearest to a point.
+         *
+         * @see #buildNearbyUri(double, double, int)
+         */
+        public static final String NEARBY_DIRECTORY = "nearby";
         /**
          * The MIME type of a directory of activities.
          */
@@ -386,15 +688,28 @@ public final class JournalContract {
          * Set whether this activity should be deleted off the server during a sync update.  {@link
          * #COLUMN_SERVER_ID} must be set for this field to have any effect.
          * <p/>
+         * Deleted activities are kept until the sync adapter sets {@link
+         * #COLUMN_DELETE_ACKNOWLEDGED}, and are then purged by database maintenance.
+         * <p/>
          * Type: int; 0 = false (default), 1 = true
          */
         public static final String COLUMN_IS_DELETED = "is_deleted";
+        /**
+         * Set by the sync adapter once a deleted activity is no longer needed for a sync, either
+         * because the server has deleted it or because it was never sent to the server.
+         * <p/>
+         * Only the sync adapter can set this column. It is cleared whenever another caller
+         * changes {@link #COLUMN_IS_DELETED}.
+         * <p/>
+         * Type: int; 0 = false (default), 1 = true
+         */
+        public static final String COLUMN_DELETE_ACKNOWLEDGED = "delete_acknowledged";
         /**
          * Creation date and time.
          * <p/>
          * This column is read-only. Attempts to manually set this column are ignored.
          * <p/>
-         * Type: String (in the format "YYYY-MM-DD HH:MM:SS")
+         * Type: long (milliseconds since the epoch)
          */
         public static final String COLUMN_CREATED = "created";
         /**
@@ -402,9 +717,52 @@ public final class JournalContract {
          * <p/>
          * This column is read-only. Attempts to manually set this column are ignored.
          * <p/>
-         * Type: String (in the format "YYYY-MM-DD HH:MM:SS")
+         * Type: long (milliseconds since the epoch)
          */
         public static final String COLUMN_MODIFIED = "modified";
+        /**
+         * Creation date and time, formatted by the provider in UTC.
+         * <p/>
+         * This column is read-only. Attempts to manually set this column are ignored.
+         * <p/>
+         * Type: String (in the format "YYYY-MM-DD HH:MM:SS")
+         */
+        public static final String COLUMN_CREATED_TEXT = "created_text";
+        /**
+         * Last modified date and time, formatted by the provider in UTC.
+         * <p/>
+         * This column is read-only. Attempts to manually set this column are ignored.
+         * <p/>
+         * Type: String (in the format "YYYY-MM-DD HH:MM:SS")
+         */
+        public static final String COLUMN_MODIFIED_TEXT = "modified_text";
+
+        // *****Query parameters.***** //
+
+        /**
+         * Query parameter holding the southern edge of a bounding box, in degrees of latitude.
+         */
+        public static final String PARAM_SOUTH = "south";
+        /**
+         * Query parameter holding the western edge of a bounding box, in degrees of longitude.
+         */
+        public static final String PARAM_WEST = "west";
+        /**
+         * Query parameter holding the northern edge of a bounding box, in degrees of latitude.
+         */
+        public static final String PARAM_NORTH = "north";
+        /**
+         * Query parameter holding the eastern edge of a bounding box, in degrees of longitude.
+         */
+        public static final String PARAM_EAST = "east";
+        /**
+         * Query parameter holding the latitude of the point a nearby query is centred on.
+         */
+        public static final String PARAM_LATITUDE = "latitude";
+        /**
+         * Query parameter holding the longitude of the point a nearby query is centred on.
+         */
+        public static final String PARAM_LONGITUDE = "longitude";
 
         /**
          * Private constructor.
@@ -426,6 +784,42 @@ public final class JournalContract {
                     Journals.CONTENT_DIRECTORY + "/" + journalId + "/" + CONTENT_DIRECTORY);
         }
 
+        /**
+         * Get a content URI for the activities located within a bounding box. A box whose west
+         * edge is east of its east edge crosses the antimeridian.
+         *
+         * @param south the southern edge of the box, in degrees of latitude
+         * @param west  the western edge of the box, in degrees of longitude
+         * @param north the northern edge of the box, in degrees of latitude
+         * @param east  the eastern edge of the box, in degrees of longitude
+         */
+        public static Uri buildBoundsUri(double south, double west, double north, double east) {
+            return CONTENT_URI.buildUpon().appendPath(BOUNDS_DIRECTORY)
+                    .appendQueryParameter(PARAM_SOUTH, String.valueOf(south))
+                    .appendQueryParameter(PARAM_WEST, String.valueOf(west))
+                    .appendQueryParameter(PARAM_NORTH, String.valueOf(north))
+                    .appendQueryParameter(PARAM_EAST, String.valueOf(east))
+                    .build();
+        }
+
+        /**
+         * Get a content URI for the activities located nearest to a point, closest first.
+         * <p/>
+         * Distances are approximated on a flat projection centred on the point, which is accurate
+         * for the short distances a nearby list is concerned with.
+         *
+         * @param latitude  the latitude of the point, in degrees
+         * @param longitude the longitude of the point, in degrees
+         * @param count     the maximum number of activities to return
+         */
+        public static Uri buildNearbyUri(double latitude, double longitude, int count) {
+            return CONTENT_URI.buildUpon().appendPath(NEARBY_DIRECTORY)
+                    .appendQueryParameter(PARAM_LATITUDE, String.valueOf(latitude))
+                    .appendQueryParameter(PARAM_LONGITUDE, String.valueOf(longitude))
+                    .appendQueryParameter(PARAM_LIMIT, String.valueOf(count))
+                    .build();
+        }
+
     }
 
     /**
@@ -542,15 +936,28 @@ public final class JournalContract {
          * Set whether this contact should be deleted off the server during a sync update.  {@link
          * #COLUMN_SERVER_ID} must be set for this field to have any effect.
          * <p/>
+         * Deleted contacts are kept until the sync adapter sets {@link
+         * #COLUMN_DELETE_ACKNOWLEDGED}, and are then purged by database maintenance.
+         * <p/>
          * Type: int; 0 = false (default), 1 = true
          */
         public static final String COLUMN_IS_DELETED = "is_deleted";
+        /**
+         * Set by the sync adapter once a deleted contact is no longer needed for a sync, either
+         * because the server has deleted it or because it was never sent to the server.
+         * <p/>
+         * Only the sync adapter can set this column. It is cleared whenever another caller
+         * changes {@link #COLUMN_IS_DELETED}.
+         * <p/>
+         * Type: int; 0 = false (default), 1 = true
+         */
+        public static final String COLUMN_DELETE_ACKNOWLEDGED = "delete_acknowledged";
         /**
          * Creation date and time.
          * <p/>
          * This column is read-only. Attempts to manually set this column are ignored.
          * <p/>
-         * Type: String (in the format "YYYY-MM-DD HH:MM:SS")
+         * Type: long (milliseconds since the epoch)
          */
         public static final String COLUMN_CREATED = "created";
         /**
@@ -558,9 +965,25 @@ public final class JournalContract {
          * <p/>
          * This column is read-only. Attempts to manually set this column are ignored.
          * <p/>
-         * Type: String (in the format "YYYY-MM-DD HH:MM:SS")
+         * Type: long (milliseconds since the epoch)
          */
         public static final String COLUMN_MODIFIED = "modified";
+        /**
+         * Creation date and time, formatted by the provider in UTC.
+         * <p/>
+         * This column is read-only. Attempts to manually set this column are ignored.
+         * <p/>
+         * Type: String (in the format "YYYY-MM-DD HH:MM:SS")
+         */
+        public static final String COLUMN_CREATED_TEXT = "created_text";
+        /**
+         * Last modified date and time, formatted by the provider in UTC.
+         * <p/>
+         * This column is read-only. Attempts to manually set this column are ignored.
+         * <p/>
+         * Type: String (in the format "YYYY-MM-DD HH:MM:SS")
+         */
+        public static final String COLUMN_MODIFIED_TEXT = "modified_text";
 
         /**
          * Private constructor
@@ -584,6 +1007,119 @@ public final class JournalContract {
 
     }
 
+    /**
+     * Contract elements specific to full-text search over local journals, activities and
+     * contacts.
+     * <p/>
+     * Search results are read-only. Results are sorted with the best match first unless the query
+     * supplies a sort order, and may be limited with {@link #PARAM_LIMIT}.
+     */
+    public static final class Search implements BaseColumns {
+
+        // *****URI definitions.***** //
+
+        /**
+         * Base path for search results.
+         */
+        public static final String CONTENT_DIRECTORY = "search";
+        /**
+         * The {@code content://} style URI for search results. Append the search terms as a path
+         * segment with {@link #buildSearchUri(String)}.
+         */
+        public static final Uri CONTENT_URI =
+                Uri.withAppendedPath(AUTHORITY_URI, CONTENT_DIRECTORY);
+
+        // *****MIME types.***** //
+
+        /**
+         * The MIME type of a directory of search results.
+         */
+        public static final String CONTENT_TYPE_DIR = ContentResolver.CURSOR_DIR_BASE_TYPE
+                + "/vnd." + AUTHORITY + ".search";
+
+        // *****Columns for accessing provider data.***** //
+
+        /**
+         * Unique ID for a search result.
+         * <p/>
+         * Type: long
+         */
+        public static final String COLUMN_ID = _ID;
+        /**
+         * The kind of record matched.
+         * <p/>
+         * Type: int; one of {@link #TYPE_JOURNAL}, {@link #TYPE_ACTIVITY} or {@link
+         * #TYPE_CONTACT}
+         */
+        public static final String COLUMN_TYPE = "type";
+        /**
+         * The provider ID of the matched record, in the table given by {@link #COLUMN_TYPE}.
+         * <p/>
+         * Type: long
+         */
+        public static final String COLUMN_ITEM_ID = "item_id";
+        /**
+         * The provider ID of the journal holding the matched record. For a matched journal this is
+         * the same as {@link #COLUMN_ITEM_ID}.
+         * <p/>
+         * Type: long
+         */
+        public static final String COLUMN_JOURNAL_ID = "journal_id";
+        /**
+         * Title of the matched record; the name for a contact.
+         * <p/>
+         * Type: String
+         */
+        public static final String COLUMN_TITLE = "title";
+        /**
+         * An excerpt of the matched text with the search terms wrapped in {@code <b>} tags.
+         * <p/>
+         * Type: String
+         */
+        public static final String COLUMN_SNIPPET = "snippet";
+        /**
+         * Relevance of the result, higher is better. Counts the occurrences of the search terms in
+         * the record.
+         * <p/>
+         * Type: int
+         */
+        public static final String COLUMN_RANK = "rank";
+
+        // *****Column values.***** //
+
+        /**
+         * Value of {@link #COLUMN_TYPE} for a journal.
+         */
+        public static final int TYPE_JOURNAL = 1;
+        /**
+         * Value of {@link #COLUMN_TYPE} for an activity.
+         */
+        public static final int TYPE_ACTIVITY = 2;
+        /**
+         * Value of {@link #COLUMN_TYPE} for a contact.
+         */
+        public static final int TYPE_CONTACT = 3;
+
+        /**
+         * Private constructor.
+         */
+        private Search() {
+        }
+
+        /**
+         * Build a URI for searching local data. Every word of the terms must appear in a record
+         * for it to match, and the last word also matches as a prefix, so results can be updated
+         * as the user types.
+         *
+         * @param terms the search terms, as entered by the user
+         * @return the URI for the search results
+         */
+        public static Uri buildSearchUri(String terms) {
+            return Uri.withAppendedPath(CONTENT_URI, Uri.encode(terms));
+        }
+
+    }
+
     /**
      * Contract elements specific to the activity images.
      */
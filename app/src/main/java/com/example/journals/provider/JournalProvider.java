@@ -20,30 +20,40 @@
  */
 package com.example.journals.provider;
 
-import android.content.ContentProviderOperation;
-import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
-import android.content.OperationApplicationException;
 import android.content.UriMatcher;
+import android.content.pm.ProviderInfo;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
 import android.provider.BaseColumns;
+import android.util.Log;
 
 import com.example.journals.provider.JournalContract.Accounts;
 import com.example.journals.provider.JournalContract.Activities;
 import com.example.journals.provider.JournalContract.Contacts;
 import com.example.journals.provider.JournalContract.Images;
 import com.example.journals.provider.JournalContract.Journals;
+import com.example.journals.provider.JournalContract.Search;
 import com.example.journals.widget.CountCursorWrapper;
+import com.example.journals.widget.SQLiteContentProvider;
 
+import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.FileProvider;
@@ -53,7 +63,7 @@ import static com.example.journals.provider.JournalContract.AUTHORITY;
 /**
  * Content provider for journals and associated data.
  */
-public class JournalProvider extends FileProvider {
+public class JournalProvider extends SQLiteContentProvider {
 
     /**
      * Set whether debug messages should be logged.
@@ -66,7 +76,7 @@ public class JournalProvider extends FileProvider {
     /**
      * The database version.
      */
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 9;
     /**
      * URI pattern matching ID.
      * <p/>
@@ -75,11 +85,54 @@ public class JournalProvider extends FileProvider {
     private static final int ACCOUNT_DIRECTORY = 1, ACCOUNT = 2, JOURNAL_DIRECTORY = 3, JOURNAL = 4,
             ACTIVITY_DIRECTORY = 5, ACTIVITY_DIRECTORY_FROM_JOURNAL = 6, ACTIVITY = 7,
             CONTACT_DIRECTORY = 8, CONTACT_DIRECTORY_FROM_JOURNAL = 9, CONTACT = 10,
-            IMAGE = 11;
+            IMAGE = 11, SEARCH = 12, ACTIVITY_BOUNDS = 13, ACTIVITY_NEARBY = 14;
     /**
      * The name of the SQLite database this provider uses as its underlying data store.
      */
     private static final String DATABASE_NAME = "Journals.db";
+    /**
+     * Size the write-ahead log may reach before SQLite checkpoints it automatically (in bytes).
+     */
+    private static final long WAL_AUTOCHECKPOINT_SIZE = 1024 * 1024;
+    /**
+     * Size the write-ahead log file is truncated to after a checkpoint (in bytes).
+     */
+    private static final long WAL_SIZE_LIMIT = 4 * 1024 * 1024;
+    /**
+     * Column paged queries are sorted on, before the row ID. Every table uses the same name.
+     */
+    private static final String PAGE_SORT_COLUMN = Journals.COLUMN_CREATED;
+    /**
+     * Largest estimated size of the results held by the query cache (in bytes).
+     */
+    private static final int QUERY_CACHE_SIZE = 512 * 1024;
+    /**
+     * Number of activities returned by a nearby query that doesn't specify a limit.
+     */
+    private static final int NEARBY_DEFAULT_COUNT = 20;
+    /**
+     * Radius of the first circle searched by a nearby query (in degrees of latitude).
+     */
+    private static final double NEARBY_INITIAL_RADIUS = 0.1;
+    /**
+     * Factor the radius of a nearby query grows by when too few activities are found.
+     */
+    private static final double NEARBY_RADIUS_GROWTH = 4;
+    /**
+     * Radius at which a nearby query covers every point on the globe (in degrees of latitude).
+     */
+    private static final double NEARBY_MAX_RADIUS = 360 + 180;
+    /**
+     * Smallest longitude scale used by a nearby query, keeping the search box finite at the
+     * poles.
+     */
+    private static final double NEARBY_MIN_SCALE = 0.01;
+    /**
+     * Columns of a search result, in the order returned for a {@code null} projection.
+     */
+    private static final String[] SEARCH_COLUMNS = new String[]{Search.COLUMN_ID,
+            Search.COLUMN_TYPE, Search.COLUMN_ITEM_ID, Search.COLUMN_JOURNAL_ID,
+            Search.COLUMN_TITLE, Search.COLUMN_SNIPPET, Search.COLUMN_RANK};
     /**
      * A URI matcher for content offered by this provider.
      */
@@ -95,6 +148,10 @@ public class JournalProvider extends FileProvider {
                 Journals.CONTENT_DIRECTORY + "/#/" + Activities.CONTENT_DIRECTORY,
                 ACTIVITY_DIRECTORY_FROM_JOURNAL);
         sUriMatcher.addURI(AUTHORITY, Activities.CONTENT_DIRECTORY + "/#", ACTIVITY);
+        sUriMatcher.addURI(AUTHORITY,
+                Activities.CONTENT_DIRECTORY + "/" + Activities.BOUNDS_DIRECTORY, ACTIVITY_BOUNDS);
+        sUriMatcher.addURI(AUTHORITY,
+                Activities.CONTENT_DIRECTORY + "/" + Activities.NEARBY_DIRECTORY, ACTIVITY_NEARBY);
         sUriMatcher.addURI(AUTHORITY,
                 Journals.CONTENT_DIRECTORY + "/#/" + Activities.CONTENT_DIRECTORY + "/#", ACTIVITY);
         sUriMatcher.addURI(AUTHORITY, Contacts.CONTENT_DIRECTORY, CONTACT_DIRECTORY);
@@ -105,119 +162,97 @@ public class JournalProvider extends FileProvider {
         sUriMatcher.addURI(AUTHORITY,
                 Journals.CONTENT_DIRECTORY + "/#/" + Contacts.CONTENT_DIRECTORY + "/#", CONTACT);
         sUriMatcher.addURI(AUTHORITY, Images.CONTENT_DIRECTORY + "/*", IMAGE);
+        sUriMatcher.addURI(AUTHORITY, Search.CONTENT_DIRECTORY + "/*", SEARCH);
     }
 
     /**
-     * A helper class to manage database creation and version management.
+     * Provider serving the image files under {@link Images#CONTENT_URI}.
+     */
+    private final FileProvider mFileProvider = new FileProvider();
+    /**
+     * Background task deleting images that are no longer referenced.
+     */
+    private MediaSweeper mMediaSweeper;
+    /**
+     * Background task purging deleted rows and compacting the database.
+     */
+    private DatabaseMaintenance mMaintenance;
+    /**
+     * Cache of small query results.
      */
-    private DatabaseHelper mDatabaseHelper;
+    private final QueryCache mQueryCache = new QueryCache(QUERY_CACHE_SIZE);
 
     @Override
-    @NonNull
-    public ContentProviderResult[] applyBatch(
-            @NonNull ArrayList<ContentProviderOperation> operations)
-            throws OperationApplicationException {
-        final SQLiteDatabase database = mDatabaseHelper.getWritableDatabase();
-        database.beginTransaction();
-        try {
-            final ContentProviderResult[] results = super.applyBatch(operations);
-            database.setTransactionSuccessful();
-            return results;
-        } finally {
-            database.endTransaction();
+    public void attachInfo(@NonNull Context context, @NonNull ProviderInfo info) {
+        super.attachInfo(context, info);
+        // Share this provider's authority and file paths with the file provider.
+        mFileProvider.attachInfo(context, info);
+    }
+
+    @Override
+    public Bundle call(@NonNull String method, String arg, Bundle extras) {
+        if (JournalContract.METHOD_CHECKPOINT.equals(method)) {
+            return checkpoint();
+        } else if (JournalContract.METHOD_MAINTAIN.equals(method)) {
+            return mMaintenance.maintainNow();
+        } else if (JournalContract.METHOD_GET_JOURNAL_SNAPSHOT.equals(method)) {
+            return getJournalSnapshot(arg);
+        } else if (JournalContract.METHOD_CACHE_STATS.equals(method)) {
+            final Bundle result = new Bundle();
+            result.putInt(JournalContract.KEY_CACHE_HITS, mQueryCache.hitCount());
+            result.putInt(JournalContract.KEY_CACHE_MISSES, mQueryCache.missCount());
+            result.putInt(JournalContract.KEY_CACHE_SIZE, mQueryCache.size());
+            return result;
+        } else {
+            return super.call(method, arg, extras);
         }
     }
 
     @Override
     public int delete(@NonNull Uri uri, String selection, String[] selectionArgs) {
-        // The incoming URI is for an image.
         final int uriMatch = sUriMatcher.match(uri);
+        // The incoming URI is for an image.
         if (uriMatch == IMAGE) {
             // Use file provider to delete a file.
-            return super.delete(uri, selection, selectionArgs);
+            return mFileProvider.delete(uri, selection, selectionArgs);
         } else {
-            final String table;
-            // Set up the "where" clause.
-            final StringBuilder where = new StringBuilder();
-            if (selection != null) {
-                where.append(selection);
-            }
-            switch (uriMatch) {
-                case ACCOUNT_DIRECTORY:
-                    table = DatabaseHelper.AccountsTable.TABLE_NAME;
-                    break;
-                case ACCOUNT:
-                    table = DatabaseHelper.AccountsTable.TABLE_NAME;
-                    // Append item ID to the "where" clause.
-                    if (selection != null) {
-                        where.append(" AND ");
-                    }
-                    where.append(Accounts.COLUMN_ID).append("=").append(uri.getLastPathSegment());
-                    break;
-                case JOURNAL_DIRECTORY:
-                    table = DatabaseHelper.JournalsTable.TABLE_NAME;
-                    break;
-                case JOURNAL:
-                    table = DatabaseHelper.JournalsTable.TABLE_NAME;
-                    // Append item ID to the "where" clause.
-                    if (selection != null) {
-                        where.append(" AND ");
-                    }
-                    where.append(Journals.COLUMN_ID).append("=").append(uri.getLastPathSegment());
-                    break;
-                case ACTIVITY_DIRECTORY:
-                case ACTIVITY_DIRECTORY_FROM_JOURNAL:
-                    table = DatabaseHelper.ActivitiesTable.TABLE_NAME;
-                    // Append journal ID to the "where" clause.
-                    if (uriMatch == ACTIVITY_DIRECTORY_FROM_JOURNAL) {
-                        if (selection != null) {
-                            where.append(" AND ");
-                        }
-                        where.append(Activities.COLUMN_JOURNAL_ID).append("=")
-                                .append(uri.getPathSegments().get(1));
-                    }
-                    break;
-                case ACTIVITY:
-                    table = DatabaseHelper.ActivitiesTable.TABLE_NAME;
-                    // Append item ID to the "where" clause.
-                    if (selection != null) {
-                        where.append(" AND ");
-                    }
-                    where.append(Activities.COLUMN_ID).append("=").append(uri.getLastPathSegment());
-                    break;
-                case CONTACT_DIRECTORY:
-                case CONTACT_DIRECTORY_FROM_JOURNAL:
-                    table = DatabaseHelper.ContactsTable.TABLE_NAME;
-                    // Append journal ID to the "where" clause.
-                    if (uriMatch == CONTACT_DIRECTORY_FROM_JOURNAL) {
-                        if (selection != null) {
-                            where.append(" AND ");
-                        }
-                        where.append(Contacts.COLUMN_JOURNAL_ID).append("=")
-                                .append(uri.getPathSegments().get(1));
-                    }
-                    break;
-                case CONTACT:
-                    table = DatabaseHelper.ContactsTable.TABLE_NAME;
-                    // Append item ID to the "where" clause.
-                    if (selection != null) {
-                        where.append(" AND ");
-                    }
-                    where.append(Contacts.COLUMN_ID).append("=").append(uri.getLastPathSegment());
-                    break;
-                default:
-                    throw new IllegalArgumentException("Unknown URI: " + uri);
+            final int rowsDeleted = super.delete(uri, selection, selectionArgs);
+            // Clean up the images of deleted journals and activities in the background.
+            if (rowsDeleted > 0) {
+                switch (uriMatch) {
+                    case JOURNAL_DIRECTORY:
+                    case JOURNAL:
+                    case ACTIVITY_DIRECTORY:
+                    case ACTIVITY_DIRECTORY_FROM_JOURNAL:
+                    case ACTIVITY:
+                        mMediaSweeper.schedule();
+                        break;
+                }
             }
-            // Delete all images associated with entries to be deleted.
-            deleteFilesInternal(uri, selection, selectionArgs);
-            // Open the database in "write" mode and delete data.
-            final SQLiteDatabase database = mDatabaseHelper.getWritableDatabase();
-            final int rowsDeleted = database.delete(table, where.toString(), selectionArgs);
-            getContext().getContentResolver().notifyChange(uri, null);
             return rowsDeleted;
         }
     }
 
+    @Override
+    protected int deleteInTransaction(@NonNull Uri uri, String selection,
+                                      String[] selectionArgs, boolean callerIsSyncAdapter) {
+        final int uriMatch = sUriMatcher.match(uri);
+        checkWritable(uriMatch, uri);
+        final SqlArguments args = new SqlArguments(uriMatch, uri, selection, selectionArgs);
+        // Open the database in "write" mode and delete data.
+        final SQLiteDatabase database = getDatabaseHelper().getWritableDatabase();
+        final int rowsDeleted = database.delete(args.table, args.where, args.args);
+        if (rowsDeleted > 0) {
+            postNotifyChange(uri);
+        }
+        return rowsDeleted;
+    }
+
+    @Override
+    protected SQLiteOpenHelper getDatabaseHelper(Context context) {
+        return new DatabaseHelper(context);
+    }
+
     @Override
     public String getType(@NonNull Uri uri) {
         switch (sUriMatcher.match(uri)) {
@@ -231,6 +266,8 @@ public class JournalProvider extends FileProvider {
                 return Journals.CONTENT_TYPE_ITEM;
             case ACTIVITY_DIRECTORY:
             case ACTIVITY_DIRECTORY_FROM_JOURNAL:
+            case ACTIVITY_BOUNDS:
+            case ACTIVITY_NEARBY:
                 return Activities.CONTENT_TYPE_DIR;
             case ACTIVITY:
                 return Activities.CONTENT_TYPE_ITEM;
@@ -240,18 +277,22 @@ public class JournalProvider extends FileProvider {
             case CONTACT:
                 return JournalContract.Contacts.CONTENT_TYPE_ITEM;
             case IMAGE:
-                return super.getType(uri);
+                return mFileProvider.getType(uri);
+            case SEARCH:
+                return Search.CONTENT_TYPE_DIR;
             default:
                 return null;
         }
     }
 
     @Override
-    public Uri insert(@NonNull Uri uri, ContentValues values) {
+    protected Uri insertInTransaction(@NonNull Uri uri, ContentValues values,
+                                      boolean callerIsSyncAdapter) {
         // Create a copy of content values, as they may be modified.
         final ContentValues copiedValues = new ContentValues(values);
         final String table;
         final int uriMatch = sUriMatcher.match(uri);
+        checkWritable(uriMatch, uri);
         switch (uriMatch) {
             case ACCOUNT_DIRECTORY:
                 table = DatabaseHelper.AccountsTable.TABLE_NAME;
@@ -266,6 +307,9 @@ public class JournalProvider extends FileProvider {
                 for (String s : DatabaseHelper.JournalsTable.READ_ONLY_COLUMNS) {
                     copiedValues.remove(s);
                 }
+                if (!callerIsSyncAdapter) {
+                    copiedValues.remove(Journals.COLUMN_DELETE_ACKNOWLEDGED);
+                }
                 break;
             case ACTIVITY_DIRECTORY:
             case ACTIVITY_DIRECTORY_FROM_JOURNAL:
@@ -274,6 +318,9 @@ public class JournalProvider extends FileProvider {
                 for (String s : DatabaseHelper.ActivitiesTable.READ_ONLY_COLUMNS) {
                     copiedValues.remove(s);
                 }
+                if (!callerIsSyncAdapter) {
+                    copiedValues.remove(Activities.COLUMN_DELETE_ACKNOWLEDGED);
+                }
                 // Add the journal ID from the URI.
                 if (uriMatch == ACTIVITY_DIRECTORY_FROM_JOURNAL) {
                     final long journalId = Long.valueOf(uri.getPathSegments().get(1));
@@ -287,6 +334,9 @@ public class JournalProvider extends FileProvider {
                 for (String s : DatabaseHelper.ContactsTable.READ_ONLY_COLUMNS) {
                     copiedValues.remove(s);
                 }
+                if (!callerIsSyncAdapter) {
+                    copiedValues.remove(Contacts.COLUMN_DELETE_ACKNOWLEDGED);
+                }
                 // Add the journal ID from the URI.
                 if (uriMatch == CONTACT_DIRECTORY_FROM_JOURNAL) {
                     final long journalId = Long.valueOf(uri.getPathSegments().get(1));
@@ -297,11 +347,11 @@ public class JournalProvider extends FileProvider {
                 throw new IllegalArgumentException("Unknown URI: " + uri);
         }
         // Open the database in "write" mode and insert data.
-        final SQLiteDatabase database = mDatabaseHelper.getWritableDatabase();
+        final SQLiteDatabase database = getDatabaseHelper().getWritableDatabase();
         final long rowId = database.insert(table, null, copiedValues);
         // The insert was successful.
         if (rowId > 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            postNotifyChange(uri);
             return ContentUris.withAppendedId(uri, rowId);
         }
         // The insert was not successful.
@@ -310,70 +360,125 @@ public class JournalProvider extends FileProvider {
         }
     }
 
+    @Override
+    protected boolean isCallerSyncAdapter(@NonNull Uri uri) {
+        return uri.getBooleanQueryParameter(JournalContract.CALLER_IS_SYNC_ADAPTER, false);
+    }
+
+    @Override
+    protected void notifyChange(@NonNull Uri uri, boolean syncToNetwork) {
+        // Drop the cached results that could include the changed rows before observers requery.
+        // Journal results include counts of their activities and contacts, and deleting a
+        // journal deletes its activities and contacts.
+        final int uriMatch = sUriMatcher.match(uri);
+        final String[] tables;
+        switch (uriMatch) {
+            case UriMatcher.NO_MATCH:
+                // A change to the whole authority, made by database maintenance.
+                tables = JournalContract.AUTHORITY_URI.equals(uri) ? new String[]{
+                        DatabaseHelper.AccountsTable.TABLE_NAME,
+                        DatabaseHelper.JournalsTable.TABLE_NAME,
+                        DatabaseHelper.ActivitiesTable.TABLE_NAME,
+                        DatabaseHelper.ContactsTable.TABLE_NAME} : null;
+                break;
+            case ACCOUNT_DIRECTORY:
+            case ACCOUNT:
+                tables = new String[]{DatabaseHelper.AccountsTable.TABLE_NAME};
+                break;
+            case JOURNAL_DIRECTORY:
+            case JOURNAL:
+                tables = new String[]{DatabaseHelper.JournalsTable.TABLE_NAME,
+                        DatabaseHelper.ActivitiesTable.TABLE_NAME,
+                        DatabaseHelper.ContactsTable.TABLE_NAME};
+                break;
+            case ACTIVITY_DIRECTORY:
+            case ACTIVITY_DIRECTORY_FROM_JOURNAL:
+            case ACTIVITY:
+                tables = new String[]{DatabaseHelper.ActivitiesTable.TABLE_NAME,
+                        DatabaseHelper.JournalsTable.TABLE_NAME};
+                break;
+            case CONTACT_DIRECTORY:
+            case CONTACT_DIRECTORY_FROM_JOURNAL:
+            case CONTACT:
+                tables = new String[]{DatabaseHelper.ContactsTable.TABLE_NAME,
+                        DatabaseHelper.JournalsTable.TABLE_NAME};
+                break;
+            default:
+                tables = null;
+        }
+        if (tables != null) {
+            mQueryCache.invalidate(tables, getJournalId(uriMatch, uri));
+        }
+        super.notifyChange(uri, syncToNetwork);
+    }
+
     @Override
     public boolean onCreate() {
-        mDatabaseHelper = new DatabaseHelper(getContext());
+        super.onCreate();
+        mMediaSweeper = new MediaSweeper(getContext(), getDatabaseHelper());
+        // Pick up any images left behind by earlier runs.
+        mMediaSweeper.schedule();
+        mMaintenance = new DatabaseMaintenance(getContext(), getDatabaseHelper(), new Runnable() {
+            @Override
+            public void run() {
+                // Purged rows may be from any table, and activities may have held images.
+                notifyChange(JournalContract.AUTHORITY_URI, false);
+                mMediaSweeper.schedule();
+            }
+        });
+        mMaintenance.schedule();
         return true;
     }
 
+    @Override
+    public ParcelFileDescriptor openFile(@NonNull Uri uri, @NonNull String mode)
+            throws FileNotFoundException {
+        if (sUriMatcher.match(uri) == IMAGE) {
+            return mFileProvider.openFile(uri, mode);
+        } else {
+            return super.openFile(uri, mode);
+        }
+    }
+
     @Override
     public Cursor query(@NonNull Uri uri, String[] projection, String selection,
                         String[] selectionArgs, String sortOrder) {
         // Incoming URI is for a file.
         final int uriMatch = sUriMatcher.match(uri);
         if (uriMatch == IMAGE) {
-            return super.query(uri, projection, selection, selectionArgs, sortOrder);
+            return mFileProvider.query(uri, projection, selection, selectionArgs, sortOrder);
+        } else if (uriMatch == SEARCH) {
+            return search(uri, projection, selection, selectionArgs, sortOrder);
+        } else if (uriMatch == ACTIVITY_NEARBY) {
+            return nearby(uri, projection, selection, selectionArgs);
         } else {
-            // Construct a new query builder.
-            final SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
-            // Adjust query based on URI pattern matching.
-            switch (uriMatch) {
-                case ACCOUNT_DIRECTORY:
-                    builder.setTables(DatabaseHelper.AccountsTable.TABLE_NAME);
-                    break;
-                case ACCOUNT:
-                    builder.setTables(DatabaseHelper.AccountsTable.TABLE_NAME);
-                    builder.appendWhere(Accounts.COLUMN_ID + "=" + uri.getLastPathSegment());
-                    break;
-                case JOURNAL_DIRECTORY:
-                    builder.setTables(DatabaseHelper.JournalsTable.TABLE_NAME);
-                    break;
-                case JOURNAL:
-                    builder.setTables(DatabaseHelper.JournalsTable.TABLE_NAME);
-                    builder.appendWhere(Journals.COLUMN_ID + "=" + uri.getLastPathSegment());
-                    break;
-                case ACTIVITY_DIRECTORY:
-                    builder.setTables(DatabaseHelper.ActivitiesTable.TABLE_NAME);
-                    break;
-                case ACTIVITY_DIRECTORY_FROM_JOURNAL:
-                    builder.setTables(DatabaseHelper.ActivitiesTable.TABLE_NAME);
-                    builder.appendWhere(
-                            Activities.COLUMN_JOURNAL_ID + "=" + uri.getPathSegments().get(1));
-                    break;
-                case ACTIVITY:
-                    builder.setTables(DatabaseHelper.ActivitiesTable.TABLE_NAME);
-                    builder.appendWhere(Activities.COLUMN_ID + "=" + uri.getLastPathSegment());
-                    break;
-                case CONTACT_DIRECTORY:
-                    builder.setTables(DatabaseHelper.ContactsTable.TABLE_NAME);
-                    break;
-                case CONTACT_DIRECTORY_FROM_JOURNAL:
-                    builder.setTables(DatabaseHelper.ContactsTable.TABLE_NAME);
-                    builder.appendWhere(
-                            Contacts.COLUMN_JOURNAL_ID + "=" + uri.getPathSegments().get(1));
-                    break;
-                case CONTACT:
-                    builder.setTables(DatabaseHelper.ContactsTable.TABLE_NAME);
-                    builder.appendWhere(Contacts.COLUMN_ID + "=" + uri.getLastPathSegment());
-                    break;
-                default:
-                    // URI doesn't match any of the known patterns.
-                    throw new IllegalArgumentException("Unknown URI: " + uri);
+            final SqlArguments args = new SqlArguments(uriMatch, uri, selection, selectionArgs);
+            // Changes to activities are never posted to the bounding box URI, so watch the
+            // activity directory instead.
+            final Uri notificationUri =
+                    uriMatch == ACTIVITY_BOUNDS ? Activities.CONTENT_URI : uri;
+            // Open the database in "read" mode (no writes need to be done).
+            final SQLiteDatabase database = getDatabaseHelper().getReadableDatabase();
+            // Answer repeated queries from the cache, unless the caller opted out. Rows read
+            // inside an open transaction may yet be rolled back, so they are never cached.
+            String cacheKey = null;
+            long generation = 0;
+            if (!uri.getBooleanQueryParameter(JournalContract.PARAM_BYPASS_CACHE, false)
+                    && !database.inTransaction()) {
+                cacheKey = QueryCache.createKey(uri, projection, selection, selectionArgs,
+                        sortOrder);
+                generation = mQueryCache.getGeneration();
+                final Cursor cachedCursor = mQueryCache.get(cacheKey);
+                if (cachedCursor != null) {
+                    cachedCursor.setNotificationUri(getContext().getContentResolver(),
+                            notificationUri);
+                    return cachedCursor;
+                }
             }
             // Handle possible inclusion of BaseColumns._COUNT column in query.
             String[] countProjection = projection;
             int countIndex = -1;
-            for (int i = 0; i < projection.length; i++) {
+            for (int i = 0; projection != null && i < projection.length; i++) {
                 if (BaseColumns._COUNT.equals(projection[i])) {
                     final List<String> list = new ArrayList<>(projection.length);
                     list.addAll(Arrays.asList(projection));
@@ -383,212 +488,788 @@ public class JournalProvider extends FileProvider {
                     break;
                 }
             }
-            // Open the database in "read" mode (no writes need to be done).
-            final SQLiteDatabase database = mDatabaseHelper.getReadableDatabase();
-            final Cursor queryCursor =
-                    builder.query(database, countProjection, selection, selectionArgs, null, null,
-                            sortOrder);
+            // Restrict the query to a single page, if requested.
+            String where = args.where;
+            String[] whereArgs = args.args;
+            String orderBy = sortOrder;
+            final String limit = uri.getQueryParameter(JournalContract.PARAM_LIMIT);
+            final String afterCreated =
+                    uri.getQueryParameter(JournalContract.PARAM_AFTER_CREATED);
+            final String afterId = uri.getQueryParameter(JournalContract.PARAM_AFTER_ID);
+            if ((afterId == null) != (afterCreated == null)) {
+                throw new IllegalArgumentException(JournalContract.PARAM_AFTER_ID + " and "
+                        + JournalContract.PARAM_AFTER_CREATED + " must be used together");
+            }
+            if (limit != null || afterId != null) {
+                if (limit != null && Integer.parseInt(limit) < 0) {
+                    throw new IllegalArgumentException("Invalid limit: " + limit);
+                }
+                final boolean ascending = JournalContract.ORDER_ASCENDING
+                        .equals(uri.getQueryParameter(JournalContract.PARAM_ORDER));
+                final String direction = ascending ? " ASC" : " DESC";
+                orderBy = PAGE_SORT_COLUMN + direction + ", " + BaseColumns._ID + direction;
+                // Seek past the last row of the previous page rather than skipping rows with an
+                // offset. The first term bounds the range scanned on the sort key index.
+                if (afterId != null) {
+                    final String operator = ascending ? ">" : "<";
+                    where = DatabaseUtils.concatenateWhere(where,
+                            PAGE_SORT_COLUMN + operator + "=? AND (" + PAGE_SORT_COLUMN + operator
+                                    + "? OR " + BaseColumns._ID + operator + "?)");
+                    whereArgs = DatabaseUtils.appendSelectionArgs(whereArgs,
+                            new String[]{afterCreated, afterCreated, afterId});
+                }
+            }
+            // Resolve computed columns through the projection map of the table.
+            final SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+            builder.setTables(args.table);
+            builder.setProjectionMap(args.projectionMap);
+            final Cursor queryCursor = builder.query(database, countProjection, where, whereArgs,
+                    null, null, orderBy, limit);
             // Handle possible inclusion of BaseColumns._COUNT column in query.
             Cursor cursor = queryCursor;
             if (countIndex != -1) {
                 cursor = new CountCursorWrapper(queryCursor, countIndex);
             }
+            // Keep a copy of small results for repeated queries.
+            if (cacheKey != null) {
+                mQueryCache.put(cacheKey, args.table, getJournalId(uriMatch, uri), cursor,
+                        generation);
+            }
             // Register cursor to listen for content changes.
-            cursor.setNotificationUri(getContext().getContentResolver(), uri);
+            cursor.setNotificationUri(getContext().getContentResolver(), notificationUri);
             return cursor;
         }
     }
 
     @Override
-    public int update(@NonNull Uri uri, ContentValues values, String selection,
-                      String[] selectionArgs) {
+    protected boolean shouldSyncFor(@NonNull Uri uri) {
+        // Accounts are maintained locally by the account manager.
+        final int uriMatch = sUriMatcher.match(uri);
+        return uriMatch != ACCOUNT_DIRECTORY && uriMatch != ACCOUNT;
+    }
+
+    @Override
+    protected int updateInTransaction(@NonNull Uri uri, ContentValues values, String selection,
+                                      String[] selectionArgs, boolean callerIsSyncAdapter) {
+        final int uriMatch = sUriMatcher.match(uri);
+        checkWritable(uriMatch, uri);
+        final SqlArguments args = new SqlArguments(uriMatch, uri, selection, selectionArgs);
         // Create a copy of content values, as they may be modified.
         final ContentValues copiedValues = new ContentValues(values);
-        final String table;
-        // Set up the "where" clause.
-        final StringBuilder where = new StringBuilder();
-        if (selection != null) {
-            where.append(selection);
+        // Prevent read-only columns from being modified, if present.
+        for (String s : args.readOnlyColumns) {
+            copiedValues.remove(s);
         }
-        final int uriMatch = sUriMatcher.match(uri);
-        switch (uriMatch) {
-            case ACCOUNT_DIRECTORY:
-                table = DatabaseHelper.AccountsTable.TABLE_NAME;
-                // Prevent read-only columns from being modified, if present.
-                for (String s : DatabaseHelper.AccountsTable.READ_ONLY_COLUMNS) {
-                    copiedValues.remove(s);
-                }
-                break;
-            case ACCOUNT:
-                table = DatabaseHelper.AccountsTable.TABLE_NAME;
-                // Append item ID to the "where" clause.
-                if (selection != null) {
-                    where.append(" AND ");
-                }
-                where.append(Accounts.COLUMN_ID).append("=").append(uri.getLastPathSegment());
-                // Prevent read-only columns from being modified, if present.
-                for (String s : DatabaseHelper.JournalsTable.READ_ONLY_COLUMNS) {
-                    copiedValues.remove(s);
-                }
-                break;
-            case JOURNAL_DIRECTORY:
-                table = DatabaseHelper.JournalsTable.TABLE_NAME;
-                // Prevent read-only columns from being modified, if present.
-                for (String s : DatabaseHelper.JournalsTable.READ_ONLY_COLUMNS) {
-                    copiedValues.remove(s);
+        // Only the sync adapter acknowledges deletions, and a deletion changed by anyone else
+        // needs to be acknowledged again. Every table uses the same column names.
+        if (!callerIsSyncAdapter && !DatabaseHelper.AccountsTable.TABLE_NAME.equals(args.table)) {
+            if (copiedValues.containsKey(Journals.COLUMN_IS_DELETED)) {
+                copiedValues.put(Journals.COLUMN_DELETE_ACKNOWLEDGED, 0);
+            } else {
+                copiedValues.remove(Journals.COLUMN_DELETE_ACKNOWLEDGED);
+            }
+        }
+        // Stamp the modified date as part of the same write. Every table uses the same name.
+        copiedValues.put(Journals.COLUMN_MODIFIED, System.currentTimeMillis());
+        // Open the database in "write" mode and update data.
+        final SQLiteDatabase database = getDatabaseHelper().getWritableDatabase();
+        final int rowsUpdated = database.update(args.table, copiedValues, args.where, args.args);
+        if (rowsUpdated > 0) {
+            postNotifyChange(uri);
+            // Rows moved out of the journal named by the URI change another journal as well.
+            if (copiedValues.containsKey(Activities.COLUMN_JOURNAL_ID)
+                    && getJournalId(uriMatch, uri) != QueryCache.ANY_JOURNAL) {
+                postNotifyChange(DatabaseHelper.ContactsTable.TABLE_NAME.equals(args.table)
+                        ? Contacts.CONTENT_URI : Activities.CONTENT_URI);
+            }
+        }
+        return rowsUpdated;
+    }
+
+    /**
+     * Copy the contents of the write-ahead log back into the database file.
+     * <p/>
+     * Runs a passive checkpoint, which waits for neither readers nor writers. It copies the frames
+     * that no reader still needs, so fewer frames than are in the log may be checkpointed while
+     * the database is in use.
+     *
+     * @return a bundle holding the number of frames in the log and the number checkpointed
+     * @see JournalContract#METHOD_CHECKPOINT
+     */
+    private Bundle checkpoint() {
+        final SQLiteDatabase database = getDatabaseHelper().getWritableDatabase();
+        final Bundle result = new Bundle(2);
+        final Cursor cursor = database.rawQuery("PRAGMA wal_checkpoint(PASSIVE)", null);
+        try {
+            if (cursor.moveToFirst()) {
+                result.putInt(JournalContract.KEY_WAL_FRAMES, cursor.getInt(1));
+                result.putInt(JournalContract.KEY_CHECKPOINTED_FRAMES, cursor.getInt(2));
+            }
+        } finally {
+            cursor.close();
+        }
+        if (DEBUG) {
+            Log.i(DEBUG_TAG, "Checkpoint complete: " + result);
+        }
+        return result;
+    }
+
+    /**
+     * Read a journal along with its activities and contacts.
+     * <p/>
+     * Android offers no deferred or read-only transaction before API 35, so the rows are read
+     * within an immediate one, which takes the database's write lock. Other readers carry on from
+     * the write-ahead log, but writers wait until all three reads have finished. The reads are
+     * short, as each is limited to a single journal and to {@link
+     * JournalContract#SNAPSHOT_ENTRY_LIMIT} rows.
+     *
+     * @param journalId the row ID of the journal
+     * @return a bundle holding the journal, activity and contact rows, or {@code null} if the
+     * journal doesn't exist or is pending deletion
+     * @throws IllegalArgumentException if the row ID is missing or not a number
+     * @see JournalContract#METHOD_GET_JOURNAL_SNAPSHOT
+     */
+    private Bundle getJournalSnapshot(String journalId) {
+        final long id;
+        try {
+            id = Long.parseLong(journalId);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid journal ID: " + journalId);
+        }
+        final String[] selectionArgs = new String[]{String.valueOf(id)};
+        final String limit = String.valueOf(JournalContract.SNAPSHOT_ENTRY_LIMIT);
+        final SQLiteDatabase database = getDatabaseHelper().getReadableDatabase();
+        database.beginTransactionNonExclusive();
+        try {
+            final ArrayList<ContentValues> journals = readRows(database,
+                    DatabaseHelper.JournalsTable.TABLE_NAME,
+                    DatabaseHelper.JournalsTable.PROJECTION_MAP, Journals.COLUMN_ID + " = ? AND "
+                            + Journals.COLUMN_IS_DELETED + " = 1", selectionArgs, null, null);
+            if (journals.isEmpty()) {
+                return null;
+            }
+            final Bundle result = new Bundle(3);
+            result.putParcelable(JournalContract.KEY_JOURNAL, journals.get(0));
+            result.putParcelableArrayList(JournalContract.KEY_ACTIVITIES, readRows(database,
+                    DatabaseHelper.ActivitiesTable.TABLE_NAME,
+                    DatabaseHelper.ActivitiesTable.PROJECTION_MAP,
+                    Activities.COLUMN_JOURNAL_ID + " = ? AND " + Activities.COLUMN_IS_DELETED
+                            + " = 0", selectionArgs, Activities.COLUMN_CREATED + " DESC", limit));
+            result.putParcelableArrayList(JournalContract.KEY_CONTACTS, readRows(database,
+                    DatabaseHelper.ContactsTable.TABLE_NAME,
+                    DatabaseHelper.ContactsTable.PROJECTION_MAP,
+                    Contacts.COLUMN_JOURNAL_ID + " = ? AND " + Contacts.COLUMN_IS_DELETED
+                            + " = 0", selectionArgs, Contacts.COLUMN_CREATED + " ASC", limit));
+            return result;
+        } finally {
+            // Nothing was written, so the transaction is simply ended.
+            database.endTransaction();
+        }
+    }
+
+    /**
+     * Find the activities nearest to the point given by a nearby URI, closest first.
+     * <p/>
+     * The framework's SQLite has no R-tree module, so candidates are read from the location index
+     * within a circle around the point. The circle starts small and grows until it holds the
+     * requested number of activities or covers the whole globe. Because every activity outside
+     * the circle is farther away than those inside it, the closest activities are always found.
+     * Longitude differences are measured the short way around, and a box crossing the
+     * antimeridian is split into two longitude ranges, so activities just across it are found
+     * too.
+     *
+     * @param uri           a nearby URI, built with {@link Activities#buildNearbyUri(double,
+     *                      double, int)}
+     * @param projection    the columns to return, or {@code null} for all columns
+     * @param selection     an optional restriction on the activities
+     * @param selectionArgs arguments for the selection
+     * @return a cursor over the nearest activities
+     */
+    private Cursor nearby(Uri uri, String[] projection, String selection,
+                          String[] selectionArgs) {
+        final double latitude = getDoubleParameter(uri, Activities.PARAM_LATITUDE);
+        final double longitude = getDoubleParameter(uri, Activities.PARAM_LONGITUDE);
+        final String limit = uri.getQueryParameter(JournalContract.PARAM_LIMIT);
+        final int count = limit != null ? Integer.parseInt(limit) : NEARBY_DEFAULT_COUNT;
+        if (count < 0) {
+            throw new IllegalArgumentException("Invalid limit: " + limit);
+        }
+        // Scale longitude differences so a degree east covers the same ground as a degree north.
+        final double scale = Math.max(Math.cos(Math.toRadians(latitude)), NEARBY_MIN_SCALE);
+        final String scaleSquared = String.valueOf(scale * scale);
+        final String lat = String.valueOf(latitude);
+        final String lng = String.valueOf(longitude);
+        final String longitudeDifference = "MIN(ABS(" + Activities.COLUMN_LONGITUDE
+                + "-?),360-ABS(" + Activities.COLUMN_LONGITUDE + "-?))";
+        final String distance = "(" + Activities.COLUMN_LATITUDE + "-?)*("
+                + Activities.COLUMN_LATITUDE + "-?)+" + longitudeDifference + "*"
+                + longitudeDifference + "*?";
+        final String[] distanceArgs = new String[]{lat, lat, lng, lng, lng, lng, scaleSquared};
+        final SQLiteDatabase database = getDatabaseHelper().getReadableDatabase();
+        final SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+        builder.setTables(DatabaseHelper.ActivitiesTable.TABLE_NAME);
+        builder.setProjectionMap(DatabaseHelper.ActivitiesTable.PROJECTION_MAP);
+        Cursor cursor;
+        for (double radius = NEARBY_INITIAL_RADIUS; ; radius *= NEARBY_RADIUS_GROWTH) {
+            final String where;
+            final String[] whereArgs;
+            if (radius < NEARBY_MAX_RADIUS) {
+                // Bound the circle by a box, which can be read as a range of the location index.
+                // The squared radius is cast, as a bound string would compare greater than any
+                // number.
+                final double span = radius / scale;
+                final double west = longitude - span;
+                final double east = longitude + span;
+                final String boxWhere;
+                final String[] boxArgs;
+                if (span >= 180) {
+                    // The box covers every longitude.
+                    boxWhere = Activities.COLUMN_LATITUDE + " BETWEEN ? AND ?";
+                    boxArgs = new String[]{String.valueOf(latitude - radius),
+                            String.valueOf(latitude + radius)};
+                } else if (west < -180 || east > 180) {
+                    // Split a box crossing the antimeridian into two longitude ranges.
+                    boxWhere = SqlArguments.BOUNDS_SELECTION_ANTIMERIDIAN;
+                    boxArgs = new String[]{String.valueOf(latitude - radius),
+                            String.valueOf(latitude + radius),
+                            String.valueOf(west < -180 ? west + 360 : west),
+                            String.valueOf(east > 180 ? east - 360 : east)};
+                } else {
+                    boxWhere = SqlArguments.BOUNDS_SELECTION;
+                    boxArgs = new String[]{String.valueOf(latitude - radius),
+                            String.valueOf(latitude + radius), String.valueOf(west),
+                            String.valueOf(east)};
                 }
+                where = DatabaseUtils.concatenateWhere(
+                        boxWhere + " AND " + distance + "<=CAST(? AS REAL)", selection);
+                whereArgs = DatabaseUtils.appendSelectionArgs(DatabaseUtils.appendSelectionArgs(
+                        boxArgs, new String[]{lat, lat, lng, lng, lng, lng, scaleSquared,
+                                String.valueOf(radius * radius)}), selectionArgs);
+            } else {
+                where = DatabaseUtils.concatenateWhere(Activities.COLUMN_LATITUDE
+                        + " IS NOT NULL AND " + Activities.COLUMN_LONGITUDE + " IS NOT NULL",
+                        selection);
+                whereArgs = selectionArgs;
+            }
+            // The distance arguments of the sort order follow those of the selection.
+            cursor = builder.query(database, projection, where,
+                    DatabaseUtils.appendSelectionArgs(whereArgs, distanceArgs), null, null,
+                    distance, String.valueOf(count));
+            if (radius >= NEARBY_MAX_RADIUS || cursor.getCount() >= count) {
                 break;
+            }
+            cursor.close();
+        }
+        // Changes to activities are never posted to the nearby URI, so watch the directory.
+        cursor.setNotificationUri(getContext().getContentResolver(), Activities.CONTENT_URI);
+        return cursor;
+    }
+
+    /**
+     * Search the full-text index for the terms given in the last segment of a search URI.
+     *
+     * @param uri           a search URI, built with {@link Search#buildSearchUri(String)}
+     * @param projection    the columns to return, or {@code null} for all columns
+     * @param selection     an optional restriction on the result columns
+     * @param selectionArgs arguments for the selection
+     * @param sortOrder     the sort order, or {@code null} to return the best matches first
+     * @return a cursor over the search results
+     */
+    private Cursor search(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                          String sortOrder) {
+        final String match = buildSearchMatch(uri.getLastPathSegment());
+        final Cursor cursor;
+        if (match == null) {
+            cursor = new MatrixCursor(projection != null ? projection : SEARCH_COLUMNS);
+        } else {
+            final String limit = uri.getQueryParameter(JournalContract.PARAM_LIMIT);
+            if (limit != null && Integer.parseInt(limit) < 0) {
+                throw new IllegalArgumentException("Invalid limit: " + limit);
+            }
+            final SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+            builder.setTables("(" + DatabaseHelper.SearchTable.QUERY_MATCH + ")");
+            // The match argument belongs to the inner query, so it precedes the selection's.
+            cursor = builder.query(getDatabaseHelper().getReadableDatabase(), projection,
+                    selection, DatabaseUtils.appendSelectionArgs(
+                            new String[]{match}, selectionArgs), null, null,
+                    sortOrder != null ? sortOrder : Search.COLUMN_RANK + " DESC", limit);
+        }
+        // Results change along with any journal data, so watch the whole authority.
+        cursor.setNotificationUri(getContext().getContentResolver(), JournalContract.AUTHORITY_URI);
+        return cursor;
+    }
+
+    /**
+     * Build the full-text match expression for the terms of a search.
+     * <p/>
+     * The terms are reduced to bare words so user input is never parsed as query syntax. Words
+     * are lower cased to keep them from being read as the AND, OR and NOT operators, and the last
+     * word matches as a prefix.
+     *
+     * @param terms the search terms
+     * @return the match expression, or {@code null} if the terms hold no words
+     */
+    static String buildSearchMatch(String terms) {
+        final String[] words = terms.toLowerCase(Locale.US).split("[^\\p{L}\\p{N}]+");
+        final StringBuilder match = new StringBuilder();
+        for (String word : words) {
+            if (word.length() > 0) {
+                match.append(match.length() > 0 ? " " : "").append(word);
+            }
+        }
+        return (match.length() > 0) ? match.append('*').toString() : null;
+    }
+
+    /**
+     * The table and "where" clause a content URI resolves to.
+     * <p/>
+     * IDs taken from the URI are bound as selection arguments instead of being written into the
+     * SQL. Every lookup of the same kind therefore produces the same SQL text. The framework keeps
+     * a small cache of compiled statements on each connection, keyed by that text, so a repeated
+     * lookup finds its statement there instead of SQLite parsing a new one for every ID. The SQL
+     * text itself is still built for each query.
+     */
+    static final class SqlArguments {
+
+        /**
+         * Selection matching a single row ID.
+         */
+        private static final String ID_SELECTION = BaseColumns._ID + "=?";
+        /**
+         * Selection matching the rows of a single journal.
+         */
+        private static final String JOURNAL_ID_SELECTION = Activities.COLUMN_JOURNAL_ID + "=?";
+        /**
+         * Selection matching a single row ID within a journal.
+         */
+        private static final String ID_IN_JOURNAL_SELECTION =
+                ID_SELECTION + " AND " + JOURNAL_ID_SELECTION;
+        /**
+         * Selection matching the activities within a bounding box. The latitude range is read
+         * from the location index, and the longitude is tested against the same index entries.
+         */
+        static final String BOUNDS_SELECTION = Activities.COLUMN_LATITUDE
+                + " BETWEEN ? AND ? AND " + Activities.COLUMN_LONGITUDE + " BETWEEN ? AND ?";
+        /**
+         * Selection matching the activities within a bounding box that crosses the antimeridian.
+         */
+        static final String BOUNDS_SELECTION_ANTIMERIDIAN = Activities.COLUMN_LATITUDE
+                + " BETWEEN ? AND ? AND (" + Activities.COLUMN_LONGITUDE + ">=? OR "
+                + Activities.COLUMN_LONGITUDE + "<=?)";
+
+        /**
+         * The table the URI resolves to.
+         */
+        final String table;
+        /**
+         * Columns of the table that can't be written by clients.
+         */
+        final String[] readOnlyColumns;
+        /**
+         * Map of the columns a query may request to the SQL producing them.
+         */
+        final Map<String, String> projectionMap;
+        /**
+         * The "where" clause, combining the URI's ID restriction with the caller's selection.
+         */
+        final String where;
+        /**
+         * Arguments for the "where" clause.
+         */
+        final String[] args;
+
+        /**
+         * Resolve a content URI to its table and "where" clause.
+         *
+         * @param uriMatch      the result of matching the URI with {@link #sUriMatcher}
+         * @param uri           the content URI
+         * @param selection     an optional restriction supplied by the caller
+         * @param selectionArgs arguments for the caller's restriction
+         * @throws IllegalArgumentException if the URI does not refer to a database table
+         */
+        SqlArguments(int uriMatch, Uri uri, String selection, String[] selectionArgs) {
+            // The restriction implied by the URI, and its arguments.
+            String uriSelection = null;
+            String[] uriArgs = null;
+            switch (uriMatch) {
+                case ACCOUNT_DIRECTORY:
+                case ACCOUNT:
+                    table = DatabaseHelper.AccountsTable.TABLE_NAME;
+                    readOnlyColumns = DatabaseHelper.AccountsTable.READ_ONLY_COLUMNS;
+                    projectionMap = DatabaseHelper.AccountsTable.PROJECTION_MAP;
+                    break;
+                case JOURNAL_DIRECTORY:
+                case JOURNAL:
+                    table = DatabaseHelper.JournalsTable.TABLE_NAME;
+                    readOnlyColumns = DatabaseHelper.JournalsTable.READ_ONLY_COLUMNS;
+                    projectionMap = DatabaseHelper.JournalsTable.PROJECTION_MAP;
+                    break;
+                case ACTIVITY_DIRECTORY:
+                case ACTIVITY_DIRECTORY_FROM_JOURNAL:
+                case ACTIVITY:
+                case ACTIVITY_BOUNDS:
+                case ACTIVITY_NEARBY:
+                    table = DatabaseHelper.ActivitiesTable.TABLE_NAME;
+                    readOnlyColumns = DatabaseHelper.ActivitiesTable.READ_ONLY_COLUMNS;
+                    projectionMap = DatabaseHelper.ActivitiesTable.PROJECTION_MAP;
+                    break;
+                case CONTACT_DIRECTORY:
+                case CONTACT_DIRECTORY_FROM_JOURNAL:
+                case CONTACT:
+                    table = DatabaseHelper.ContactsTable.TABLE_NAME;
+                    readOnlyColumns = DatabaseHelper.ContactsTable.READ_ONLY_COLUMNS;
+                    projectionMap = DatabaseHelper.ContactsTable.PROJECTION_MAP;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown URI: " + uri);
+            }
+            switch (uriMatch) {
+                case ACCOUNT:
+                case JOURNAL:
+                    uriSelection = ID_SELECTION;
+                    uriArgs = new String[]{uri.getLastPathSegment()};
+                    break;
+                case ACTIVITY:
+                case CONTACT:
+                    // Rows named through a journal must belong to it, as the query cache limits
+                    // invalidation to that journal.
+                    final List<String> segments = uri.getPathSegments();
+                    if (Journals.CONTENT_DIRECTORY.equals(segments.get(0))) {
+                        uriSelection = ID_IN_JOURNAL_SELECTION;
+                        uriArgs = new String[]{uri.getLastPathSegment(), segments.get(1)};
+                    } else {
+                        uriSelection = ID_SELECTION;
+                        uriArgs = new String[]{uri.getLastPathSegment()};
+                    }
+                    break;
+                case ACTIVITY_DIRECTORY_FROM_JOURNAL:
+                case CONTACT_DIRECTORY_FROM_JOURNAL:
+                    uriSelection = JOURNAL_ID_SELECTION;
+                    uriArgs = new String[]{uri.getPathSegments().get(1)};
+                    break;
+                case ACTIVITY_BOUNDS:
+                    final double west = getDoubleParameter(uri, Activities.PARAM_WEST);
+                    final double east = getDoubleParameter(uri, Activities.PARAM_EAST);
+                    uriSelection = west <= east ? BOUNDS_SELECTION : BOUNDS_SELECTION_ANTIMERIDIAN;
+                    uriArgs = new String[]{
+                            String.valueOf(getDoubleParameter(uri, Activities.PARAM_SOUTH)),
+                            String.valueOf(getDoubleParameter(uri, Activities.PARAM_NORTH)),
+                            String.valueOf(west), String.valueOf(east)};
+                    break;
+            }
+            if (uriSelection != null) {
+                where = DatabaseUtils.concatenateWhere(uriSelection, selection);
+                args = DatabaseUtils.appendSelectionArgs(uriArgs, selectionArgs);
+            } else {
+                where = selection;
+                args = selectionArgs;
+            }
+        }
+
+    }
+
+    /**
+     * Check that a content URI may be written. The bounds and nearby URIs are query-only views of
+     * the activities.
+     *
+     * @param uriMatch the result of matching the URI with {@link #sUriMatcher}
+     * @param uri      the content URI
+     * @throws IllegalArgumentException if the URI is a query-only view
+     */
+    private static void checkWritable(int uriMatch, Uri uri) {
+        if (uriMatch == ACTIVITY_BOUNDS || uriMatch == ACTIVITY_NEARBY) {
+            throw new IllegalArgumentException("Query-only URI: " + uri);
+        }
+    }
+
+    /**
+     * Get the ID of the journal a content URI is limited to.
+     *
+     * @param uriMatch the result of matching the URI with {@link #sUriMatcher}
+     * @param uri      the content URI
+     * @return the journal ID, or {@link QueryCache#ANY_JOURNAL} if the URI isn't limited to a
+     * single journal
+     */
+    private static long getJournalId(int uriMatch, Uri uri) {
+        final List<String> segments = uri.getPathSegments();
+        switch (uriMatch) {
             case JOURNAL:
-                table = DatabaseHelper.JournalsTable.TABLE_NAME;
-                // Append item ID to the "where" clause.
-                if (selection != null) {
-                    where.append(" AND ");
-                }
-                where.append(Journals.COLUMN_ID).append("=").append(uri.getLastPathSegment());
-                // Prevent read-only columns from being modified, if present.
-                for (String s : DatabaseHelper.JournalsTable.READ_ONLY_COLUMNS) {
-                    copiedValues.remove(s);
-                }
-                break;
-            case ACTIVITY_DIRECTORY:
             case ACTIVITY_DIRECTORY_FROM_JOURNAL:
-                table = DatabaseHelper.ActivitiesTable.TABLE_NAME;
-                // Append journal ID to the "where" clause.
-                if (uriMatch == ACTIVITY_DIRECTORY_FROM_JOURNAL) {
-                    if (selection != null) {
-                        where.append(" AND ");
-                    }
-                    where.append(Activities.COLUMN_JOURNAL_ID).append("=")
-                            .append(uri.getPathSegments().get(1));
-                }
-                // Prevent read only columns from being modified, if present.
-                for (String s : DatabaseHelper.ActivitiesTable.READ_ONLY_COLUMNS) {
-                    copiedValues.remove(s);
-                }
-                break;
-            case ACTIVITY:
-                table = DatabaseHelper.ActivitiesTable.TABLE_NAME;
-                // Append item ID to the "where" clause.
-                if (selection != null) {
-                    where.append(" AND ");
-                }
-                where.append(Activities.COLUMN_ID).append("=").append(uri.getLastPathSegment());
-                // Prevent read only columns from being modified, if present.
-                for (String s : DatabaseHelper.ActivitiesTable.READ_ONLY_COLUMNS) {
-                    copiedValues.remove(s);
-                }
-                break;
-            case CONTACT_DIRECTORY:
             case CONTACT_DIRECTORY_FROM_JOURNAL:
-                table = DatabaseHelper.ContactsTable.TABLE_NAME;
-                // Append journal ID to the "where" clause.
-                if (uriMatch == CONTACT_DIRECTORY_FROM_JOURNAL) {
-                    if (selection != null) {
-                        where.append(" AND ");
-                    }
-                    where.append(Contacts.COLUMN_JOURNAL_ID).append("=")
-                            .append(uri.getPathSegments().get(1));
-                }
-                // Prevent read only columns from being modified, if present.
-                for (String s : DatabaseHelper.ContactsTable.READ_ONLY_COLUMNS) {
-                    copiedValues.remove(s);
-                }
-                break;
+                return Long.parseLong(segments.get(1));
+            case ACTIVITY:
             case CONTACT:
-                table = DatabaseHelper.ContactsTable.TABLE_NAME;
-                // Append item ID to the "where" clause.
-                if (selection != null) {
-                    where.append(" AND ");
-                }
-                where.append(Contacts.COLUMN_ID).append("=").append(uri.getLastPathSegment());
-                // Prevent read only columns from being modified, if present.
-                for (String s : DatabaseHelper.ContactsTable.READ_ONLY_COLUMNS) {
-                    copiedValues.remove(s);
-                }
-                break;
+                return Journals.CONTENT_DIRECTORY.equals(segments.get(0))
+                        ? Long.parseLong(segments.get(1)) : QueryCache.ANY_JOURNAL;
             default:
-                throw new IllegalArgumentException("Unknown URI " + uri);
+                return QueryCache.ANY_JOURNAL;
         }
-        // Open the database in "write" mode and update data.
-        final SQLiteDatabase database = mDatabaseHelper.getWritableDatabase();
-        final int rowsUpdated =
-                database.update(table, copiedValues, where.toString(), selectionArgs);
-        getContext().getContentResolver().notifyChange(uri, null);
-        return rowsUpdated;
     }
 
     /**
-     * Internally delete files from the content provider.
-     * <p/>
-     * Called when journals or journal entries are deleted.
+     * Get a required query parameter of a URI as a number.
      *
-     * @param uri           the URI whose associated images should be deleted, can be of type {@link
-     *                      Journals#CONTENT_TYPE_DIR}, {@link Journals#CONTENT_TYPE_ITEM}, {@link
-     *                      Activities#CONTENT_TYPE_DIR} or {@link Activities#CONTENT_TYPE_ITEM}
-     * @param selection     an optional restriction to apply to rows when deleting
-     * @param selectionArgs you may include ?s in selection, which will be replaced by the values,
-     *                      in the order that they appear in the selection
-     * @return the number of images deleted
+     * @param uri  the URI
+     * @param name the name of the query parameter
+     * @return the value of the parameter
+     * @throws IllegalArgumentException if the parameter is missing or isn't a number
      */
-    private int deleteFilesInternal(Uri uri, String selection, String[] selectionArgs) {
-        final String[] projection;
-        Cursor cursor;
-        int noDeleted = 0;
-        switch (sUriMatcher.match(uri)) {
-            case ACCOUNT_DIRECTORY:
-            case ACCOUNT:
-                return noDeleted;
-            case JOURNAL_DIRECTORY:
-            case JOURNAL:
-                // Get a cursor of all journals being deleted.
-                projection = new String[]{Journals.COLUMN_ID};
-                cursor = query(uri, projection, selection, selectionArgs, null);
-                if (cursor.getCount() > 0) {
-                    // Build list of journal URI's from the query.
-                    final StringBuilder builder = new StringBuilder();
-                    boolean isFirst = true;
-                    while (cursor.moveToNext()) {
-                        if (isFirst) {
-                            isFirst = false;
-                        } else {
-                            builder.append(", ");
-                        }
-                        builder.append(cursor.getLong(0));
-                    }
-                    // Delete the entries associated with the selected journals.
-                    noDeleted = deleteFilesInternal(Activities.CONTENT_URI,
-                            Activities.COLUMN_JOURNAL_ID + " IN (?)",
-                            new String[]{builder.toString()});
-                }
-                cursor.close();
-                return noDeleted;
-            case ACTIVITY_DIRECTORY:
-            case ACTIVITY_DIRECTORY_FROM_JOURNAL:
-            case ACTIVITY:
-                projection = new String[]{Activities.COLUMN_IMAGE_URI};
-                cursor = query(uri, projection, selection, selectionArgs, null);
-                noDeleted = 0;
-                while (cursor.moveToNext()) {
-                    final String imageUri = cursor.getString(0);
-                    if (imageUri != null) {
-                        noDeleted += delete(Uri.parse(imageUri), null, null);
+    private static double getDoubleParameter(Uri uri, String name) {
+        final String value = uri.getQueryParameter(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing parameter " + name + ": " + uri);
+        }
+        return Double.parseDouble(value);
+    }
+
+    /**
+     * Read the rows of a table, with each value kept as the type it was stored as.
+     *
+     * @param database      the database
+     * @param table         the table to read
+     * @param projectionMap the projection map of the table, giving the columns to read
+     * @param selection     the rows to read
+     * @param selectionArgs arguments for the selection
+     * @param sortOrder     the order of the rows, or {@code null} for any order
+     * @param limit         the most rows to read, or {@code null} for no limit
+     * @return the rows read
+     */
+    private static ArrayList<ContentValues> readRows(SQLiteDatabase database, String table,
+                                                     Map<String, String> projectionMap,
+                                                     String selection, String[] selectionArgs,
+                                                     String sortOrder, String limit) {
+        final SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+        builder.setTables(table);
+        builder.setProjectionMap(projectionMap);
+        final Cursor cursor = builder.query(database, null, selection, selectionArgs, null, null,
+                sortOrder, limit);
+        try {
+            final ArrayList<ContentValues> rows = new ArrayList<>(cursor.getCount());
+            final String[] columns = cursor.getColumnNames();
+            while (cursor.moveToNext()) {
+                final ContentValues row = new ContentValues(columns.length);
+                for (int i = 0; i < columns.length; i++) {
+                    switch (cursor.getType(i)) {
+                        case Cursor.FIELD_TYPE_NULL:
+                            row.putNull(columns[i]);
+                            break;
+                        case Cursor.FIELD_TYPE_INTEGER:
+                            row.put(columns[i], cursor.getLong(i));
+                            break;
+                        case Cursor.FIELD_TYPE_FLOAT:
+                            row.put(columns[i], cursor.getDouble(i));
+                            break;
+                        case Cursor.FIELD_TYPE_STRING:
+                            row.put(columns[i], cursor.getString(i));
+                            break;
+                        case Cursor.FIELD_TYPE_BLOB:
+                            row.put(columns[i], cursor.getBlob(i));
+                            break;
                     }
                 }
-                cursor.close();
-                return noDeleted;
-            case CONTACT_DIRECTORY:
-            case CONTACT_DIRECTORY_FROM_JOURNAL:
-            case CONTACT:
-                return 0;
-            default:
-                throw new IllegalArgumentException("Unknown URI: " + uri);
+                rows.add(row);
+            }
+            return rows;
+        } finally {
+            cursor.close();
         }
     }
 
     /**
      * A helper class to manage database creation and version management.
      */
-    private static class DatabaseHelper extends SQLiteOpenHelper {
+    static class DatabaseHelper extends SQLiteOpenHelper {
+
+        /**
+         * Schema migrations, in ascending version order. The last entry must upgrade to {@link
+         * #DATABASE_VERSION}.
+         */
+        private static final Migration[] MIGRATIONS = new Migration[]{
+
+                // Version 2: index the journal, server ID and deletion lookups.
+                new Migration(2) {
+                    @Override
+                    void migrate(SQLiteDatabase db) {
+                        JournalsTable.createIndexes(db);
+                        ActivitiesTable.createIndexes(db);
+                        ContactsTable.createIndexes(db);
+                    }
+                },
+
+                // Version 3: index the sort keys used by paged directory queries.
+                new Migration(3) {
+                    @Override
+                    void migrate(SQLiteDatabase db) {
+                        JournalsTable.createPageIndexes(db);
+                        ActivitiesTable.createPageIndexes(db);
+                        ContactsTable.createPageIndexes(db);
+                    }
+                },
+
+                // Version 4: index journal text for local full-text search.
+                new Migration(4) {
+                    @Override
+                    void migrate(SQLiteDatabase db) {
+                        SearchTable.onCreate(db);
+                    }
+                },
+
+                // Version 5: index activity locations for bounding box and nearby queries.
+                new Migration(5) {
+                    @Override
+                    void migrate(SQLiteDatabase db) {
+                        ActivitiesTable.createLocationIndex(db);
+                    }
+                },
+
+                // Version 6: store timestamps as integer milliseconds since the epoch. Column
+                // types can't be altered, so each table is rebuilt, which drops its indexes and
+                // triggers along with the old table. The modified date triggers are not recreated,
+                // as the provider stamps the modified date itself from version 7. The tables and
+                // indexes are spelled out as they were at version 6, so later schema changes
+                // don't alter this step.
+                new Migration(6) {
+                    @Override
+                    void migrate(SQLiteDatabase db) {
+                        replaceTable(db, "Accounts", "_id INTEGER PRIMARY KEY, "
+                                        + "user_id INTEGER NOT NULL, "
+                                        + "name TEXT NOT NULL UNIQUE, "
+                                        + "alias TEXT, "
+                                        + "gender INTEGER NOT NULL CHECK (gender IN(0,1,2)), "
+                                        + "avatar_uri TEXT, "
+                                        + V6_TIMESTAMPS,
+                                new String[]{"_id", "user_id", "name", "alias", "gender",
+                                        "avatar_uri", "created", "modified"});
+                        replaceTable(db, "Journals", "_id INTEGER PRIMARY KEY, "
+                                        + "account_name TEXT NOT NULL, "
+                                        + "title TEXT COLLATE NOCASE, "
+                                        + "make_public INTEGER NOT NULL DEFAULT 1 "
+                                        + "CHECK (make_public IN(1,2)), "
+                                        + "server_id INTEGER, "
+                                        + "is_deleted INTEGER NOT NULL DEFAULT 1 "
+                                        + "CHECK (is_deleted IN(1,2)), "
+                                        + V6_TIMESTAMPS,
+                                new String[]{"_id", "account_name", "title", "make_public",
+                                        "server_id", "is_deleted", "created", "modified"});
+                        db.execSQL("CREATE INDEX IF NOT EXISTS idx_Journals_ServerId "
+                                + "ON Journals (server_id)");
+                        db.execSQL("CREATE INDEX IF NOT EXISTS idx_Journals_AccountNameCreated "
+                                + "ON Journals (account_name, created)");
+                        replaceTable(db, "Activities", "_id INTEGER PRIMARY KEY, "
+                                        + "journal_id INTEGER, "
+                                        + "title TEXT COLLATE NOCASE, "
+                                        + "description TEXT, "
+                                        + "location TEXT, "
+                                        + "image_uri TEXT, "
+                                        + "latitude REAL, "
+                                        + "longitude REAL, "
+                                        + "server_id INTEGER, "
+                                        + "is_deleted INTEGER NOT NULL DEFAULT 0 "
+                                        + "CHECK (is_deleted IN(0,1)), "
+                                        + V6_TIMESTAMPS + ", "
+                                        + "FOREIGN KEY(journal_id) REFERENCES Journals(_id) "
+                                        + "ON DELETE CASCADE",
+                                new String[]{"_id", "journal_id", "title", "description",
+                                        "location", "image_uri", "latitude", "longitude",
+                                        "server_id", "is_deleted", "created", "modified"});
+                        db.execSQL("CREATE INDEX IF NOT EXISTS idx_Activities_ServerId "
+                                + "ON Activities (server_id)");
+                        db.execSQL("CREATE INDEX IF NOT EXISTS idx_Activities_JournalIdCreated "
+                                + "ON Activities (journal_id, created)");
+                        db.execSQL("CREATE INDEX IF NOT EXISTS idx_Activities_Location "
+                                + "ON Activities (latitude, longitude)");
+                        replaceTable(db, "Contacts", "_id INTEGER PRIMARY KEY, "
+                                        + "journal_id INTEGER NOT NULL, "
+                                        + "name TEXT COLLATE NOCASE, "
+                                        + "description TEXT, "
+                                        + "email TEXT, "
+                                        + "phone TEXT, "
+                                        + "server_id INTEGER, "
+                                        + "is_deleted INTEGER NOT NULL DEFAULT 0 "
+                                        + "CHECK (is_deleted IN(0,1)), "
+                                        + V6_TIMESTAMPS + ", "
+                                        + "FOREIGN KEY(journal_id) REFERENCES Journals(_id) "
+                                        + "ON DELETE CASCADE",
+                                new String[]{"_id", "journal_id", "name", "description",
+                                        "email", "phone", "server_id", "is_deleted", "created",
+                                        "modified"});
+                        db.execSQL("CREATE INDEX IF NOT EXISTS idx_Contacts_ServerId "
+                                + "ON Contacts (server_id)");
+                        db.execSQL("CREATE INDEX IF NOT EXISTS idx_Contacts_JournalIdCreated "
+                                + "ON Contacts (journal_id, created)");
+                        // Recreate the search index, whose triggers went with the old tables. Its
+                        // schema is unchanged since version 4, which also creates it this way.
+                        db.execSQL("DROP TABLE IF EXISTS " + SearchTable.TABLE_NAME);
+                        SearchTable.onCreate(db);
+                    }
+                },
+
+                // Version 7: drop the triggers that updated the modified date with a second write
+                // of every updated row. The provider sets the date in the update itself.
+                new Migration(7) {
+                    @Override
+                    void migrate(SQLiteDatabase db) {
+                        for (String table : new String[]{AccountsTable.TABLE_NAME,
+                                JournalsTable.TABLE_NAME, ActivitiesTable.TABLE_NAME,
+                                ContactsTable.TABLE_NAME}) {
+                            db.execSQL("DROP TRIGGER IF EXISTS trig_" + table + "_AfterUpdate");
+                        }
+                    }
+                },
+
+                // Version 8: index the sort keys used by paged queries across all journals.
+                new Migration(8) {
+                    @Override
+                    void migrate(SQLiteDatabase db) {
+                        ActivitiesTable.createDirectoryPageIndex(db);
+                        ContactsTable.createDirectoryPageIndex(db);
+                    }
+                },
+
+                // Version 9: record which deletions the sync adapter has acknowledged, so
+                // maintenance purges only rows a sync no longer needs. The file is also switched
+                // to incremental vacuuming, which onConfigure() does before this runs.
+                new Migration(9) {
+                    @Override
+                    void migrate(SQLiteDatabase db) {
+                        for (String table : new String[]{JournalsTable.TABLE_NAME,
+                                ActivitiesTable.TABLE_NAME, ContactsTable.TABLE_NAME}) {
+                            db.execSQL("ALTER TABLE " + table + " ADD COLUMN "
+                                    + Journals.COLUMN_DELETE_ACKNOWLEDGED + " "
+                                    + DELETE_ACKNOWLEDGED_DEFINITION);
+                        }
+                    }
+                }
+
+        };
+        /**
+         * SQL expression for the current time in milliseconds since the epoch. Used by the
+         * frozen version 6 schema, so it must not change.
+         */
+        private static final String CURRENT_TIME_MILLIS =
+                "(CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER))";
+        /**
+         * Definitions of the timestamp columns in the version 6 schema.
+         */
+        private static final String V6_TIMESTAMPS = "created INTEGER NOT NULL DEFAULT "
+                + CURRENT_TIME_MILLIS + ", modified INTEGER NOT NULL DEFAULT "
+                + CURRENT_TIME_MILLIS;
+        /**
+         * Definition of the column recording that the sync adapter acknowledged a deletion.
+         */
+        private static final String DELETE_ACKNOWLEDGED_DEFINITION = "INTEGER NOT NULL DEFAULT 0";
+        /**
+         * First database version that uses incremental vacuuming.
+         */
+        private static final int INCREMENTAL_VACUUM_VERSION = 9;
+        /**
+         * Value of the auto_vacuum pragma for incremental vacuuming.
+         */
+        private static final int AUTO_VACUUM_INCREMENTAL = 2;
+        /**
+         * Suffix of the name a table is created under while it is being rebuilt.
+         */
+        private static final String REBUILD_SUFFIX = "_new";
 
         /**
          * Create a helper object to create, open, and/or manage a database.
@@ -597,38 +1278,170 @@ public class JournalProvider extends FileProvider {
          */
         public DatabaseHelper(Context context) {
             super(context, DATABASE_NAME, null, DATABASE_VERSION);
+            // Let readers run alongside a writer. The framework sizes the pool of read
+            // connections for the device once write-ahead logging is enabled.
+            setWriteAheadLoggingEnabled(true);
         }
 
         @Override
         public void onConfigure(SQLiteDatabase db) {
             super.onConfigure(db);
-            // Enforce foreign key constraints.
-            db.setForeignKeyConstraintsEnabled(true);
             // Turn off recursive triggers.
             db.execSQL("PRAGMA recursive_triggers = OFF");
+            // Checkpoint automatically once the log grows past the threshold. These pragmas
+            // return a row, so they can't be run through execSQL().
+            DatabaseUtils.longForQuery(db, "PRAGMA wal_autocheckpoint = "
+                    + (WAL_AUTOCHECKPOINT_SIZE / db.getPageSize()), null);
+            DatabaseUtils.longForQuery(db, "PRAGMA journal_size_limit = " + WAL_SIZE_LIMIT, null);
+            convertToIncrementalVacuum(db);
+        }
+
+        /**
+         * Switch a database created before incremental vacuuming to it. The change only takes
+         * effect through a full vacuum, which rewrites the whole file and can't run inside the
+         * upgrade transaction, so it runs here once, before the upgrade to {@link
+         * #INCREMENTAL_VACUUM_VERSION}. A new database is converted while it is still empty.
+         *
+         * @param db the database being configured
+         */
+        private static void convertToIncrementalVacuum(SQLiteDatabase db) {
+            if (db.isReadOnly() || db.getVersion() >= INCREMENTAL_VACUUM_VERSION
+                    || DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null)
+                    == AUTO_VACUUM_INCREMENTAL) {
+                return;
+            }
+            db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+            db.execSQL("VACUUM");
         }
 
         @Override
         public void onCreate(SQLiteDatabase db) {
-            // Create each of the database tables.
+            // Incremental vacuuming can't be turned on here, as the framework has already created
+            // android_metadata. The database was converted by onConfigure() instead.
+            // Create each of the database tables with the current schema, so no migration needs
+            // to run on a new database.
             AccountsTable.onCreate(db);
             JournalsTable.onCreate(db);
             ActivitiesTable.onCreate(db);
             ContactsTable.onCreate(db);
+            SearchTable.onCreate(db);
         }
 
         @Override
         public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-            AccountsTable.onUpgrade(db, oldVersion, newVersion);
-            JournalsTable.onUpgrade(db, oldVersion, newVersion);
-            ActivitiesTable.onUpgrade(db, oldVersion, newVersion);
-            ContactsTable.onUpgrade(db, oldVersion, newVersion);
+            // Apply each migration in order, all within the transaction opened by the helper.
+            for (Migration migration : MIGRATIONS) {
+                if (migration.version > oldVersion && migration.version <= newVersion) {
+                    if (DEBUG) {
+                        Log.i(DEBUG_TAG, "Migrating database to version " + migration.version);
+                    }
+                    migration.migrate(db);
+                }
+            }
+        }
+
+        @Override
+        public void onOpen(SQLiteDatabase db) {
+            super.onOpen(db);
+            // Enforce foreign key constraints. This is left until after any migration, so tables
+            // can be rebuilt without cascading deletes to the rows that reference them.
+            db.setForeignKeyConstraintsEnabled(true);
+        }
+
+        /**
+         * Create a map from the columns of a table to themselves, adding formatted versions of
+         * the creation and modification times.
+         *
+         * @param table   the name of the table
+         * @param columns the columns stored in the table
+         * @return the mutable projection map
+         */
+        private static Map<String, String> createProjectionMap(String table, String[] columns) {
+            final Map<String, String> map = new HashMap<>();
+            for (String column : columns) {
+                map.put(column, table + "." + column + " AS " + column);
+            }
+            map.put(Journals.COLUMN_CREATED_TEXT, "strftime('%Y-%m-%d %H:%M:%S', " + table + "."
+                    + Journals.COLUMN_CREATED + " / 1000, 'unixepoch') AS "
+                    + Journals.COLUMN_CREATED_TEXT);
+            map.put(Journals.COLUMN_MODIFIED_TEXT, "strftime('%Y-%m-%d %H:%M:%S', " + table + "."
+                    + Journals.COLUMN_MODIFIED + " / 1000, 'unixepoch') AS "
+                    + Journals.COLUMN_MODIFIED_TEXT);
+            return map;
+        }
+
+        /**
+         * Replace a table with a copy created under its name plus {@link #REBUILD_SUFFIX},
+         * moving its rows across. Text timestamps are converted to milliseconds since the epoch,
+         * or to 0 if they can't be parsed.
+         *
+         * @param db         the database being upgraded
+         * @param table      the name of the table
+         * @param definition the column definitions and constraints of the new table
+         * @param columns    the columns to copy
+         */
+        private static void replaceTable(SQLiteDatabase db, String table, String definition,
+                                         String[] columns) {
+            db.execSQL("CREATE TABLE " + table + REBUILD_SUFFIX + " (" + definition + ")");
+            final StringBuilder names = new StringBuilder();
+            final StringBuilder values = new StringBuilder();
+            for (String column : columns) {
+                if (names.length() > 0) {
+                    names.append(", ");
+                    values.append(", ");
+                }
+                names.append(column);
+                if ("created".equals(column) || "modified".equals(column)) {
+                    // strftime() returns NULL for text it can't parse, which the column rejects.
+                    values.append("CASE typeof(").append(column).append(") WHEN 'text' THEN ")
+                            .append("COALESCE(CAST(strftime('%s', ").append(column)
+                            .append(") AS INTEGER) * 1000, 0) ELSE ").append(column)
+                            .append(" END");
+                } else {
+                    values.append(column);
+                }
+            }
+            db.execSQL("INSERT INTO " + table + REBUILD_SUFFIX + " (" + names + ") SELECT "
+                    + values + " FROM " + table);
+            db.execSQL("DROP TABLE " + table);
+            db.execSQL("ALTER TABLE " + table + REBUILD_SUFFIX + " RENAME TO " + table);
+        }
+
+        /**
+         * A single, ordered step in the evolution of the database schema.
+         * <p/>
+         * Migrations must preserve existing data. Each one is applied exactly once, when the
+         * database is upgraded from a version below {@link #version}.
+         */
+        private static abstract class Migration {
+
+            /**
+             * The database version this migration upgrades to.
+             */
+            final int version;
+
+            /**
+             * Create a new migration.
+             *
+             * @param version the database version this migration upgrades to
+             */
+            Migration(int version) {
+                this.version = version;
+            }
+
+            /**
+             * Apply the migration.
+             *
+             * @param db the database being upgraded
+             */
+            abstract void migrate(SQLiteDatabase db);
+
         }
 
         /**
-         * Class for account table creation and upgrade.
+         * Class for account table creation.
          */
-        private static class AccountsTable {
+        static class AccountsTable {
 
             /**
              * Name of table.
@@ -639,10 +1452,23 @@ public class JournalProvider extends FileProvider {
              */
             public static final String[] READ_ONLY_COLUMNS =
                     new String[]{Accounts.COLUMN_ID, Accounts.COLUMN_COUNT, Accounts.COLUMN_CREATED,
-                            Accounts.COLUMN_MODIFIED};
+                            Accounts.COLUMN_MODIFIED, Accounts.COLUMN_CREATED_TEXT,
+                            Accounts.COLUMN_MODIFIED_TEXT};
+            /**
+             * List of the columns stored in the table.
+             */
+            public static final String[] COLUMNS = new String[]{Accounts.COLUMN_ID,
+                    Accounts.COLUMN_USER_ID, Accounts.COLUMN_NAME, Accounts.COLUMN_ALIAS,
+                    Accounts.COLUMN_GENDER, Accounts.COLUMN_AVATAR_URI, Accounts.COLUMN_CREATED,
+                    Accounts.COLUMN_MODIFIED};
+            /**
+             * Map of the columns an account query may request to the SQL that produces them.
+             */
+            public static final Map<String, String> PROJECTION_MAP =
+                    Collections.unmodifiableMap(createProjectionMap(TABLE_NAME, COLUMNS));
 
             /**
-             * Create the table and associated triggers.
+             * Create the table.
              */
             public static void onCreate(SQLiteDatabase db) {
                 db.execSQL("CREATE TABLE " + TABLE_NAME + " ("
@@ -653,32 +1479,18 @@ public class JournalProvider extends FileProvider {
                         + Accounts.COLUMN_GENDER + " INTEGER NOT NULL "
                         + "CHECK (" + Accounts.COLUMN_GENDER + " IN(0,1,2)), "
                         + Accounts.COLUMN_AVATAR_URI + " TEXT, "
-                        + Accounts.COLUMN_CREATED + " TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, "
-                        + Accounts.COLUMN_MODIFIED + " TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP"
-                        + ");");
-                // Create trigger to update modified date.
-                db.execSQL("CREATE TRIGGER trig_" + TABLE_NAME + "_AfterUpdate"
-                        + " AFTER UPDATE ON " + TABLE_NAME + " FOR EACH ROW BEGIN"
-                        + " UPDATE " + TABLE_NAME
-                        + " SET " + Accounts.COLUMN_MODIFIED + " = CURRENT_TIMESTAMP"
-                        + " WHERE " + Accounts.COLUMN_ID + " = new." + Accounts.COLUMN_ID + ";"
-                        + " END");
-            }
-
-            /**
-             * Upgrade the table.
-             */
-            public static void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-                db.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
-                onCreate(db);
+                        + Accounts.COLUMN_CREATED + " INTEGER NOT NULL DEFAULT "
+                        + CURRENT_TIME_MILLIS + ", "
+                        + Accounts.COLUMN_MODIFIED + " INTEGER NOT NULL DEFAULT "
+                        + CURRENT_TIME_MILLIS + ");");
             }
 
         }
 
         /**
-         * Class for journal table creation and upgrade.
+         * Class for journal table creation and indexing.
          */
-        private static class JournalsTable {
+        static class JournalsTable {
 
             /**
              * Name of table.
@@ -689,10 +1501,58 @@ public class JournalProvider extends FileProvider {
              */
             public static final String[] READ_ONLY_COLUMNS =
                     new String[]{Journals.COLUMN_ID, Journals.COLUMN_COUNT, Journals.COLUMN_CREATED,
-                            Journals.COLUMN_MODIFIED};
+                            Journals.COLUMN_MODIFIED, Journals.COLUMN_CREATED_TEXT,
+                            Journals.COLUMN_MODIFIED_TEXT, Journals.COLUMN_ACTIVITY_COUNT,
+                            Journals.COLUMN_CONTACT_COUNT, Journals.COLUMN_COVER_IMAGE_URI};
+            /**
+             * List of the columns stored in the table.
+             */
+            public static final String[] COLUMNS = new String[]{Journals.COLUMN_ID,
+                    Journals.COLUMN_ACCOUNT_NAME, Journals.COLUMN_TITLE,
+                    Journals.COLUMN_MAKE_PUBLIC, Journals.COLUMN_SERVER_ID,
+                    Journals.COLUMN_IS_DELETED, Journals.COLUMN_CREATED, Journals.COLUMN_MODIFIED,
+                    Journals.COLUMN_DELETE_ACKNOWLEDGED};
+            /**
+             * Map of the columns a journal query may request to the SQL that produces them.
+             * <p/>
+             * Aggregate columns are correlated subqueries on the child tables, each resolved
+             * through the journal ID index of that table, so a whole journal list is read with a
+             * single query.
+             */
+            public static final Map<String, String> PROJECTION_MAP;
+
+            static {
+                final Map<String, String> map = createProjectionMap(TABLE_NAME, COLUMNS);
+                map.put(Journals.COLUMN_ACTIVITY_COUNT, "(SELECT COUNT(*) FROM "
+                        + ActivitiesTable.TABLE_NAME + " WHERE "
+                        + ActivitiesTable.TABLE_NAME + "." + Activities.COLUMN_JOURNAL_ID + " = "
+                        + TABLE_NAME + "." + Journals.COLUMN_ID + " AND "
+                        + ActivitiesTable.TABLE_NAME + "." + Activities.COLUMN_IS_DELETED + " = 0)"
+                        + " AS " + Journals.COLUMN_ACTIVITY_COUNT);
+                map.put(Journals.COLUMN_CONTACT_COUNT, "(SELECT COUNT(*) FROM "
+                        + ContactsTable.TABLE_NAME + " WHERE "
+                        + ContactsTable.TABLE_NAME + "." + Contacts.COLUMN_JOURNAL_ID + " = "
+                        + TABLE_NAME + "." + Journals.COLUMN_ID + " AND "
+                        + ContactsTable.TABLE_NAME + "." + Contacts.COLUMN_IS_DELETED + " = 0)"
+                        + " AS " + Journals.COLUMN_CONTACT_COUNT);
+                // Walk the creation time index backwards and stop at the first image.
+                map.put(Journals.COLUMN_COVER_IMAGE_URI, "(SELECT "
+                        + ActivitiesTable.TABLE_NAME + "." + Activities.COLUMN_IMAGE_URI
+                        + " FROM " + ActivitiesTable.TABLE_NAME + " WHERE "
+                        + ActivitiesTable.TABLE_NAME + "." + Activities.COLUMN_JOURNAL_ID + " = "
+                        + TABLE_NAME + "." + Journals.COLUMN_ID + " AND "
+                        + ActivitiesTable.TABLE_NAME + "." + Activities.COLUMN_IS_DELETED
+                        + " = 0 AND "
+                        + ActivitiesTable.TABLE_NAME + "." + Activities.COLUMN_IMAGE_URI
+                        + " IS NOT NULL ORDER BY "
+                        + ActivitiesTable.TABLE_NAME + "." + Activities.COLUMN_CREATED + " DESC, "
+                        + ActivitiesTable.TABLE_NAME + "." + Activities.COLUMN_ID + " DESC LIMIT 1)"
+                        + " AS " + Journals.COLUMN_COVER_IMAGE_URI);
+                PROJECTION_MAP = Collections.unmodifiableMap(map);
+            }
 
             /**
-             * Create the table and associated triggers.
+             * Create the table and its current indexes.
              */
             public static void onCreate(SQLiteDatabase db) {
                 db.execSQL("CREATE TABLE " + TABLE_NAME + " ("
@@ -704,31 +1564,45 @@ public class JournalProvider extends FileProvider {
                         + Journals.COLUMN_SERVER_ID + " INTEGER, "
                         + Journals.COLUMN_IS_DELETED + " INTEGER NOT NULL DEFAULT 1 "
                         + "CHECK (" + Journals.COLUMN_IS_DELETED + " IN(1,2)), "
-                        + Journals.COLUMN_CREATED + " TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, "
-                        + Journals.COLUMN_MODIFIED + " TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP);");
-                // Create trigger to update modified date.
-                db.execSQL("CREATE TRIGGER trig_" + TABLE_NAME + "_AfterUpdate"
-                        + " AFTER UPDATE ON " + TABLE_NAME + " FOR EACH ROW BEGIN"
-                        + " UPDATE " + TABLE_NAME
-                        + " SET " + Journals.COLUMN_MODIFIED + " = CURRENT_TIMESTAMP"
-                        + " WHERE " + Journals.COLUMN_ID + " = new." + Journals.COLUMN_ID + ";"
-                        + " END");
+                        + Journals.COLUMN_CREATED + " INTEGER NOT NULL DEFAULT "
+                        + CURRENT_TIME_MILLIS + ", "
+                        + Journals.COLUMN_MODIFIED + " INTEGER NOT NULL DEFAULT "
+                        + CURRENT_TIME_MILLIS + ", "
+                        + Journals.COLUMN_DELETE_ACKNOWLEDGED + " "
+                        + DELETE_ACKNOWLEDGED_DEFINITION + ");");
+                createIndexes(db);
+                createPageIndexes(db);
+            }
+
+            /**
+             * Create indexes on the server ID and on the account lookup used by the journal list.
+             */
+            public static void createIndexes(SQLiteDatabase db) {
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_" + TABLE_NAME + "_AccountName ON "
+                        + TABLE_NAME + " (" + Journals.COLUMN_ACCOUNT_NAME + ", "
+                        + Journals.COLUMN_IS_DELETED + ")");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_" + TABLE_NAME + "_ServerId ON "
+                        + TABLE_NAME + " (" + Journals.COLUMN_SERVER_ID + ")");
             }
 
             /**
-             * Upgrade the table.
+             * Replace the account name index with one that also covers the creation time, so a
+             * page of an account's journals is read in sort order straight from the index. The
+             * row ID is stored in every index entry, so it breaks ties without being listed.
              */
-            public static void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-                db.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
-                onCreate(db);
+            public static void createPageIndexes(SQLiteDatabase db) {
+                db.execSQL("DROP INDEX IF EXISTS idx_" + TABLE_NAME + "_AccountName");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_" + TABLE_NAME + "_AccountNameCreated"
+                        + " ON " + TABLE_NAME + " (" + Journals.COLUMN_ACCOUNT_NAME + ", "
+                        + Journals.COLUMN_CREATED + ")");
             }
 
         }
 
         /**
-         * Class for activities table creation and upgrade.
+         * Class for activities table creation and indexing.
          */
-        private static class ActivitiesTable {
+        static class ActivitiesTable {
 
             /**
              * Name of table.
@@ -747,10 +1621,26 @@ public class JournalProvider extends FileProvider {
              */
             public static final String[] READ_ONLY_COLUMNS =
                     new String[]{Activities.COLUMN_ID, Activities.COLUMN_COUNT,
-                            Activities.COLUMN_CREATED, Activities.COLUMN_MODIFIED};
+                            Activities.COLUMN_CREATED, Activities.COLUMN_MODIFIED,
+                            Activities.COLUMN_CREATED_TEXT, Activities.COLUMN_MODIFIED_TEXT};
+            /**
+             * List of the columns stored in the table.
+             */
+            public static final String[] COLUMNS = new String[]{Activities.COLUMN_ID,
+                    Activities.COLUMN_JOURNAL_ID, Activities.COLUMN_TITLE,
+                    Activities.COLUMN_DESCRIPTION, Activities.COLUMN_LOCATION,
+                    Activities.COLUMN_IMAGE_URI, Activities.COLUMN_LATITUDE,
+                    Activities.COLUMN_LONGITUDE, Activities.COLUMN_SERVER_ID,
+                    Activities.COLUMN_IS_DELETED, Activities.COLUMN_CREATED,
+                    Activities.COLUMN_MODIFIED, Activities.COLUMN_DELETE_ACKNOWLEDGED};
+            /**
+             * Map of the columns an activity query may request to the SQL that produces them.
+             */
+            public static final Map<String, String> PROJECTION_MAP =
+                    Collections.unmodifiableMap(createProjectionMap(TABLE_NAME, COLUMNS));
 
             /**
-             * Create the table.
+             * Create the table and its current indexes.
              */
             public static void onCreate(SQLiteDatabase db) {
                 db.execSQL("CREATE TABLE " + TABLE_NAME + " ("
@@ -765,34 +1655,70 @@ public class JournalProvider extends FileProvider {
                         + Activities.COLUMN_SERVER_ID + " INTEGER, "
                         + Activities.COLUMN_IS_DELETED + " INTEGER NOT NULL DEFAULT 0 "
                         + "CHECK (" + Activities.COLUMN_IS_DELETED + " IN(0,1)), "
-                        + Activities.COLUMN_CREATED + " TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, "
-                        + Activities.COLUMN_MODIFIED + " TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                        + Activities.COLUMN_CREATED + " INTEGER NOT NULL DEFAULT "
+                        + CURRENT_TIME_MILLIS + ", "
+                        + Activities.COLUMN_MODIFIED + " INTEGER NOT NULL DEFAULT "
+                        + CURRENT_TIME_MILLIS + ", "
+                        + Activities.COLUMN_DELETE_ACKNOWLEDGED + " "
+                        + DELETE_ACKNOWLEDGED_DEFINITION + ", "
                         + "FOREIGN KEY(" + Activities.COLUMN_JOURNAL_ID + ") "
                         + "REFERENCES " + JournalsTable.TABLE_NAME
                         + "(" + Journals.COLUMN_ID + ") ON DELETE CASCADE);");
-                // Create trigger to update modified date.
-                db.execSQL("CREATE TRIGGER trig_" + TABLE_NAME + "_AfterUpdate"
-                        + " AFTER UPDATE ON " + TABLE_NAME + " FOR EACH ROW BEGIN"
-                        + " UPDATE " + TABLE_NAME
-                        + " SET " + Activities.COLUMN_MODIFIED + " = CURRENT_TIMESTAMP"
-                        + " WHERE " + Activities.COLUMN_ID + " = new." + Activities.COLUMN_ID + ";"
-                        + " END");
+                createIndexes(db);
+                createPageIndexes(db);
+                createLocationIndex(db);
+                createDirectoryPageIndex(db);
+            }
+
+            /**
+             * Create indexes on the server ID and on the journal ID. The journal ID index also
+             * serves the {@code ON DELETE CASCADE} lookups made when a journal is deleted.
+             */
+            public static void createIndexes(SQLiteDatabase db) {
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_" + TABLE_NAME + "_JournalId ON "
+                        + TABLE_NAME + " (" + Activities.COLUMN_JOURNAL_ID + ", "
+                        + Activities.COLUMN_IS_DELETED + ")");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_" + TABLE_NAME + "_ServerId ON "
+                        + TABLE_NAME + " (" + Activities.COLUMN_SERVER_ID + ")");
+            }
+
+            /**
+             * Replace the journal ID index with one on the journal ID and creation time, used by
+             * paged queries within a journal.
+             */
+            public static void createPageIndexes(SQLiteDatabase db) {
+                db.execSQL("DROP INDEX IF EXISTS idx_" + TABLE_NAME + "_JournalId");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_" + TABLE_NAME + "_JournalIdCreated"
+                        + " ON " + TABLE_NAME + " (" + Activities.COLUMN_JOURNAL_ID + ", "
+                        + Activities.COLUMN_CREATED + ")");
+            }
+
+            /**
+             * Create an index on the creation time and row ID, used by paged queries of the
+             * activities of all journals.
+             */
+            public static void createDirectoryPageIndex(SQLiteDatabase db) {
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_" + TABLE_NAME + "_CreatedId ON "
+                        + TABLE_NAME + " (" + Activities.COLUMN_CREATED + ", "
+                        + Activities.COLUMN_ID + ")");
             }
 
             /**
-             * Upgrade the table.
+             * Create an index on the location, so the activities in a latitude band are found
+             * without a table scan and their longitude is checked without reading the rows.
              */
-            public static void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-                db.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
-                onCreate(db);
+            public static void createLocationIndex(SQLiteDatabase db) {
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_" + TABLE_NAME + "_Location ON "
+                        + TABLE_NAME + " (" + Activities.COLUMN_LATITUDE + ", "
+                        + Activities.COLUMN_LONGITUDE + ")");
             }
 
         }
 
         /**
-         * Class for contacts table creation and upgrade.
+         * Class for contacts table creation and indexing.
          */
-        private static class ContactsTable {
+        static class ContactsTable {
 
             /**
              * Table name for contacts table.
@@ -803,10 +1729,24 @@ public class JournalProvider extends FileProvider {
              */
             public static final String[] READ_ONLY_COLUMNS =
                     new String[]{Contacts.COLUMN_ID, Contacts.COLUMN_COUNT, Contacts.COLUMN_CREATED,
-                            Contacts.COLUMN_MODIFIED};
+                            Contacts.COLUMN_MODIFIED, Contacts.COLUMN_CREATED_TEXT,
+                            Contacts.COLUMN_MODIFIED_TEXT};
+            /**
+             * List of the columns stored in the table.
+             */
+            public static final String[] COLUMNS = new String[]{Contacts.COLUMN_ID,
+                    Contacts.COLUMN_JOURNAL_ID, Contacts.COLUMN_NAME, Contacts.COLUMN_DESCRIPTION,
+                    Contacts.COLUMN_EMAIL, Contacts.COLUMN_PHONE, Contacts.COLUMN_SERVER_ID,
+                    Contacts.COLUMN_IS_DELETED, Contacts.COLUMN_CREATED, Contacts.COLUMN_MODIFIED,
+                    Contacts.COLUMN_DELETE_ACKNOWLEDGED};
+            /**
+             * Map of the columns a contact query may request to the SQL that produces them.
+             */
+            public static final Map<String, String> PROJECTION_MAP =
+                    Collections.unmodifiableMap(createProjectionMap(TABLE_NAME, COLUMNS));
 
             /**
-             * Create the contacts table.
+             * Create the table and its current indexes.
              */
             public static void onCreate(SQLiteDatabase db) {
                 db.execSQL("CREATE TABLE " + TABLE_NAME + " ("
@@ -819,26 +1759,198 @@ public class JournalProvider extends FileProvider {
                         + Contacts.COLUMN_SERVER_ID + " INTEGER, "
                         + Contacts.COLUMN_IS_DELETED + " INTEGER NOT NULL DEFAULT 0 "
                         + "CHECK (" + Contacts.COLUMN_IS_DELETED + " IN(0,1)), "
-                        + Contacts.COLUMN_CREATED + " TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, "
-                        + Contacts.COLUMN_MODIFIED + " TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                        + Contacts.COLUMN_CREATED + " INTEGER NOT NULL DEFAULT "
+                        + CURRENT_TIME_MILLIS + ", "
+                        + Contacts.COLUMN_MODIFIED + " INTEGER NOT NULL DEFAULT "
+                        + CURRENT_TIME_MILLIS + ", "
+                        + Contacts.COLUMN_DELETE_ACKNOWLEDGED + " "
+                        + DELETE_ACKNOWLEDGED_DEFINITION + ", "
                         + "FOREIGN KEY(" + Contacts.COLUMN_JOURNAL_ID + ") "
                         + "REFERENCES " + JournalsTable.TABLE_NAME
                         + "(" + Journals.COLUMN_ID + ") ON DELETE CASCADE);");
-                // Create trigger to update modified date.
-                db.execSQL("CREATE TRIGGER trig_" + TABLE_NAME + "_AfterUpdate"
-                        + " AFTER UPDATE ON " + TABLE_NAME + " FOR EACH ROW BEGIN"
-                        + " UPDATE " + TABLE_NAME
-                        + " SET " + Contacts.COLUMN_MODIFIED + " = CURRENT_TIMESTAMP"
-                        + " WHERE " + Contacts.COLUMN_ID + " = new." + Contacts.COLUMN_ID + ";"
-                        + " END");
+                createIndexes(db);
+                createPageIndexes(db);
+                createDirectoryPageIndex(db);
+            }
+
+            /**
+             * Create indexes on the server ID and on the journal ID. The journal ID index also
+             * serves the {@code ON DELETE CASCADE} lookups made when a journal is deleted.
+             */
+            public static void createIndexes(SQLiteDatabase db) {
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_" + TABLE_NAME + "_JournalId ON "
+                        + TABLE_NAME + " (" + Contacts.COLUMN_JOURNAL_ID + ", "
+                        + Contacts.COLUMN_IS_DELETED + ")");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_" + TABLE_NAME + "_ServerId ON "
+                        + TABLE_NAME + " (" + Contacts.COLUMN_SERVER_ID + ")");
+            }
+
+            /**
+             * Replace the journal ID index with one on the journal ID and creation time, used by
+             * paged queries within a journal.
+             */
+            public static void createPageIndexes(SQLiteDatabase db) {
+                db.execSQL("DROP INDEX IF EXISTS idx_" + TABLE_NAME + "_JournalId");
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_" + TABLE_NAME + "_JournalIdCreated"
+                        + " ON " + TABLE_NAME + " (" + Contacts.COLUMN_JOURNAL_ID + ", "
+                        + Contacts.COLUMN_CREATED + ")");
+            }
+
+            /**
+             * Create an index on the creation time and row ID, used by paged queries of the
+             * contacts of all journals.
+             */
+            public static void createDirectoryPageIndex(SQLiteDatabase db) {
+                db.execSQL("CREATE INDEX IF NOT EXISTS idx_" + TABLE_NAME + "_CreatedId ON "
+                        + TABLE_NAME + " (" + Contacts.COLUMN_CREATED + ", "
+                        + Contacts.COLUMN_ID + ")");
+            }
+
+        }
+
+        /**
+         * Class for full-text search table creation and maintenance.
+         * <p/>
+         * The table indexes the text of journals, activities and contacts that aren't pending
+         * deletion, and is kept current by triggers on those tables. Each record is stored under a
+         * document ID combining its row ID and {@link Search#COLUMN_TYPE type}, as FTS4 on the
+         * oldest supported platform can't hold unindexed columns.
+         */
+        static class SearchTable {
+
+            /**
+             * Name of table.
+             */
+            public static final String TABLE_NAME = "Search";
+            /**
+             * Indexed column holding a journal or activity title, or a contact name.
+             */
+            private static final String COLUMN_TITLE = Search.COLUMN_TITLE;
+            /**
+             * Indexed column holding an activity or contact description.
+             */
+            private static final String COLUMN_DESCRIPTION = "description";
+            /**
+             * Indexed column holding an activity location.
+             */
+            private static final String COLUMN_LOCATION = "location";
+            /**
+             * Multiplier applied to a row ID to leave room for the type in a document ID.
+             */
+            private static final int DOCID_STRIDE = 4;
+            /**
+             * Expression for the row ID of the matched record.
+             */
+            private static final String ITEM_ID = "docid / " + DOCID_STRIDE;
+            /**
+             * Expression for the type of the matched record.
+             */
+            private static final String TYPE = "docid % " + DOCID_STRIDE;
+            /**
+             * Query matching the single argument against the index, producing the columns of
+             * {@link Search}. Relevance is the number of phrase matches reported by {@code
+             * offsets()}, which lists four integers per match.
+             */
+            public static final String QUERY_MATCH = "SELECT docid AS " + Search.COLUMN_ID + ", "
+                    + TYPE + " AS " + Search.COLUMN_TYPE + ", "
+                    + ITEM_ID + " AS " + Search.COLUMN_ITEM_ID + ", "
+                    + "CASE " + TYPE
+                    + " WHEN " + Search.TYPE_ACTIVITY + " THEN (SELECT "
+                    + Activities.COLUMN_JOURNAL_ID + " FROM " + ActivitiesTable.TABLE_NAME
+                    + " WHERE " + ActivitiesTable.TABLE_NAME + "." + Activities.COLUMN_ID + " = "
+                    + ITEM_ID + ")"
+                    + " WHEN " + Search.TYPE_CONTACT + " THEN (SELECT "
+                    + Contacts.COLUMN_JOURNAL_ID + " FROM " + ContactsTable.TABLE_NAME
+                    + " WHERE " + ContactsTable.TABLE_NAME + "." + Contacts.COLUMN_ID + " = "
+                    + ITEM_ID + ")"
+                    + " ELSE " + ITEM_ID + " END AS " + Search.COLUMN_JOURNAL_ID + ", "
+                    + COLUMN_TITLE + " AS " + Search.COLUMN_TITLE + ", "
+                    + "snippet(" + TABLE_NAME + ", '<b>', '</b>', '...', -1, 10) AS "
+                    + Search.COLUMN_SNIPPET + ", "
+                    + "(length(offsets(" + TABLE_NAME + ")) - length(replace(offsets("
+                    + TABLE_NAME + "), ' ', '')) + 1) / 4 AS " + Search.COLUMN_RANK
+                    + " FROM " + TABLE_NAME + " WHERE " + TABLE_NAME + " MATCH ?";
+
+            /**
+             * Create the table and the triggers maintaining it, and index any existing data.
+             */
+            public static void onCreate(SQLiteDatabase db) {
+                // Index prefixes of up to three characters for searches made while typing.
+                db.execSQL("CREATE VIRTUAL TABLE " + TABLE_NAME + " USING fts4("
+                        + COLUMN_TITLE + ", " + COLUMN_DESCRIPTION + ", " + COLUMN_LOCATION + ", "
+                        + "prefix=\"2,3\")");
+                createTriggers(db, JournalsTable.TABLE_NAME, Search.TYPE_JOURNAL,
+                        Journals.COLUMN_IS_DELETED, 1, Journals.COLUMN_TITLE, "NULL", "NULL");
+                createTriggers(db, ActivitiesTable.TABLE_NAME, Search.TYPE_ACTIVITY,
+                        Activities.COLUMN_IS_DELETED, 0, Activities.COLUMN_TITLE,
+                        Activities.COLUMN_DESCRIPTION, Activities.COLUMN_LOCATION);
+                createTriggers(db, ContactsTable.TABLE_NAME, Search.TYPE_CONTACT,
+                        Contacts.COLUMN_IS_DELETED, 0, Contacts.COLUMN_NAME,
+                        Contacts.COLUMN_DESCRIPTION, "NULL");
+            }
+
+            /**
+             * Index a table and create triggers that keep the index in step with it.
+             *
+             * @param db          the database
+             * @param table       the table to index
+             * @param type        the search result type of the table's rows
+             * @param isDeleted   the column flagging rows pending deletion
+             * @param live        the value of the deletion flag for rows that aren't deleted
+             * @param title       the column, or {@code NULL}, to index as the title
+             * @param description the column, or {@code NULL}, to index as the description
+             * @param location    the column, or {@code NULL}, to index as the location
+             */
+            private static void createTriggers(SQLiteDatabase db, String table, int type,
+                                               String isDeleted, int live, String title,
+                                               String description, String location) {
+                final String insert = "INSERT INTO " + TABLE_NAME + " (docid, " + COLUMN_TITLE
+                        + ", " + COLUMN_DESCRIPTION + ", " + COLUMN_LOCATION + ") SELECT ";
+                // Statements indexing the new row and removing the old row from the index.
+                final String insertNew = insert + newRow(BaseColumns._ID) + " * " + DOCID_STRIDE
+                        + " + " + type + ", " + newRow(title) + ", " + newRow(description) + ", "
+                        + newRow(location) + " WHERE " + newRow(isDeleted) + " = " + live + "; ";
+                final String deleteOld = "DELETE FROM " + TABLE_NAME + " WHERE docid = old."
+                        + BaseColumns._ID + " * " + DOCID_STRIDE + " + " + type + "; ";
+                db.execSQL(insert + BaseColumns._ID + " * " + DOCID_STRIDE + " + " + type + ", "
+                        + title + ", " + description + ", " + location + " FROM " + table
+                        + " WHERE " + isDeleted + " = " + live);
+                db.execSQL("CREATE TRIGGER trig_" + table + "_SearchInsert AFTER INSERT ON "
+                        + table + " FOR EACH ROW BEGIN " + insertNew + "END");
+                // Only changes to indexed text or to the deletion flag touch the index.
+                db.execSQL("CREATE TRIGGER trig_" + table + "_SearchUpdate AFTER UPDATE OF "
+                        + columns(isDeleted, title, description, location) + " ON " + table
+                        + " FOR EACH ROW BEGIN " + deleteOld + insertNew + "END");
+                db.execSQL("CREATE TRIGGER trig_" + table + "_SearchDelete AFTER DELETE ON "
+                        + table + " FOR EACH ROW BEGIN " + deleteOld + "END");
+            }
+
+            /**
+             * Qualify a column with the {@code new} row of a trigger. {@code NULL} is returned
+             * unchanged.
+             */
+            private static String newRow(String column) {
+                return "NULL".equals(column) ? column : "new." + column;
             }
 
             /**
-             * Upgrade the contacts table.
+             * List the columns watched by an update trigger.
+             *
+             * @param isDeleted   the deletion flag column
+             * @param title       the title column, or {@code NULL}
+             * @param description the description column, or {@code NULL}
+             * @param location    the location column, or {@code NULL}
+             * @return the comma separated column names
              */
-            public static void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-                db.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
-                onCreate(db);
+            private static String columns(String isDeleted, String title, String description,
+                                          String location) {
+                final StringBuilder builder = new StringBuilder(isDeleted);
+                for (String column : new String[]{title, description, location}) {
+                    if (!"NULL".equals(column)) {
+                        builder.append(", ").append(column);
+                    }
+                }
+                return builder.toString();
             }
 
         }
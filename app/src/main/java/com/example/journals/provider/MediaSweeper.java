@@ -0,0 +1,217 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.provider;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.journals.BuildConfig;
+import com.example.journals.R;
+import com.example.journals.provider.JournalContract.Accounts;
+import com.example.journals.provider.JournalContract.Activities;
+import com.example.journals.provider.JournalContract.Images;
+import com.example.journals.provider.JournalProvider.DatabaseHelper.AccountsTable;
+import com.example.journals.provider.JournalProvider.DatabaseHelper.ActivitiesTable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background task that deletes image files no longer referenced by the provider.
+ * <p/>
+ * Rather than deleting images one at a time while rows are deleted, the sweeper collects every
+ * image URI still referenced by the database in a single query, compares them against the
+ * contents of the images directory and deletes the files left over in small batches.
+ */
+class MediaSweeper implements Runnable {
+
+    /**
+     * Set whether debug messages should be logged.
+     */
+    private static final boolean DEBUG = BuildConfig.DEBUG;
+    /**
+     * Tag for displaying debug messages.
+     */
+    private static final String DEBUG_TAG = MediaSweeper.class.getSimpleName();
+    /**
+     * Time to wait after the last request before sweeping, so that bursts of deletes are handled
+     * by a single sweep (in milliseconds).
+     */
+    private static final long SWEEP_DELAY = 5000;
+    /**
+     * Minimum age of a file before it can be deleted (in milliseconds).
+     * <p/>
+     * Images are written to the images directory before the row referencing them is saved, so
+     * recent files are left alone in case they belong to an edit in progress.
+     */
+    private static final long MIN_FILE_AGE = TimeUnit.DAYS.toMillis(1);
+    /**
+     * Number of files deleted in each batch.
+     */
+    private static final int BATCH_SIZE = 50;
+    /**
+     * Time to pause between batches, so that large sweeps don't monopolize storage (in
+     * milliseconds).
+     */
+    private static final long BATCH_PAUSE = 50;
+    /**
+     * Query returning every image URI referenced by the database.
+     */
+    private static final String QUERY_REFERENCED_URIS =
+            "SELECT " + Activities.COLUMN_IMAGE_URI + " FROM " + ActivitiesTable.TABLE_NAME
+                    + " WHERE " + Activities.COLUMN_IMAGE_URI + " IS NOT NULL"
+                    + " UNION SELECT " + Accounts.COLUMN_AVATAR_URI + " FROM "
+                    + AccountsTable.TABLE_NAME
+                    + " WHERE " + Accounts.COLUMN_AVATAR_URI + " IS NOT NULL";
+
+    /**
+     * Helper used to open the provider database.
+     */
+    private final SQLiteOpenHelper mDatabaseHelper;
+    /**
+     * Directory holding the provider's images.
+     */
+    private final File mDirectory;
+    /**
+     * Handler running sweeps on a background thread, created when the first sweep is requested.
+     */
+    private Handler mHandler;
+
+    /**
+     * Create a new media sweeper.
+     *
+     * @param context        the context used to access resources
+     * @param databaseHelper helper used to open the provider database
+     */
+    MediaSweeper(Context context, SQLiteOpenHelper databaseHelper) {
+        mDatabaseHelper = databaseHelper;
+        mDirectory = new File(context.getFilesDir(),
+                context.getString(R.string.provider_filePath_images));
+    }
+
+    /**
+     * Request a sweep of the images directory.
+     * <p/>
+     * The sweep runs on a background thread once no further sweeps have been requested for a
+     * short time.
+     */
+    synchronized void schedule() {
+        if (mHandler == null) {
+            final HandlerThread thread =
+                    new HandlerThread(DEBUG_TAG, Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            mHandler = new Handler(thread.getLooper());
+        }
+        mHandler.removeCallbacks(this);
+        mHandler.postDelayed(this, SWEEP_DELAY);
+    }
+
+    /**
+     * Schedule another sweep for when a file that was too young to delete becomes old enough.
+     * Called from a sweep, so the handler already exists.
+     *
+     * @param delay the time until the file is old enough (in milliseconds)
+     */
+    private synchronized void scheduleRetry(long delay) {
+        mHandler.removeCallbacks(this);
+        mHandler.postDelayed(this, delay + SWEEP_DELAY);
+    }
+
+    @Override
+    public void run() {
+        final long startTime = SystemClock.elapsedRealtime();
+        final File[] files = mDirectory.listFiles();
+        if (files == null || files.length == 0) {
+            return;
+        }
+        // Find files that are old enough to delete and are not referenced by the database.
+        final Set<String> referencedNames = getReferencedNames();
+        final long maxLastModified = System.currentTimeMillis() - MIN_FILE_AGE;
+        final List<File> orphans = new ArrayList<>();
+        long youngestSkipped = 0;
+        for (File file : files) {
+            if (file.isFile() && !referencedNames.contains(file.getName())) {
+                final long lastModified = file.lastModified();
+                if (lastModified < maxLastModified) {
+                    orphans.add(file);
+                } else {
+                    youngestSkipped = Math.max(youngestSkipped, lastModified);
+                }
+            }
+        }
+        // Unreferenced files too young to delete may never be followed by another request, so
+        // sweep again once the youngest of them is old enough.
+        if (youngestSkipped > 0) {
+            scheduleRetry(youngestSkipped - maxLastModified);
+        }
+        // Delete the orphaned files in batches.
+        int noDeleted = 0;
+        for (int i = 0; i < orphans.size(); i++) {
+            if (i > 0 && i % BATCH_SIZE == 0) {
+                SystemClock.sleep(BATCH_PAUSE);
+            }
+            if (orphans.get(i).delete()) {
+                noDeleted++;
+            }
+        }
+        if (DEBUG) {
+            Log.i(DEBUG_TAG, "Deleted " + noDeleted + " of " + files.length + " images in "
+                    + (SystemClock.elapsedRealtime() - startTime) + " ms");
+        }
+    }
+
+    /**
+     * Get the names of all files in the images directory referenced by the database.
+     *
+     * @return the names of the referenced files
+     */
+    private Set<String> getReferencedNames() {
+        final Set<String> names = new HashSet<>();
+        final SQLiteDatabase database = mDatabaseHelper.getReadableDatabase();
+        final Cursor cursor = database.rawQuery(QUERY_REFERENCED_URIS, null);
+        try {
+            while (cursor.moveToNext()) {
+                final Uri uri = Uri.parse(cursor.getString(0));
+                final List<String> segments = uri.getPathSegments();
+                if (JournalContract.AUTHORITY.equals(uri.getAuthority()) && segments.size() > 1
+                        && Images.CONTENT_DIRECTORY.equals(segments.get(0))) {
+                    names.add(uri.getLastPathSegment());
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return names;
+    }
+
+}
@@ -0,0 +1,251 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.provider;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.util.LruCache;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * An in-memory cache of small query results.
+ * <p/>
+ * Each result is stored as a copy of its rows, tagged with the table it was read from and the
+ * journal it is limited to, if any. Writes invalidate only the entries that could include the
+ * rows they changed. Results being read while an invalidation happens are not cached, as they may
+ * have been read from the database before the write was committed.
+ */
+class QueryCache {
+
+    /**
+     * Journal ID of an entry, or of an invalidation, that isn't limited to a single journal.
+     */
+    static final long ANY_JOURNAL = -1;
+    /**
+     * Largest number of rows a cached result may have.
+     */
+    private static final int MAX_ROWS = 100;
+    /**
+     * Estimated size of a row or value in addition to its content (in bytes).
+     */
+    private static final int OVERHEAD_SIZE = 16;
+
+    /**
+     * The cached results, keyed by the query that produced them.
+     */
+    private final LruCache<String, Entry> mEntries;
+    /**
+     * Number of invalidations made, used to detect results that were read during one.
+     */
+    private long mGeneration;
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxSize the largest estimated size of all cached results (in bytes)
+     */
+    QueryCache(int maxSize) {
+        mEntries = new LruCache<String, Entry>(maxSize) {
+            @Override
+            protected int sizeOf(String key, Entry value) {
+                return value.size;
+            }
+        };
+    }
+
+    /**
+     * Create the key identifying a query.
+     *
+     * @param uri           the content URI
+     * @param projection    the columns requested
+     * @param selection     the caller's selection
+     * @param selectionArgs arguments for the selection
+     * @param sortOrder     the sort order
+     * @return the key
+     */
+    static String createKey(Uri uri, String[] projection, String selection,
+                            String[] selectionArgs, String sortOrder) {
+        return uri + "\n" + Arrays.toString(projection) + "\n" + selection + "\n"
+                + Arrays.toString(selectionArgs) + "\n" + sortOrder;
+    }
+
+    /**
+     * Get a cursor over a cached result.
+     *
+     * @param key the key of the query
+     * @return a new cursor over the result, or {@code null} if the result isn't cached
+     */
+    Cursor get(String key) {
+        final Entry entry = mEntries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        final MatrixCursor cursor = new MatrixCursor(entry.columns, entry.rows.length);
+        for (Object[] row : entry.rows) {
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    /**
+     * Get the current generation, to be passed to {@link #put(String, String, long, Cursor,
+     * long)} once the query has been run.
+     *
+     * @return the number of invalidations made so far
+     */
+    synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Cache the result of a query, if it is small enough and no invalidation has happened since
+     * the query began. The cursor is left before its first row.
+     *
+     * @param key        the key of the query
+     * @param table      the table the result was read from
+     * @param journalId  the journal the result is limited to, or {@link #ANY_JOURNAL}
+     * @param cursor     the result
+     * @param generation the generation obtained before the query was run
+     */
+    void put(String key, String table, long journalId, Cursor cursor, long generation) {
+        final int count = cursor.getCount();
+        if (count > MAX_ROWS) {
+            return;
+        }
+        final String[] columns = cursor.getColumnNames();
+        final Object[][] rows = new Object[count][];
+        int size = OVERHEAD_SIZE * (columns.length + 1);
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            final Object[] row = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                switch (cursor.getType(i)) {
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        row[i] = cursor.getLong(i);
+                        break;
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        row[i] = cursor.getDouble(i);
+                        break;
+                    case Cursor.FIELD_TYPE_STRING:
+                        final String string = cursor.getString(i);
+                        row[i] = string;
+                        size += 2 * string.length();
+                        break;
+                    case Cursor.FIELD_TYPE_BLOB:
+                        final byte[] blob = cursor.getBlob(i);
+                        row[i] = blob;
+                        size += blob.length;
+                        break;
+                }
+                size += OVERHEAD_SIZE;
+            }
+            rows[cursor.getPosition()] = row;
+        }
+        cursor.moveToPosition(-1);
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mEntries.put(key, new Entry(columns, rows, table, journalId, size));
+            }
+        }
+    }
+
+    /**
+     * Remove the cached results that could include rows of the specified tables belonging to a
+     * journal.
+     *
+     * @param tables    the tables that were written
+     * @param journalId the journal whose rows were written, or {@link #ANY_JOURNAL} if unknown
+     */
+    synchronized void invalidate(String[] tables, long journalId) {
+        mGeneration++;
+        for (Map.Entry<String, Entry> mapEntry : mEntries.snapshot().entrySet()) {
+            final Entry entry = mapEntry.getValue();
+            if (Arrays.asList(tables).contains(entry.table) && (journalId == ANY_JOURNAL
+                    || entry.journalId == ANY_JOURNAL || entry.journalId == journalId)) {
+                mEntries.remove(mapEntry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Get the number of queries answered from the cache.
+     */
+    int hitCount() {
+        return mEntries.hitCount();
+    }
+
+    /**
+     * Get the number of queries that weren't cached.
+     */
+    int missCount() {
+        return mEntries.missCount();
+    }
+
+    /**
+     * Get the estimated size of the cached results (in bytes).
+     */
+    int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * A cached query result.
+     */
+    private static final class Entry {
+
+        /**
+         * The names of the columns of the result.
+         */
+        final String[] columns;
+        /**
+         * The values of each row of the result.
+         */
+        final Object[][] rows;
+        /**
+         * The table the result was read from.
+         */
+        final String table;
+        /**
+         * The journal the result is limited to, or {@link #ANY_JOURNAL}.
+         */
+        final long journalId;
+        /**
+         * The estimated size of the result (in bytes).
+         */
+        final int size;
+
+        /**
+         * Create a new entry.
+         */
+        Entry(String[] columns, Object[][] rows, String table, long journalId, int size) {
+            this.columns = columns;
+            this.rows = rows;
+            this.table = table;
+            this.journalId = journalId;
+            this.size = size;
+        }
+
+    }
+
+}
@@ -20,22 +20,91 @@
  */
 package com.example.journals.provider;
 
-import android.content.AsyncQueryHandler;
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Message;
+import android.os.Process;
+import android.text.TextUtils;
+import android.util.Log;
 
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
 
 /**
  * A simple asynchronous query handler that forwards query results to a listener.
  * <p/>
- * Clients can receive query results by implementing the {@link QueryListener} interface.
+ * Clients can receive query results by implementing the {@link QueryListener} interface. Results
+ * are delivered on the thread that created the handler, which must have a looper.
+ * <p/>
+ * Operations from all handlers run in two shared lanes. Queries run on a pool of workers, in the
+ * order they were started. Inserts, updates and deletes run one at a time on a background worker,
+ * in the order they were started, so they never hold up the queries of other handlers. A query
+ * waits for the writes started before it by the same handler, so it sees their changes as it would
+ * if the handler ran its operations in order. A query or update that is still waiting to run is
+ * dropped when the same handler starts a newer one with the same token and URI that supersedes it.
  */
-public class QueryHandler extends AsyncQueryHandler {
+public class QueryHandler extends Handler {
+
+    /**
+     * Tag for displaying debug messages.
+     */
+    private static final String DEBUG_TAG = QueryHandler.class.getSimpleName();
+    /**
+     * Operation types, used as the message codes for delivering results.
+     */
+    private static final int EVENT_QUERY = 1, EVENT_INSERT = 2, EVENT_UPDATE = 3,
+            EVENT_DELETE = 4;
+    /**
+     * Number of workers running queries.
+     */
+    private static final int QUERY_WORKER_COUNT = 2;
+    /**
+     * Time an idle worker waits for another operation before it stops (in seconds).
+     */
+    private static final long WORKER_KEEP_ALIVE = 30;
+    /**
+     * Lane running queries, in the order they were started.
+     */
+    private static final ThreadPoolExecutor sQueryExecutor = createExecutor(
+            QUERY_WORKER_COUNT, new LinkedBlockingQueue<Runnable>(), "query",
+            Process.THREAD_PRIORITY_DEFAULT);
+    /**
+     * Lane running inserts, updates and deletes, one at a time in the order they were started.
+     */
+    private static final ThreadPoolExecutor sWriteExecutor = createExecutor(
+            1, new LinkedBlockingQueue<Runnable>(), "write", Process.THREAD_PRIORITY_BACKGROUND);
 
+    /**
+     * The content resolver used to run operations.
+     */
+    private final ContentResolver mResolver;
+    /**
+     * Operations that have been started and whose results haven't been delivered yet.
+     */
+    private final List<Operation> mOperations = new ArrayList<>();
+    /**
+     * The last write started by this handler that hasn't finished, or {@code null}. Guarded by
+     * {@link #mOperations}.
+     */
+    private Operation mLastWrite = null;
     /**
      * A reference to a query listener.
      */
@@ -47,7 +116,67 @@ public class QueryHandler extends AsyncQueryHandler {
      * @param cr the content resolver to use with this query handler
      */
     public QueryHandler(ContentResolver cr) {
-        super(cr);
+        this(cr, null);
+    }
+
+    /**
+     * Construct a new asynchronous query handler whose queries are cancelled when a lifecycle
+     * ends.
+     * <p/>
+     * Inserts, updates and deletes still run once the lifecycle has ended, and their results are
+     * still delivered, so that changes made by the user aren't lost.
+     *
+     * @param cr    the content resolver to use with this query handler
+     * @param owner the owner of the lifecycle, usually a fragment, or {@code null}
+     */
+    public QueryHandler(ContentResolver cr, @Nullable LifecycleOwner owner) {
+        mResolver = cr;
+        if (owner != null) {
+            owner.getLifecycle().addObserver(new LifecycleEventObserver() {
+                @Override
+                public void onStateChanged(@NonNull LifecycleOwner source,
+                                           @NonNull Lifecycle.Event event) {
+                    if (event == Lifecycle.Event.ON_DESTROY) {
+                        source.getLifecycle().removeObserver(this);
+                        cancelQueries();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Cancel the operations with a token that haven't run yet, and drop the results of queries
+     * with the token that are running.
+     * <p/>
+     * Inserts, updates and deletes that are already running can't be undone, but their results
+     * are still dropped.
+     *
+     * @param token the token of the operations to cancel
+     */
+    public void cancelOperation(int token) {
+        synchronized (mOperations) {
+            for (int i = mOperations.size() - 1; i >= 0; i--) {
+                final Operation operation = mOperations.get(i);
+                if (operation.token == token) {
+                    cancel(operation);
+                }
+            }
+        }
+    }
+
+    /**
+     * Cancel the queries that haven't run yet, and drop the results of running queries.
+     */
+    public void cancelQueries() {
+        synchronized (mOperations) {
+            for (int i = mOperations.size() - 1; i >= 0; i--) {
+                final Operation operation = mOperations.get(i);
+                if (operation.event == EVENT_QUERY) {
+                    cancel(operation);
+                }
+            }
+        }
     }
 
     /**
@@ -70,7 +199,121 @@ public class QueryHandler extends AsyncQueryHandler {
         mQueryListener = new WeakReference<>(listener);
     }
 
+    /**
+     * Start an asynchronous delete.
+     *
+     * @param token     a token passed back to {@link QueryListener#onDeleteComplete(int, Object,
+     *                  int)} and used to cancel the operation
+     * @param cookie    an object passed back to the listener
+     * @param uri       the URI to delete from
+     * @param selection the rows to delete
+     * @param args      arguments for the selection
+     */
+    public void startDelete(int token, Object cookie, Uri uri, String selection,
+                                  String[] args) {
+        final Operation operation = new Operation(EVENT_DELETE, token, cookie, uri);
+        operation.selection = selection;
+        operation.selectionArgs = args;
+        start(operation);
+    }
+
+    /**
+     * Start an asynchronous insert.
+     *
+     * @param token  a token passed back to {@link QueryListener#onInsertComplete(int, Object,
+     *               Uri)} and used to cancel the operation
+     * @param cookie an object passed back to the listener
+     * @param uri    the URI to insert into
+     * @param values the values of the new row
+     */
+    public void startInsert(int token, Object cookie, Uri uri, ContentValues values) {
+        final Operation operation = new Operation(EVENT_INSERT, token, cookie, uri);
+        operation.values = values;
+        start(operation);
+    }
+
+    /**
+     * Start an asynchronous query.
+     * <p/>
+     * A query with the same token and URI that hasn't run yet is dropped.
+     *
+     * @param token         a token passed back to {@link QueryListener#onQueryComplete(int,
+     *                      Object, Cursor)} and used to cancel the operation
+     * @param cookie        an object passed back to the listener
+     * @param uri           the URI to query
+     * @param projection    the columns to return
+     * @param selection     the rows to return
+     * @param selectionArgs arguments for the selection
+     * @param orderBy       the order of the rows
+     */
+    public void startQuery(int token, Object cookie, Uri uri, String[] projection,
+                                 String selection, String[] selectionArgs, String orderBy) {
+        final Operation operation = new Operation(EVENT_QUERY, token, cookie, uri);
+        operation.projection = projection;
+        operation.selection = selection;
+        operation.selectionArgs = selectionArgs;
+        operation.orderBy = orderBy;
+        start(operation);
+    }
+
+    /**
+     * Start an asynchronous update.
+     * <p/>
+     * An update with the same token, URI and selection that hasn't run yet is dropped if every
+     * column it would change is changed by this update as well.
+     *
+     * @param token     a token passed back to {@link QueryListener#onUpdateComplete(int, Object,
+     *                  int)} and used to cancel the operation
+     * @param cookie    an object passed back to the listener
+     * @param uri       the URI to update
+     * @param values    the new values of the rows
+     * @param selection the rows to update
+     * @param args      arguments for the selection
+     */
+    public void startUpdate(int token, Object cookie, Uri uri, ContentValues values,
+                                  String selection, String[] args) {
+        final Operation operation = new Operation(EVENT_UPDATE, token, cookie, uri);
+        operation.values = values;
+        operation.selection = selection;
+        operation.selectionArgs = args;
+        start(operation);
+    }
+
     @Override
+    public void handleMessage(Message msg) {
+        final Operation operation = (Operation) msg.obj;
+        synchronized (mOperations) {
+            mOperations.remove(operation);
+        }
+        if (operation.isCancelled) {
+            if (operation.result instanceof Cursor) {
+                ((Cursor) operation.result).close();
+            }
+            return;
+        }
+        switch (msg.what) {
+            case EVENT_QUERY:
+                onQueryComplete(operation.token, operation.cookie, (Cursor) operation.result);
+                break;
+            case EVENT_INSERT:
+                onInsertComplete(operation.token, operation.cookie, (Uri) operation.result);
+                break;
+            case EVENT_UPDATE:
+                onUpdateComplete(operation.token, operation.cookie, (Integer) operation.result);
+                break;
+            case EVENT_DELETE:
+                onDeleteComplete(operation.token, operation.cookie, (Integer) operation.result);
+                break;
+        }
+    }
+
+    /**
+     * Called when an asynchronous delete is completed.
+     *
+     * @param token  the token passed to {@link #startDelete(int, Object, Uri, String, String[])}
+     * @param cookie the cookie passed to {@link #startDelete(int, Object, Uri, String, String[])}
+     * @param result the number of rows deleted, or 0 if the delete failed
+     */
     protected void onDeleteComplete(int token, Object cookie, int result) {
         final QueryListener listener = getQueryListener();
         if (listener != null) {
@@ -78,7 +321,13 @@ public class QueryHandler extends AsyncQueryHandler {
         }
     }
 
-    @Override
+    /**
+     * Called when an asynchronous insert is completed.
+     *
+     * @param token  the token passed to {@link #startInsert(int, Object, Uri, ContentValues)}
+     * @param cookie the cookie passed to {@link #startInsert(int, Object, Uri, ContentValues)}
+     * @param uri    the URI of the new row, or {@code null} if the insert failed
+     */
     protected void onInsertComplete(int token, Object cookie, Uri uri) {
         final QueryListener listener = getQueryListener();
         if (listener != null) {
@@ -86,7 +335,15 @@ public class QueryHandler extends AsyncQueryHandler {
         }
     }
 
-    @Override
+    /**
+     * Called when an asynchronous query is completed.
+     *
+     * @param token  the token passed to {@link #startQuery(int, Object, Uri, String[], String,
+     *               String[], String)}
+     * @param cookie the cookie passed to {@link #startQuery(int, Object, Uri, String[], String,
+     *               String[], String)}
+     * @param cursor the result of the query, or {@code null} if it failed
+     */
     protected void onQueryComplete(int token, Object cookie, Cursor cursor) {
         final QueryListener listener = getQueryListener();
         if (listener != null) {
@@ -96,7 +353,15 @@ public class QueryHandler extends AsyncQueryHandler {
         }
     }
 
-    @Override
+    /**
+     * Called when an asynchronous update is completed.
+     *
+     * @param token  the token passed to {@link #startUpdate(int, Object, Uri, ContentValues,
+     *               String, String[])}
+     * @param cookie the cookie passed to {@link #startUpdate(int, Object, Uri, ContentValues,
+     *               String, String[])}
+     * @param result the number of rows updated, or 0 if the update failed
+     */
     protected void onUpdateComplete(int token, Object cookie, int result) {
         final QueryListener listener = getQueryListener();
         if (listener != null) {
@@ -104,6 +369,264 @@ public class QueryHandler extends AsyncQueryHandler {
         }
     }
 
+    /**
+     * Cancel an operation. Must be called while holding the lock on {@link #mOperations}.
+     *
+     * @param operation the operation to cancel
+     */
+    private void cancel(Operation operation) {
+        operation.isCancelled = true;
+        if (!operation.isStarted) {
+            mOperations.remove(operation);
+            getExecutor(operation).remove(operation);
+            if (operation.event != EVENT_QUERY) {
+                releaseQueries(operation);
+            }
+        }
+    }
+
+    /**
+     * Create an executor for a lane.
+     *
+     * @param workerCount    the number of workers
+     * @param queue          the queue holding operations waiting to run
+     * @param name           the name of the lane
+     * @param threadPriority the priority of the worker threads
+     * @return the executor
+     */
+    private static ThreadPoolExecutor createExecutor(int workerCount,
+                                                     BlockingQueue<Runnable> queue,
+                                                     final String name, final int threadPriority) {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(workerCount, workerCount,
+                WORKER_KEEP_ALIVE, TimeUnit.SECONDS, queue, new ThreadFactory() {
+
+            /**
+             * Number of workers created so far.
+             */
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(@NonNull final Runnable runnable) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(threadPriority);
+                        runnable.run();
+                    }
+                }, DEBUG_TAG + "-" + name + "-" + mCount.incrementAndGet());
+            }
+
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Get the lane that runs an operation.
+     *
+     * @param operation the operation
+     * @return the executor of the lane
+     */
+    private static ThreadPoolExecutor getExecutor(Operation operation) {
+        return (operation.event == EVENT_QUERY) ? sQueryExecutor : sWriteExecutor;
+    }
+
+    /**
+     * Queue the operations that were waiting for a write, once it has run or been cancelled.
+     * Those waiting for a cancelled write wait for the write before it instead. Must be called
+     * while holding the lock on {@link #mOperations}.
+     *
+     * @param write the write
+     */
+    private void releaseQueries(Operation write) {
+        final Operation previous = write.isFinished ? null : write.after;
+        if (mLastWrite == write) {
+            mLastWrite = previous;
+        }
+        for (Operation operation : mOperations) {
+            if (operation.after == write) {
+                operation.after = previous;
+                if ((operation.event == EVENT_QUERY) && (previous == null)) {
+                    sQueryExecutor.execute(operation);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queue an operation, dropping any operation waiting to run that it supersedes. A query is
+     * held back until the writes started before it by this handler have run.
+     *
+     * @param operation the operation to start
+     */
+    private void start(Operation operation) {
+        synchronized (mOperations) {
+            for (int i = mOperations.size() - 1; i >= 0; i--) {
+                final Operation pending = mOperations.get(i);
+                if (!pending.isStarted && !pending.isCancelled && operation.supersedes(pending)) {
+                    cancel(pending);
+                }
+            }
+            mOperations.add(operation);
+            operation.after = mLastWrite;
+            if (operation.event != EVENT_QUERY) {
+                mLastWrite = operation;
+            } else if (operation.after != null) {
+                // Queued by releaseQueries() once the write has run.
+                return;
+            }
+        }
+        getExecutor(operation).execute(operation);
+    }
+
+    /**
+     * An operation started by the handler.
+     */
+    private final class Operation implements Runnable {
+
+        /**
+         * The type of operation.
+         */
+        final int event;
+        /**
+         * The token passed in by the caller.
+         */
+        final int token;
+        /**
+         * The cookie passed in by the caller.
+         */
+        final Object cookie;
+        /**
+         * The URI to operate on.
+         */
+        final Uri uri;
+        /**
+         * The columns to return from a query.
+         */
+        String[] projection;
+        /**
+         * The rows to operate on.
+         */
+        String selection;
+        /**
+         * Arguments for the selection.
+         */
+        String[] selectionArgs;
+        /**
+         * The order of the rows returned from a query.
+         */
+        String orderBy;
+        /**
+         * The values to insert or update.
+         */
+        ContentValues values;
+        /**
+         * The result of the operation.
+         */
+        Object result;
+        /**
+         * Set whether a worker has started running the operation. Guarded by {@link
+         * #mOperations}.
+         */
+        boolean isStarted;
+        /**
+         * Set whether a write has run. Guarded by {@link #mOperations}.
+         */
+        boolean isFinished;
+        /**
+         * The write started before this operation by the same handler that hasn't finished, or
+         * {@code null}. Guarded by {@link #mOperations}.
+         */
+        Operation after;
+        /**
+         * Set whether the operation has been cancelled.
+         */
+        volatile boolean isCancelled;
+
+        /**
+         * Create a new operation.
+         */
+        Operation(int event, int token, Object cookie, Uri uri) {
+            this.event = event;
+            this.token = token;
+            this.cookie = cookie;
+            this.uri = uri;
+        }
+
+        @Override
+        public void run() {
+            synchronized (mOperations) {
+                if (isCancelled) {
+                    return;
+                }
+                isStarted = true;
+            }
+            try {
+                switch (event) {
+                    case EVENT_QUERY:
+                        final Cursor cursor = mResolver.query(uri, projection, selection,
+                                selectionArgs, orderBy);
+                        // Fill the cursor window here, rather than on the handler's thread.
+                        if (cursor != null) {
+                            cursor.getCount();
+                        }
+                        result = cursor;
+                        break;
+                    case EVENT_INSERT:
+                        result = mResolver.insert(uri, values);
+                        break;
+                    case EVENT_UPDATE:
+                        result = mResolver.update(uri, values, selection, selectionArgs);
+                        break;
+                    case EVENT_DELETE:
+                        result = mResolver.delete(uri, selection, selectionArgs);
+                        break;
+                }
+            } catch (Exception e) {
+                if (event == EVENT_QUERY) {
+                    Log.w(DEBUG_TAG, "Query failed: " + uri, e);
+                    result = null;
+                } else {
+                    // Report a failed write as having changed nothing.
+                    Log.w(DEBUG_TAG, "Write failed: " + uri, e);
+                    result = (event == EVENT_INSERT) ? null : Integer.valueOf(0);
+                }
+            } finally {
+                // Queries waiting on a write run whether or not it succeeded.
+                if (event != EVENT_QUERY) {
+                    synchronized (mOperations) {
+                        isFinished = true;
+                        releaseQueries(this);
+                    }
+                }
+            }
+            sendMessage(obtainMessage(event, this));
+        }
+
+        /**
+         * Check whether this operation makes another one that hasn't run yet unnecessary.
+         *
+         * @param another the other operation
+         * @return {@code true} if the other operation can be dropped
+         */
+        boolean supersedes(Operation another) {
+            if (event != another.event || token != another.token || !uri.equals(another.uri)) {
+                return false;
+            }
+            switch (event) {
+                case EVENT_QUERY:
+                    return true;
+                case EVENT_UPDATE:
+                    return TextUtils.equals(selection, another.selection)
+                            && Arrays.equals(selectionArgs, another.selectionArgs)
+                            && values.keySet().containsAll(another.values.keySet());
+                default:
+                    return false;
+            }
+        }
+
+    }
+
     /**
      * Interface to listen for completed query operations.
      */
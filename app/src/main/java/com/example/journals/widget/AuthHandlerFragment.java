@@ -46,7 +46,7 @@ public class AuthHandlerFragment extends Fragment {
      * Get whether the fragment is currently started.
      *
      * @return {@code true} if the fragment is started (from the end of {@link #onStart()} to just
-     * prior to cancelling all Volley requests in {@link #onStop()}), {@code false} otherwise
+     * prior to demoting all Volley requests in {@link #onStop()}), {@code false} otherwise
      */
     public boolean isStarted() {
         return mIsStarted;
@@ -62,13 +62,15 @@ public class AuthHandlerFragment extends Fragment {
     public void onStop() {
         super.onStop();
         mIsStarted = false;
-        // Cancel any running network tasks.
-        VolleySingleton.getInstance(getContext()).getRequestQueue().cancelAll(this);
+        // Stop listening to running network tasks, letting reads finish in the background so
+        // their responses are cached for when the fragment is started again.
+        VolleySingleton.getInstance(getContext()).demoteAll(this);
     }
 
     /**
      * Start a request with an {@link AuthFailureRetryPolicy} that will be cancelled automatically
-     * if not complete prior to {@link #onStop()}.
+     * if not complete prior to {@link #onStop()}, or demoted to finish in the background if it is
+     * a cached read.
      *
      * @param request the request to start
      */
@@ -17,303 +17,437 @@
 package com.example.journals.widget;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteTransactionListener;
+import android.net.Uri;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import androidx.annotation.NonNull;
 
 /**
  * General purpose {@link ContentProvider} base class that uses SQLiteDatabase for storage.
+ * <p/>
+ * Every insert, update and delete runs inside a transaction. Calls made while the current thread
+ * is already in a transaction, such as the operations of {@link #applyBatch(ArrayList)} or
+ * {@link #bulkInsert(Uri, ContentValues[])}, join that transaction. Change notifications posted
+ * with {@link #postNotifyChange(Uri)} are held until the outermost transaction is committed and
+ * are then sent once per distinct URI. A transaction that yields commits the work done so far,
+ * so the notifications for that work are sent when it resumes. Notifications posted since the
+ * last commit are dropped if the transaction is rolled back.
  */
 public abstract class SQLiteContentProvider extends ContentProvider
         implements SQLiteTransactionListener {
 
-//    private static final String TAG = "SQLiteContentProvider";
-//
-//    private SQLiteOpenHelper mOpenHelper;
-//    private volatile boolean mNotifyChange;
-//    protected SQLiteDatabase mDb;
-//
-//    private final ThreadLocal<Boolean> mApplyingBatch = new ThreadLocal<Boolean>();
-//    private static final int SLEEP_AFTER_YIELD_DELAY = 4000;
-//
-//    private Boolean mIsCallerSyncAdapter;
-//
-//    @Override
-//    public boolean onCreate() {
-//        Context context = getContext();
-//        mOpenHelper = getDatabaseHelper(context);
-//        return true;
-//    }
-//
-//    protected abstract SQLiteOpenHelper getDatabaseHelper(Context context);
-//
-//    /**
-//     * The equivalent of the {@link #insert} method, but invoked within a transaction.
-//     */
-//    protected abstract Uri insertInTransaction(Uri uri, ContentValues values,
-//                                               boolean callerIsSyncAdapter);
-//
-//    /**
-//     * The equivalent of the {@link #update} method, but invoked within a transaction.
-//     */
-//    protected abstract int updateInTransaction(Uri uri, ContentValues values, String selection,
-//                                               String[] selectionArgs, boolean callerIsSyncAdapter);
-//
-//    /**
-//     * The equivalent of the {@link #delete} method, but invoked within a transaction.
-//     */
-//    protected abstract int deleteInTransaction(Uri uri, String selection, String[] selectionArgs,
-//                                               boolean callerIsSyncAdapter);
-//
-//    protected abstract void notifyChange(boolean syncToNetwork);
-//
-//    protected SQLiteOpenHelper getDatabaseHelper() {
-//        return mOpenHelper;
-//    }
-//
-//    private boolean applyingBatch() {
-//        return mApplyingBatch.get() != null && mApplyingBatch.get();
-//    }
-//
-//    @Override
-//    public Uri insert(Uri uri, ContentValues values) {
-//        Uri result = null;
-//        boolean applyingBatch = applyingBatch();
-//        boolean isCallerSyncAdapter = getIsCallerSyncAdapter(uri);
-//        if (!applyingBatch) {
-//            mDb = mOpenHelper.getWritableDatabase();
-//            mDb.beginTransactionWithListener(this);
-//            final long identity = clearCallingIdentityInternal();
-//            try {
-//                result = insertInTransaction(uri, values, isCallerSyncAdapter);
-//                if (result != null) {
-//                    mNotifyChange = true;
-//                }
-//                mDb.setTransactionSuccessful();
-//            } finally {
-//                restoreCallingIdentityInternal(identity);
-//                mDb.endTransaction();
-//            }
-//
-//            onEndTransaction(!isCallerSyncAdapter && shouldSyncFor(uri));
-//        } else {
-//            result = insertInTransaction(uri, values, isCallerSyncAdapter);
-//            if (result != null) {
-//                mNotifyChange = true;
-//            }
-//        }
-//        return result;
-//    }
-//
-//    @Override
-//    public int bulkInsert(Uri uri, ContentValues[] values) {
-//        int numValues = values.length;
-//        boolean isCallerSyncAdapter = getIsCallerSyncAdapter(uri);
-//        mDb = mOpenHelper.getWritableDatabase();
-//        mDb.beginTransactionWithListener(this);
-//        final long identity = clearCallingIdentityInternal();
-//        try {
-//            for (int i = 0; i < numValues; i++) {
-//                Uri result = insertInTransaction(uri, values[i], isCallerSyncAdapter);
-//                if (result != null) {
-//                    mNotifyChange = true;
-//                }
-//                mDb.yieldIfContendedSafely();
-//            }
-//            mDb.setTransactionSuccessful();
-//        } finally {
-//            restoreCallingIdentityInternal(identity);
-//            mDb.endTransaction();
-//        }
-//
-//        onEndTransaction(!isCallerSyncAdapter);
-//        return numValues;
-//    }
-//
-//    @Override
-//    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
-//        int count = 0;
-//        boolean applyingBatch = applyingBatch();
-//        boolean isCallerSyncAdapter = getIsCallerSyncAdapter(uri);
-//        if (!applyingBatch) {
-//            mDb = mOpenHelper.getWritableDatabase();
-//            mDb.beginTransactionWithListener(this);
-//            final long identity = clearCallingIdentityInternal();
-//            try {
-//                count = updateInTransaction(uri, values, selection, selectionArgs,
-//                        isCallerSyncAdapter);
-//                if (count > 0) {
-//                    mNotifyChange = true;
-//                }
-//                mDb.setTransactionSuccessful();
-//            } finally {
-//                restoreCallingIdentityInternal(identity);
-//                mDb.endTransaction();
-//            }
-//
-//            onEndTransaction(!isCallerSyncAdapter && shouldSyncFor(uri));
-//        } else {
-//            count = updateInTransaction(uri, values, selection, selectionArgs,
-//                    isCallerSyncAdapter);
-//            if (count > 0) {
-//                mNotifyChange = true;
-//            }
-//        }
-//
-//        return count;
-//    }
-//
-//    @Override
-//    public int delete(Uri uri, String selection, String[] selectionArgs) {
-//        int count = 0;
-//        boolean applyingBatch = applyingBatch();
-//        boolean isCallerSyncAdapter = getIsCallerSyncAdapter(uri);
-//        if (!applyingBatch) {
-//            mDb = mOpenHelper.getWritableDatabase();
-//            mDb.beginTransactionWithListener(this);
-//            final long identity = clearCallingIdentityInternal();
-//            try {
-//                count = deleteInTransaction(uri, selection, selectionArgs, isCallerSyncAdapter);
-//                if (count > 0) {
-//                    mNotifyChange = true;
-//                }
-//                mDb.setTransactionSuccessful();
-//            } finally {
-//                restoreCallingIdentityInternal(identity);
-//                mDb.endTransaction();
-//            }
-//
-//            onEndTransaction(!isCallerSyncAdapter && shouldSyncFor(uri));
-//        } else {
-//            count = deleteInTransaction(uri, selection, selectionArgs, isCallerSyncAdapter);
-//            if (count > 0) {
-//                mNotifyChange = true;
-//            }
-//        }
-//        return count;
-//    }
-//
-//    protected boolean getIsCallerSyncAdapter(Uri uri) {
-//        boolean isCurrentSyncAdapter = QueryParameterUtils.readBooleanQueryParameter(uri,
-//                CalendarContract.CALLER_IS_SYNCADAPTER, false);
-//        if (mIsCallerSyncAdapter == null || mIsCallerSyncAdapter) {
-//            mIsCallerSyncAdapter = isCurrentSyncAdapter;
-//        }
-//        return isCurrentSyncAdapter;
-//    }
-//
-//    @Override
-//    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
-//            throws OperationApplicationException {
-//        final int numOperations = operations.size();
-//        if (numOperations == 0) {
-//            return new ContentProviderResult[0];
-//        }
-//        mDb = mOpenHelper.getWritableDatabase();
-//        mDb.beginTransactionWithListener(this);
-//        final boolean isCallerSyncAdapter = getIsCallerSyncAdapter(operations.get(0).getUri());
-//        final long identity = clearCallingIdentityInternal();
-//        try {
-//            mApplyingBatch.set(true);
-//            final ContentProviderResult[] results = new ContentProviderResult[numOperations];
-//            for (int i = 0; i < numOperations; i++) {
-//                final ContentProviderOperation operation = operations.get(i);
-//                if (i > 0 && operation.isYieldAllowed()) {
-//                    mDb.yieldIfContendedSafely(SLEEP_AFTER_YIELD_DELAY);
-//                }
-//                results[i] = operation.apply(this, results, i);
-//            }
-//            mDb.setTransactionSuccessful();
-//            return results;
-//        } finally {
-//            mApplyingBatch.set(false);
-//            mDb.endTransaction();
-//            onEndTransaction(!isCallerSyncAdapter);
-//            restoreCallingIdentityInternal(identity);
-//        }
-//    }
-//
-//    public void onBegin() {
-//        mIsCallerSyncAdapter = null;
-//        onBeginTransaction();
-//    }
-//
-//    public void onCommit() {
-//        beforeTransactionCommit();
-//    }
-//
-//    public void onRollback() {
-//        // not used
-//    }
-//
-//    protected void onBeginTransaction() {
-//    }
-//
-//    protected void beforeTransactionCommit() {
-//    }
-//
-//    protected void onEndTransaction(boolean syncToNetwork) {
-//        if (mNotifyChange) {
-//            mNotifyChange = false;
-//            // We sync to network if the caller was not the sync adapter
-//            notifyChange(syncToNetwork);
-//        }
-//    }
-//
-//    /**
-//     * Some URI's are maintained locally so we should not request a sync for them
-//     */
-//    protected abstract boolean shouldSyncFor(Uri uri);
-//
-//    /** The package to most recently query(), not including further internally recursive calls. */
-//    private final ThreadLocal<String> mCallingPackage = new ThreadLocal<String>();
-//
-//    /**
-//     * The calling Uid when a calling package is cached, so we know when the stack of any
-//     * recursive calls to clearCallingIdentity and restoreCallingIdentity is complete.
-//     */
-//    private final ThreadLocal<Integer> mOriginalCallingUid = new ThreadLocal<Integer>();
-//
-//
-//    protected String getCachedCallingPackage() {
-//        return mCallingPackage.get();
-//    }
-//
-//    /**
-//     * Call {@link android.os.Binder#clearCallingIdentity()}, while caching the calling package
-//     * name, so that it can be saved if this is part of an event mutation.
-//     */
-//    protected long clearCallingIdentityInternal() {
-//        // Only set the calling package if the calling UID is not our own.
-//        int uid = Process.myUid();
-//        int callingUid = Binder.getCallingUid();
-//        if (uid != callingUid) {
-//            try {
-//                mOriginalCallingUid.set(callingUid);
-//                String callingPackage = getCallingPackage();
-//                mCallingPackage.set(callingPackage);
-//            } catch (SecurityException e) {
-//                // If this exception is thrown, clearCallingIdentity has already been called, and
-//                // calling package is already available.
-//            }
-//        }
-//
-//        return Binder.clearCallingIdentity();
-//    }
-//
-//    /**
-//     * Call {@link Binder#restoreCallingIdentity(long)}.
-//     * </p>
-//     * If this is the last restore on the stack of calls to
-//     * {@link android.os.Binder#clearCallingIdentity()}, then the cached calling package will also
-//     * be cleared.
-//     * @param identity
-//     */
-//    protected void restoreCallingIdentityInternal(long identity) {
-//        Binder.restoreCallingIdentity(identity);
-//
-//        int callingUid = Binder.getCallingUid();
-//        if (mOriginalCallingUid.get() != null && mOriginalCallingUid.get() == callingUid) {
-//            mCallingPackage.set(null);
-//            mOriginalCallingUid.set(null);
-//        }
-//    }
+    /**
+     * Time to sleep after yielding a contended transaction during a batch (in milliseconds).
+     */
+    private static final int SLEEP_AFTER_YIELD_DELAY = 4000;
+
+    /**
+     * State of the current thread's transaction.
+     */
+    private final ThreadLocal<TransactionState> mTransactionState = new ThreadLocal<>();
+    /**
+     * Helper used to open the database.
+     */
+    private SQLiteOpenHelper mOpenHelper;
+
+    @Override
+    public boolean onCreate() {
+        mOpenHelper = getDatabaseHelper(getContext());
+        return true;
+    }
+
+    /**
+     * Create the helper used to open the database.
+     *
+     * @param context the context of this provider
+     * @return the helper used to open the database
+     */
+    protected abstract SQLiteOpenHelper getDatabaseHelper(Context context);
+
+    /**
+     * The equivalent of the {@link #insert} method, but invoked within a transaction.
+     *
+     * @param uri                 the content URI of the insertion request
+     * @param values              a set of column name/value pairs to add to the database
+     * @param callerIsSyncAdapter whether the request came from the sync adapter
+     * @return the URI for the newly inserted item, or {@code null} if the insert failed
+     */
+    protected abstract Uri insertInTransaction(@NonNull Uri uri, ContentValues values,
+                                               boolean callerIsSyncAdapter);
+
+    /**
+     * The equivalent of the {@link #update} method, but invoked within a transaction.
+     *
+     * @param uri                 the URI to query
+     * @param values              a set of column name/value pairs to update in the database
+     * @param selection           an optional filter to match rows to update
+     * @param selectionArgs       arguments replacing the ?s in the selection
+     * @param callerIsSyncAdapter whether the request came from the sync adapter
+     * @return the number of rows affected
+     */
+    protected abstract int updateInTransaction(@NonNull Uri uri, ContentValues values,
+                                               String selection, String[] selectionArgs,
+                                               boolean callerIsSyncAdapter);
+
+    /**
+     * The equivalent of the {@link #delete} method, but invoked within a transaction.
+     *
+     * @param uri                 the full URI to query, including a row ID (if a specific record
+     *                            is requested)
+     * @param selection           an optional restriction to apply to rows when deleting
+     * @param selectionArgs       arguments replacing the ?s in the selection
+     * @param callerIsSyncAdapter whether the request came from the sync adapter
+     * @return the number of rows affected
+     */
+    protected abstract int deleteInTransaction(@NonNull Uri uri, String selection,
+                                               String[] selectionArgs,
+                                               boolean callerIsSyncAdapter);
+
+    /**
+     * Check whether a request was made by the sync adapter.
+     * <p/>
+     * Changes made by the sync adapter don't request a network sync when they are committed.
+     *
+     * @param uri the URI of the request
+     * @return {@code true} if the request was made by the sync adapter, {@code false} otherwise
+     */
+    protected abstract boolean isCallerSyncAdapter(@NonNull Uri uri);
+
+    /**
+     * Check whether changes to the specified URI should be synced to the network.
+     * <p/>
+     * Some URIs are maintained locally, so a sync should not be requested for them. By default,
+     * all URIs are synced.
+     *
+     * @param uri the URI of the request
+     * @return {@code true} if changes to the URI should be synced, {@code false} otherwise
+     */
+    protected boolean shouldSyncFor(@NonNull Uri uri) {
+        return true;
+    }
+
+    /**
+     * Get the helper used to open the database.
+     *
+     * @return the helper used to open the database
+     */
+    protected SQLiteOpenHelper getDatabaseHelper() {
+        return mOpenHelper;
+    }
+
+    /**
+     * Post a change notification for the specified URI.
+     * <p/>
+     * The notification is sent once the change is committed by the current thread's outermost
+     * transaction. Multiple notifications for the same URI are sent only once. If that
+     * transaction wasn't begun by this provider, it can't be followed to its commit, so the
+     * notification is sent at once.
+     *
+     * @param uri the URI whose content has changed
+     */
+    protected void postNotifyChange(@NonNull Uri uri) {
+        final TransactionState state = mTransactionState.get();
+        if ((state != null) && state.isOwned) {
+            state.changedUris.add(uri);
+        } else {
+            notifyChange(uri, !isCallerSyncAdapter(uri) && shouldSyncFor(uri));
+        }
+    }
+
+    @Override
+    public Uri insert(@NonNull Uri uri, ContentValues values) {
+        final boolean callerIsSyncAdapter = isCallerSyncAdapter(uri);
+        final SQLiteDatabase database = mOpenHelper.getWritableDatabase();
+        if (database.inTransaction()) {
+            return insertInTransaction(uri, values, callerIsSyncAdapter);
+        }
+        beginTransaction(database, !callerIsSyncAdapter && shouldSyncFor(uri));
+        try {
+            final Uri result = insertInTransaction(uri, values, callerIsSyncAdapter);
+            database.setTransactionSuccessful();
+            return result;
+        } finally {
+            endTransaction(database);
+        }
+    }
+
+    /**
+     * Insert all rows in a single transaction.
+     * <p/>
+     * The transaction yields to other threads between rows if the database is contended. Each
+     * yield commits the rows inserted so far, and observers are notified of them when the
+     * transaction resumes, and once more after all rows are inserted.
+     */
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        final boolean callerIsSyncAdapter = isCallerSyncAdapter(uri);
+        final SQLiteDatabase database = mOpenHelper.getWritableDatabase();
+        final boolean isOutermost = !database.inTransaction();
+        int rowsInserted = 0;
+        if (isOutermost) {
+            beginTransaction(database, !callerIsSyncAdapter && shouldSyncFor(uri));
+        } else {
+            database.beginTransactionWithListener(this);
+        }
+        try {
+            for (ContentValues rowValues : values) {
+                if (insertInTransaction(uri, rowValues, callerIsSyncAdapter) != null) {
+                    rowsInserted++;
+                }
+                if (isOutermost) {
+                    database.yieldIfContendedSafely();
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            if (isOutermost) {
+                endTransaction(database);
+            } else {
+                database.endTransaction();
+            }
+        }
+        return rowsInserted;
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, ContentValues values, String selection,
+                      String[] selectionArgs) {
+        final boolean callerIsSyncAdapter = isCallerSyncAdapter(uri);
+        final SQLiteDatabase database = mOpenHelper.getWritableDatabase();
+        if (database.inTransaction()) {
+            return updateInTransaction(uri, values, selection, selectionArgs,
+                    callerIsSyncAdapter);
+        }
+        beginTransaction(database, !callerIsSyncAdapter && shouldSyncFor(uri));
+        try {
+            final int count = updateInTransaction(uri, values, selection, selectionArgs,
+                    callerIsSyncAdapter);
+            database.setTransactionSuccessful();
+            return count;
+        } finally {
+            endTransaction(database);
+        }
+    }
+
+    @Override
+    public int delete(@NonNull Uri uri, String selection, String[] selectionArgs) {
+        final boolean callerIsSyncAdapter = isCallerSyncAdapter(uri);
+        final SQLiteDatabase database = mOpenHelper.getWritableDatabase();
+        if (database.inTransaction()) {
+            return deleteInTransaction(uri, selection, selectionArgs, callerIsSyncAdapter);
+        }
+        beginTransaction(database, !callerIsSyncAdapter && shouldSyncFor(uri));
+        try {
+            final int count =
+                    deleteInTransaction(uri, selection, selectionArgs, callerIsSyncAdapter);
+            database.setTransactionSuccessful();
+            return count;
+        } finally {
+            endTransaction(database);
+        }
+    }
+
+    /**
+     * Apply all operations in a single transaction.
+     * <p/>
+     * The write lock is released between operations marked with {@link
+     * ContentProviderOperation.Builder#withYieldAllowed(boolean)} if another thread is waiting for
+     * it, so long batches should set yield points between groups of related operations. Change
+     * notifications are sent once per distinct URI after each yield and after the batch
+     * completes.
+     */
+    @Override
+    @NonNull
+    public ContentProviderResult[] applyBatch(
+            @NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        final int numOperations = operations.size();
+        if (numOperations == 0) {
+            return new ContentProviderResult[0];
+        }
+        final boolean callerIsSyncAdapter = isCallerSyncAdapter(operations.get(0).getUri());
+        boolean shouldSync = false;
+        for (ContentProviderOperation operation : operations) {
+            shouldSync |= shouldSyncFor(operation.getUri());
+        }
+        final SQLiteDatabase database = mOpenHelper.getWritableDatabase();
+        final boolean isOutermost = !database.inTransaction();
+        if (isOutermost) {
+            beginTransaction(database, !callerIsSyncAdapter && shouldSync);
+        } else {
+            database.beginTransactionWithListener(this);
+        }
+        try {
+            final ContentProviderResult[] results = new ContentProviderResult[numOperations];
+            for (int i = 0; i < numOperations; i++) {
+                final ContentProviderOperation operation = operations.get(i);
+                if (isOutermost && i > 0 && operation.isYieldAllowed()) {
+                    database.yieldIfContendedSafely(SLEEP_AFTER_YIELD_DELAY);
+                }
+                results[i] = operation.apply(this, results, i);
+            }
+            database.setTransactionSuccessful();
+            return results;
+        } finally {
+            if (isOutermost) {
+                endTransaction(database);
+            } else {
+                database.endTransaction();
+            }
+        }
+    }
+
+    @Override
+    public void onBegin() {
+        final TransactionState state = mTransactionState.get();
+        if ((state != null) && state.isOwned && (state.depth++ == 0)) {
+            // Resuming after a yield, so the work done before it has been committed.
+            sendChanges(state);
+        }
+        onBeginTransaction();
+    }
+
+    @Override
+    public void onCommit() {
+        beforeTransactionCommit();
+        final TransactionState state = mTransactionState.get();
+        if ((state != null) && state.isOwned && (--state.depth == 0)) {
+            state.committedUris.addAll(state.changedUris);
+            state.changedUris.clear();
+        }
+    }
+
+    @Override
+    public void onRollback() {
+        final TransactionState state = mTransactionState.get();
+        if ((state != null) && state.isOwned) {
+            state.depth--;
+            // The outermost transaction is rolled back too, undoing all work since the last commit.
+            state.changedUris.clear();
+        }
+    }
+
+    /**
+     * Called when a transaction begins, including when it resumes after yielding.
+     */
+    protected void onBeginTransaction() {
+    }
+
+    /**
+     * Called before a transaction is committed, including before it yields.
+     */
+    protected void beforeTransactionCommit() {
+    }
+
+    /**
+     * Begin the outermost transaction on the current thread.
+     *
+     * @param database      the database
+     * @param syncToNetwork whether committed changes should be synced to the network
+     */
+    private void beginTransaction(SQLiteDatabase database, boolean syncToNetwork) {
+        final TransactionState state = getTransactionState();
+        state.isOwned = true;
+        state.syncToNetwork = syncToNetwork;
+        database.beginTransactionWithListener(this);
+    }
+
+    /**
+     * End the outermost transaction on the current thread. The change notifications for the last
+     * part of the transaction are sent if it was committed, and dropped if it was rolled back.
+     *
+     * @param database the database
+     */
+    private void endTransaction(SQLiteDatabase database) {
+        final TransactionState state = getTransactionState();
+        boolean isEnded = false;
+        try {
+            database.endTransaction();
+            isEnded = true;
+        } finally {
+            mTransactionState.remove();
+            // If the commit itself failed, nothing since the last yield was written.
+            if (isEnded) {
+                sendChanges(state);
+            }
+        }
+    }
+
+    /**
+     * Get the state of the current thread's transaction, creating it if required.
+     *
+     * @return the transaction state
+     */
+    private TransactionState getTransactionState() {
+        TransactionState state = mTransactionState.get();
+        if (state == null) {
+            state = new TransactionState();
+            mTransactionState.set(state);
+        }
+        return state;
+    }
+
+    /**
+     * Send the change notifications for the work committed so far.
+     *
+     * @param state the state of the transaction
+     */
+    private void sendChanges(TransactionState state) {
+        for (Uri uri : state.committedUris) {
+            notifyChange(uri, state.syncToNetwork);
+        }
+        state.committedUris.clear();
+    }
+
+    /**
+     * Notify registered observers that the content of a URI has changed.
+     *
+     * @param uri           the URI whose content has changed
+     * @param syncToNetwork whether the change should be synced to the network
+     */
+    protected void notifyChange(@NonNull Uri uri, boolean syncToNetwork) {
+        getContext().getContentResolver().notifyChange(uri, null, syncToNetwork);
+    }
+
+    /**
+     * State of a thread's outermost transaction.
+     */
+    private static class TransactionState {
+
+        /**
+         * URIs changed since the transaction last committed.
+         */
+        final Set<Uri> changedUris = new LinkedHashSet<>();
+        /**
+         * URIs changed by work that has been committed but not yet notified.
+         */
+        final Set<Uri> committedUris = new LinkedHashSet<>();
+        /**
+         * Whether the transaction was begun by this provider, rather than by a caller that
+         * this provider's transactions are nested in.
+         */
+        boolean isOwned = false;
+        /**
+         * Whether committed changes should be synced to the network.
+         */
+        boolean syncToNetwork = false;
+        /**
+         * Number of transactions with this provider as their listener that are open, including
+         * the outermost one.
+         */
+        int depth = 0;
+
+    }
+
 }
@@ -0,0 +1,458 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.widget;
+
+import android.content.ContentResolver;
+import android.database.AbstractCursor;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Process;
+import android.provider.BaseColumns;
+
+import com.example.journals.provider.JournalContract;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A cursor that reads the rows of a content provider query in fixed-size blocks, as they are
+ * needed.
+ * <p/>
+ * Only the row IDs of the query are read up front. The other columns are read a block at a time,
+ * and as soon as the cursor moves into a block, the next block in the direction of movement is
+ * read on a background thread. A bounded number of blocks is kept in memory, least recently used
+ * blocks being dropped first, so lists of thousands of rows with long text never need to refill a
+ * large cursor window.
+ * <p/>
+ * Scrolling a list through the cursor normally finds each block already read. If the cursor jumps
+ * to a row whose block is not in memory, the block is read, or its prefetch waited for, before the
+ * move completes, so every row is always returned with all of its values. A block is a single
+ * query of at most {@link #DEFAULT_BLOCK_SIZE} rows by row ID, so this is short even on the main
+ * thread.
+ * <p/>
+ * Each block is read by row ID, so rows deleted after the cursor was created have {@code null}
+ * values and rows inserted afterwards are not included. Set a notification URI to learn about
+ * such changes.
+ */
+public class WindowedCursor extends AbstractCursor {
+
+    /**
+     * Default number of rows in a block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 50;
+    /**
+     * Default number of blocks kept in memory.
+     */
+    public static final int DEFAULT_MAX_BLOCKS = 4;
+    /**
+     * Time the prefetch thread waits for another block before it stops (in seconds).
+     */
+    private static final long PREFETCH_KEEP_ALIVE = 30;
+    /**
+     * Executor reading blocks ahead of the cursor, shared by all windowed cursors.
+     */
+    private static final ThreadPoolExecutor sPrefetchExecutor = new ThreadPoolExecutor(1, 1,
+            PREFETCH_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(@NonNull final Runnable runnable) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, WindowedCursor.class.getSimpleName());
+                }
+            });
+
+    static {
+        sPrefetchExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * The content resolver used to read blocks.
+     */
+    private final ContentResolver mResolver;
+    /**
+     * The content URI queried, bypassing the provider's query cache.
+     */
+    private final Uri mUri;
+    /**
+     * The names of the columns, including {@link BaseColumns#_ID}.
+     */
+    private final String[] mColumns;
+    /**
+     * The position of the {@link BaseColumns#_ID} column.
+     */
+    private final int mIdColumn;
+    /**
+     * The row ID of each row, in the order of the query.
+     */
+    private final long[] mIds;
+    /**
+     * Number of rows in a block.
+     */
+    private final int mBlockSize;
+    /**
+     * The blocks in memory, keyed by block number, least recently used first.
+     */
+    private final Map<Integer, Object[][]> mBlocks;
+    /**
+     * The blocks being read. Guarded by {@link #mBlocks}.
+     */
+    private final Set<Integer> mLoadingBlocks = new HashSet<>();
+    /**
+     * The values of the current row.
+     */
+    private Object[] mRow = null;
+
+    /**
+     * Create a new windowed cursor with the default block size and number of blocks.
+     * <p/>
+     * The row IDs are read before this returns, so it should not be called on the main thread.
+     *
+     * @param resolver      the content resolver used to read rows
+     * @param uri           the content URI to query
+     * @param projection    the columns to return
+     * @param selection     the rows to return
+     * @param selectionArgs arguments for the selection
+     * @param sortOrder     the order of the rows
+     */
+    public WindowedCursor(@NonNull ContentResolver resolver, @NonNull Uri uri,
+                          @NonNull String[] projection, String selection, String[] selectionArgs,
+                          String sortOrder) {
+        this(resolver, uri, projection, selection, selectionArgs, sortOrder, DEFAULT_BLOCK_SIZE,
+                DEFAULT_MAX_BLOCKS);
+    }
+
+    /**
+     * Create a new windowed cursor.
+     * <p/>
+     * The row IDs are read before this returns, so it should not be called on the main thread.
+     *
+     * @param resolver      the content resolver used to read rows
+     * @param uri           the content URI to query
+     * @param projection    the columns to return; {@link BaseColumns#_ID} is added if missing
+     * @param selection     the rows to return
+     * @param selectionArgs arguments for the selection
+     * @param sortOrder     the order of the rows
+     * @param blockSize     the number of rows in a block
+     * @param maxBlocks     the number of blocks kept in memory, at least 2 so that a prefetched
+     *                      block doesn't push out the current one
+     */
+    public WindowedCursor(@NonNull ContentResolver resolver, @NonNull Uri uri,
+                          @NonNull String[] projection, String selection, String[] selectionArgs,
+                          String sortOrder, int blockSize, final int maxBlocks) {
+        if ((blockSize < 1) || (maxBlocks < 2)) {
+            throw new IllegalArgumentException();
+        }
+        mResolver = resolver;
+        // The ID list and blocks are read once each, so caching them would only push smaller,
+        // reused results out of the provider's query cache.
+        mUri = uri.buildUpon().appendQueryParameter(JournalContract.PARAM_BYPASS_CACHE, "true")
+                .build();
+        mBlockSize = blockSize;
+        mBlocks = new LinkedHashMap<Integer, Object[][]>(maxBlocks + 1, 1, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+                return size() > maxBlocks;
+            }
+        };
+        final int idColumn = Arrays.asList(projection).indexOf(BaseColumns._ID);
+        if (idColumn >= 0) {
+            mColumns = projection;
+            mIdColumn = idColumn;
+        } else {
+            mColumns = Arrays.copyOf(projection, projection.length + 1);
+            mIdColumn = projection.length;
+            mColumns[mIdColumn] = BaseColumns._ID;
+        }
+        // Read the row IDs, which fit easily in a single cursor window.
+        final Cursor cursor = resolver.query(mUri, new String[]{BaseColumns._ID}, selection,
+                selectionArgs, sortOrder);
+        if (cursor != null) {
+            try {
+                mIds = new long[cursor.getCount()];
+                while (cursor.moveToNext()) {
+                    mIds[cursor.getPosition()] = cursor.getLong(0);
+                }
+            } finally {
+                cursor.close();
+            }
+        } else {
+            mIds = new long[0];
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        synchronized (mBlocks) {
+            mBlocks.clear();
+        }
+        mRow = null;
+    }
+
+    @Override
+    public byte[] getBlob(int column) {
+        return (byte[]) get(column);
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return mColumns;
+    }
+
+    @Override
+    public int getCount() {
+        return mIds.length;
+    }
+
+    @Override
+    public double getDouble(int column) {
+        final Object value = get(column);
+        if (value == null) {
+            return 0;
+        }
+        return (value instanceof Number) ? ((Number) value).doubleValue()
+                : Double.parseDouble(value.toString());
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return (float) getDouble(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        final Object value = get(column);
+        if (value == null) {
+            return 0;
+        }
+        return (value instanceof Number) ? ((Number) value).longValue()
+                : Long.parseLong(value.toString());
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public String getString(int column) {
+        final Object value = get(column);
+        return (value == null) ? null : value.toString();
+    }
+
+    @Override
+    public int getType(int column) {
+        final Object value = get(column);
+        if (value == null) {
+            return Cursor.FIELD_TYPE_NULL;
+        } else if (value instanceof byte[]) {
+            return Cursor.FIELD_TYPE_BLOB;
+        } else if ((value instanceof Float) || (value instanceof Double)) {
+            return Cursor.FIELD_TYPE_FLOAT;
+        } else if (value instanceof Number) {
+            return Cursor.FIELD_TYPE_INTEGER;
+        } else {
+            return Cursor.FIELD_TYPE_STRING;
+        }
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return get(column) == null;
+    }
+
+    @Override
+    public boolean onMove(int oldPosition, int newPosition) {
+        final int block = newPosition / mBlockSize;
+        final int offset = newPosition % mBlockSize;
+        mRow = getBlock(block)[offset];
+        // Read the next block in the direction of movement a whole block ahead of the cursor.
+        if (newPosition > oldPosition) {
+            prefetch(block + 1);
+        } else if (newPosition < oldPosition) {
+            prefetch(block - 1);
+        }
+        return true;
+    }
+
+    /**
+     * Get a value of the current row.
+     *
+     * @param column the position of the column
+     * @return the value
+     */
+    private Object get(int column) {
+        if ((column < 0) || (column >= mColumns.length)) {
+            throw new IllegalArgumentException("Invalid column: " + column);
+        }
+        checkPosition();
+        return mRow[column];
+    }
+
+    /**
+     * Get the rows of a block. If they aren't in memory, they are read on the calling thread, or
+     * a prefetch of the block is waited for.
+     *
+     * @param block the block number
+     * @return the rows of the block
+     */
+    private Object[][] getBlock(int block) {
+        synchronized (mBlocks) {
+            // Wait for a prefetch of the block rather than reading it twice.
+            while (mLoadingBlocks.contains(block)) {
+                try {
+                    mBlocks.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            final Object[][] rows = mBlocks.get(block);
+            if (rows != null) {
+                return rows;
+            }
+            mLoadingBlocks.add(block);
+        }
+        return load(block);
+    }
+
+    /**
+     * Read a block and keep it in memory. The block must have been added to
+     * {@link #mLoadingBlocks}.
+     *
+     * @param block the block number
+     * @return the rows of the block
+     */
+    private Object[][] load(int block) {
+        Object[][] rows = null;
+        try {
+            rows = query(block);
+            return rows;
+        } finally {
+            synchronized (mBlocks) {
+                mLoadingBlocks.remove(block);
+                if ((rows != null) && !isClosed()) {
+                    mBlocks.put(block, rows);
+                }
+                mBlocks.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Read a block on a background thread, unless it is already in memory or being read.
+     *
+     * @param block the block number
+     */
+    private void prefetch(final int block) {
+        if ((block < 0) || (block * mBlockSize >= mIds.length)) {
+            return;
+        }
+        synchronized (mBlocks) {
+            if (mBlocks.containsKey(block) || !mLoadingBlocks.add(block)) {
+                return;
+            }
+        }
+        sPrefetchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load(block);
+            }
+        });
+    }
+
+    /**
+     * Query the rows of a block by their row IDs.
+     *
+     * @param block the block number
+     * @return the rows of the block, with {@code null} values for rows that no longer exist
+     */
+    private Object[][] query(int block) {
+        final int start = block * mBlockSize;
+        final int count = Math.min(mBlockSize, mIds.length - start);
+        final Object[][] rows = new Object[count][];
+        final Map<Long, Integer> offsets = new HashMap<>(count);
+        final String[] selectionArgs = new String[count];
+        final StringBuilder selection = new StringBuilder(BaseColumns._ID).append(" IN (");
+        for (int i = 0; i < count; i++) {
+            offsets.put(mIds[start + i], i);
+            selectionArgs[i] = String.valueOf(mIds[start + i]);
+            selection.append((i == 0) ? "?" : ",?");
+            rows[i] = new Object[mColumns.length];
+            rows[i][mIdColumn] = mIds[start + i];
+        }
+        selection.append(')');
+        final Cursor cursor =
+                mResolver.query(mUri, mColumns, selection.toString(), selectionArgs, null);
+        if (cursor == null) {
+            return rows;
+        }
+        try {
+            while (cursor.moveToNext()) {
+                final Integer offset = offsets.get(cursor.getLong(mIdColumn));
+                if (offset == null) {
+                    continue;
+                }
+                final Object[] row = rows[offset];
+                for (int i = 0; i < mColumns.length; i++) {
+                    switch (cursor.getType(i)) {
+                        case Cursor.FIELD_TYPE_INTEGER:
+                            row[i] = cursor.getLong(i);
+                            break;
+                        case Cursor.FIELD_TYPE_FLOAT:
+                            row[i] = cursor.getDouble(i);
+                            break;
+                        case Cursor.FIELD_TYPE_STRING:
+                            row[i] = cursor.getString(i);
+                            break;
+                        case Cursor.FIELD_TYPE_BLOB:
+                            row[i] = cursor.getBlob(i);
+                            break;
+                    }
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows;
+    }
+
+}
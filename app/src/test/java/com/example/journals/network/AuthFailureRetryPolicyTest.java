@@ -0,0 +1,192 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.network;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.TimeoutError;
+import com.android.volley.VolleyError;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the jitter and shared retry budget of {@link AuthFailureRetryPolicy}.
+ */
+public class AuthFailureRetryPolicyTest {
+
+    /**
+     * Timeout of the policies under test, kept short so retries only wait briefly (in
+     * milliseconds).
+     */
+    private static final int TIMEOUT = 40;
+
+    @Before
+    public void setUp() {
+        AuthFailureRetryPolicy.setRetryBudget(AuthFailureRetryPolicy.MAX_RETRY_BUDGET);
+    }
+
+    @After
+    public void tearDown() {
+        AuthFailureRetryPolicy.setRetryBudget(AuthFailureRetryPolicy.MAX_RETRY_BUDGET);
+    }
+
+    /**
+     * Each wait is between the base delay and three times the previous wait, capped at the
+     * maximum delay.
+     */
+    @Test
+    public void nextDelay_staysWithinBounds() {
+        final long[] previousDelays = {AuthFailureRetryPolicy.BASE_DELAY, 150, 300, 700,
+                AuthFailureRetryPolicy.MAX_DELAY};
+        final double[] randoms = {0, 0.25, 0.5, 0.75, 0.999999};
+        for (long previous : previousDelays) {
+            final long limit = Math.min(AuthFailureRetryPolicy.MAX_DELAY, 3 * previous);
+            for (double random : randoms) {
+                final long delay = AuthFailureRetryPolicy.nextDelay(previous, random);
+                assertTrue(delay + " < base delay", delay >= AuthFailureRetryPolicy.BASE_DELAY);
+                assertTrue(delay + " > " + limit, delay <= limit);
+            }
+        }
+    }
+
+    /**
+     * The random number spreads the wait evenly over its range.
+     */
+    @Test
+    public void nextDelay_scalesWithRandom() {
+        final long base = AuthFailureRetryPolicy.BASE_DELAY;
+        assertEquals(base, AuthFailureRetryPolicy.nextDelay(base, 0));
+        assertEquals(2 * base, AuthFailureRetryPolicy.nextDelay(base, 0.5));
+        assertEquals(AuthFailureRetryPolicy.MAX_DELAY,
+                AuthFailureRetryPolicy.nextDelay(AuthFailureRetryPolicy.MAX_DELAY, 0.5));
+    }
+
+    /**
+     * Retries can't be withdrawn once the budget is spent.
+     */
+    @Test
+    public void withdrawRetryBudget_failsWhenSpent() {
+        AuthFailureRetryPolicy.setRetryBudget(2);
+        assertTrue(AuthFailureRetryPolicy.withdrawRetryBudget());
+        assertTrue(AuthFailureRetryPolicy.withdrawRetryBudget());
+        assertFalse(AuthFailureRetryPolicy.withdrawRetryBudget());
+    }
+
+    /**
+     * A retry is added to the budget for every {@link AuthFailureRetryPolicy#REQUESTS_PER_RETRY}
+     * requests.
+     */
+    @Test
+    public void depositRetryBudget_addsRetryPerRequests() {
+        AuthFailureRetryPolicy.setRetryBudget(0);
+        deposit(AuthFailureRetryPolicy.REQUESTS_PER_RETRY - 1);
+        assertFalse(AuthFailureRetryPolicy.withdrawRetryBudget());
+        deposit(1);
+        assertTrue(AuthFailureRetryPolicy.withdrawRetryBudget());
+        assertFalse(AuthFailureRetryPolicy.withdrawRetryBudget());
+    }
+
+    /**
+     * The budget doesn't grow past its maximum.
+     */
+    @Test
+    public void depositRetryBudget_capsBudget() {
+        deposit(10 * AuthFailureRetryPolicy.REQUESTS_PER_RETRY);
+        for (int i = 0; i < AuthFailureRetryPolicy.MAX_RETRY_BUDGET; i++) {
+            assertTrue(AuthFailureRetryPolicy.withdrawRetryBudget());
+        }
+        assertFalse(AuthFailureRetryPolicy.withdrawRetryBudget());
+    }
+
+    /**
+     * An auth failure is thrown straight away, without spending the budget.
+     */
+    @Test
+    public void retry_throwsAuthFailure() {
+        AuthFailureRetryPolicy.setRetryBudget(1);
+        final AuthFailureError error = new AuthFailureError("No token");
+        assertThrown(error, new AuthFailureRetryPolicy(TIMEOUT, 1, 1));
+        assertTrue(AuthFailureRetryPolicy.withdrawRetryBudget());
+    }
+
+    /**
+     * A retry spends the budget.
+     */
+    @Test
+    public void retry_spendsBudget() throws VolleyError {
+        AuthFailureRetryPolicy.setRetryBudget(1);
+        new AuthFailureRetryPolicy(TIMEOUT, 1, 1).retry(new TimeoutError());
+        assertFalse(AuthFailureRetryPolicy.withdrawRetryBudget());
+    }
+
+    /**
+     * Failures are thrown rather than retried once the budget is spent.
+     */
+    @Test
+    public void retry_throwsWhenBudgetSpent() {
+        AuthFailureRetryPolicy.setRetryBudget(0);
+        assertThrown(new TimeoutError(), new AuthFailureRetryPolicy(TIMEOUT, 1, 1));
+    }
+
+    /**
+     * A request that has used all its retries doesn't spend the budget.
+     */
+    @Test
+    public void retry_throwsAfterMaxRetries() {
+        AuthFailureRetryPolicy.setRetryBudget(1);
+        assertThrown(new TimeoutError(), new AuthFailureRetryPolicy(TIMEOUT, 0, 1));
+        assertTrue(AuthFailureRetryPolicy.withdrawRetryBudget());
+    }
+
+    /**
+     * Assert that a policy throws an error rather than retrying it.
+     *
+     * @param error  the error
+     * @param policy the policy
+     */
+    private static void assertThrown(VolleyError error, AuthFailureRetryPolicy policy) {
+        try {
+            policy.retry(error);
+            fail("Error was retried");
+        } catch (VolleyError e) {
+            assertSame(error, e);
+        }
+    }
+
+    /**
+     * Count requests towards the shared retry budget.
+     *
+     * @param count the number of requests
+     */
+    private static void deposit(int count) {
+        for (int i = 0; i < count; i++) {
+            AuthFailureRetryPolicy.depositRetryBudget();
+        }
+    }
+
+}
@@ -0,0 +1,406 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.network;
+
+import android.os.SystemClock;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Header;
+import com.android.volley.Request;
+import com.android.volley.toolbox.BaseHttpStack;
+import com.android.volley.toolbox.HttpResponse;
+import com.example.journals.network.CircuitBreakerHttpStack.CircuitOpenException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the circuit breakers of {@link CircuitBreakerHttpStack}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CircuitBreakerHttpStackTest {
+
+    /**
+     * Status code of a server error.
+     */
+    private static final int SERVER_ERROR = 500;
+
+    /**
+     * Stack the requests are sent to.
+     */
+    private FakeHttpStack mHttpStack;
+    /**
+     * The stack under test.
+     */
+    private CircuitBreakerHttpStack mStack;
+    /**
+     * The request sent by most tests.
+     */
+    private Request<?> mRequest;
+
+    @Before
+    public void setUp() {
+        mHttpStack = new FakeHttpStack();
+        mStack = new CircuitBreakerHttpStack(mHttpStack);
+        mRequest = createRequest("https://example.com/api/journals");
+    }
+
+    /**
+     * The breaker opens after enough server errors in a row, and then fails requests without
+     * sending them.
+     */
+    @Test
+    public void executeRequest_opensAfterServerErrors() throws Exception {
+        respond(SERVER_ERROR, CircuitBreakerHttpStack.FAILURE_THRESHOLD - 1);
+        // The breaker is still closed, so the last failure is sent.
+        respond(SERVER_ERROR, 1);
+        assertOpen();
+    }
+
+    /**
+     * Requests that reached the host but couldn't be completed count as failures.
+     */
+    @Test
+    public void executeRequest_opensAfterTimeouts() throws Exception {
+        mHttpStack.mIOException = new SocketTimeoutException();
+        for (int i = 0; i < CircuitBreakerHttpStack.FAILURE_THRESHOLD; i++) {
+            try {
+                execute(mRequest);
+                fail("Timeout wasn't thrown");
+            } catch (SocketTimeoutException e) {
+                // Expected.
+            }
+        }
+        mHttpStack.mIOException = null;
+        assertOpen();
+    }
+
+    /**
+     * Requests that fail before reaching the host don't count as failures.
+     */
+    @Test
+    public void executeRequest_ignoresOfflineErrors() throws Exception {
+        mHttpStack.mIOException = new UnknownHostException();
+        for (int i = 0; i < 2 * CircuitBreakerHttpStack.FAILURE_THRESHOLD; i++) {
+            try {
+                execute(mRequest);
+                fail("Offline error wasn't thrown");
+            } catch (UnknownHostException e) {
+                // Expected.
+            }
+        }
+        mHttpStack.mIOException = null;
+        assertClosed();
+    }
+
+    /**
+     * A success resets the count of failures in a row.
+     */
+    @Test
+    public void executeRequest_successResetsFailures() throws Exception {
+        respond(SERVER_ERROR, CircuitBreakerHttpStack.FAILURE_THRESHOLD - 1);
+        respond(200, 1);
+        respond(SERVER_ERROR, CircuitBreakerHttpStack.FAILURE_THRESHOLD - 1);
+        assertClosed();
+    }
+
+    /**
+     * Each host has its own breaker.
+     */
+    @Test
+    public void executeRequest_keepsBreakerPerHost() throws Exception {
+        respond(SERVER_ERROR, CircuitBreakerHttpStack.FAILURE_THRESHOLD);
+        assertOpen();
+        final int count = mHttpStack.mRequestCount;
+        execute(createRequest("https://other.example.com/api/journals"));
+        assertEquals(count + 1, mHttpStack.mRequestCount);
+    }
+
+    /**
+     * Once the breaker has been open long enough, a single probe is let through, and other
+     * requests fail while it runs.
+     */
+    @Test
+    public void executeRequest_letsOneProbeThrough() throws Exception {
+        openBreaker();
+        advanceClock(CircuitBreakerHttpStack.OPEN_TIME - 1);
+        assertOpen();
+        advanceClock(1);
+        mHttpStack.mOnRequest = new Runnable() {
+            @Override
+            public void run() {
+                mHttpStack.mOnRequest = null;
+                assertOpen();
+            }
+        };
+        final int count = mHttpStack.mRequestCount;
+        respond(200, 1);
+        assertEquals(count + 1, mHttpStack.mRequestCount);
+    }
+
+    /**
+     * A successful probe closes the breaker.
+     */
+    @Test
+    public void executeRequest_closesAfterProbeSucceeds() throws Exception {
+        openBreaker();
+        advanceClock(CircuitBreakerHttpStack.OPEN_TIME);
+        respond(200, 1);
+        assertClosed();
+        // The count of failures starts again.
+        respond(SERVER_ERROR, CircuitBreakerHttpStack.FAILURE_THRESHOLD - 1);
+        assertClosed();
+    }
+
+    /**
+     * A failed probe opens the breaker again, for the full time.
+     */
+    @Test
+    public void executeRequest_reopensAfterProbeFails() throws Exception {
+        openBreaker();
+        advanceClock(CircuitBreakerHttpStack.OPEN_TIME);
+        respond(SERVER_ERROR, 1);
+        assertOpen();
+        advanceClock(CircuitBreakerHttpStack.OPEN_TIME - 1);
+        assertOpen();
+        advanceClock(1);
+        respond(200, 1);
+    }
+
+    /**
+     * A probe that wasn't sent because of an auth failure lets another probe through.
+     */
+    @Test
+    public void executeRequest_authFailureAbortsProbe() throws Exception {
+        openBreaker();
+        advanceClock(CircuitBreakerHttpStack.OPEN_TIME);
+        mHttpStack.mAuthFailureError = new AuthFailureError("No token");
+        try {
+            execute(mRequest);
+            fail("Auth failure wasn't thrown");
+        } catch (AuthFailureError e) {
+            // Expected.
+        }
+        mHttpStack.mAuthFailureError = null;
+        final int count = mHttpStack.mRequestCount;
+        respond(200, 1);
+        assertEquals(count + 1, mHttpStack.mRequestCount);
+    }
+
+    /**
+     * A response whose body fails to be read counts as a failure.
+     */
+    @Test
+    public void executeRequest_countsBodyFailures() throws Exception {
+        mHttpStack.mIsBodyFailing = true;
+        for (int i = 0; i < CircuitBreakerHttpStack.FAILURE_THRESHOLD; i++) {
+            final InputStream content = execute(mRequest).getContent();
+            try {
+                content.read(new byte[16]);
+                fail("Body error wasn't thrown");
+            } catch (IOException e) {
+                // Expected.
+            } finally {
+                content.close();
+            }
+        }
+        mHttpStack.mIsBodyFailing = false;
+        assertOpen();
+    }
+
+    /**
+     * A probe with a body only closes the breaker once its body has been read, and other
+     * requests fail until then.
+     */
+    @Test
+    public void executeRequest_probeEndsWithBody() throws Exception {
+        openBreaker();
+        advanceClock(CircuitBreakerHttpStack.OPEN_TIME);
+        mHttpStack.mBody = "{}";
+        final InputStream content = execute(mRequest).getContent();
+        mHttpStack.mBody = null;
+        assertOpen();
+        while (content.read() != -1) {
+            // Read to the end.
+        }
+        content.close();
+        assertClosed();
+    }
+
+    /**
+     * Advance the time since boot.
+     *
+     * @param millis the time to advance by (in milliseconds)
+     */
+    private static void advanceClock(long millis) {
+        SystemClock.setCurrentTimeMillis(SystemClock.elapsedRealtime() + millis);
+    }
+
+    /**
+     * Assert that the breaker of the request's host is closed, sending a request that succeeds.
+     */
+    private void assertClosed() throws Exception {
+        final int count = mHttpStack.mRequestCount;
+        respond(200, 1);
+        assertEquals(count + 1, mHttpStack.mRequestCount);
+    }
+
+    /**
+     * Assert that the breaker of the request's host is open, failing a request without sending
+     * it.
+     */
+    private void assertOpen() {
+        final int count = mHttpStack.mRequestCount;
+        try {
+            execute(mRequest);
+            fail("Request was sent while the circuit was open");
+        } catch (CircuitOpenException e) {
+            // Expected.
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        } catch (AuthFailureError e) {
+            throw new AssertionError(e);
+        }
+        assertEquals(count, mHttpStack.mRequestCount);
+    }
+
+    /**
+     * Create a request.
+     *
+     * @param url the URL of the request
+     * @return the new request
+     */
+    private static Request<?> createRequest(String url) {
+        return new GsonRequest<>(url, Object.class, null, null, null, null);
+    }
+
+    /**
+     * Send a request through the stack under test.
+     *
+     * @param request the request
+     * @return the response
+     */
+    private HttpResponse execute(Request<?> request) throws IOException, AuthFailureError {
+        return mStack.executeRequest(request, Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * Open the breaker of the request's host.
+     */
+    private void openBreaker() throws Exception {
+        respond(SERVER_ERROR, CircuitBreakerHttpStack.FAILURE_THRESHOLD);
+        assertOpen();
+    }
+
+    /**
+     * Send requests that the host answers with a status code.
+     *
+     * @param statusCode the status code of the responses
+     * @param count      the number of requests to send
+     */
+    private void respond(int statusCode, int count) throws Exception {
+        mHttpStack.mStatusCode = statusCode;
+        for (int i = 0; i < count; i++) {
+            assertEquals(statusCode, execute(mRequest).getStatusCode());
+        }
+    }
+
+    /**
+     * Stack answering every request with the same response or error.
+     */
+    private static class FakeHttpStack extends BaseHttpStack {
+
+        /**
+         * Number of requests sent.
+         */
+        int mRequestCount = 0;
+        /**
+         * Status code of the responses.
+         */
+        int mStatusCode = 200;
+        /**
+         * Error thrown for requests, or {@code null} to respond.
+         */
+        IOException mIOException;
+        /**
+         * Auth failure thrown for requests, or {@code null} to respond.
+         */
+        AuthFailureError mAuthFailureError;
+        /**
+         * Run while a request is sent, or {@code null}.
+         */
+        Runnable mOnRequest;
+        /**
+         * Body of the responses, or {@code null} for none.
+         */
+        String mBody;
+        /**
+         * Set whether the responses have a body that fails to be read.
+         */
+        boolean mIsBodyFailing = false;
+
+        @Override
+        public HttpResponse executeRequest(Request<?> request,
+                                           Map<String, String> additionalHeaders)
+                throws IOException, AuthFailureError {
+            mRequestCount++;
+            if (mOnRequest != null) {
+                mOnRequest.run();
+            }
+            if (mIOException != null) {
+                throw mIOException;
+            }
+            if (mAuthFailureError != null) {
+                throw mAuthFailureError;
+            }
+            if (mIsBodyFailing) {
+                return new HttpResponse(mStatusCode, Collections.<Header>emptyList(), -1,
+                        new InputStream() {
+                            @Override
+                            public int read() throws IOException {
+                                throw new IOException("Connection reset");
+                            }
+                        });
+            } else if (mBody != null) {
+                final byte[] body = mBody.getBytes(Charset.forName("UTF-8"));
+                return new HttpResponse(mStatusCode, Collections.<Header>emptyList(),
+                        body.length, new ByteArrayInputStream(body));
+            }
+            return new HttpResponse(mStatusCode, Collections.<Header>emptyList());
+        }
+
+    }
+
+}
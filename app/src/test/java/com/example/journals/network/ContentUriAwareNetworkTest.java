@@ -0,0 +1,286 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.network;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Cache;
+import com.android.volley.ClientError;
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.Header;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.ServerError;
+import com.android.volley.TimeoutError;
+import com.android.volley.toolbox.BaseHttpStack;
+import com.android.volley.toolbox.HttpResponse;
+import com.google.gson.JsonObject;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the streamed requests of {@link ContentUriAwareNetwork}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ContentUriAwareNetworkTest {
+
+    /**
+     * URL of the requests.
+     */
+    private static final String URL = "https://example.com/api/journals";
+    /**
+     * A response body holding two records.
+     */
+    private static final String BODY = "{\"records\":[{\"id\":1},{\"id\":2}],\"total\":2}";
+
+    /**
+     * Stack the requests are sent to.
+     */
+    private FakeHttpStack mHttpStack;
+    /**
+     * The network under test.
+     */
+    private ContentUriAwareNetwork mNetwork;
+    /**
+     * The request sent by the tests.
+     */
+    private RecordStreamRequest<JsonObject, JsonObject> mRequest;
+
+    @Before
+    public void setUp() {
+        mHttpStack = new FakeHttpStack();
+        mNetwork = new ContentUriAwareNetwork(mHttpStack, RuntimeEnvironment.application);
+        mRequest = new RecordStreamRequest<>(URL, JsonObject.class, null, null,
+                new String[]{"records"}, JsonObject.class,
+                new RecordStreamRequest.RecordListener<JsonObject>() {
+                    @Override
+                    public void onRecords(List<JsonObject> records) {
+                    }
+
+                    @Override
+                    public void onRecordsReplaced() {
+                    }
+                }, null, null);
+        mRequest.setRetryPolicy(new DefaultRetryPolicy(1000, 1, 1));
+    }
+
+    /**
+     * A body small enough to cache is kept in the response.
+     */
+    @Test
+    public void performRequest_keepsBodyToCache() throws Exception {
+        mHttpStack.respond(200, BODY);
+        final NetworkResponse response = mNetwork.performRequest(mRequest);
+        assertEquals(200, response.statusCode);
+        assertArrayEquals(bytes(BODY), response.data);
+        assertTrue(mRequest.shouldCache());
+    }
+
+    /**
+     * A body too large to cache is parsed but not kept, and the request is no longer cached.
+     */
+    @Test
+    public void performRequest_dropsLargeBody() throws Exception {
+        final StringBuilder body = new StringBuilder("{\"records\":[");
+        for (int i = 0; body.length() <= ContentUriAwareNetwork.MAX_CACHED_BODY_SIZE; i++) {
+            body.append((i > 0) ? "," : "").append("{\"id\":").append(i).append('}');
+        }
+        body.append("]}");
+        mHttpStack.respond(200, body.toString());
+        final NetworkResponse response = mNetwork.performRequest(mRequest);
+        assertEquals(200, response.statusCode);
+        assertEquals(0, response.data.length);
+        assertFalse(mRequest.shouldCache());
+    }
+
+    /**
+     * A cached response is revalidated with its entity tag, and a not modified response returns
+     * the cached body with the headers of both responses.
+     */
+    @Test
+    public void performRequest_notModifiedUsesCachedBody() throws Exception {
+        final Cache.Entry entry = new Cache.Entry();
+        entry.data = bytes(BODY);
+        entry.etag = "\"v1\"";
+        entry.responseHeaders = new HashMap<>();
+        entry.responseHeaders.put("Content-Type", "application/json");
+        entry.responseHeaders.put("ETag", "\"v1\"");
+        mRequest.setCacheEntry(entry);
+        mHttpStack.respond(304, null, new Header("Date", "Fri, 16 Oct 2026 12:00:00 GMT"));
+
+        final NetworkResponse response = mNetwork.performRequest(mRequest);
+        assertEquals("\"v1\"", mHttpStack.mAdditionalHeaders.get("If-None-Match"));
+        assertEquals(304, response.statusCode);
+        assertTrue(response.notModified);
+        assertArrayEquals(entry.data, response.data);
+        assertEquals("application/json", response.headers.get("Content-Type"));
+        assertEquals("Fri, 16 Oct 2026 12:00:00 GMT", response.headers.get("Date"));
+    }
+
+    /**
+     * Error bodies are read whole and passed with the error.
+     */
+    @Test
+    public void performRequest_readsErrorBody() throws Exception {
+        mHttpStack.respond(500, "{\"message\":\"Down\"}");
+        try {
+            mNetwork.performRequest(mRequest);
+            fail("Server error wasn't thrown");
+        } catch (ServerError e) {
+            assertEquals(500, e.networkResponse.statusCode);
+            assertArrayEquals(bytes("{\"message\":\"Down\"}"), e.networkResponse.data);
+        }
+        mHttpStack.respond(404, "{\"message\":\"Missing\"}");
+        try {
+            mNetwork.performRequest(mRequest);
+            fail("Client error wasn't thrown");
+        } catch (ClientError e) {
+            assertArrayEquals(bytes("{\"message\":\"Missing\"}"), e.networkResponse.data);
+        }
+        mHttpStack.respond(401, "");
+        try {
+            mNetwork.performRequest(mRequest);
+            fail("Auth failure wasn't thrown");
+        } catch (AuthFailureError e) {
+            assertEquals(401, e.networkResponse.statusCode);
+        }
+    }
+
+    /**
+     * A timeout is retried, and the response of the retry is returned.
+     */
+    @Test
+    public void performRequest_retriesTimeout() throws Exception {
+        mHttpStack.fail(new SocketTimeoutException());
+        mHttpStack.respond(200, BODY);
+        final NetworkResponse response = mNetwork.performRequest(mRequest);
+        assertEquals(2, mHttpStack.mRequestCount);
+        assertArrayEquals(bytes(BODY), response.data);
+    }
+
+    /**
+     * Once the retry policy has no retries left, a timeout is thrown.
+     */
+    @Test
+    public void performRequest_throwsTimeoutWhenRetriesRunOut() throws Exception {
+        mHttpStack.fail(new SocketTimeoutException());
+        mHttpStack.fail(new SocketTimeoutException());
+        try {
+            mNetwork.performRequest(mRequest);
+            fail("Timeout wasn't thrown");
+        } catch (TimeoutError e) {
+            // Expected.
+        }
+        assertEquals(2, mHttpStack.mRequestCount);
+        assertNull(mHttpStack.mResults.peek());
+    }
+
+    /**
+     * Encode a string as UTF-8.
+     */
+    private static byte[] bytes(String value) {
+        return value.getBytes(Charset.forName("UTF-8"));
+    }
+
+    /**
+     * Stack answering requests with queued responses and errors, in order.
+     */
+    private static class FakeHttpStack extends BaseHttpStack {
+
+        /**
+         * Number of requests sent.
+         */
+        int mRequestCount = 0;
+        /**
+         * Headers added to the last request.
+         */
+        Map<String, String> mAdditionalHeaders;
+        /**
+         * Responses, or the errors to throw, for the next requests.
+         */
+        final LinkedList<Object> mResults = new LinkedList<>();
+
+        /**
+         * Queue a response.
+         *
+         * @param statusCode the status code
+         * @param body       the body, or {@code null} for none
+         * @param headers    the headers
+         */
+        void respond(int statusCode, String body, Header... headers) {
+            final List<Header> allHeaders = new ArrayList<>(Arrays.asList(headers));
+            if (body == null) {
+                mResults.add(new HttpResponse(statusCode, allHeaders));
+            } else {
+                final byte[] content = bytes(body);
+                mResults.add(new HttpResponse(statusCode, allHeaders, content.length,
+                        new ByteArrayInputStream(content)));
+            }
+        }
+
+        /**
+         * Queue an error.
+         *
+         * @param e the error to throw
+         */
+        void fail(IOException e) {
+            mResults.add(e);
+        }
+
+        @Override
+        public HttpResponse executeRequest(Request<?> request,
+                                           Map<String, String> additionalHeaders)
+                throws IOException, AuthFailureError {
+            mRequestCount++;
+            mAdditionalHeaders = (additionalHeaders != null) ? additionalHeaders
+                    : Collections.<String, String>emptyMap();
+            final Object result = mResults.poll();
+            if (result instanceof IOException) {
+                throw (IOException) result;
+            }
+            return (HttpResponse) result;
+        }
+
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.network;
+
+import com.example.journals.Benchmark;
+import com.example.journals.network.NetworkUtils.GetJournalsResponse;
+import com.example.journals.network.NetworkUtils.Journal;
+import com.google.gson.Gson;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmark of parsing a page of journals with the shared instance's streaming adapters and with
+ * a plain {@link Gson} instance reading the same types by reflection.
+ * <p/>
+ * Both instances are warmed first, so the rates compare the adapters rather than the building of
+ * the reflective ones. The host's JVM stands in for the device's runtime, so the rates only
+ * compare runs on the same machine. Allocations are reported where the JVM can count them.
+ */
+@Category(Benchmark.class)
+@RunWith(RobolectricTestRunner.class)
+public class GsonAdapterBenchmarkTest {
+
+    /**
+     * Number of journals in the page.
+     */
+    private static final int JOURNAL_COUNT = 50;
+    /**
+     * Number of activities in each journal.
+     */
+    private static final int ACTIVITY_COUNT = 10;
+    /**
+     * Number of contacts in each journal.
+     */
+    private static final int CONTACT_COUNT = 3;
+    /**
+     * Number of media in each journal and each activity.
+     */
+    private static final int MEDIA_COUNT = 2;
+    /**
+     * Number of timed parses with each instance.
+     */
+    private static final int PARSES = 500;
+    /**
+     * Number of untimed parses run first, to warm the JIT and the instances' adapters.
+     */
+    private static final int WARM_UP_PARSES = 100;
+
+    /**
+     * Body of the page of journals.
+     */
+    private String mBody;
+
+    @Before
+    public void setUp() {
+        final StringBuilder body = new StringBuilder("{\"status\":1,\"total_count\":")
+                .append(JOURNAL_COUNT).append(",\"records\":[");
+        for (int i = 0; i < JOURNAL_COUNT; i++) {
+            body.append((i > 0) ? "," : "")
+                    .append("{\"scrapbook_id\":").append(i)
+                    .append(",\"user_id\":7,\"user_alias\":\"Traveller\",\"user_gender\":1")
+                    .append(",\"title\":\"Journal ").append(i).append('"')
+                    .append(",\"scrapbook_privacy\":1,\"prof_image\":\"images/7.jpg\"")
+                    .append(",\"contentType\":1,\"createdAt\":\"2026-10-16 12:00:00\"")
+                    .append(",\"activities\":[");
+            for (int j = 0; j < ACTIVITY_COUNT; j++) {
+                body.append((j > 0) ? "," : "")
+                        .append("{\"activity_id\":").append(i * ACTIVITY_COUNT + j)
+                        .append(",\"title\":\"Activity ").append(j).append('"')
+                        .append(",\"description\":\"A stop along the way\"")
+                        .append(",\"location\":\"Somewhere\",\"latitude\":51.5")
+                        .append(",\"longitude\":\"-0.12\",\"user_id\":7")
+                        .append(",\"created_at\":\"2026-10-16 12:00:00\",\"media\":");
+                appendMedia(body);
+                body.append('}');
+            }
+            body.append("],\"pocs\":[");
+            for (int j = 0; j < CONTACT_COUNT; j++) {
+                body.append((j > 0) ? "," : "")
+                        .append("{\"contact_id\":").append(i * CONTACT_COUNT + j)
+                        .append(",\"contact_name\":\"Contact ").append(j).append('"')
+                        .append(",\"contact_email\":\"contact@example.com\"")
+                        .append(",\"contact_phone\":\"555 0100\"")
+                        .append(",\"contact_desc\":\"Guide\"}");
+            }
+            body.append("],\"media\":");
+            appendMedia(body);
+            body.append('}');
+        }
+        mBody = body.append("]}").toString();
+    }
+
+    /**
+     * Report the parses per second, and the bytes allocated per parse, with the streaming
+     * adapters and by reflection.
+     */
+    @Test
+    public void parseJournals_rate() {
+        final Gson adapters = GsonUtils.getGson();
+        final Gson reflection = new Gson();
+        // Both read the same page.
+        final GetJournalsResponse adapted = parse(adapters, 1);
+        final GetJournalsResponse reflected = parse(reflection, 1);
+        assertEquals(JOURNAL_COUNT, adapted.journals.size());
+        assertEquals(reflected.journals, adapted.journals);
+        final Journal journal = adapted.journals.get(JOURNAL_COUNT - 1);
+        assertEquals(reflected.journals.get(JOURNAL_COUNT - 1).title, journal.title);
+        assertEquals(ACTIVITY_COUNT, journal.activities.size());
+        assertEquals(-0.12, journal.activities.get(0).longitude, 0);
+        assertEquals(MEDIA_COUNT, journal.activities.get(0).media.size());
+        assertEquals(CONTACT_COUNT, journal.contacts.size());
+        assertEquals(MEDIA_COUNT, journal.media.size());
+
+        parse(adapters, WARM_UP_PARSES);
+        parse(reflection, WARM_UP_PARSES);
+        report("streaming adapters", adapters);
+        report("reflection", reflection);
+    }
+
+    /**
+     * Time parses with an instance, and print the rate and allocations.
+     *
+     * @param name     the name of the instance, for the report
+     * @param instance the instance
+     */
+    private void report(String name, Gson instance) {
+        final long allocatedBefore = getAllocatedBytes();
+        final long start = System.nanoTime();
+        parse(instance, PARSES);
+        final long time = System.nanoTime() - start;
+        final long allocatedAfter = getAllocatedBytes();
+        System.out.println("Journal pages parsed with " + name + ": "
+                + (PARSES * 1000000000L / Math.max(time, 1)) + "/s");
+        if (allocatedBefore >= 0 && allocatedAfter >= 0) {
+            System.out.println("Bytes allocated per page parsed with " + name + ": "
+                    + ((allocatedAfter - allocatedBefore) / PARSES));
+        }
+    }
+
+    /**
+     * Parse the page of journals a number of times.
+     *
+     * @param instance the instance to parse with
+     * @param count    the number of parses
+     * @return the last page parsed
+     */
+    private GetJournalsResponse parse(Gson instance, int count) {
+        GetJournalsResponse response = null;
+        for (int i = 0; i < count; i++) {
+            response = instance.fromJson(mBody, GetJournalsResponse.class);
+        }
+        return response;
+    }
+
+    /**
+     * Append an array of media to a body.
+     *
+     * @param body the body
+     */
+    private static void appendMedia(StringBuilder body) {
+        body.append('[');
+        for (int i = 0; i < MEDIA_COUNT; i++) {
+            body.append((i > 0) ? "," : "").append("{\"media_id\":").append(i)
+                    .append(",\"media_path\":\"media/").append(i).append(".jpg\"}");
+        }
+        body.append(']');
+    }
+
+    /**
+     * Get the bytes allocated by the current thread, where the JVM counts them.
+     *
+     * @return the bytes allocated, or -1 if they aren't counted
+     */
+    private static long getAllocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean counter =
+                    (com.sun.management.ThreadMXBean) bean;
+            if (counter.isThreadAllocatedMemorySupported()
+                    && counter.isThreadAllocatedMemoryEnabled()) {
+                return counter.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+}
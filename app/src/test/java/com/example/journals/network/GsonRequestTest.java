@@ -0,0 +1,152 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.network;
+
+import com.android.volley.Request.Method;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Tests for the cache keys of {@link GsonRequest}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class GsonRequestTest {
+
+    /**
+     * URL of the requests.
+     */
+    private static final String URL = "https://example.com/api/journals";
+    /**
+     * A request body.
+     */
+    private static final String BODY =
+            "{\"user_id\":7,\"filter\":{\"title\":\"a\",\"privacy\":[1,2]},\"page\":1}";
+
+    /**
+     * Requests whose bodies only differ in the order of their members and in whitespace share a
+     * cache key.
+     */
+    @Test
+    public void getCacheKey_ignoresMemberOrder() {
+        final String reordered =
+                "{ \"page\": 1, \"filter\": { \"privacy\": [1, 2], \"title\": \"a\" }, "
+                        + "\"user_id\": 7 }";
+        assertEquals(createRead(BODY, createHeaders("token")).getCacheKey(),
+                createRead(reordered, createHeaders("token")).getCacheKey());
+    }
+
+    /**
+     * Requests with different bodies have different cache keys.
+     */
+    @Test
+    public void getCacheKey_differsByBody() {
+        final String body = BODY.replace("\"page\":1", "\"page\":2");
+        assertNotEquals(createRead(BODY, createHeaders("token")).getCacheKey(),
+                createRead(body, createHeaders("token")).getCacheKey());
+    }
+
+    /**
+     * Requests whose arrays list the same values in a different order have different cache keys.
+     */
+    @Test
+    public void getCacheKey_keepsArrayOrder() {
+        final String body = BODY.replace("[1,2]", "[2,1]");
+        assertNotEquals(createRead(BODY, createHeaders("token")).getCacheKey(),
+                createRead(body, createHeaders("token")).getCacheKey());
+    }
+
+    /**
+     * Requests made for different users have different cache keys.
+     */
+    @Test
+    public void getCacheKey_differsByHeaders() {
+        assertNotEquals(createRead(BODY, createHeaders("token")).getCacheKey(),
+                createRead(BODY, createHeaders("other")).getCacheKey());
+    }
+
+    /**
+     * Requests in different generations of cached reads have different cache keys.
+     */
+    @Test
+    public void getCacheKey_differsByGeneration() {
+        final GsonRequest<Object> request = createRead(BODY, createHeaders("token"));
+        final String key = request.getCacheKey();
+        request.setCacheGeneration(1);
+        assertNotEquals(key, request.getCacheKey());
+        request.setCacheGeneration(0);
+        assertEquals(key, request.getCacheKey());
+    }
+
+    /**
+     * A body that isn't JSON is hashed as it is.
+     */
+    @Test
+    public void getCacheKey_hashesInvalidJson() {
+        assertEquals(createRead("not json", null).getCacheKey(),
+                createRead("not json", null).getCacheKey());
+        assertNotEquals(createRead("not json", null).getCacheKey(),
+                createRead("not  json", null).getCacheKey());
+    }
+
+    /**
+     * A request that isn't marked as a cached read has the plain Volley cache key.
+     */
+    @Test
+    public void getCacheKey_usesVolleyKeyWithoutTtl() {
+        final GsonRequest<Object> request = new GsonRequest<>(Method.POST, URL, Object.class,
+                createHeaders("token"), BODY, null, null);
+        assertEquals(Method.POST + "-" + URL, request.getCacheKey());
+    }
+
+    /**
+     * Create a posted request marked as a cached read.
+     *
+     * @param body    the request body
+     * @param headers the request headers, or {@code null} for none
+     * @return the new request
+     */
+    private static GsonRequest<Object> createRead(String body, Map<String, String> headers) {
+        return new GsonRequest<>(Method.POST, URL, Object.class, headers, body, null, null)
+                .setCacheTtl(60 * 1000, 60 * 1000);
+    }
+
+    /**
+     * Create the request headers of a user.
+     *
+     * @param token the authentication token of the user
+     * @return the new headers
+     */
+    private static Map<String, String> createHeaders(String token) {
+        final Map<String, String> headers = new HashMap<>();
+        headers.put("Authtoken", token);
+        headers.put("Content-Type", "application/json");
+        return headers;
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.network;
+
+import com.example.journals.network.NetworkUtils.Activity;
+import com.example.journals.network.NetworkUtils.Contact;
+import com.example.journals.network.NetworkUtils.Journal;
+import com.example.journals.network.NetworkUtils.Media;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonSyntaxException;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that the streaming adapters of {@link GsonUtils} read and write the same JSON as
+ * reflection does.
+ */
+public class GsonUtilsTest {
+
+    /**
+     * A response containing every field of a journal, unknown fields and {@code null} values.
+     */
+    private static final String JOURNAL_JSON = "{"
+            + "\"user_alias\":\"alias\",\"user_id\":7,\"user_gender\":1,\"scrapbook_id\":\"12\","
+            + "\"title\":\"Journal\",\"scrapbook_privacy\":2,\"prof_image\":null,"
+            + "\"contentType\":3,\"createdAt\":\"2020-01-01 00:00:00\",\"unknown\":{\"a\":[1]},"
+            + "\"activities\":[{\"activity_id\":5,\"title\":\"Spot\",\"description\":null,"
+            + "\"location\":\"Here\",\"created_at\":\"2020-01-02 00:00:00\",\"latitude\":1.5,"
+            + "\"longitude\":-2.25,\"user_id\":7,\"media\":[{\"media_id\":9,\"activity_id\":5,"
+            + "\"media_path\":\"/a.jpg\",\"mdeia_name\":\"A\",\"created_at\":\"x\"}]}],"
+            + "\"media\":[],"
+            + "\"pocs\":[{\"contact_id\":4,\"contact_name\":\"Name\",\"contact_email\":\"e@x.com\","
+            + "\"contact_phone\":\"555\",\"contact_desc\":\"Desc\",\"extra\":true}]"
+            + "}";
+
+    /**
+     * Gson using reflection for every type.
+     */
+    private final Gson mReflectiveGson = new Gson();
+
+    /**
+     * Reading a journal gives the same object as reading it by reflection.
+     */
+    @Test
+    public void read_matchesReflection() {
+        final Journal streamed = GsonUtils.getGson().fromJson(JOURNAL_JSON, Journal.class);
+        final Journal reflected = mReflectiveGson.fromJson(JOURNAL_JSON, Journal.class);
+        assertEquals(mReflectiveGson.toJsonTree(reflected), mReflectiveGson.toJsonTree(streamed));
+    }
+
+    /**
+     * Reading a number that isn't valid fails with the same exception as reflection.
+     */
+    @Test
+    public void read_rejectsInvalidNumber() {
+        final String json = "{\"scrapbook_id\":\"twelve\"}";
+        try {
+            mReflectiveGson.fromJson(json, Journal.class);
+            fail("Reflection accepted an invalid number");
+        } catch (JsonSyntaxException e) {
+            // Expected.
+        }
+        try {
+            GsonUtils.getGson().fromJson(json, Journal.class);
+            fail("Adapter accepted an invalid number");
+        } catch (JsonSyntaxException e) {
+            // Expected.
+        }
+    }
+
+    /**
+     * Creation times are parsed to epoch milliseconds as they are read, and left at 0 when they
+     * aren't timestamps.
+     */
+    @Test
+    public void read_parsesCreationTimes() {
+        final Journal journal = GsonUtils.getGson().fromJson(JOURNAL_JSON, Journal.class);
+        assertEquals(1577836800000L, journal.created);
+        assertEquals(1577923200000L, journal.activities.get(0).created);
+        assertEquals(0, journal.activities.get(0).media.get(0).created);
+    }
+
+    /**
+     * Timestamps are parsed as UTC, with either separator, and invalid ones give 0.
+     */
+    @Test
+    public void parseTimestamp_readsServerFormat() {
+        assertEquals(1577934245000L, GsonUtils.parseTimestamp("2020-01-02 03:04:05"));
+        assertEquals(1577934245000L, GsonUtils.parseTimestamp("2020-01-02T03:04:05.678Z"));
+        assertEquals(1582934400000L, GsonUtils.parseTimestamp("2020-02-29 00:00:00"));
+        assertEquals(0, GsonUtils.parseTimestamp("1970-01-01 00:00:00"));
+        assertEquals(0, GsonUtils.parseTimestamp("2020-13-02 03:04:05"));
+        assertEquals(0, GsonUtils.parseTimestamp("2020-01-02"));
+        assertEquals(0, GsonUtils.parseTimestamp("yesterday at 03:04:05"));
+    }
+
+    /**
+     * Writing a journal with every field set gives the same JSON as reflection.
+     */
+    @Test
+    public void write_matchesReflection() {
+        final Journal journal = createJournal();
+        assertEquals(mReflectiveGson.toJsonTree(journal),
+                GsonUtils.getGson().toJsonTree(journal));
+    }
+
+    /**
+     * Writing a journal leaves out its {@code null} fields, as reflection does.
+     */
+    @Test
+    public void write_omitsNullFields() {
+        final Journal journal = new Journal();
+        journal.activities = new ArrayList<>();
+        journal.activities.add(new Activity());
+        journal.contacts = new ArrayList<>();
+        journal.contacts.add(new Contact());
+        final JsonElement json = GsonUtils.getGson().toJsonTree(journal);
+        assertEquals(mReflectiveGson.toJsonTree(journal), json);
+        assertEquals(0, json.getAsJsonObject().getAsJsonArray("pocs").get(0).getAsJsonObject()
+                .size());
+    }
+
+    /**
+     * Written JSON is read back as the same journal.
+     */
+    @Test
+    public void write_roundTrips() {
+        final Gson gson = GsonUtils.getGson();
+        final Journal journal = gson.fromJson(gson.toJson(createJournal()), Journal.class);
+        assertEquals(mReflectiveGson.toJsonTree(createJournal()),
+                mReflectiveGson.toJsonTree(journal));
+    }
+
+    /**
+     * Create a journal with every field set, containing an activity with media and a contact.
+     *
+     * @return the new journal
+     */
+    private static Journal createJournal() {
+        final Media media = new Media();
+        media.id = 9;
+        media.activityId = 5;
+        media.path = "/a.jpg";
+        media.title = "A";
+        media.createdAt = "2020-01-02 00:00:00";
+
+        final Activity activity = new Activity();
+        activity.activityId = 5L;
+        activity.title = "Spot";
+        activity.description = "Description";
+        activity.location = "Here";
+        activity.createdAt = "2020-01-02 00:00:00";
+        activity.latitude = 1.5;
+        activity.longitude = -2.25;
+        activity.userId = 7;
+        activity.media = new ArrayList<>();
+        activity.media.add(media);
+
+        final Contact contact = new Contact();
+        contact.contactId = 4L;
+        contact.name = "Name";
+        contact.email = "e@x.com";
+        contact.phone = "555";
+        contact.description = "Desc";
+
+        final Journal journal = new Journal();
+        journal.userAlias = "alias";
+        journal.userId = 7;
+        journal.userGender = 1;
+        journal.journalId = 12;
+        journal.title = "Journal";
+        journal.privacy = 2;
+        journal.imageUrl = "https://example.com/a.jpg";
+        journal.contentType = 3;
+        journal.createdAt = "2020-01-01 00:00:00";
+        journal.activities = new ArrayList<>();
+        journal.activities.add(activity);
+        journal.media = new ArrayList<>();
+        journal.media.add(media);
+        journal.contacts = new ArrayList<>();
+        journal.contacts.add(contact);
+        return journal;
+    }
+
+}
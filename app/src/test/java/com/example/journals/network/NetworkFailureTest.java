@@ -0,0 +1,270 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.network;
+
+import android.os.SystemClock;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.ExecutorDelivery;
+import com.android.volley.Header;
+import com.android.volley.NetworkError;
+import com.android.volley.NoConnectionError;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.ServerError;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.BaseHttpStack;
+import com.android.volley.toolbox.HttpResponse;
+import com.android.volley.toolbox.NoCache;
+import com.google.gson.JsonObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * End-to-end tests of a failing server, with requests sent through a running request queue,
+ * {@link ContentUriAwareNetwork} and a {@link CircuitBreakerHttpStack}, using the retry policy
+ * the app's requests use.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NetworkFailureTest {
+
+    /**
+     * URL of the requests.
+     */
+    private static final String URL = "https://example.com/api/journals";
+    /**
+     * A response body holding two records.
+     */
+    private static final String BODY = "{\"records\":[{\"id\":1},{\"id\":2}],\"total\":2}";
+    /**
+     * Status code of a server error.
+     */
+    private static final int SERVICE_UNAVAILABLE = 503;
+    /**
+     * Longest wait for a request to be answered (in seconds).
+     */
+    private static final long TIMEOUT = 5;
+
+    /**
+     * Stack standing in for the server.
+     */
+    private FaultyHttpStack mHttpStack;
+    /**
+     * The running queue requests are sent on.
+     */
+    private RequestQueue mQueue;
+
+    @Before
+    public void setUp() {
+        mHttpStack = new FaultyHttpStack();
+        final ContentUriAwareNetwork network = new ContentUriAwareNetwork(
+                new CircuitBreakerHttpStack(mHttpStack), RuntimeEnvironment.application);
+        // Deliver on the network thread, as the main looper isn't running.
+        mQueue = new RequestQueue(new NoCache(), network, 1, new ExecutorDelivery(
+                new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        command.run();
+                    }
+                }));
+        mQueue.start();
+    }
+
+    @After
+    public void tearDown() {
+        mQueue.stop();
+    }
+
+    /**
+     * Server errors are reported as they are, until there have been enough to open the breaker.
+     * Requests then fail without reaching the server, until a probe succeeds.
+     */
+    @Test
+    public void serverErrors_openBreakerUntilProbeSucceeds() throws Exception {
+        mHttpStack.mStatusCode = SERVICE_UNAVAILABLE;
+        for (int i = 0; i < CircuitBreakerHttpStack.FAILURE_THRESHOLD; i++) {
+            final Object result = send(false);
+            assertTrue(String.valueOf(result), result instanceof ServerError);
+            assertEquals(SERVICE_UNAVAILABLE, ((ServerError) result).networkResponse.statusCode);
+        }
+        assertEquals(CircuitBreakerHttpStack.FAILURE_THRESHOLD, mHttpStack.getRequestCount());
+
+        // The server has recovered, but isn't asked until the breaker lets a probe through.
+        mHttpStack.mStatusCode = 200;
+        Object result = send(false);
+        assertTrue(String.valueOf(result), result instanceof NoConnectionError);
+        result = send(true);
+        assertTrue(String.valueOf(result), result instanceof NoConnectionError);
+        assertEquals(CircuitBreakerHttpStack.FAILURE_THRESHOLD, mHttpStack.getRequestCount());
+
+        advanceClock(CircuitBreakerHttpStack.OPEN_TIME);
+        result = send(false);
+        assertTrue(String.valueOf(result), result instanceof JsonObject);
+        result = send(true);
+        assertTrue(String.valueOf(result), result instanceof JsonObject);
+        assertEquals(CircuitBreakerHttpStack.FAILURE_THRESHOLD + 2, mHttpStack.getRequestCount());
+    }
+
+    /**
+     * Streamed bodies that fail after the response has started count towards opening the breaker.
+     */
+    @Test
+    public void streamedBodyErrors_openBreaker() throws Exception {
+        mHttpStack.mIsBodyFailing = true;
+        for (int i = 0; i < CircuitBreakerHttpStack.FAILURE_THRESHOLD; i++) {
+            final Object result = send(true);
+            assertTrue(String.valueOf(result), result instanceof NetworkError);
+        }
+        mHttpStack.mIsBodyFailing = false;
+        final Object result = send(true);
+        assertTrue(String.valueOf(result), result instanceof NoConnectionError);
+        assertEquals(CircuitBreakerHttpStack.FAILURE_THRESHOLD, mHttpStack.getRequestCount());
+    }
+
+    /**
+     * Advance the time since boot.
+     *
+     * @param millis the time to advance by (in milliseconds)
+     */
+    private static void advanceClock(long millis) {
+        SystemClock.setCurrentTimeMillis(SystemClock.elapsedRealtime() + millis);
+    }
+
+    /**
+     * Send a read on the queue, with the app's retry policy, and wait for its outcome.
+     *
+     * @param isStreamed whether the body of the read is parsed as it is downloaded, rather than
+     *                   downloaded whole
+     * @return the response, or the error
+     */
+    private Object send(boolean isStreamed) throws InterruptedException {
+        final BlockingQueue<Object> results = new LinkedBlockingQueue<>();
+        final Response.Listener<JsonObject> listener = new Response.Listener<JsonObject>() {
+            @Override
+            public void onResponse(JsonObject response) {
+                results.add(response);
+            }
+        };
+        final Response.ErrorListener errorListener = new Response.ErrorListener() {
+            @Override
+            public void onErrorResponse(VolleyError error) {
+                results.add(error);
+            }
+        };
+        final GsonRequest<JsonObject> read;
+        if (isStreamed) {
+            read = new RecordStreamRequest<>(URL, JsonObject.class, null, null,
+                    new String[]{"records"}, JsonObject.class,
+                    new RecordStreamRequest.RecordListener<JsonObject>() {
+                        @Override
+                        public void onRecords(List<JsonObject> records) {
+                        }
+
+                        @Override
+                        public void onRecordsReplaced() {
+                        }
+                    }, listener, errorListener);
+        } else {
+            read = new GsonRequest<>(URL, JsonObject.class, null, null, listener, errorListener);
+        }
+        read.setShouldCache(false);
+        read.setRetryPolicy(new AuthFailureRetryPolicy());
+        mQueue.add(read);
+        final Object result = results.poll(TIMEOUT, TimeUnit.SECONDS);
+        assertTrue("Request wasn't answered", result != null);
+        return result;
+    }
+
+    /**
+     * Stack answering every request with the same response, standing in for the server.
+     */
+    private static class FaultyHttpStack extends BaseHttpStack {
+
+        /**
+         * Status code of the responses.
+         */
+        volatile int mStatusCode = 200;
+        /**
+         * Set whether the body of the responses fails part way through.
+         */
+        volatile boolean mIsBodyFailing = false;
+        /**
+         * Number of requests that reached the server.
+         */
+        private int mRequestCount = 0;
+
+        /**
+         * Get the number of requests that reached the server.
+         *
+         * @return the number of requests
+         */
+        synchronized int getRequestCount() {
+            return mRequestCount;
+        }
+
+        @Override
+        public HttpResponse executeRequest(Request<?> request,
+                                           Map<String, String> additionalHeaders)
+                throws IOException, AuthFailureError {
+            synchronized (this) {
+                mRequestCount++;
+            }
+            final byte[] body = BODY.getBytes(Charset.forName("UTF-8"));
+            InputStream content = new ByteArrayInputStream(body);
+            if (mIsBodyFailing) {
+                // The connection drops after the first records.
+                content = new SequenceInputStream(new ByteArrayInputStream(body, 0, 20),
+                        new InputStream() {
+                            @Override
+                            public int read() throws IOException {
+                                throw new IOException("Connection reset");
+                            }
+                        });
+            }
+            return new HttpResponse(mStatusCode, Collections.<Header>emptyList(),
+                    mIsBodyFailing ? -1 : body.length, content);
+        }
+
+    }
+
+}
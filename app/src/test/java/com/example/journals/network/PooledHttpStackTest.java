@@ -0,0 +1,398 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.network;
+
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.Header;
+import com.android.volley.Request;
+import com.android.volley.toolbox.HttpResponse;
+import com.android.volley.toolbox.StringRequest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link PooledHttpStack}, sending requests to a server on the loopback interface.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PooledHttpStackTest {
+
+    /**
+     * The body of every response, before it is encoded.
+     */
+    private static final String BODY = "{\"records\":[{\"id\":1},{\"id\":2}],\"total\":2}";
+    /**
+     * Timeout of the requests (in milliseconds).
+     */
+    private static final int TIMEOUT = 5000;
+    /**
+     * Time the server takes to answer a slow request (in milliseconds).
+     */
+    private static final long SLOW_RESPONSE_TIME = 300;
+    /**
+     * No additional headers.
+     */
+    private static final Map<String, String> NO_HEADERS = Collections.emptyMap();
+
+    /**
+     * The server requests are sent to.
+     */
+    private LoopbackServer mServer;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new LoopbackServer();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.close();
+    }
+
+    /**
+     * Gzipped and deflated bodies are decompressed, without their encoding and length headers.
+     */
+    @Test
+    public void executeRequest_decodesCompressedBody() throws Exception {
+        final PooledHttpStack stack = new PooledHttpStack();
+        for (String path : new String[]{"/gzip", "/deflate"}) {
+            final HttpResponse response = stack.executeRequest(createRequest(path), NO_HEADERS);
+            assertEquals(200, response.getStatusCode());
+            for (Header header : response.getHeaders()) {
+                assertTrue(header.getName(), !"Content-Encoding".equalsIgnoreCase(header.getName())
+                        && !"Content-Length".equalsIgnoreCase(header.getName()));
+            }
+            assertEquals(BODY, readFully(response.getContent()));
+            assertEquals("gzip, deflate", mServer.mAcceptEncoding);
+        }
+    }
+
+    /**
+     * A body read to its end, or closed with only a few bytes left, returns its connection to the
+     * pool for the next request.
+     */
+    @Test
+    public void executeRequest_reusesConnection() throws Exception {
+        final PooledHttpStack stack = new PooledHttpStack();
+        // Read to the end.
+        HttpResponse response = stack.executeRequest(createRequest("/plain"), NO_HEADERS);
+        assertEquals(BODY + "\n\n", readFully(response.getContent()));
+        // Stop at the end of the JSON, before the trailing white space.
+        response = stack.executeRequest(createRequest("/plain"), NO_HEADERS);
+        assertEquals(BODY, readJson(response.getContent()));
+        // Stop at the end of the JSON, before the end of the compressed stream.
+        response = stack.executeRequest(createRequest("/gzip"), NO_HEADERS);
+        assertEquals(BODY, readJson(response.getContent()));
+        response = stack.executeRequest(createRequest("/deflate"), NO_HEADERS);
+        assertEquals(BODY, readJson(response.getContent()));
+        assertEquals(4, mServer.mRequestCount.get());
+        assertEquals(1, mServer.mConnectionCount.get());
+    }
+
+    /**
+     * No more than the largest number of requests to a host are made at once, and the others wait
+     * for their turn.
+     */
+    @Test
+    public void executeRequest_limitsRequestsPerHost() throws Exception {
+        final PooledHttpStack stack =
+                new PooledHttpStack(2, PooledHttpStack.DEFAULT_GZIP_THRESHOLD,
+                        Collections.<String>emptySet());
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        final AtomicInteger responseCount = new AtomicInteger();
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final HttpResponse response =
+                                stack.executeRequest(createRequest("/slow"), NO_HEADERS);
+                        if (BODY.equals(readFully(response.getContent()))) {
+                            responseCount.incrementAndGet();
+                        }
+                    } catch (Throwable e) {
+                        errors.add(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join(4 * TIMEOUT);
+        }
+        assertEquals(Collections.<Throwable>emptyList(), errors);
+        assertEquals(4, responseCount.get());
+        assertEquals(2, mServer.mMaxActiveRequests.get());
+    }
+
+    /**
+     * Create a GET request to the server.
+     *
+     * @param path the path of the request
+     * @return the request
+     */
+    private Request<String> createRequest(String path) {
+        final Request<String> request = new StringRequest(Request.Method.GET,
+                mServer.getUrl(path), null, null);
+        request.setRetryPolicy(new DefaultRetryPolicy(TIMEOUT, 0, 1));
+        return request;
+    }
+
+    /**
+     * Read a body to its end and close it.
+     *
+     * @param content the body
+     * @return the body, as text
+     */
+    private static String readFully(InputStream content) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[256];
+        try {
+            int bytesRead;
+            while ((bytesRead = content.read(buffer)) != -1) {
+                bytes.write(buffer, 0, bytesRead);
+            }
+        } finally {
+            content.close();
+        }
+        return new String(bytes.toByteArray(), Charset.forName("UTF-8"));
+    }
+
+    /**
+     * Read only the JSON of a body, as a parser would, and close it.
+     *
+     * @param content the body
+     * @return the JSON
+     */
+    private static String readJson(InputStream content) throws IOException {
+        final byte[] json = new byte[BODY.length()];
+        try {
+            int offset = 0;
+            while (offset < json.length) {
+                final int bytesRead = content.read(json, offset, json.length - offset);
+                if (bytesRead == -1) {
+                    break;
+                }
+                offset += bytesRead;
+            }
+        } finally {
+            content.close();
+        }
+        return new String(json, Charset.forName("UTF-8"));
+    }
+
+    /**
+     * HTTP server on the loopback interface, answering every request with {@link #BODY}, encoded
+     * as the request's path says.
+     */
+    private static class LoopbackServer implements Runnable {
+
+        /**
+         * Number of connections accepted.
+         */
+        final AtomicInteger mConnectionCount = new AtomicInteger();
+        /**
+         * Number of requests answered.
+         */
+        final AtomicInteger mRequestCount = new AtomicInteger();
+        /**
+         * Largest number of slow requests being answered at once.
+         */
+        final AtomicInteger mMaxActiveRequests = new AtomicInteger();
+        /**
+         * Accepted encodings of the last request.
+         */
+        volatile String mAcceptEncoding;
+        /**
+         * Number of slow requests being answered.
+         */
+        private final AtomicInteger mActiveRequests = new AtomicInteger();
+        /**
+         * Socket accepting connections.
+         */
+        private final ServerSocket mServerSocket;
+
+        /**
+         * Create a new server, and start accepting connections.
+         *
+         * @throws IOException if the server socket couldn't be opened
+         */
+        LoopbackServer() throws IOException {
+            mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+            startThread(this);
+        }
+
+        /**
+         * Get the URL of a path on the server.
+         *
+         * @param path the path
+         * @return the URL
+         */
+        String getUrl(String path) {
+            return "http://127.0.0.1:" + mServerSocket.getLocalPort() + path;
+        }
+
+        /**
+         * Stop accepting connections.
+         *
+         * @throws IOException if the server socket couldn't be closed
+         */
+        void close() throws IOException {
+            mServerSocket.close();
+        }
+
+        @Override
+        public void run() {
+            while (!mServerSocket.isClosed()) {
+                final Socket socket;
+                try {
+                    socket = mServerSocket.accept();
+                } catch (IOException e) {
+                    return;
+                }
+                mConnectionCount.incrementAndGet();
+                startThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            serve(socket);
+                        } catch (IOException e) {
+                            // The client closed the connection.
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+            }
+        }
+
+        /**
+         * Answer the requests made on a connection until the client closes it.
+         *
+         * @param socket the connection
+         * @throws IOException          if the connection failed
+         * @throws InterruptedException if interrupted while answering a slow request
+         */
+        private void serve(Socket socket) throws IOException, InterruptedException {
+            try {
+                final BufferedReader in = new BufferedReader(new InputStreamReader(
+                        socket.getInputStream(), Charset.forName("ISO-8859-1")));
+                final OutputStream out = socket.getOutputStream();
+                String requestLine;
+                while ((requestLine = in.readLine()) != null) {
+                    String line;
+                    while (((line = in.readLine()) != null) && !line.isEmpty()) {
+                        if (line.toLowerCase().startsWith("accept-encoding:")) {
+                            mAcceptEncoding = line.substring(line.indexOf(':') + 1).trim();
+                        }
+                    }
+                    final String path = requestLine.split(" ")[1];
+                    final byte[] body = bytes(BODY);
+                    byte[] content = body;
+                    String encoding = null;
+                    if ("/plain".equals(path)) {
+                        content = bytes(BODY + "\n\n");
+                    } else if ("/gzip".equals(path)) {
+                        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                        final GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+                        gzip.write(body);
+                        gzip.close();
+                        content = bytes.toByteArray();
+                        encoding = "gzip";
+                    } else if ("/deflate".equals(path)) {
+                        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                        final DeflaterOutputStream deflate = new DeflaterOutputStream(bytes);
+                        deflate.write(body);
+                        deflate.close();
+                        content = bytes.toByteArray();
+                        encoding = "deflate";
+                    } else if ("/slow".equals(path)) {
+                        final int active = mActiveRequests.incrementAndGet();
+                        int max;
+                        do {
+                            max = mMaxActiveRequests.get();
+                        } while ((active > max) && !mMaxActiveRequests.compareAndSet(max, active));
+                        Thread.sleep(SLOW_RESPONSE_TIME);
+                        mActiveRequests.decrementAndGet();
+                    }
+                    final StringBuilder head = new StringBuilder("HTTP/1.1 200 OK\r\n")
+                            .append("Content-Type: application/json; charset=utf-8\r\n")
+                            .append("Content-Length: ").append(content.length).append("\r\n");
+                    if (encoding != null) {
+                        head.append("Content-Encoding: ").append(encoding).append("\r\n");
+                    }
+                    mRequestCount.incrementAndGet();
+                    out.write(head.append("\r\n").toString().getBytes("ISO-8859-1"));
+                    out.write(content);
+                    out.flush();
+                }
+            } finally {
+                socket.close();
+            }
+        }
+
+        /**
+         * Start a daemon thread.
+         *
+         * @param runnable what the thread runs
+         */
+        private static void startThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * Encode a string as UTF-8.
+         */
+        private static byte[] bytes(String value) {
+            return value.getBytes(Charset.forName("UTF-8"));
+        }
+
+    }
+
+}
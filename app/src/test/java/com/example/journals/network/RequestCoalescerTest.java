@@ -0,0 +1,383 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.network;
+
+import com.android.volley.Network;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.Request.Method;
+import com.android.volley.Request.Priority;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.NoCache;
+import com.example.journals.network.NetworkUtils.GetJournalsResponse;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the reads coalesced and demoted by {@link RequestCoalescer}, and the delivery of
+ * their responses by {@link GsonRequest}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class RequestCoalescerTest {
+
+    /**
+     * URL of the reads.
+     */
+    private static final String URL = "https://example.com/api/journals";
+    /**
+     * Body of the response to the reads.
+     */
+    private static final String BODY = "{\"status\":1,\"total_count\":1,"
+            + "\"records\":[{\"scrapbook_id\":1,\"title\":\"Journal\"}]}";
+    /**
+     * Tag of the requests of a screen that has stopped.
+     */
+    private static final Object STOPPED_TAG = new Object();
+    /**
+     * Tag of the requests of the screen being shown.
+     */
+    private static final Object SHOWN_TAG = new Object();
+
+    /**
+     * Queue the requests are added to, which is never started.
+     */
+    private RequestQueue mQueue;
+    /**
+     * The coalescer under test.
+     */
+    private RequestCoalescer mCoalescer;
+
+    @Before
+    public void setUp() {
+        mQueue = new RequestQueue(new NoCache(), new Network() {
+            @Override
+            public NetworkResponse performRequest(Request<?> request) throws VolleyError {
+                throw new VolleyError("Not sent");
+            }
+        });
+        mCoalescer = new RequestCoalescer(mQueue);
+    }
+
+    /**
+     * A read identical to a running read follows it, and receives its response.
+     */
+    @Test
+    public void add_followsRunningRead() {
+        final Recipient leader = new Recipient();
+        final Recipient follower = new Recipient();
+        mCoalescer.add(leader.mRequest);
+        mCoalescer.add(follower.mRequest);
+        assertEquals(1, mCoalescer.getCoalescedCount());
+
+        respond(leader.mRequest);
+        assertEquals(1, leader.mResponses.size());
+        assertEquals(1, follower.mResponses.size());
+        assertEquals(1, follower.mResponses.get(0).journals.get(0).journalId);
+    }
+
+    /**
+     * Once the running read's response has started to be parsed, an identical read is sent
+     * itself.
+     */
+    @Test
+    public void add_sendsReadOnceParsingStarted() {
+        final Recipient leader = new Recipient();
+        final Recipient late = new Recipient();
+        mCoalescer.add(leader.mRequest);
+        final Response<GetJournalsResponse> response = parse(leader.mRequest);
+        mCoalescer.add(late.mRequest);
+        assertEquals(0, mCoalescer.getCoalescedCount());
+        assertFalse(leader.mRequest.addFollower(late.mRequest));
+
+        leader.mRequest.deliverResponse(response.result);
+        assertEquals(1, leader.mResponses.size());
+        assertEquals(0, late.mResponses.size());
+        // The late read is now the running one, so the next identical read follows it.
+        final Recipient next = new Recipient();
+        mCoalescer.add(next.mRequest);
+        assertEquals(1, mCoalescer.getCoalescedCount());
+        respond(late.mRequest);
+        assertEquals(1, next.mResponses.size());
+    }
+
+    /**
+     * Every recipient receives its own copy of the response, so changing one doesn't change
+     * what the others received.
+     */
+    @Test
+    public void deliverResponse_givesEachRecipientCopy() {
+        final Recipient leader = new Recipient();
+        final Recipient first = new Recipient();
+        final Recipient second = new Recipient();
+        mCoalescer.add(leader.mRequest);
+        mCoalescer.add(first.mRequest);
+        mCoalescer.add(second.mRequest);
+
+        respond(leader.mRequest);
+        final GetJournalsResponse leaderResponse = leader.mResponses.get(0);
+        final GetJournalsResponse firstResponse = first.mResponses.get(0);
+        final GetJournalsResponse secondResponse = second.mResponses.get(0);
+        assertNotSame(leaderResponse, firstResponse);
+        assertNotSame(leaderResponse, secondResponse);
+        assertNotSame(firstResponse, secondResponse);
+        assertNotSame(leaderResponse.journals, firstResponse.journals);
+        firstResponse.journals.get(0).title = "Changed";
+        firstResponse.journals.clear();
+        assertEquals("Journal", leaderResponse.journals.get(0).title);
+        assertEquals("Journal", secondResponse.journals.get(0).title);
+    }
+
+    /**
+     * Cancelling a follower only stops its own delivery.
+     */
+    @Test
+    public void cancel_followerLeavesLeaderRunning() {
+        final Recipient leader = new Recipient();
+        final Recipient follower = new Recipient();
+        mCoalescer.add(leader.mRequest);
+        mCoalescer.add(follower.mRequest);
+
+        follower.mRequest.cancel();
+        assertTrue(follower.mRequest.isCanceled());
+        assertFalse(leader.mRequest.isCanceled());
+        respond(leader.mRequest);
+        assertEquals(1, leader.mResponses.size());
+        assertEquals(0, follower.mResponses.size());
+    }
+
+    /**
+     * A read cancelled by its sender keeps running for its followers, and is cancelled once the
+     * last of them is.
+     */
+    @Test
+    public void cancel_lastRecipientCancelsLeader() {
+        final Recipient leader = new Recipient();
+        final Recipient first = new Recipient();
+        final Recipient second = new Recipient();
+        mCoalescer.add(leader.mRequest);
+        mCoalescer.add(first.mRequest);
+        mCoalescer.add(second.mRequest);
+
+        leader.mRequest.cancel();
+        assertFalse(leader.mRequest.isCanceled());
+        first.mRequest.cancel();
+        assertFalse(leader.mRequest.isCanceled());
+        second.mRequest.cancel();
+        assertTrue(leader.mRequest.isCanceled());
+    }
+
+    /**
+     * Only reads are counted, whether they were sent or coalesced.
+     */
+    @Test
+    public void add_countsReads() {
+        mCoalescer.add(new Recipient().mRequest);
+        mCoalescer.add(new Recipient().mRequest);
+        mCoalescer.add(new Recipient().mRequest);
+        mCoalescer.add(new GsonRequest<>(Method.GET, URL + "?page=2", GetJournalsResponse.class,
+                null, null, null, null));
+        // Writes are always sent.
+        mCoalescer.add(new GsonRequest<>(Method.POST, URL, GetJournalsResponse.class, null,
+                "{}", null, null));
+        mCoalescer.add(new GsonRequest<>(Method.POST, URL, GetJournalsResponse.class, null,
+                "{}", null, null));
+        assertEquals(4, mCoalescer.getReadCount());
+        assertEquals(2, mCoalescer.getCoalescedCount());
+    }
+
+    /**
+     * A demoted read still waiting in the queue is replaced by a copy at low priority, which
+     * takes over its followers.
+     */
+    @Test
+    public void demoteAll_replacesWaitingRead() {
+        final Recipient leader = new Recipient(STOPPED_TAG);
+        final Recipient follower = new Recipient(SHOWN_TAG);
+        mCoalescer.add(leader.mRequest);
+        mCoalescer.add(follower.mRequest);
+
+        mCoalescer.demoteAll(STOPPED_TAG);
+        assertTrue(leader.mRequest.isCanceled());
+        assertFalse(follower.mRequest.isCanceled());
+        final List<Request<?>> waiting = getWaitingRequests();
+        assertEquals(1, waiting.size());
+        @SuppressWarnings("unchecked")
+        final GsonRequest<GetJournalsResponse> copy =
+                (GsonRequest<GetJournalsResponse>) waiting.get(0);
+        assertNotSame(leader.mRequest, copy);
+        assertEquals(Priority.LOW, copy.getPriority());
+        assertNull(copy.getTag());
+        assertEquals(leader.mRequest.getCacheKey(), copy.getCacheKey());
+
+        // Identical reads follow the copy, which answers them but not the demoted sender.
+        final Recipient next = new Recipient(SHOWN_TAG);
+        mCoalescer.add(next.mRequest);
+        assertEquals(2, mCoalescer.getCoalescedCount());
+        assertEquals(1, getWaitingRequests().size());
+        respond(copy);
+        assertEquals(0, leader.mResponses.size());
+        assertEquals(1, follower.mResponses.size());
+        assertEquals(1, next.mResponses.size());
+    }
+
+    /**
+     * A demoted read that has been taken by a network dispatcher keeps running at its priority,
+     * and only stops delivering to its sender.
+     */
+    @Test
+    public void demoteAll_leavesStartedRead() {
+        final Recipient leader = new Recipient(STOPPED_TAG);
+        final Recipient follower = new Recipient(SHOWN_TAG);
+        mCoalescer.add(leader.mRequest);
+        mCoalescer.add(follower.mRequest);
+        leader.mRequest.addMarker("network-queue-take");
+
+        mCoalescer.demoteAll(STOPPED_TAG);
+        assertFalse(leader.mRequest.isCanceled());
+        assertEquals(Priority.HIGH, leader.mRequest.getPriority());
+        assertEquals(1, getWaitingRequests().size());
+        // Cancelling the follower leaves the demoted read running to fill the cache.
+        follower.mRequest.cancel();
+        assertFalse(leader.mRequest.isCanceled());
+        respond(leader.mRequest);
+        assertEquals(0, leader.mResponses.size());
+        assertEquals(0, follower.mResponses.size());
+    }
+
+    /**
+     * Writes and followers with the tag are cancelled, while the reads they follow keep running
+     * for their own senders.
+     */
+    @Test
+    public void demoteAll_cancelsWritesAndFollowers() {
+        final GsonRequest<GetJournalsResponse> write = new GsonRequest<>(Method.POST, URL,
+                GetJournalsResponse.class, null, "{}", null, null);
+        write.setTag(STOPPED_TAG);
+        final Recipient leader = new Recipient(SHOWN_TAG);
+        final Recipient follower = new Recipient(STOPPED_TAG);
+        mCoalescer.add(write);
+        mCoalescer.add(leader.mRequest);
+        mCoalescer.add(follower.mRequest);
+
+        mCoalescer.demoteAll(STOPPED_TAG);
+        assertTrue(write.isCanceled());
+        assertTrue(follower.mRequest.isCanceled());
+        assertFalse(leader.mRequest.isCanceled());
+        respond(leader.mRequest);
+        assertEquals(1, leader.mResponses.size());
+        assertEquals(0, follower.mResponses.size());
+    }
+
+    /**
+     * Get the requests in the queue that haven't been cancelled.
+     *
+     * @return the requests
+     */
+    private List<Request<?>> getWaitingRequests() {
+        final List<Request<?>> requests = new ArrayList<>();
+        mQueue.cancelAll(new RequestQueue.RequestFilter() {
+            @Override
+            public boolean apply(Request<?> request) {
+                if (!request.isCanceled()) {
+                    requests.add(request);
+                }
+                return false;
+            }
+        });
+        return requests;
+    }
+
+    /**
+     * Parse the response to a read, as the queue would on a network thread.
+     *
+     * @param request the read
+     * @return the parsed response
+     */
+    private static Response<GetJournalsResponse> parse(GsonRequest<GetJournalsResponse> request) {
+        final Response<GetJournalsResponse> response = request.parseNetworkResponse(
+                new NetworkResponse(BODY.getBytes(Charset.forName("UTF-8"))));
+        assertTrue(response.isSuccess());
+        return response;
+    }
+
+    /**
+     * Parse and deliver the response to a read, as the queue would.
+     *
+     * @param request the read
+     */
+    private static void respond(GsonRequest<GetJournalsResponse> request) {
+        request.deliverResponse(parse(request).result);
+    }
+
+    /**
+     * Sender of a read, recording the responses it receives.
+     */
+    private static class Recipient implements Response.Listener<GetJournalsResponse> {
+
+        /**
+         * Responses received.
+         */
+        final List<GetJournalsResponse> mResponses = new ArrayList<>();
+        /**
+         * The read.
+         */
+        final GsonRequest<GetJournalsResponse> mRequest =
+                new GsonRequest<>(Method.GET, URL, GetJournalsResponse.class, null, null, this,
+                        null);
+
+        /**
+         * Create a sender of an untagged read.
+         */
+        Recipient() {
+        }
+
+        /**
+         * Create a sender of a tagged read.
+         *
+         * @param tag the tag of the read
+         */
+        Recipient(Object tag) {
+            mRequest.setTag(tag);
+        }
+
+        @Override
+        public void onResponse(GetJournalsResponse response) {
+            mResponses.add(response);
+        }
+
+    }
+
+}
@@ -0,0 +1,261 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.provider;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentValues;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+import com.example.journals.provider.JournalContract.Activities;
+import com.example.journals.provider.JournalContract.Journals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowContentResolver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Tests for batches of updates applied by {@link JournalProvider}: the transactions they run in,
+ * and the change notifications deferred until each part of a batch is committed.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BatchUpdateTest {
+
+    /**
+     * Number of activities in the journal.
+     */
+    private static final int ACTIVITY_COUNT = 10;
+    /**
+     * Longest time to wait for the contending thread (in milliseconds).
+     */
+    private static final long CONTENTION_TIMEOUT = 10000;
+    /**
+     * The activities of the journal.
+     */
+    private static final Uri ACTIVITIES_URI = Activities.getContentUriFromJournalId(1);
+    /**
+     * The journal.
+     */
+    private static final Uri JOURNAL_URI = Uri.withAppendedPath(Journals.CONTENT_URI, "1");
+
+    /**
+     * Helper used to fill the provider's database.
+     */
+    private JournalProvider.DatabaseHelper mHelper;
+    /**
+     * The provider under test.
+     */
+    private CountingProvider mProvider;
+
+    @Before
+    public void setUp() {
+        mHelper = new JournalProvider.DatabaseHelper(RuntimeEnvironment.application);
+        final SQLiteDatabase db = mHelper.getWritableDatabase();
+        db.execSQL("INSERT INTO Journals (_id, account_name, title) "
+                + "VALUES (1, 'user@example.com', 'Journal')");
+        db.execSQL("WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < "
+                + ACTIVITY_COUNT + ") INSERT INTO Activities (_id, journal_id, title, modified) "
+                + "SELECT i, 1, 'Activity ' || i, 0 FROM n");
+        // The provider is a subclass, so it is given the manifest's authority and permissions.
+        final ProviderInfo info = new ProviderInfo();
+        info.authority = JournalContract.AUTHORITY;
+        info.grantUriPermissions = true;
+        mProvider = Robolectric.buildContentProvider(CountingProvider.class).create(info).get();
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+    }
+
+    /**
+     * An uncontended batch runs in a single transaction, stamps every row it updates, and sends
+     * one notification per changed URI once it is committed.
+     */
+    @Test
+    public void applyBatch_notifiesOncePerUri() throws Exception {
+        mProvider.applyBatch(updateOperations());
+        assertEquals(1, mProvider.transactionCount);
+        assertEquals(Arrays.asList(ACTIVITIES_URI, JOURNAL_URI), notifiedUris());
+        assertEquals(0, countUnmodifiedActivities());
+    }
+
+    /**
+     * A batch yields at the next yield point once another thread waits for the database. The
+     * part before the yield is committed and notified when the batch resumes, and the rest when
+     * the batch completes.
+     */
+    @Test
+    public void applyBatch_yieldNotifiesCommittedPart() throws Exception {
+        mProvider.contendAt = ACTIVITY_COUNT / 2;
+        mProvider.applyBatch(updateOperations());
+        mProvider.awaitContender();
+        assertEquals(2, mProvider.transactionCount);
+        assertEquals(Arrays.asList(ACTIVITIES_URI, ACTIVITIES_URI, JOURNAL_URI), notifiedUris());
+        assertEquals(0, countUnmodifiedActivities());
+    }
+
+    /**
+     * Build a batch updating each activity of the journal through the journal's activities URI,
+     * then the journal itself, with every operation a yield point.
+     *
+     * @return the operations
+     */
+    private static ArrayList<ContentProviderOperation> updateOperations() {
+        final ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (int i = 1; i <= ACTIVITY_COUNT; i++) {
+            operations.add(ContentProviderOperation.newUpdate(ACTIVITIES_URI)
+                    .withSelection(BaseColumns._ID + "=?", new String[]{String.valueOf(i)})
+                    .withValue(Activities.COLUMN_TITLE, "Updated " + i)
+                    .withYieldAllowed(true)
+                    .build());
+        }
+        operations.add(ContentProviderOperation.newUpdate(JOURNAL_URI)
+                .withValue(Journals.COLUMN_TITLE, "Updated")
+                .withYieldAllowed(true)
+                .build());
+        return operations;
+    }
+
+    /**
+     * Get the URIs notified through the content resolver, in order.
+     *
+     * @return the notified URIs
+     */
+    private static List<Uri> notifiedUris() {
+        final List<Uri> uris = new ArrayList<>();
+        for (ShadowContentResolver.NotifiedUri notified :
+                shadowOf(RuntimeEnvironment.application.getContentResolver()).getNotifiedUris()) {
+            uris.add(notified.uri);
+        }
+        return uris;
+    }
+
+    /**
+     * Count the activities whose modified date wasn't stamped by an update.
+     *
+     * @return the number of activities
+     */
+    private int countUnmodifiedActivities() {
+        final Cursor cursor = mHelper.getReadableDatabase().rawQuery(
+                "SELECT COUNT(*) FROM Activities WHERE modified = 0", null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Provider counting its transactions, which can leave another thread waiting for the
+     * database part way through a batch.
+     */
+    public static class CountingProvider extends JournalProvider {
+
+        /**
+         * Number of transactions begun, including each resume after a yield.
+         */
+        int transactionCount = 0;
+        /**
+         * Number of the update after which another thread waits for the database, or 0 for none.
+         */
+        int contendAt = 0;
+        /**
+         * Number of updates made.
+         */
+        private int mUpdateCount = 0;
+        /**
+         * Thread left waiting for the database.
+         */
+        private Thread mContender;
+
+        @Override
+        protected void onBeginTransaction() {
+            super.onBeginTransaction();
+            transactionCount++;
+        }
+
+        @Override
+        protected int updateInTransaction(@NonNull Uri uri, ContentValues values,
+                                          String selection, String[] selectionArgs,
+                                          boolean callerIsSyncAdapter) {
+            final int count = super.updateInTransaction(uri, values, selection, selectionArgs,
+                    callerIsSyncAdapter);
+            if (++mUpdateCount == contendAt) {
+                startContender();
+            }
+            return count;
+        }
+
+        /**
+         * Wait for the contending thread to finish.
+         */
+        void awaitContender() throws InterruptedException {
+            mContender.join(CONTENTION_TIMEOUT);
+            assertFalse(mContender.isAlive());
+        }
+
+        /**
+         * Start a thread that waits to run an empty transaction, and return once it is blocked
+         * on the transaction held by the calling thread.
+         */
+        private void startContender() {
+            final SQLiteDatabase db = getDatabaseHelper().getWritableDatabase();
+            mContender = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    db.beginTransaction();
+                    db.endTransaction();
+                }
+            });
+            mContender.start();
+            final long timeout = System.currentTimeMillis() + CONTENTION_TIMEOUT;
+            while (mContender.getState() != Thread.State.WAITING
+                    && mContender.getState() != Thread.State.TIMED_WAITING) {
+                if (System.currentTimeMillis() > timeout) {
+                    throw new AssertionError("Contending thread didn't block");
+                }
+                Thread.yield();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,324 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.provider;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the schema migrations of {@link JournalProvider.DatabaseHelper}, upgrading a database
+ * created with the original schema.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperTest {
+
+    /**
+     * Name of the database, which must match the provider's.
+     */
+    private static final String DATABASE_NAME = "Journals.db";
+    /**
+     * Name of the database created with the current schema for comparison.
+     */
+    private static final String NEW_DATABASE_NAME = "New.db";
+    /**
+     * A creation time in the original text format, and the same time in milliseconds.
+     */
+    private static final String CREATED_TEXT = "2020-01-02 03:04:05";
+    private static final long CREATED_MILLIS = 1577934245000L;
+    /**
+     * The tables holding journal data.
+     */
+    private static final String[] TABLES =
+            new String[]{"Accounts", "Journals", "Activities", "Contacts"};
+
+    private Context mContext;
+    private JournalProvider.DatabaseHelper mHelper;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        final SQLiteDatabase db = new VersionOneHelper(mContext).getWritableDatabase();
+        db.execSQL("INSERT INTO Accounts (_id, user_id, name, gender, created, modified) "
+                + "VALUES (1, 7, 'user@example.com', 1, '" + CREATED_TEXT + "', '"
+                + CREATED_TEXT + "')");
+        db.execSQL("INSERT INTO Journals (_id, account_name, title, server_id, is_deleted, "
+                + "created, modified) VALUES (1, 'user@example.com', 'Alps', 10, 1, '"
+                + CREATED_TEXT + "', '" + CREATED_TEXT + "')");
+        db.execSQL("INSERT INTO Journals (_id, account_name, title, is_deleted, created, "
+                + "modified) VALUES (2, 'user@example.com', 'Deleted', 2, 'not a date', '"
+                + CREATED_TEXT + "')");
+        db.execSQL("INSERT INTO Activities (_id, journal_id, title, description, location, "
+                + "latitude, longitude, server_id, created, modified) VALUES (1, 1, 'Climb', "
+                + "'Up the ridge', 'Zermatt', 46.02, 7.75, 20, '" + CREATED_TEXT + "', '"
+                + CREATED_TEXT + "')");
+        db.execSQL("INSERT INTO Activities (_id, journal_id, title, is_deleted) "
+                + "VALUES (2, 1, 'Rest', 1)");
+        db.execSQL("INSERT INTO Contacts (_id, journal_id, name, email, created, modified) "
+                + "VALUES (1, 1, 'Guide', 'guide@example.com', '" + CREATED_TEXT + "', '"
+                + CREATED_TEXT + "')");
+        db.close();
+        mHelper = new JournalProvider.DatabaseHelper(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+    }
+
+    /**
+     * Every row and value survives the upgrade, with text timestamps converted to milliseconds.
+     */
+    @Test
+    public void onUpgrade_keepsRows() {
+        final SQLiteDatabase db = mHelper.getWritableDatabase();
+        assertEquals(9, db.getVersion());
+        // The file was converted to incremental vacuuming ahead of the upgrade.
+        assertEquals(2, DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null));
+        // No deletion has been acknowledged yet.
+        assertEquals(0, DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM Journals "
+                + "WHERE delete_acknowledged != 0", null));
+        assertEquals(1, count(db, "Accounts"));
+        assertEquals(2, count(db, "Journals"));
+        assertEquals(2, count(db, "Activities"));
+        assertEquals(1, count(db, "Contacts"));
+
+        final Cursor journals = db.rawQuery("SELECT _id, title, server_id, is_deleted, created, "
+                + "modified FROM Journals ORDER BY _id", null);
+        try {
+            assertTrue(journals.moveToNext());
+            assertEquals("Alps", journals.getString(1));
+            assertEquals(10, journals.getLong(2));
+            assertEquals(1, journals.getInt(3));
+            assertEquals(CREATED_MILLIS, journals.getLong(4));
+            assertEquals(CREATED_MILLIS, journals.getLong(5));
+            assertTrue(journals.moveToNext());
+            assertEquals(2, journals.getInt(3));
+            // A timestamp that can't be parsed is kept as 0 rather than failing the upgrade.
+            assertEquals(0, journals.getLong(4));
+        } finally {
+            journals.close();
+        }
+
+        final Cursor activities = db.rawQuery("SELECT journal_id, title, description, location, "
+                + "latitude, longitude, server_id, is_deleted, created FROM Activities "
+                + "ORDER BY _id", null);
+        try {
+            assertTrue(activities.moveToNext());
+            assertEquals(1, activities.getLong(0));
+            assertEquals("Climb", activities.getString(1));
+            assertEquals("Up the ridge", activities.getString(2));
+            assertEquals("Zermatt", activities.getString(3));
+            assertEquals(46.02, activities.getDouble(4), 0);
+            assertEquals(7.75, activities.getDouble(5), 0);
+            assertEquals(20, activities.getLong(6));
+            assertEquals(0, activities.getInt(7));
+            assertEquals(CREATED_MILLIS, activities.getLong(8));
+            assertTrue(activities.moveToNext());
+            assertEquals(1, activities.getInt(7));
+            // A default CURRENT_TIMESTAMP is converted like any other timestamp.
+            assertTrue(activities.getLong(8) > CREATED_MILLIS);
+        } finally {
+            activities.close();
+        }
+
+        final Cursor contacts = db.rawQuery("SELECT name, email, created FROM Contacts", null);
+        try {
+            assertTrue(contacts.moveToNext());
+            assertEquals("Guide", contacts.getString(0));
+            assertEquals("guide@example.com", contacts.getString(1));
+            assertEquals(CREATED_MILLIS, contacts.getLong(2));
+        } finally {
+            contacts.close();
+        }
+    }
+
+    /**
+     * The upgraded database has the same tables, indexes and triggers as a new one, and none of
+     * the original modified date triggers.
+     */
+    @Test
+    public void onUpgrade_matchesNewSchema() {
+        final SQLiteDatabase upgraded = mHelper.getWritableDatabase();
+        final SQLiteDatabase created = SQLiteDatabase.openOrCreateDatabase(
+                mContext.getDatabasePath(NEW_DATABASE_NAME), null);
+        try {
+            created.beginTransaction();
+            try {
+                mHelper.onCreate(created);
+                created.setTransactionSuccessful();
+            } finally {
+                created.endTransaction();
+            }
+            final Set<String> schema = getSchema(upgraded);
+            assertEquals(getSchema(created), schema);
+            assertTrue(schema.contains("index idx_Activities_JournalIdCreated"));
+            assertTrue(schema.contains("index idx_Contacts_JournalIdCreated"));
+            assertTrue(schema.contains("index idx_Journals_AccountNameCreated"));
+            assertFalse(schema.contains("trigger trig_Activities_AfterUpdate"));
+            for (String table : TABLES) {
+                assertEquals(table, getColumns(created, table), getColumns(upgraded, table));
+            }
+        } finally {
+            created.close();
+        }
+    }
+
+    /**
+     * The search index is filled from the rows that existed before the upgrade.
+     */
+    @Test
+    public void onUpgrade_indexesExistingText() {
+        final SQLiteDatabase db = mHelper.getWritableDatabase();
+        assertEquals(1, count(db, "Search WHERE Search MATCH 'ridge'"));
+        assertEquals(1, count(db, "Search WHERE Search MATCH 'alps'"));
+        // Rows pending deletion are left out of the index.
+        assertEquals(0, count(db, "Search WHERE Search MATCH 'deleted'"));
+        assertEquals(0, count(db, "Search WHERE Search MATCH 'rest'"));
+    }
+
+    /**
+     * Count the rows of a table.
+     *
+     * @param db    the database
+     * @param table the table, optionally followed by a "where" clause
+     * @return the number of rows
+     */
+    private static long count(SQLiteDatabase db, String table) {
+        final Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + table, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Get the type and name of every table, index and trigger in a database.
+     */
+    private static Set<String> getSchema(SQLiteDatabase db) {
+        final Set<String> schema = new TreeSet<>();
+        final Cursor cursor = db.rawQuery("SELECT type, name FROM sqlite_master", null);
+        try {
+            while (cursor.moveToNext()) {
+                schema.add(cursor.getString(0) + " " + cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return schema;
+    }
+
+    /**
+     * Get the name, type, constraint and default of each column of a table.
+     */
+    private static List<String> getColumns(SQLiteDatabase db, String table) {
+        final List<String> columns = new ArrayList<>();
+        final Cursor cursor = db.rawQuery("PRAGMA table_info(" + table + ")", null);
+        try {
+            while (cursor.moveToNext()) {
+                columns.add(cursor.getString(cursor.getColumnIndexOrThrow("name")) + " "
+                        + cursor.getString(cursor.getColumnIndexOrThrow("type")) + " "
+                        + cursor.getInt(cursor.getColumnIndexOrThrow("notnull")) + " "
+                        + cursor.getString(cursor.getColumnIndexOrThrow("dflt_value")) + " "
+                        + cursor.getInt(cursor.getColumnIndexOrThrow("pk")));
+            }
+        } finally {
+            cursor.close();
+        }
+        return columns;
+    }
+
+    /**
+     * Helper creating the database as the first release of the provider did.
+     */
+    private static class VersionOneHelper extends SQLiteOpenHelper {
+
+        VersionOneHelper(Context context) {
+            super(context, DATABASE_NAME, null, 1);
+        }
+
+        @Override
+        public void onCreate(SQLiteDatabase db) {
+            db.execSQL("CREATE TABLE Accounts (_id INTEGER PRIMARY KEY, "
+                    + "user_id INTEGER NOT NULL, name TEXT NOT NULL UNIQUE, alias TEXT, "
+                    + "gender INTEGER NOT NULL CHECK (gender IN(0,1,2)), avatar_uri TEXT, "
+                    + "created TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                    + "modified TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP);");
+            createModifiedTrigger(db, "Accounts");
+            db.execSQL("CREATE TABLE Journals (_id INTEGER PRIMARY KEY, "
+                    + "account_name TEXT NOT NULL, title TEXT COLLATE NOCASE, "
+                    + "make_public INTEGER NOT NULL DEFAULT 1 CHECK (make_public IN(1,2)), "
+                    + "server_id INTEGER, "
+                    + "is_deleted INTEGER NOT NULL DEFAULT 1 CHECK (is_deleted IN(1,2)), "
+                    + "created TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                    + "modified TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP);");
+            createModifiedTrigger(db, "Journals");
+            db.execSQL("CREATE TABLE Activities (_id INTEGER PRIMARY KEY, journal_id INTEGER, "
+                    + "title TEXT COLLATE NOCASE, description TEXT, location TEXT, "
+                    + "image_uri TEXT, latitude REAL, longitude REAL, server_id INTEGER, "
+                    + "is_deleted INTEGER NOT NULL DEFAULT 0 CHECK (is_deleted IN(0,1)), "
+                    + "created TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                    + "modified TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                    + "FOREIGN KEY(journal_id) REFERENCES Journals(_id) ON DELETE CASCADE);");
+            createModifiedTrigger(db, "Activities");
+            db.execSQL("CREATE TABLE Contacts (_id INTEGER PRIMARY KEY, "
+                    + "journal_id INTEGER NOT NULL, name TEXT COLLATE NOCASE, description TEXT, "
+                    + "email TEXT, phone TEXT, server_id INTEGER, "
+                    + "is_deleted INTEGER NOT NULL DEFAULT 0 CHECK (is_deleted IN(0,1)), "
+                    + "created TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                    + "modified TEXT NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                    + "FOREIGN KEY(journal_id) REFERENCES Journals(_id) ON DELETE CASCADE);");
+            createModifiedTrigger(db, "Contacts");
+        }
+
+        @Override
+        public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        }
+
+        private static void createModifiedTrigger(SQLiteDatabase db, String table) {
+            db.execSQL("CREATE TRIGGER trig_" + table + "_AfterUpdate AFTER UPDATE ON " + table
+                    + " FOR EACH ROW BEGIN UPDATE " + table + " SET modified = CURRENT_TIMESTAMP"
+                    + " WHERE _id = new._id; END");
+        }
+
+    }
+
+}
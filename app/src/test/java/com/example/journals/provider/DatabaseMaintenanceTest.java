@@ -0,0 +1,199 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.provider;
+
+import android.content.ContentValues;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+
+import com.example.journals.provider.JournalContract.Journals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link DatabaseMaintenance}: the deleted rows it purges, the space it reclaims and
+ * the statistics it refreshes, and the acknowledgements that let rows be purged.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseMaintenanceTest {
+
+    /**
+     * Number of activities in the acknowledged deleted journal, more than one purge batch.
+     */
+    private static final int PURGED_ACTIVITY_COUNT = 150;
+    /**
+     * The journal whose deletion hasn't been acknowledged.
+     */
+    private static final Uri UNACKNOWLEDGED_JOURNAL_URI =
+            Uri.withAppendedPath(Journals.CONTENT_URI, "3");
+
+    /**
+     * Helper used to fill and inspect the provider's database.
+     */
+    private JournalProvider.DatabaseHelper mHelper;
+    /**
+     * Number of times maintenance reported purged rows.
+     */
+    private int mPurgedCount = 0;
+    /**
+     * The maintenance task under test.
+     */
+    private DatabaseMaintenance mMaintenance;
+
+    @Before
+    public void setUp() {
+        mHelper = new JournalProvider.DatabaseHelper(RuntimeEnvironment.application);
+        final SQLiteDatabase db = mHelper.getWritableDatabase();
+        // A live journal holding a live activity, an acknowledged deleted activity and contact,
+        // and a deleted activity the sync adapter hasn't acknowledged.
+        db.execSQL("INSERT INTO Journals (_id, account_name, title) "
+                + "VALUES (1, 'user@example.com', 'Live')");
+        db.execSQL("INSERT INTO Activities (_id, journal_id, title, is_deleted, "
+                + "delete_acknowledged) VALUES (1, 1, 'Live', 0, 0), (2, 1, 'Purged', 1, 1), "
+                + "(3, 1, 'Unacknowledged', 1, 0)");
+        db.execSQL("INSERT INTO Contacts (_id, journal_id, name, is_deleted, delete_acknowledged) "
+                + "VALUES (1, 1, 'Purged', 1, 1)");
+        // An acknowledged deleted journal with more live rows than a batch, taking up pages.
+        db.execSQL("INSERT INTO Journals (_id, account_name, title, is_deleted, "
+                + "delete_acknowledged) VALUES (2, 'user@example.com', 'Purged', 2, 1)");
+        db.execSQL("WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < "
+                + PURGED_ACTIVITY_COUNT + ") INSERT INTO Activities (_id, journal_id, title, "
+                + "description) SELECT 100 + i, 2, 'Activity ' || i, hex(randomblob(1024)) "
+                + "FROM n");
+        db.execSQL("INSERT INTO Contacts (_id, journal_id, name) VALUES (2, 2, 'Live')");
+        // A deleted journal the sync adapter hasn't acknowledged.
+        db.execSQL("INSERT INTO Journals (_id, account_name, title, is_deleted) "
+                + "VALUES (3, 'user@example.com', 'Unacknowledged', 2)");
+        db.execSQL("INSERT INTO Activities (_id, journal_id, title) VALUES (4, 3, 'Live')");
+        mMaintenance = new DatabaseMaintenance(RuntimeEnvironment.application, mHelper,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        mPurgedCount++;
+                    }
+                });
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+    }
+
+    /**
+     * Only acknowledged deletions are purged, along with every row of an acknowledged journal,
+     * and the purge is reported once.
+     */
+    @Test
+    public void maintainNow_purgesAcknowledgedRows() {
+        final Bundle result = mMaintenance.maintainNow();
+        assertNotNull(result);
+        assertEquals(PURGED_ACTIVITY_COUNT + 4,
+                result.getInt(JournalContract.KEY_TOMBSTONES_PURGED));
+        assertEquals(1, mPurgedCount);
+        assertEquals("1,3", ids("Journals"));
+        assertEquals("1,3,4", ids("Activities"));
+        assertEquals("", ids("Contacts"));
+    }
+
+    /**
+     * The pages freed by the purge are returned to the file system, the planner statistics are
+     * refreshed, and the time taken includes the pauses between tables.
+     */
+    @Test
+    public void maintainNow_vacuumsAndAnalyzes() {
+        final SQLiteDatabase db = mHelper.getWritableDatabase();
+        // A new database is created with incremental vacuuming.
+        assertEquals(2, DatabaseUtils.longForQuery(db, "PRAGMA auto_vacuum", null));
+        final long startPages = DatabaseUtils.longForQuery(db, "PRAGMA page_count", null);
+
+        final Bundle result = mMaintenance.maintainNow();
+        assertNotNull(result);
+        final long reclaimedPages = result.getLong(JournalContract.KEY_PAGES_RECLAIMED);
+        assertTrue(reclaimedPages > 0);
+        assertEquals(startPages - reclaimedPages,
+                DatabaseUtils.longForQuery(db, "PRAGMA page_count", null));
+        assertEquals(0, DatabaseUtils.longForQuery(db, "PRAGMA freelist_count", null));
+        assertTrue(DatabaseUtils.longForQuery(db,
+                "SELECT COUNT(*) FROM sqlite_stat1 WHERE tbl = 'Activities'", null) > 0);
+        // Each table is analyzed after a pause, on the test's fake clock.
+        assertTrue(result.getLong(JournalContract.KEY_MAINTENANCE_TIME) >= 150);
+    }
+
+    /**
+     * Only the sync adapter can acknowledge a deletion, and the acknowledgement is cleared when
+     * anyone else changes the deletion.
+     */
+    @Test
+    public void update_onlySyncAdapterAcknowledges() {
+        final JournalProvider provider =
+                Robolectric.buildContentProvider(JournalProvider.class).create().get();
+        final ContentValues acknowledged = new ContentValues();
+        acknowledged.put(Journals.COLUMN_DELETE_ACKNOWLEDGED, 1);
+        provider.update(UNACKNOWLEDGED_JOURNAL_URI, acknowledged, null, null);
+        assertEquals(0, deleteAcknowledged());
+
+        provider.update(UNACKNOWLEDGED_JOURNAL_URI.buildUpon()
+                .appendQueryParameter(JournalContract.CALLER_IS_SYNC_ADAPTER, "true").build(),
+                acknowledged, null, null);
+        assertEquals(1, deleteAcknowledged());
+
+        final ContentValues deleted = new ContentValues();
+        deleted.put(Journals.COLUMN_IS_DELETED, 2);
+        provider.update(UNACKNOWLEDGED_JOURNAL_URI, deleted, null, null);
+        assertEquals(0, deleteAcknowledged());
+    }
+
+    /**
+     * Get the IDs of the rows left in a table.
+     *
+     * @param table the table
+     * @return the IDs in order, separated by commas
+     */
+    private String ids(String table) {
+        final String ids = DatabaseUtils.stringForQuery(mHelper.getReadableDatabase(),
+                "SELECT group_concat(_id) FROM (SELECT _id FROM " + table + " ORDER BY _id)",
+                null);
+        return (ids != null) ? ids : "";
+    }
+
+    /**
+     * Get whether the deletion of the unacknowledged journal has been acknowledged.
+     *
+     * @return the acknowledgement flag
+     */
+    private long deleteAcknowledged() {
+        return DatabaseUtils.longForQuery(mHelper.getReadableDatabase(),
+                "SELECT delete_acknowledged FROM Journals WHERE _id = 3", null);
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.provider;
+
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+import com.example.journals.Benchmark;
+import com.example.journals.provider.JournalContract.Activities;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmark of single activity lookups through the provider, with the ID bound as an argument
+ * by an item URI and with the ID written into the selection as the provider used to do.
+ * <p/>
+ * The host's SQLite stands in for the device's, so the rates only compare runs on the same
+ * machine. Bound lookups share one SQL text and so one compiled statement per connection, while
+ * every written-in ID is parsed again.
+ */
+@Category(Benchmark.class)
+@RunWith(RobolectricTestRunner.class)
+public class ItemLookupBenchmarkTest {
+
+    /**
+     * Number of activities in the table.
+     */
+    private static final int ACTIVITY_COUNT = 10000;
+    /**
+     * Number of timed lookups of each kind.
+     */
+    private static final int LOOKUPS = 5000;
+    /**
+     * Number of untimed lookups run first, to warm the caches.
+     */
+    private static final int WARM_UP_LOOKUPS = 500;
+    /**
+     * Seed of the IDs looked up, so every run looks up the same rows.
+     */
+    private static final long SEED = 42;
+
+    /**
+     * Helper used to fill the provider's database.
+     */
+    private JournalProvider.DatabaseHelper mHelper;
+    /**
+     * The provider that is queried.
+     */
+    private JournalProvider mProvider;
+
+    @Before
+    public void setUp() {
+        mHelper = new JournalProvider.DatabaseHelper(RuntimeEnvironment.application);
+        final SQLiteDatabase db = mHelper.getWritableDatabase();
+        db.execSQL("INSERT INTO Journals (_id, account_name, title) "
+                + "VALUES (1, 'user@example.com', 'Journal')");
+        db.execSQL("WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < "
+                + ACTIVITY_COUNT + ") INSERT INTO Activities (_id, journal_id, title, created) "
+                + "SELECT i, 1, 'Activity ' || i, i FROM n");
+        mProvider = Robolectric.buildContentProvider(JournalProvider.class).create().get();
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+    }
+
+    /**
+     * Report the lookups per second with bound and written-in IDs.
+     */
+    @Test
+    public void activityLookup_rate() {
+        lookUp(true, WARM_UP_LOOKUPS);
+        lookUp(false, WARM_UP_LOOKUPS);
+        final long bound = lookUp(true, LOOKUPS);
+        final long written = lookUp(false, LOOKUPS);
+        System.out.println("Activity lookups with bound IDs: "
+                + (LOOKUPS * 1000000000L / Math.max(bound, 1)) + "/s");
+        System.out.println("Activity lookups with written-in IDs: "
+                + (LOOKUPS * 1000000000L / Math.max(written, 1)) + "/s");
+    }
+
+    /**
+     * Look up activities by ID through the provider, reading past its query cache.
+     *
+     * @param bindId whether to use an item URI, or write the ID into the selection of a
+     *               directory query
+     * @param count  the number of lookups
+     * @return the time taken (in nanoseconds)
+     */
+    private long lookUp(boolean bindId, int count) {
+        final Random random = new Random(SEED);
+        final long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            final long id = random.nextInt(ACTIVITY_COUNT) + 1;
+            final Uri uri;
+            final String selection;
+            if (bindId) {
+                uri = ContentUris.withAppendedId(Activities.CONTENT_URI, id);
+                selection = null;
+            } else {
+                uri = Activities.CONTENT_URI;
+                selection = BaseColumns._ID + "=" + id;
+            }
+            final Cursor cursor = mProvider.query(uri.buildUpon()
+                            .appendQueryParameter(JournalContract.PARAM_BYPASS_CACHE, "true")
+                            .build(),
+                    null, selection, null, null);
+            try {
+                assertEquals(1, cursor.getCount());
+            } finally {
+                cursor.close();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+}
@@ -0,0 +1,174 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.provider;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import com.example.journals.Benchmark;
+import com.example.journals.provider.JournalContract.Activities;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmark of the provider's query of one journal's activities as the activities table grows.
+ * <p/>
+ * The host's SQLite stands in for the device's, so the times only compare runs on the same
+ * machine. With the journal ID index they should stay flat from the smallest table to the
+ * largest; a table scan grows with the table.
+ */
+@Category(Benchmark.class)
+@RunWith(RobolectricTestRunner.class)
+public class JournalQueryBenchmarkTest {
+
+    /**
+     * Sizes the activities table is grown to, in order.
+     */
+    private static final int[] TABLE_SIZES = new int[]{1000, 10000, 100000};
+    /**
+     * Number of journals the activities are spread over.
+     */
+    private static final int JOURNAL_COUNT = 1000;
+    /**
+     * Number of activities in the journal that is queried, at every table size.
+     */
+    private static final int QUERIED_ACTIVITIES = 50;
+    /**
+     * Number of timed queries at each table size.
+     */
+    private static final int RUNS = 50;
+    /**
+     * Journal whose activities are queried.
+     */
+    private static final int QUERIED_JOURNAL = JOURNAL_COUNT + 1;
+
+    /**
+     * Helper used to fill the provider's database.
+     */
+    private JournalProvider.DatabaseHelper mHelper;
+    /**
+     * The provider that is queried.
+     */
+    private JournalProvider mProvider;
+
+    @Before
+    public void setUp() {
+        mHelper = new JournalProvider.DatabaseHelper(RuntimeEnvironment.application);
+        mProvider = Robolectric.buildContentProvider(JournalProvider.class).create().get();
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+    }
+
+    /**
+     * Report the median time of the provider's query of a journal's activities at each table
+     * size, from 1k to 100k activities.
+     */
+    @Test
+    public void journalActivities_latency() {
+        final SQLiteDatabase db = mHelper.getWritableDatabase();
+        db.execSQL("WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < "
+                + QUERIED_JOURNAL + ") INSERT INTO Journals (_id, account_name, title) "
+                + "SELECT i, 'user@example.com', 'Journal ' || i FROM n");
+        db.execSQL(insertActivities(QUERIED_JOURNAL + " AS journal_id", QUERIED_ACTIVITIES));
+        // Read past the query cache, so every run reaches the database.
+        final Uri uri = Activities.getContentUriFromJournalId(QUERIED_JOURNAL).buildUpon()
+                .appendQueryParameter(JournalContract.PARAM_BYPASS_CACHE, "true")
+                .build();
+        int size = QUERIED_ACTIVITIES;
+        for (int tableSize : TABLE_SIZES) {
+            // Fill the other journals up to the next size.
+            db.execSQL(insertActivities("(i % " + JOURNAL_COUNT + ") + 1", tableSize - size));
+            size = tableSize;
+            System.out.println("Journal activities with " + size + " activities: "
+                    + (medianQueryTime(uri) / 1000) + " us");
+        }
+    }
+
+    /**
+     * SQL inserting a number of activities.
+     *
+     * @param journalId SQL giving the journal ID of activity {@code i}
+     * @param count     the number of activities
+     * @return the insert statement
+     */
+    private static String insertActivities(String journalId, int count) {
+        return "WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < "
+                + count + ") INSERT INTO Activities (journal_id, title, description, created) "
+                + "SELECT " + journalId + ", 'Activity ' || i, "
+                + "'A description long enough to spread the rows over many pages', i FROM n";
+    }
+
+    /**
+     * Time the provider's query of the journal's activities, reading every row.
+     *
+     * @param uri the URI of the journal's activities
+     * @return the median time of a query (in nanoseconds)
+     */
+    private long medianQueryTime(Uri uri) {
+        final long[] times = new long[RUNS];
+        // Warm the statement cache and the pages of the index before timing.
+        readAll(uri);
+        for (int run = 0; run < RUNS; run++) {
+            final long start = System.nanoTime();
+            assertEquals(QUERIED_ACTIVITIES, readAll(uri));
+            times[run] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[RUNS / 2];
+    }
+
+    /**
+     * Query the provider and read every row of the result.
+     *
+     * @param uri the URI to query
+     * @return the number of rows read
+     */
+    private int readAll(Uri uri) {
+        final Cursor cursor = mProvider.query(uri, null, null, null, null);
+        try {
+            int count = 0;
+            final int title = cursor.getColumnIndexOrThrow(Activities.COLUMN_TITLE);
+            while (cursor.moveToNext()) {
+                cursor.getString(title);
+                count++;
+            }
+            return count;
+        } finally {
+            cursor.close();
+        }
+    }
+
+}
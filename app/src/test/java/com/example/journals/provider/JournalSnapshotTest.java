@@ -0,0 +1,180 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.provider;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+
+import com.example.journals.provider.JournalContract.Activities;
+import com.example.journals.provider.JournalContract.Contacts;
+import com.example.journals.provider.JournalContract.Journals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the journal snapshots returned by {@link JournalProvider}: the rows they hold, and
+ * the consistency of those rows while the journal is being written to.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class JournalSnapshotTest {
+
+    /**
+     * Number of activities added while snapshots are read, few enough for every snapshot to
+     * hold all of them.
+     */
+    private static final int ADDED_ACTIVITY_COUNT = 100;
+    /**
+     * Longest time to wait for the writing thread (in milliseconds).
+     */
+    private static final long WRITER_TIMEOUT = 10000;
+
+    /**
+     * Helper used to fill the provider's database.
+     */
+    private JournalProvider.DatabaseHelper mHelper;
+    /**
+     * The provider under test.
+     */
+    private JournalProvider mProvider;
+
+    @Before
+    public void setUp() {
+        mHelper = new JournalProvider.DatabaseHelper(RuntimeEnvironment.application);
+        final SQLiteDatabase db = mHelper.getWritableDatabase();
+        db.execSQL("INSERT INTO Journals (_id, account_name, title, is_deleted) VALUES "
+                + "(1, 'user@example.com', 'Alps', 1), (2, 'user@example.com', 'Deleted', 2)");
+        db.execSQL("INSERT INTO Activities (_id, journal_id, title, is_deleted, created) VALUES "
+                + "(1, 1, 'Climb', 0, 100), (2, 1, 'Removed', 1, 200), (3, 1, 'Descend', 0, 300), "
+                + "(4, 2, 'Other', 0, 400)");
+        db.execSQL("INSERT INTO Contacts (_id, journal_id, name, is_deleted, created) VALUES "
+                + "(1, 1, 'Guide', 0, 100), (2, 1, 'Removed', 1, 200), (3, 1, 'Porter', 0, 300)");
+        mProvider = Robolectric.buildContentProvider(JournalProvider.class).create().get();
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+    }
+
+    /**
+     * A snapshot holds the journal and its entries, in order, without the entries pending
+     * deletion.
+     */
+    @Test
+    public void snapshot_readsJournalGraph() {
+        final Bundle snapshot = snapshot(1);
+        assertNotNull(snapshot);
+        final ContentValues journal = snapshot.getParcelable(JournalContract.KEY_JOURNAL);
+        assertEquals("Alps", journal.getAsString(Journals.COLUMN_TITLE));
+        assertEquals(2, (int) journal.getAsInteger(Journals.COLUMN_ACTIVITY_COUNT));
+        assertEquals(2, (int) journal.getAsInteger(Journals.COLUMN_CONTACT_COUNT));
+
+        final List<ContentValues> activities =
+                snapshot.getParcelableArrayList(JournalContract.KEY_ACTIVITIES);
+        assertEquals(2, activities.size());
+        assertEquals("Descend", activities.get(0).getAsString(Activities.COLUMN_TITLE));
+        assertEquals("Climb", activities.get(1).getAsString(Activities.COLUMN_TITLE));
+        assertEquals(1L, (long) activities.get(1).getAsLong(Activities.COLUMN_JOURNAL_ID));
+
+        final List<ContentValues> contacts =
+                snapshot.getParcelableArrayList(JournalContract.KEY_CONTACTS);
+        assertEquals(2, contacts.size());
+        assertEquals("Guide", contacts.get(0).getAsString(Contacts.COLUMN_NAME));
+        assertEquals("Porter", contacts.get(1).getAsString(Contacts.COLUMN_NAME));
+    }
+
+    /**
+     * There is no snapshot of a journal pending deletion or of one that doesn't exist.
+     */
+    @Test
+    public void snapshot_skipsDeletedJournal() {
+        assertNull(snapshot(2));
+        assertNull(snapshot(3));
+    }
+
+    /**
+     * A journal's entry counts always match the entries read with it, while another thread adds
+     * entries to the journal.
+     */
+    @Test
+    public void snapshot_isConsistentWhileWriting() throws Exception {
+        final AtomicBoolean isWriting = new AtomicBoolean(true);
+        final Uri activitiesUri = Activities.getContentUriFromJournalId(1);
+        final Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < ADDED_ACTIVITY_COUNT; i++) {
+                        final ContentValues values = new ContentValues();
+                        values.put(Activities.COLUMN_TITLE, "Added " + i);
+                        mProvider.insert(activitiesUri, values);
+                    }
+                } finally {
+                    isWriting.set(false);
+                }
+            }
+        });
+        writer.start();
+        int snapshotCount = 0;
+        do {
+            final Bundle snapshot = snapshot(1);
+            final ContentValues journal = snapshot.getParcelable(JournalContract.KEY_JOURNAL);
+            final List<ContentValues> activities =
+                    snapshot.getParcelableArrayList(JournalContract.KEY_ACTIVITIES);
+            assertEquals((int) journal.getAsInteger(Journals.COLUMN_ACTIVITY_COUNT),
+                    activities.size());
+            snapshotCount++;
+        } while (isWriting.get());
+        writer.join(WRITER_TIMEOUT);
+        assertTrue(snapshotCount > 0);
+        final Bundle snapshot = snapshot(1);
+        assertEquals(2 + ADDED_ACTIVITY_COUNT, snapshot.getParcelableArrayList(
+                JournalContract.KEY_ACTIVITIES).size());
+    }
+
+    /**
+     * Read the snapshot of a journal through the provider.
+     *
+     * @param journalId the row ID of the journal
+     * @return the snapshot, or {@code null} if there is none
+     */
+    private Bundle snapshot(long journalId) {
+        return mProvider.call(JournalContract.METHOD_GET_JOURNAL_SNAPSHOT,
+                String.valueOf(journalId), null);
+    }
+
+}
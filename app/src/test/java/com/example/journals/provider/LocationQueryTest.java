@@ -0,0 +1,217 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.provider;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.net.Uri;
+
+import com.example.journals.provider.JournalContract.Activities;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the bounding box and nearby queries of {@link JournalProvider}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LocationQueryTest {
+
+    /**
+     * Name of the index on the activity locations.
+     */
+    private static final String LOCATION_INDEX = "idx_Activities_Location";
+
+    /**
+     * Helper used to fill the provider's database and explain its queries.
+     */
+    private JournalProvider.DatabaseHelper mHelper;
+    /**
+     * The provider under test.
+     */
+    private JournalProvider mProvider;
+
+    @Before
+    public void setUp() {
+        mHelper = new JournalProvider.DatabaseHelper(RuntimeEnvironment.application);
+        mHelper.getWritableDatabase().execSQL("INSERT INTO Journals (_id, account_name, title) "
+                + "VALUES (1, 'user@example.com', 'Journal')");
+        mProvider = Robolectric.buildContentProvider(JournalProvider.class).create().get();
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+    }
+
+    /**
+     * A bounding box query reads the latitude range from the location index.
+     */
+    @Test
+    public void boundsQuery_usesLocationIndex() {
+        assertTrue(explainBounds(JournalProvider.SqlArguments.BOUNDS_SELECTION)
+                .contains(LOCATION_INDEX));
+    }
+
+    /**
+     * A bounding box query crossing the antimeridian also reads the latitude range from the
+     * location index.
+     */
+    @Test
+    public void boundsQueryAcrossAntimeridian_usesLocationIndex() {
+        assertTrue(explainBounds(JournalProvider.SqlArguments.BOUNDS_SELECTION_ANTIMERIDIAN)
+                .contains(LOCATION_INDEX));
+    }
+
+    /**
+     * A box whose west edge is east of its east edge holds the activities on both sides of the
+     * antimeridian, and none of those in between.
+     */
+    @Test
+    public void boundsQuery_splitsAtAntimeridian() {
+        insertActivity("Fiji", -17, 178);
+        insertActivity("Samoa", -14, -172);
+        insertActivity("Greenwich", 51, 0);
+        final List<String> titles = titles(Activities.buildBoundsUri(-20, 170, -10, -170));
+        Collections.sort(titles);
+        assertEquals(Arrays.asList("Fiji", "Samoa"), titles);
+    }
+
+    /**
+     * The circle grows until it holds the requested number of activities, which are returned
+     * closest first.
+     */
+    @Test
+    public void nearby_growsUntilCountFound() {
+        insertActivity("Far", 0, 100);
+        insertActivity("Near", 0, 1);
+        insertActivity("Nearest", 0, 0.05);
+        insertActivity("Middle", 0, 10);
+        // Five circles are searched before the third activity is found.
+        assertEquals(Arrays.asList("Nearest", "Near", "Middle"),
+                titles(Activities.buildNearbyUri(0, 0, 3)));
+        assertEquals(Arrays.asList("Nearest", "Near", "Middle", "Far"),
+                titles(Activities.buildNearbyUri(0, 0, 4)));
+    }
+
+    /**
+     * A request for more activities than exist returns all of them once the circle covers the
+     * globe.
+     */
+    @Test
+    public void nearby_returnsAllWhenTooFew() {
+        insertActivity("Antipode", 0, 180);
+        insertActivity("Pole", 89, 0);
+        insertActivity("Here", 0, 0);
+        assertEquals(Arrays.asList("Here", "Pole", "Antipode"),
+                titles(Activities.buildNearbyUri(0, 0, 10)));
+    }
+
+    /**
+     * Activities just across the antimeridian are found before farther ones on the same side.
+     */
+    @Test
+    public void nearby_findsActivitiesAcrossAntimeridian() {
+        insertActivity("Same side", 0, 170);
+        insertActivity("Across", 0, -179.95);
+        insertActivity("Near side", 0, 179);
+        assertEquals(Arrays.asList("Across", "Near side"),
+                titles(Activities.buildNearbyUri(0, 179.9, 2)));
+    }
+
+    /**
+     * Insert an activity into the first journal.
+     *
+     * @param title     the title of the activity
+     * @param latitude  the latitude of the activity
+     * @param longitude the longitude of the activity
+     */
+    private void insertActivity(String title, double latitude, double longitude) {
+        final ContentValues values = new ContentValues();
+        values.put(Activities.COLUMN_JOURNAL_ID, 1);
+        values.put(Activities.COLUMN_TITLE, title);
+        values.put(Activities.COLUMN_LATITUDE, latitude);
+        values.put(Activities.COLUMN_LONGITUDE, longitude);
+        mProvider.insert(Activities.CONTENT_URI, values);
+    }
+
+    /**
+     * Query the provider for the titles of the activities at a URI, in order.
+     *
+     * @param uri the bounds or nearby URI
+     * @return the titles
+     */
+    private List<String> titles(Uri uri) {
+        final Cursor cursor = mProvider.query(uri, new String[]{Activities.COLUMN_TITLE}, null,
+                null, null);
+        try {
+            final List<String> titles = new ArrayList<>();
+            while (cursor.moveToNext()) {
+                titles.add(cursor.getString(0));
+            }
+            return titles;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Explain the query the provider runs for a bounding box selection.
+     *
+     * @param selection the bounding box selection
+     * @return the details of every step of the query plan
+     */
+    private String explainBounds(String selection) {
+        final SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
+        builder.setTables(JournalProvider.DatabaseHelper.ActivitiesTable.TABLE_NAME);
+        builder.setProjectionMap(JournalProvider.DatabaseHelper.ActivitiesTable.PROJECTION_MAP);
+        final String sql = builder.buildQuery(null, selection, null, null, null, null);
+        final SQLiteDatabase db = mHelper.getReadableDatabase();
+        final Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql,
+                new String[]{"-20", "-10", "170", "-170"});
+        try {
+            final StringBuilder plan = new StringBuilder();
+            final int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detail)).append('\n');
+            }
+            return plan.toString();
+        } finally {
+            cursor.close();
+        }
+    }
+
+}
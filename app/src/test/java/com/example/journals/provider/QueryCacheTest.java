@@ -0,0 +1,178 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.provider;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the generations and invalidation of {@link QueryCache}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QueryCacheTest {
+
+    /**
+     * Table of the results cached by most tests.
+     */
+    private static final String TABLE = "Activities";
+    /**
+     * Another table, whose results are unaffected by writes to {@link #TABLE}.
+     */
+    private static final String OTHER_TABLE = "Contacts";
+
+    /**
+     * The cache under test.
+     */
+    private QueryCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new QueryCache(64 * 1024);
+    }
+
+    /**
+     * A cached result is returned as a new cursor over a copy of its rows.
+     */
+    @Test
+    public void get_returnsCachedRows() {
+        final Cursor result = createCursor(2);
+        mCache.put("key", TABLE, 1, result, mCache.getGeneration());
+        assertEquals(-1, result.getPosition());
+        final Cursor cursor = mCache.get("key");
+        assertNotNull(cursor);
+        assertArrayEquals(result.getColumnNames(), cursor.getColumnNames());
+        assertEquals(2, cursor.getCount());
+        for (int i = 0; i < 2; i++) {
+            assertTrue(cursor.moveToNext());
+            assertEquals(i, cursor.getLong(0));
+            assertEquals("Title " + i, cursor.getString(1));
+        }
+        assertEquals(1, mCache.hitCount());
+    }
+
+    /**
+     * A query that isn't cached is counted as a miss.
+     */
+    @Test
+    public void get_countsMisses() {
+        assertNull(mCache.get("key"));
+        assertEquals(1, mCache.missCount());
+    }
+
+    /**
+     * Every invalidation starts a new generation, even if nothing was cached.
+     */
+    @Test
+    public void invalidate_incrementsGeneration() {
+        final long generation = mCache.getGeneration();
+        mCache.invalidate(new String[]{TABLE}, QueryCache.ANY_JOURNAL);
+        assertEquals(generation + 1, mCache.getGeneration());
+    }
+
+    /**
+     * A result read before an invalidation isn't cached, as it may predate the write.
+     */
+    @Test
+    public void put_ignoresResultFromEarlierGeneration() {
+        final long generation = mCache.getGeneration();
+        mCache.invalidate(new String[]{OTHER_TABLE}, 2);
+        mCache.put("key", TABLE, 1, createCursor(1), generation);
+        assertNull(mCache.get("key"));
+    }
+
+    /**
+     * Results with too many rows aren't cached.
+     */
+    @Test
+    public void put_ignoresLargeResult() {
+        mCache.put("key", TABLE, 1, createCursor(101), mCache.getGeneration());
+        assertNull(mCache.get("key"));
+        assertEquals(0, mCache.size());
+    }
+
+    /**
+     * A write to a journal removes the results of the written table limited to that journal or
+     * to no journal, and keeps the rest.
+     */
+    @Test
+    public void invalidate_removesMatchingJournalAndTable() {
+        putResult("journal1", TABLE, 1);
+        putResult("journal2", TABLE, 2);
+        putResult("anyJournal", TABLE, QueryCache.ANY_JOURNAL);
+        putResult("otherTable", OTHER_TABLE, 1);
+        mCache.invalidate(new String[]{TABLE}, 1);
+        assertNull(mCache.get("journal1"));
+        assertNotNull(mCache.get("journal2"));
+        assertNull(mCache.get("anyJournal"));
+        assertNotNull(mCache.get("otherTable"));
+    }
+
+    /**
+     * A write whose journal isn't known removes every result of the written tables.
+     */
+    @Test
+    public void invalidate_anyJournalRemovesWholeTable() {
+        putResult("journal1", TABLE, 1);
+        putResult("journal2", TABLE, 2);
+        putResult("otherTable", OTHER_TABLE, 1);
+        mCache.invalidate(new String[]{TABLE}, QueryCache.ANY_JOURNAL);
+        assertNull(mCache.get("journal1"));
+        assertNull(mCache.get("journal2"));
+        assertNotNull(mCache.get("otherTable"));
+    }
+
+    /**
+     * Cache a small result under the current generation.
+     *
+     * @param key       the key of the query
+     * @param table     the table the result was read from
+     * @param journalId the journal the result is limited to
+     */
+    private void putResult(String key, String table, long journalId) {
+        mCache.put(key, table, journalId, createCursor(1), mCache.getGeneration());
+    }
+
+    /**
+     * Create a result with an ID and a title column.
+     *
+     * @param count the number of rows
+     * @return a cursor over the rows
+     */
+    private static Cursor createCursor(int count) {
+        final MatrixCursor cursor = new MatrixCursor(new String[]{"_id", "title"}, count);
+        for (int i = 0; i < count; i++) {
+            cursor.addRow(new Object[]{(long) i, "Title " + i});
+        }
+        return cursor;
+    }
+
+}
@@ -0,0 +1,132 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.provider;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.journals.Benchmark;
+import com.example.journals.provider.JournalContract.Search;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Benchmark of the provider's full-text search over a large number of activities.
+ * <p/>
+ * The host's SQLite stands in for the device's, so the times only compare runs on the same
+ * machine.
+ */
+@Category(Benchmark.class)
+@RunWith(RobolectricTestRunner.class)
+public class SearchBenchmarkTest {
+
+    /**
+     * Number of indexed activities.
+     */
+    private static final int ROWS = 50000;
+    /**
+     * Number of distinct words in the descriptions.
+     */
+    private static final int WORDS = 1000;
+    /**
+     * Number of timed searches.
+     */
+    private static final int RUNS = 50;
+
+    /**
+     * Helper used to fill the provider's database.
+     */
+    private JournalProvider.DatabaseHelper mHelper;
+    /**
+     * The provider that is searched.
+     */
+    private JournalProvider mProvider;
+
+    @Before
+    public void setUp() {
+        mHelper = new JournalProvider.DatabaseHelper(RuntimeEnvironment.application);
+        final SQLiteDatabase db = mHelper.getWritableDatabase();
+        db.execSQL("INSERT INTO Journals (_id, account_name, title) "
+                + "VALUES (1, 'user@example.com', 'Alps')");
+        db.execSQL("WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i + 1 FROM n WHERE i < "
+                + ROWS + ") INSERT INTO Activities (journal_id, title, description) "
+                + "SELECT 1, 'Activity ' || i, 'A day out near word' || (i % " + WORDS
+                + ") || ' with friends' FROM n");
+        mProvider = Robolectric.buildContentProvider(JournalProvider.class).create().get();
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+    }
+
+    /**
+     * Report the median time of a search of 50k indexed activities, reading every result.
+     */
+    @Test
+    public void search_latency() {
+        final long[] times = new long[RUNS];
+        // Warm the statement cache and the pages of the index before timing.
+        assertEquals(ROWS / WORDS, search("word421"));
+        for (int run = 0; run < RUNS; run++) {
+            final long start = System.nanoTime();
+            assertEquals(ROWS / WORDS, search("word" + (run * 7 % WORDS + 100)));
+            times[run] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        System.out.println("Search of " + ROWS + " activities: "
+                + (times[RUNS / 2] / 1000) + " us");
+    }
+
+    /**
+     * Search through the provider, reading the snippet of each result.
+     *
+     * @param terms the search terms
+     * @return the number of results
+     */
+    private int search(String terms) {
+        final Cursor cursor =
+                mProvider.query(Search.buildSearchUri(terms), null, null, null, null);
+        try {
+            int count = 0;
+            final int snippet = cursor.getColumnIndexOrThrow(Search.COLUMN_SNIPPET);
+            while (cursor.moveToNext()) {
+                cursor.getString(snippet);
+                count++;
+            }
+            return count;
+        } finally {
+            cursor.close();
+        }
+    }
+
+}
@@ -0,0 +1,233 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.provider;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.journals.provider.JournalContract.Search;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the full-text search index kept by {@link JournalProvider.DatabaseHelper.SearchTable}
+ * and the match expressions built by {@link JournalProvider#buildSearchMatch(String)}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SearchIndexTest {
+
+    private JournalProvider.DatabaseHelper mHelper;
+    private SQLiteDatabase mDb;
+
+    @Before
+    public void setUp() {
+        mHelper = new JournalProvider.DatabaseHelper(RuntimeEnvironment.application);
+        mDb = mHelper.getWritableDatabase();
+        mDb.execSQL("INSERT INTO Journals (_id, account_name, title) "
+                + "VALUES (1, 'user@example.com', 'Alps')");
+    }
+
+    @After
+    public void tearDown() {
+        mHelper.close();
+    }
+
+    /**
+     * Inserted journals, activities and contacts are found, with their type and IDs decoded from
+     * the document ID.
+     */
+    @Test
+    public void insert_indexesRow() {
+        mDb.execSQL("INSERT INTO Activities (_id, journal_id, title, description, location) "
+                + "VALUES (5, 1, 'Climb', 'Up the ridge', 'Zermatt')");
+        mDb.execSQL("INSERT INTO Contacts (_id, journal_id, name, description) "
+                + "VALUES (6, 1, 'Guide', 'Knows the ridge')");
+
+        assertEquals(Arrays.asList(result(Search.TYPE_JOURNAL, 1, 1)), search("alps"));
+        assertEquals(Arrays.asList(result(Search.TYPE_ACTIVITY, 5, 1)), search("zermatt"));
+        assertEquals(Arrays.asList(result(Search.TYPE_CONTACT, 6, 1)), search("guide"));
+        final List<String> both = search("ridge");
+        assertEquals(2, both.size());
+        assertTrue(both.contains(result(Search.TYPE_ACTIVITY, 5, 1)));
+        assertTrue(both.contains(result(Search.TYPE_CONTACT, 6, 1)));
+    }
+
+    /**
+     * Changed text replaces the old text in the index.
+     */
+    @Test
+    public void update_replacesText() {
+        mDb.execSQL("INSERT INTO Activities (_id, journal_id, title) VALUES (5, 1, 'Climb')");
+        mDb.execSQL("UPDATE Activities SET title = 'Descent' WHERE _id = 5");
+        mDb.execSQL("UPDATE Journals SET title = 'Pyrenees' WHERE _id = 1");
+
+        assertEquals(0, search("climb").size());
+        assertEquals(Arrays.asList(result(Search.TYPE_ACTIVITY, 5, 1)), search("descent"));
+        assertEquals(0, search("alps").size());
+        assertEquals(Arrays.asList(result(Search.TYPE_JOURNAL, 1, 1)), search("pyrenees"));
+    }
+
+    /**
+     * Rows flagged for deletion leave the index, and return to it if the flag is cleared.
+     */
+    @Test
+    public void softDelete_removesRow() {
+        mDb.execSQL("INSERT INTO Activities (_id, journal_id, title) VALUES (5, 1, 'Climb')");
+        mDb.execSQL("INSERT INTO Contacts (_id, journal_id, name) VALUES (6, 1, 'Guide')");
+
+        mDb.execSQL("UPDATE Activities SET is_deleted = 1 WHERE _id = 5");
+        mDb.execSQL("UPDATE Contacts SET is_deleted = 1 WHERE _id = 6");
+        mDb.execSQL("UPDATE Journals SET is_deleted = 2 WHERE _id = 1");
+        assertEquals(0, search("climb").size());
+        assertEquals(0, search("guide").size());
+        assertEquals(0, search("alps").size());
+
+        mDb.execSQL("UPDATE Activities SET is_deleted = 0 WHERE _id = 5");
+        assertEquals(Arrays.asList(result(Search.TYPE_ACTIVITY, 5, 1)), search("climb"));
+    }
+
+    /**
+     * Deleted rows leave the index, including those deleted by a cascade.
+     */
+    @Test
+    public void delete_removesRow() {
+        mDb.execSQL("INSERT INTO Activities (_id, journal_id, title) VALUES (5, 1, 'Climb')");
+        mDb.execSQL("INSERT INTO Contacts (_id, journal_id, name) VALUES (6, 1, 'Guide')");
+
+        mDb.execSQL("DELETE FROM Activities WHERE _id = 5");
+        assertEquals(0, search("climb").size());
+        assertEquals(1, search("guide").size());
+
+        mDb.execSQL("DELETE FROM Journals WHERE _id = 1");
+        assertEquals(0, search("guide").size());
+        assertEquals(0, search("alps").size());
+        assertEquals(0, count("Search"));
+    }
+
+    /**
+     * Results with more matches rank first, and the snippet marks the matched words.
+     */
+    @Test
+    public void search_ranksByMatches() {
+        mDb.execSQL("INSERT INTO Activities (_id, journal_id, title, description) "
+                + "VALUES (5, 1, 'Walk', 'Some snow on the path')");
+        mDb.execSQL("INSERT INTO Activities (_id, journal_id, title, description) "
+                + "VALUES (6, 1, 'Snow', 'Snow, more snow and snowfall')");
+
+        final Cursor cursor = query("snow");
+        try {
+            assertEquals(2, cursor.getCount());
+            assertTrue(cursor.moveToNext());
+            assertEquals(6, cursor.getLong(cursor.getColumnIndexOrThrow(Search.COLUMN_ITEM_ID)));
+            // The last word matches as a prefix, so "snowfall" counts too.
+            assertEquals(4, cursor.getInt(cursor.getColumnIndexOrThrow(Search.COLUMN_RANK)));
+            assertEquals("Snow", cursor.getString(cursor.getColumnIndexOrThrow(
+                    Search.COLUMN_TITLE)));
+            assertTrue(cursor.moveToNext());
+            assertEquals(5, cursor.getLong(cursor.getColumnIndexOrThrow(Search.COLUMN_ITEM_ID)));
+            assertEquals(1, cursor.getInt(cursor.getColumnIndexOrThrow(Search.COLUMN_RANK)));
+            assertTrue(cursor.getString(cursor.getColumnIndexOrThrow(Search.COLUMN_SNIPPET))
+                    .contains("<b>snow</b>"));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Search terms are reduced to lower case words, with the last one matched as a prefix.
+     */
+    @Test
+    public void buildSearchMatch_stripsSyntax() {
+        assertEquals("alps*", JournalProvider.buildSearchMatch("Alps"));
+        assertEquals("alps or ridge*", JournalProvider.buildSearchMatch("Alps OR \"ridge\""));
+        assertEquals("col du galibier*", JournalProvider.buildSearchMatch(" col-du-Galibier* "));
+        assertNull(JournalProvider.buildSearchMatch(" \"*\" - "));
+    }
+
+    /**
+     * Run a search the way the provider does, best matches first.
+     *
+     * @param terms the search terms
+     * @return a cursor over the results
+     */
+    private Cursor query(String terms) {
+        return mDb.rawQuery("SELECT * FROM (" + JournalProvider.DatabaseHelper.SearchTable
+                        .QUERY_MATCH + ") ORDER BY " + Search.COLUMN_RANK + " DESC",
+                new String[]{JournalProvider.buildSearchMatch(terms)});
+    }
+
+    /**
+     * Run a search, reading every column of each result.
+     *
+     * @param terms the search terms
+     * @return the type, item ID and journal ID of each result, as built by {@link #result}
+     */
+    private List<String> search(String terms) {
+        final List<String> results = new ArrayList<>();
+        final Cursor cursor = query(terms);
+        try {
+            while (cursor.moveToNext()) {
+                cursor.getString(cursor.getColumnIndexOrThrow(Search.COLUMN_SNIPPET));
+                results.add(result(
+                        cursor.getInt(cursor.getColumnIndexOrThrow(Search.COLUMN_TYPE)),
+                        cursor.getLong(cursor.getColumnIndexOrThrow(Search.COLUMN_ITEM_ID)),
+                        cursor.getLong(cursor.getColumnIndexOrThrow(Search.COLUMN_JOURNAL_ID))));
+            }
+        } finally {
+            cursor.close();
+        }
+        return results;
+    }
+
+    /**
+     * Describe a search result.
+     */
+    private static String result(int type, long itemId, long journalId) {
+        return type + "/" + itemId + "/" + journalId;
+    }
+
+    /**
+     * Count the rows of a table.
+     */
+    private long count(String table) {
+        final Cursor cursor = mDb.rawQuery("SELECT COUNT(*) FROM " + table, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+
+}
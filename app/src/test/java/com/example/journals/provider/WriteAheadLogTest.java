@@ -0,0 +1,218 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.provider;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+
+import com.almworks.sqlite4java.SQLiteConnection;
+import com.example.journals.provider.JournalContract.Journals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the write-ahead logging of {@link JournalProvider}: readers on other threads don't
+ * wait for a write transaction, and a checkpoint doesn't wait for a reader.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class WriteAheadLogTest {
+
+    /**
+     * Name of the database, which must match the provider's.
+     */
+    private static final String DATABASE_NAME = "Journals.db";
+    /**
+     * Number of readers querying the provider at once.
+     */
+    private static final int READER_COUNT = 4;
+    /**
+     * Longest time a read or checkpoint may take before it is taken to be waiting (in seconds).
+     */
+    private static final long TIMEOUT = 5;
+    /**
+     * Journals read past the query cache.
+     */
+    private static final Uri JOURNALS_URI = Journals.CONTENT_URI.buildUpon()
+            .appendQueryParameter(JournalContract.PARAM_BYPASS_CACHE, "true")
+            .build();
+
+    /**
+     * The provider under test.
+     */
+    private JournalProvider mProvider;
+    /**
+     * A second connection to the provider's database, used to hold a write transaction.
+     */
+    private JournalProvider.DatabaseHelper mHelper;
+    /**
+     * Threads the readers and checkpoints run on.
+     */
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        mProvider = Robolectric.buildContentProvider(JournalProvider.class).create().get();
+        mHelper = new JournalProvider.DatabaseHelper(RuntimeEnvironment.application);
+        mExecutor = Executors.newFixedThreadPool(READER_COUNT);
+        mProvider.insert(Journals.CONTENT_URI, journal("Committed"));
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+        mHelper.close();
+    }
+
+    /**
+     * The database is opened in write-ahead logging mode.
+     */
+    @Test
+    public void database_usesWriteAheadLog() {
+        final Cursor cursor = mHelper.getReadableDatabase().rawQuery("PRAGMA journal_mode", null);
+        try {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("wal", cursor.getString(0).toLowerCase());
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Queries on other threads return the committed rows while a write transaction is open,
+     * without waiting for it to end.
+     */
+    @Test
+    public void query_doesNotWaitForWriteTransaction() throws Exception {
+        final SQLiteDatabase writer = mHelper.getWritableDatabase();
+        writer.beginTransaction();
+        try {
+            writer.insert(JournalProvider.DatabaseHelper.JournalsTable.TABLE_NAME, null,
+                    journal("Uncommitted"));
+            final List<Future<Integer>> reads = new ArrayList<>(READER_COUNT);
+            for (int i = 0; i < READER_COUNT; i++) {
+                reads.add(mExecutor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return countJournals();
+                    }
+                }));
+            }
+            for (Future<Integer> read : reads) {
+                assertEquals(1, (int) read.get(TIMEOUT, TimeUnit.SECONDS));
+            }
+            writer.setTransactionSuccessful();
+        } finally {
+            writer.endTransaction();
+        }
+        assertEquals(2, countJournals());
+    }
+
+    /**
+     * A checkpoint returns while another connection holds a read transaction, leaving the frames
+     * the reader may still need in the log. Once the reader ends, every frame is copied.
+     * <p/>
+     * The framework has no public way to hold a read transaction open, so the reader is a raw
+     * SQLite connection, the same kind Robolectric backs the framework's connections with.
+     */
+    @Test
+    public void checkpoint_doesNotWaitForReader() throws Exception {
+        final SQLiteConnection reader = new SQLiteConnection(
+                RuntimeEnvironment.application.getDatabasePath(DATABASE_NAME));
+        reader.open(false);
+        try {
+            // Start a read transaction, fixing the reader's view of the log.
+            reader.exec("BEGIN");
+            final com.almworks.sqlite4java.SQLiteStatement statement =
+                    reader.prepare("SELECT COUNT(*) FROM Journals");
+            try {
+                assertTrue(statement.step());
+                assertEquals(1, statement.columnInt(0));
+            } finally {
+                statement.dispose();
+            }
+            // Append frames the reader can't see, so they can't be copied yet.
+            mProvider.insert(Journals.CONTENT_URI, journal("After the read"));
+            final Bundle result = mExecutor.submit(new Callable<Bundle>() {
+                @Override
+                public Bundle call() {
+                    return mProvider.call(JournalContract.METHOD_CHECKPOINT, null, null);
+                }
+            }).get(TIMEOUT, TimeUnit.SECONDS);
+            final int frames = result.getInt(JournalContract.KEY_WAL_FRAMES);
+            assertTrue(frames > 0);
+            assertTrue(result.getInt(JournalContract.KEY_CHECKPOINTED_FRAMES) < frames);
+            reader.exec("COMMIT");
+        } finally {
+            reader.dispose();
+        }
+        final Bundle result = mProvider.call(JournalContract.METHOD_CHECKPOINT, null, null);
+        assertEquals(result.getInt(JournalContract.KEY_WAL_FRAMES),
+                result.getInt(JournalContract.KEY_CHECKPOINTED_FRAMES));
+    }
+
+    /**
+     * Count the journals through the provider.
+     *
+     * @return the number of journals
+     */
+    private int countJournals() {
+        final Cursor cursor = mProvider.query(JOURNALS_URI, null, null, null, null);
+        try {
+            return cursor.getCount();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Create the values of a journal.
+     *
+     * @param title the title of the journal
+     * @return the values
+     */
+    private static ContentValues journal(String title) {
+        final ContentValues values = new ContentValues();
+        values.put(Journals.COLUMN_ACCOUNT_NAME, "user@example.com");
+        values.put(Journals.COLUMN_TITLE, title);
+        return values;
+    }
+
+}
@@ -0,0 +1,404 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.widget;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.net.Uri;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import androidx.annotation.NonNull;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the transactions and deferred change notifications of {@link SQLiteContentProvider}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SQLiteContentProviderTest {
+
+    /**
+     * URI of the items table of the test provider.
+     */
+    private static final Uri ITEMS_URI = Uri.parse("content://test/items");
+    /**
+     * URI whose inserts add two items with a nested bulk insert.
+     */
+    private static final Uri NESTED_URI = Uri.parse("content://test/nested");
+    /**
+     * Name of an item whose insert fails after posting its notification.
+     */
+    private static final String FAILING_NAME = "fail";
+    /**
+     * Name of an item whose insert leaves another thread waiting for the database.
+     */
+    private static final String CONTENDED_NAME = "contend";
+    /**
+     * Longest time to wait for the contending thread to block (in milliseconds).
+     */
+    private static final long CONTENTION_TIMEOUT = 5000;
+
+    private TestProvider mProvider;
+
+    @Before
+    public void setUp() {
+        mProvider = new TestProvider();
+        mProvider.attachInfo(RuntimeEnvironment.application, null);
+    }
+
+    /**
+     * A single insert notifies once, after it is committed, and requests a sync.
+     */
+    @Test
+    public void insert_notifiesAfterCommit() {
+        mProvider.insert(ITEMS_URI, item("a"));
+        assertEquals(Collections.singletonList(notification(ITEMS_URI, 1, true)),
+                mProvider.notifications);
+    }
+
+    /**
+     * Changes made by the sync adapter don't request a sync.
+     */
+    @Test
+    public void insert_fromSyncAdapterDoesNotSync() {
+        final Uri uri = ITEMS_URI.buildUpon()
+                .appendQueryParameter(TestProvider.CALLER_IS_SYNC_ADAPTER, "true").build();
+        mProvider.insert(uri, item("a"));
+        assertEquals(Collections.singletonList(notification(uri, 1, false)),
+                mProvider.notifications);
+    }
+
+    /**
+     * A rolled back insert sends nothing.
+     */
+    @Test
+    public void insert_rollbackSendsNothing() {
+        try {
+            mProvider.insert(ITEMS_URI, item(FAILING_NAME));
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+        assertEquals(0, mProvider.countItems());
+        assertEquals(0, mProvider.notifications.size());
+    }
+
+    /**
+     * A batch that fails part way sends nothing for the operations before the failure.
+     */
+    @Test
+    public void applyBatch_rollbackSendsNothing() {
+        final ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newInsert(ITEMS_URI).withValues(item("a"))
+                .build());
+        operations.add(ContentProviderOperation.newInsert(ITEMS_URI).withValues(item("b"))
+                .build());
+        // No row has this ID, so the expected count fails the batch.
+        operations.add(ContentProviderOperation.newUpdate(ContentUris.withAppendedId(ITEMS_URI,
+                100)).withValues(item("c")).withExpectedCount(1).build());
+        try {
+            mProvider.applyBatch(operations);
+            fail();
+        } catch (OperationApplicationException e) {
+            // Expected.
+        }
+        assertEquals(0, mProvider.countItems());
+        assertEquals(0, mProvider.notifications.size());
+    }
+
+    /**
+     * A batch notifies once per distinct URI, after it is committed.
+     */
+    @Test
+    public void applyBatch_notifiesOncePerUri() throws OperationApplicationException {
+        final ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (String name : new String[]{"a", "b", "c"}) {
+            operations.add(ContentProviderOperation.newInsert(ITEMS_URI).withValues(item(name))
+                    .build());
+        }
+        mProvider.applyBatch(operations);
+        assertEquals(Collections.singletonList(notification(ITEMS_URI, 3, true)),
+                mProvider.notifications);
+    }
+
+    /**
+     * Calls nested in a transaction of the provider join it, and their changes are sent once,
+     * when the outermost transaction is committed.
+     */
+    @Test
+    public void nestedCall_notifiesOnceAfterOuterCommit() throws OperationApplicationException {
+        final ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newInsert(NESTED_URI).withValues(item("a"))
+                .build());
+        operations.add(ContentProviderOperation.newInsert(ITEMS_URI).withValues(item("b"))
+                .build());
+        mProvider.applyBatch(operations);
+        assertEquals(3, mProvider.countItems());
+        assertEquals(Arrays.asList(notification(ITEMS_URI, 3, true),
+                notification(NESTED_URI, 3, true)), mProvider.notifications);
+    }
+
+    /**
+     * A nested call that fails rolls back the whole transaction, so nothing is sent.
+     */
+    @Test
+    public void nestedCall_rollbackSendsNothing() {
+        try {
+            mProvider.bulkInsert(NESTED_URI, new ContentValues[]{item("a"), item(FAILING_NAME)});
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected.
+        }
+        assertEquals(0, mProvider.countItems());
+        assertEquals(0, mProvider.notifications.size());
+    }
+
+    /**
+     * A bulk insert that yields sends the rows committed before the yield when it resumes, and
+     * the rest once it is done.
+     */
+    @Test
+    public void bulkInsert_yieldSendsCommittedChunk() {
+        mProvider.bulkInsert(ITEMS_URI, new ContentValues[]{item("a"), item(CONTENDED_NAME),
+                item("c"), item("d")});
+        mProvider.awaitContender();
+        assertEquals(Arrays.asList(notification(ITEMS_URI, 2, true),
+                notification(ITEMS_URI, 4, true)), mProvider.notifications);
+    }
+
+    /**
+     * A batch that yields sends the operations committed before the yield when it resumes, and
+     * the rest once it is done.
+     */
+    @Test
+    public void applyBatch_yieldSendsCommittedChunk() throws OperationApplicationException {
+        final ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newInsert(ITEMS_URI)
+                .withValues(item("a")).build());
+        operations.add(ContentProviderOperation.newInsert(ITEMS_URI)
+                .withValues(item(CONTENDED_NAME)).build());
+        operations.add(ContentProviderOperation.newInsert(ITEMS_URI)
+                .withValues(item("c")).withYieldAllowed(true).build());
+        mProvider.applyBatch(operations);
+        mProvider.awaitContender();
+        assertEquals(Arrays.asList(notification(ITEMS_URI, 2, true),
+                notification(ITEMS_URI, 3, true)), mProvider.notifications);
+    }
+
+    /**
+     * A write inside a transaction the provider didn't begin notifies at once, and leaves nothing
+     * to be sent again by the provider's next transaction.
+     */
+    @Test
+    public void foreignTransaction_notifiesImmediately() {
+        final SQLiteDatabase db = mProvider.getDatabaseHelper().getWritableDatabase();
+        db.beginTransaction();
+        try {
+            mProvider.insert(ITEMS_URI, item("a"));
+            assertEquals(Collections.singletonList(notification(ITEMS_URI, 1, true)),
+                    mProvider.notifications);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        mProvider.insert(ITEMS_URI, item("b"));
+        assertEquals(Arrays.asList(notification(ITEMS_URI, 1, true),
+                notification(ITEMS_URI, 2, true)), mProvider.notifications);
+    }
+
+    /**
+     * Create the values of an item.
+     */
+    private static ContentValues item(String name) {
+        final ContentValues values = new ContentValues();
+        values.put(TestProvider.COLUMN_NAME, name);
+        return values;
+    }
+
+    /**
+     * Describe a notification, as recorded by {@link TestProvider}.
+     *
+     * @param uri           the changed URI
+     * @param itemCount     the number of committed items when the notification was sent
+     * @param syncToNetwork whether a sync was requested
+     */
+    private static String notification(Uri uri, long itemCount, boolean syncToNetwork) {
+        return uri + " " + itemCount + " " + syncToNetwork;
+    }
+
+    /**
+     * Provider of a single table of named items, recording its change notifications.
+     */
+    private static class TestProvider extends SQLiteContentProvider {
+
+        static final String CALLER_IS_SYNC_ADAPTER = "caller_is_sync_adapter";
+        static final String TABLE_NAME = "Items";
+        static final String COLUMN_NAME = "name";
+
+        /**
+         * The notifications sent, as built by {@link #notification(Uri, long, boolean)}.
+         */
+        final List<String> notifications = new ArrayList<>();
+        /**
+         * Thread left waiting for the database by the insert of {@link #CONTENDED_NAME}.
+         */
+        private Thread mContender;
+
+        @Override
+        protected SQLiteOpenHelper getDatabaseHelper(Context context) {
+            // An in-memory database, which has a single connection for all threads.
+            return new SQLiteOpenHelper(context, null, null, 1) {
+                @Override
+                public void onCreate(SQLiteDatabase db) {
+                    db.execSQL("CREATE TABLE " + TABLE_NAME + " (_id INTEGER PRIMARY KEY, "
+                            + COLUMN_NAME + " TEXT)");
+                }
+
+                @Override
+                public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+                }
+            };
+        }
+
+        @Override
+        protected Uri insertInTransaction(@NonNull Uri uri, ContentValues values,
+                                          boolean callerIsSyncAdapter) {
+            if (NESTED_URI.getPath().equals(uri.getPath())) {
+                bulkInsert(ITEMS_URI, new ContentValues[]{values, item("nested")});
+                postNotifyChange(uri);
+                return uri;
+            }
+            final SQLiteDatabase db = getDatabaseHelper().getWritableDatabase();
+            final long id = db.insert(TABLE_NAME, null, values);
+            postNotifyChange(uri);
+            final String name = values.getAsString(COLUMN_NAME);
+            if (FAILING_NAME.equals(name)) {
+                throw new IllegalStateException();
+            } else if (CONTENDED_NAME.equals(name)) {
+                startContender();
+            }
+            return ContentUris.withAppendedId(uri, id);
+        }
+
+        @Override
+        protected int updateInTransaction(@NonNull Uri uri, ContentValues values,
+                                          String selection, String[] selectionArgs,
+                                          boolean callerIsSyncAdapter) {
+            final int count = getDatabaseHelper().getWritableDatabase().update(TABLE_NAME,
+                    values, "_id = ?", new String[]{uri.getLastPathSegment()});
+            postNotifyChange(uri);
+            return count;
+        }
+
+        @Override
+        protected int deleteInTransaction(@NonNull Uri uri, String selection,
+                                          String[] selectionArgs, boolean callerIsSyncAdapter) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected boolean isCallerSyncAdapter(@NonNull Uri uri) {
+            return uri.getBooleanQueryParameter(CALLER_IS_SYNC_ADAPTER, false);
+        }
+
+        @Override
+        protected void notifyChange(@NonNull Uri uri, boolean syncToNetwork) {
+            notifications.add(notification(uri, countItems(), syncToNetwork));
+        }
+
+        @Override
+        public Cursor query(@NonNull Uri uri, String[] projection, String selection,
+                            String[] selectionArgs, String sortOrder) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getType(@NonNull Uri uri) {
+            return null;
+        }
+
+        /**
+         * Count the items. Notifications are only sent when no uncommitted items exist, so the
+         * count made for each of them is of the committed items.
+         */
+        long countItems() {
+            return DatabaseUtils.queryNumEntries(getDatabaseHelper().getReadableDatabase(),
+                    TABLE_NAME);
+        }
+
+        /**
+         * Wait for the contending thread to finish.
+         */
+        void awaitContender() {
+            try {
+                mContender.join(CONTENTION_TIMEOUT);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+            assertTrue(!mContender.isAlive());
+        }
+
+        /**
+         * Start a thread that waits to run an empty transaction, and return once it is blocked
+         * on the transaction held by the calling thread.
+         */
+        private void startContender() {
+            final SQLiteDatabase db = getDatabaseHelper().getWritableDatabase();
+            mContender = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    db.beginTransaction();
+                    db.endTransaction();
+                }
+            });
+            mContender.start();
+            final long timeout = System.currentTimeMillis() + CONTENTION_TIMEOUT;
+            while (mContender.getState() != Thread.State.WAITING
+                    && mContender.getState() != Thread.State.TIMED_WAITING) {
+                if (System.currentTimeMillis() > timeout) {
+                    throw new AssertionError("Contending thread didn't block");
+                }
+                Thread.yield();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,303 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020 Wade Johnson
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package com.example.journals.widget;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.provider.BaseColumns;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import androidx.annotation.NonNull;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the blocks read by {@link WindowedCursor}: their order, the blocks read ahead of the
+ * cursor and the blocks dropped from memory.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class WindowedCursorTest {
+
+    /**
+     * Authority of the test provider.
+     */
+    private static final String AUTHORITY = "com.example.journals.test.windowed";
+    /**
+     * URI of the rows of the test provider.
+     */
+    private static final Uri ROWS_URI = Uri.parse("content://" + AUTHORITY + "/rows");
+    /**
+     * Column holding the name of a row.
+     */
+    private static final String COLUMN_NAME = "name";
+    /**
+     * Columns read by the cursors.
+     */
+    private static final String[] PROJECTION = new String[]{BaseColumns._ID, COLUMN_NAME};
+    /**
+     * Number of rows in the provider.
+     */
+    private static final int ROW_COUNT = 100;
+    /**
+     * Number of rows in a block.
+     */
+    private static final int BLOCK_SIZE = 10;
+    /**
+     * Row ID of the row in the first position. Row IDs fall as positions rise.
+     */
+    private static final long FIRST_ID = 500;
+    /**
+     * Name of the thread reading blocks ahead of the cursor.
+     */
+    private static final String PREFETCH_THREAD = WindowedCursor.class.getSimpleName();
+
+    /**
+     * The test provider.
+     */
+    private RowProvider mProvider;
+    /**
+     * The cursor under test.
+     */
+    private Cursor mCursor;
+
+    @Before
+    public void setUp() {
+        mProvider = Robolectric.buildContentProvider(RowProvider.class).create(AUTHORITY).get();
+        for (int i = 0; i < ROW_COUNT; i++) {
+            mProvider.names.put(FIRST_ID - i, name(i));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (mCursor != null) {
+            mCursor.close();
+        }
+    }
+
+    /**
+     * Rows are in the order of the query, not the order the rows of a block are returned in.
+     */
+    @Test
+    public void move_keepsQueryOrder() {
+        mCursor = createCursor(4);
+        assertEquals(ROW_COUNT, mCursor.getCount());
+        int position = 0;
+        while (mCursor.moveToNext()) {
+            assertEquals(FIRST_ID - position, mCursor.getLong(0));
+            assertEquals(name(position), mCursor.getString(1));
+            position++;
+        }
+        assertEquals(ROW_COUNT, position);
+    }
+
+    /**
+     * The next block in the direction of movement is read on the prefetch thread, and moving into
+     * it doesn't read it again.
+     */
+    @Test
+    public void move_prefetchesInDirectionOfMovement() {
+        mCursor = createCursor(4);
+        // Moving forward reads the following block ahead.
+        assertTrue(mCursor.moveToPosition(0));
+        assertTrue(mCursor.moveToPosition(BLOCK_SIZE));
+        assertEquals(Collections.singletonList(PREFETCH_THREAD), mProvider.readers(1));
+        // Moving backward reads the preceding block ahead.
+        assertTrue(mCursor.moveToPosition(5 * BLOCK_SIZE + 5));
+        assertTrue(mCursor.moveToPosition(5 * BLOCK_SIZE + 4));
+        assertTrue(mCursor.moveToPosition(4 * BLOCK_SIZE + 5));
+        assertEquals(Collections.singletonList(PREFETCH_THREAD), mProvider.readers(4));
+        assertEquals(name(4 * BLOCK_SIZE + 5), mCursor.getString(1));
+        // A block jumped to is read on the calling thread.
+        assertEquals(Collections.singletonList(Thread.currentThread().getName()),
+                mProvider.readers(5));
+    }
+
+    /**
+     * Once more blocks have been read than are kept, the least recently used block is dropped
+     * and read again when the cursor returns to it.
+     */
+    @Test
+    public void move_dropsLeastRecentlyUsedBlock() {
+        mCursor = createCursor(2);
+        for (int block = 0; block < 4; block++) {
+            assertTrue(mCursor.moveToPosition(block * BLOCK_SIZE));
+        }
+        assertEquals(1, mProvider.readers(0).size());
+        assertTrue(mCursor.moveToPosition(0));
+        assertEquals(2, mProvider.readers(0).size());
+        assertEquals(name(0), mCursor.getString(1));
+    }
+
+    /**
+     * A row deleted after the cursor was created keeps its position and ID, with its other
+     * values {@code null}.
+     */
+    @Test
+    public void move_returnsNullsForDeletedRow() {
+        mCursor = createCursor(4);
+        mProvider.names.remove(FIRST_ID - 3);
+        assertTrue(mCursor.moveToPosition(3));
+        assertEquals(FIRST_ID - 3, mCursor.getLong(0));
+        assertTrue(mCursor.isNull(1));
+        assertNull(mCursor.getString(1));
+        assertEquals(Cursor.FIELD_TYPE_NULL, mCursor.getType(1));
+        assertTrue(mCursor.moveToNext());
+        assertEquals(name(4), mCursor.getString(1));
+    }
+
+    /**
+     * Create a cursor over the provider's rows, ordered by name.
+     *
+     * @param maxBlocks the number of blocks kept in memory
+     * @return the cursor
+     */
+    private static Cursor createCursor(int maxBlocks) {
+        return new WindowedCursor(RuntimeEnvironment.application.getContentResolver(), ROWS_URI,
+                PROJECTION, null, null, COLUMN_NAME, BLOCK_SIZE, maxBlocks);
+    }
+
+    /**
+     * Get the name of the row at a position, which sorts in position order.
+     *
+     * @param position the position
+     * @return the name
+     */
+    private static String name(int position) {
+        return String.format("Row %03d", position);
+    }
+
+    /**
+     * Provider of named rows, recording the thread that reads each block.
+     */
+    public static class RowProvider extends ContentProvider {
+
+        /**
+         * The name of each row, keyed by row ID.
+         */
+        final Map<Long, String> names = new ConcurrentHashMap<>();
+        /**
+         * The block read by each block query, and the thread that read it, in order.
+         */
+        private final List<Object[]> mBlockReads =
+                Collections.synchronizedList(new ArrayList<Object[]>());
+
+        /**
+         * Get the threads that read a block.
+         *
+         * @param block the block number
+         * @return the names of the threads, in the order they read the block
+         */
+        List<String> readers(int block) {
+            final List<String> readers = new ArrayList<>();
+            synchronized (mBlockReads) {
+                for (Object[] read : mBlockReads) {
+                    if ((Integer) read[0] == block) {
+                        readers.add((String) read[1]);
+                    }
+                }
+            }
+            return readers;
+        }
+
+        @Override
+        public boolean onCreate() {
+            return true;
+        }
+
+        @Override
+        public Cursor query(@NonNull Uri uri, String[] projection, String selection,
+                            String[] selectionArgs, String sortOrder) {
+            final List<Long> ids = new ArrayList<>(names.keySet());
+            if (selection == null) {
+                // The row IDs, in name order, which is the reverse of row ID order.
+                Collections.sort(ids, Collections.<Long>reverseOrder());
+                final MatrixCursor cursor = new MatrixCursor(projection);
+                for (long id : ids) {
+                    cursor.addRow(new Object[]{id});
+                }
+                return cursor;
+            }
+            // A block, returned in row ID order.
+            final long[] blockIds = new long[selectionArgs.length];
+            for (int i = 0; i < selectionArgs.length; i++) {
+                blockIds[i] = Long.parseLong(selectionArgs[i]);
+            }
+            Arrays.sort(blockIds);
+            final int block = (int) (FIRST_ID - blockIds[blockIds.length - 1]) / BLOCK_SIZE;
+            mBlockReads.add(new Object[]{block, Thread.currentThread().getName()});
+            final List<String> columns = Arrays.asList(projection);
+            final MatrixCursor cursor = new MatrixCursor(projection);
+            for (long id : blockIds) {
+                final String name = names.get(id);
+                if (name != null) {
+                    final Object[] row = new Object[projection.length];
+                    row[columns.indexOf(BaseColumns._ID)] = id;
+                    row[columns.indexOf(COLUMN_NAME)] = name;
+                    cursor.addRow(row);
+                }
+            }
+            return cursor;
+        }
+
+        @Override
+        public String getType(@NonNull Uri uri) {
+            return null;
+        }
+
+        @Override
+        public Uri insert(@NonNull Uri uri, ContentValues values) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int delete(@NonNull Uri uri, String selection, String[] selectionArgs) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int update(@NonNull Uri uri, ContentValues values, String selection,
+                          String[] selectionArgs) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}